@@ -33,6 +33,9 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +71,34 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading directly from memory mapped
+   * segments of a file (see {@link #mapFile(RandomAccessFile)}).  Segments
+   * are duplicated, so several streams could share the same mapping and
+   * each of them keeps its own position.
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] mappedSegments) {
+    return new CodedInputStream(mappedSegments);
+  }
+
+  /**
+   * Maps whole file into memory as read-only segments of
+   * {@code MAPPED_SEGMENT_SIZE} bytes, so files bigger than 2 GB are supported.
+   */
+  public static ByteBuffer[] mapFile(RandomAccessFile raf) throws IOException {
+    FileChannel channel = raf.getChannel();
+    long length = channel.size();
+    int count = (int) ((length + MAPPED_SEGMENT_SIZE - 1) >>> MAPPED_SEGMENT_SHIFT);
+    ByteBuffer[] segments = new ByteBuffer[Math.max(count, 1)];
+    for (int i = 0; i < segments.length; i++) {
+      long start = ((long) i) << MAPPED_SEGMENT_SHIFT;
+      long size = Math.min(MAPPED_SEGMENT_SIZE, length - start);
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(size, 0));
+    }
+    return segments;
+  }
+  // end osmand change
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +253,7 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (size <= (bufferSize - bufferPos) && size > 0 && mapped == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,7 +355,7 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (size <= (bufferSize - bufferPos) && size > 0 && mapped == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
@@ -539,6 +570,9 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: memory mapped mode, buffer is the current mapped segment
+  private final ByteBuffer[] mappedSegments;
+  private ByteBuffer mapped;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -552,21 +586,23 @@ public final class CodedInputStream {
    * reading started in the middle of the current buffer (e.g. if the
    * constructor that takes a byte array and an offset was used).
    */
-  private int totalBytesRetired;
+  private long totalBytesRetired;
 
   /** The absolute position of the end of the current message. */
-  private int currentLimit = Integer.MAX_VALUE;
+  private long currentLimit = Long.MAX_VALUE;
 
   /** See setRecursionLimit() */
   private int recursionDepth;
   private int recursionLimit = DEFAULT_RECURSION_LIMIT;
 
   /** See setSizeLimit() */
-  private int sizeLimit = DEFAULT_SIZE_LIMIT;
+  private long sizeLimit = DEFAULT_SIZE_LIMIT;
 
   private static final int DEFAULT_RECURSION_LIMIT = 64;
   private static final int DEFAULT_SIZE_LIMIT = 64 << 20;  // 64MB
   private static final int BUFFER_SIZE = 5 * 1024;
+  private static final int MAPPED_SEGMENT_SHIFT = 30;
+  private static final long MAPPED_SEGMENT_SIZE = 1L << MAPPED_SEGMENT_SHIFT;
 
   private CodedInputStream(final byte[] buffer, final int off, final int len) {
     this.buffer = buffer;
@@ -574,6 +610,7 @@ public final class CodedInputStream {
     bufferPos = off;
     totalBytesRetired = -off;
     input = null;
+    mappedSegments = null;
   }
 
   // osmand change
@@ -584,6 +621,23 @@ public final class CodedInputStream {
 		totalBytesRetired = 0;
 		this.raf = raf;
 		input = null;
+		mappedSegments = null;
+		// file is limited by its length
+		sizeLimit = Long.MAX_VALUE;
+	}
+
+	private CodedInputStream(final ByteBuffer[] segments) {
+		buffer = null;
+		input = null;
+		mappedSegments = new ByteBuffer[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			mappedSegments[i] = segments[i].duplicate();
+		}
+		mapped = mappedSegments[0];
+		bufferSize = mapped.limit();
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		sizeLimit = Long.MAX_VALUE;
 	}
 
   private CodedInputStream(final InputStream input) {
@@ -592,6 +646,7 @@ public final class CodedInputStream {
     bufferPos = 0;
     totalBytesRetired = 0;
     this.input = input;
+    mappedSegments = null;
   }
 
   /**
@@ -632,9 +687,9 @@ public final class CodedInputStream {
       throw new IllegalArgumentException(
         "Size limit cannot be negative: " + limit);
     }
-    final int oldLimit = sizeLimit;
+    final long oldLimit = sizeLimit;
     sizeLimit = limit;
-    return oldLimit;
+    return (int) Math.min(oldLimit, Integer.MAX_VALUE);
   }
 
   /**
@@ -659,11 +714,21 @@ public final class CodedInputStream {
    * @return the old limit.
    */
   public int pushLimit(int byteLimit) throws InvalidProtocolBufferException {
+    final long oldLimit = pushLimitLong(byteLimit);
+    // osmand change: int limits are only valid for first 2 GB of the stream
+    return oldLimit == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) oldLimit;
+  }
+
+  /**
+   * Same as {@link #pushLimit(int)} but returns absolute old limit as long,
+   * so it could be used with streams bigger than 2 GB.
+   */
+  public long pushLimitLong(long byteLimit) throws InvalidProtocolBufferException {
     if (byteLimit < 0) {
       throw InvalidProtocolBufferException.negativeSize();
     }
     byteLimit += totalBytesRetired + bufferPos;
-    final int oldLimit = currentLimit;
+    final long oldLimit = currentLimit;
     if (byteLimit > oldLimit) {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
@@ -676,10 +741,10 @@ public final class CodedInputStream {
 
   private void recomputeBufferSizeAfterLimit() {
     bufferSize += bufferSizeAfterLimit;
-    final int bufferEnd = totalBytesRetired + bufferSize;
+    final long bufferEnd = totalBytesRetired + bufferSize;
     if (bufferEnd > currentLimit) {
       // Limit is in current buffer.
-      bufferSizeAfterLimit = bufferEnd - currentLimit;
+      bufferSizeAfterLimit = (int) (bufferEnd - currentLimit);
       bufferSize -= bufferSizeAfterLimit;
     } else {
       bufferSizeAfterLimit = 0;
@@ -692,6 +757,15 @@ public final class CodedInputStream {
    * @param oldLimit The old limit, as returned by {@code pushLimit}.
    */
   public void popLimit(final int oldLimit) {
+    popLimit(oldLimit == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) oldLimit);
+  }
+
+  /**
+   * Discards the current limit, returning to the previous limit.
+   *
+   * @param oldLimit The old limit, as returned by {@code pushLimitLong}.
+   */
+  public void popLimit(final long oldLimit) {
     currentLimit = oldLimit;
     recomputeBufferSizeAfterLimit();
   }
@@ -701,12 +775,12 @@ public final class CodedInputStream {
    * If no limit is set, returns -1.
    */
   public int getBytesUntilLimit() {
-    if (currentLimit == Integer.MAX_VALUE) {
+    if (currentLimit == Long.MAX_VALUE) {
       return -1;
     }
 
-    final int currentAbsolutePosition = totalBytesRetired + bufferPos;
-    return currentLimit - currentAbsolutePosition;
+    final long currentAbsolutePosition = totalBytesRetired + bufferPos;
+    return (int) (currentLimit - currentAbsolutePosition);
   }
 
   /**
@@ -722,7 +796,7 @@ public final class CodedInputStream {
    * The total bytes read up to the current position. Calling
    * {@link #resetSizeCounter()} resets this value to zero.
    */
-  public int getTotalBytesRead() {
+  public long getTotalBytesRead() {
       return totalBytesRetired + bufferPos;
   }
 
@@ -751,9 +825,16 @@ public final class CodedInputStream {
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (mappedSegments != null) {
+    	// osmand change: switch to the next mapped segment
+    	if (!selectMappedSegment(totalBytesRetired) || bufferPos == bufferSize) {
+    		totalBytesRetired += bufferPos;
+    		bufferPos = 0;
+    		bufferSize = -1;
+    	}
+    } else if (raf != null) {
     	// osmand change
-     totalBytesRetired = (int) raf.getFilePointer();
+     totalBytesRetired = raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
     	bufferSize = (int) Math.min(remain, buffer.length);
     	if(bufferSize > 0) {
@@ -778,7 +859,7 @@ public final class CodedInputStream {
       }
     } else {
       recomputeBufferSizeAfterLimit();
-      final int totalBytesRead =
+      final long totalBytesRead =
         totalBytesRetired + bufferSize + bufferSizeAfterLimit;
       if (totalBytesRead > sizeLimit || totalBytesRead < 0) {
         throw InvalidProtocolBufferException.sizeLimitExceeded();
@@ -797,6 +878,9 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mapped != null) {
+      return mapped.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
@@ -813,12 +897,27 @@ public final class CodedInputStream {
 
     if (totalBytesRetired + bufferPos + size > currentLimit) {
       // Read to the end of the stream anyway.
-      skipRawBytes(currentLimit - totalBytesRetired - bufferPos);
+      skipRawBytes((int) (currentLimit - totalBytesRetired - bufferPos));
       // Then fail.
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
-    if (size <= bufferSize - bufferPos) {
+    if (mapped != null) {
+      // osmand change: copy directly from mapped segments
+      final byte[] bytes = new byte[size];
+      int pos = 0;
+      while (pos < size) {
+        if (bufferPos == bufferSize) {
+          refillBuffer(true);
+        }
+        final int n = Math.min(size - pos, bufferSize - bufferPos);
+        ((Buffer) mapped).position(bufferPos);
+        mapped.get(bytes, pos, n);
+        bufferPos += n;
+        pos += n;
+      }
+      return bytes;
+    } else if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
       System.arraycopy(buffer, bufferPos, bytes, 0, size);
@@ -927,7 +1026,7 @@ public final class CodedInputStream {
 
     if (totalBytesRetired + bufferPos + size > currentLimit) {
       // Read to the end of the stream anyway.
-      skipRawBytes(currentLimit - totalBytesRetired - bufferPos);
+      skipRawBytes((int) (currentLimit - totalBytesRetired - bufferPos));
       // Then fail.
       throw InvalidProtocolBufferException.truncatedMessage();
     }
@@ -935,6 +1034,11 @@ public final class CodedInputStream {
     if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       bufferPos += size;
+    } else if (mapped != null) {
+      // osmand change: skip is just a pointer move
+      if (!selectMappedSegment(totalBytesRetired + bufferPos + size)) {
+        throw InvalidProtocolBufferException.truncatedMessage();
+      }
     } else {
       // Skipping more bytes than are in the buffer.  First skip what we have.
       int pos = bufferSize - bufferPos;
@@ -945,7 +1049,7 @@ public final class CodedInputStream {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
-        totalBytesRetired = (int) raf.getFilePointer();
+        totalBytesRetired = raf.getFilePointer();
       	 if (n <= 0) {
              throw InvalidProtocolBufferException.truncatedMessage();
          }
@@ -972,12 +1076,46 @@ public final class CodedInputStream {
 			  throw InvalidProtocolBufferException.truncatedMessage();
 		  }
 		  bufferPos = (int) (pointer - totalBytesRetired);
+	  } else if (mapped != null) {
+		  if (pointer > currentLimit) {
+			  throw InvalidProtocolBufferException.truncatedMessage();
+		  }
+		  if (!selectMappedSegment(pointer)) {
+			  throw InvalidProtocolBufferException.truncatedMessage();
+		  }
 	  } else {
-		  totalBytesRetired = (int) pointer;
+		  totalBytesRetired = pointer;
 		  bufferSizeAfterLimit = 0;
 		  raf.seek(pointer);
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
   }
+
+  /**
+   * Positions mapped stream at absolute {@code pointer}. Returns false if
+   * pointer is out of the mapped file.
+   */
+  private boolean selectMappedSegment(long pointer) {
+	  int ind = (int) (pointer >>> MAPPED_SEGMENT_SHIFT);
+	  if (ind == mappedSegments.length && pointer == (((long) ind) << MAPPED_SEGMENT_SHIFT)) {
+		  // exactly at the end of the last segment
+		  ind--;
+	  }
+	  if (ind < 0 || ind >= mappedSegments.length) {
+		  return false;
+	  }
+	  long start = ((long) ind) << MAPPED_SEGMENT_SHIFT;
+	  ByteBuffer segment = mappedSegments[ind];
+	  if (pointer - start > segment.limit()) {
+		  return false;
+	  }
+	  mapped = segment;
+	  totalBytesRetired = start;
+	  bufferPos = (int) (pointer - start);
+	  bufferSize = segment.limit();
+	  bufferSizeAfterLimit = 0;
+	  recomputeBufferSizeAfterLimit();
+	  return true;
+  }
 }
@@ -149,6 +149,20 @@ public final class MvtReader {
         return tileGeoms;
     }
 
+    /**
+     * Create JTS geometry of one feature from MVT geometry drawing commands.
+     *
+     * @param geomCmds    contains MVT geometry commands
+     * @param geomType    type of feature geometry
+     * @param geomFactory creates JTS geometry
+     * @return JTS geometry in MVT coordinates or null on failure
+     */
+    public static Geometry readGeometry(List<Integer> geomCmds,
+                                        VectorTile.Tile.GeomType geomType,
+                                        GeometryFactory geomFactory) {
+        return readGeometry(geomCmds, geomType, geomFactory, new Vec2d(), RING_CLASSIFIER_V2_1);
+    }
+
     private static Geometry readGeometry(List<Integer> geomCmds,
                                          VectorTile.Tile.GeomType geomType,
                                          GeometryFactory geomFactory,
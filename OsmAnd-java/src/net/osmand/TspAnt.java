@@ -110,14 +110,26 @@ public class TspAnt {
     	l.add(start);
     	l.addAll(intermediates);
     	l.add(end);
-        n = l.size() ;
+    	double[][] costs = new double[l.size()][l.size()];
+    	for (int i = 0; i < costs.length; i++) {
+    		for (int j = 0; j < costs.length; j++) {
+    			costs[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+    		}
+    	}
+    	return readGraph(costs);
+    }
+
+    // Read graph from full matrix of costs between start (first), intermediates and end (last) points,
+    // for example real route costs from RouteMatrix.toCostMatrix.
+    public TspAnt readGraph(double[][] costs) {
+        n = costs.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = Math.rint(costs[i][j]) + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
@@ -25,7 +25,18 @@ public class TspHeldKarp {
 
   /// OSMAND Modification
 	public TspHeldKarp readInput(List<LatLon> ls, boolean returnToInitialPoint) {
-		n = ls.size();
+		double[][] costs = new double[ls.size()][ls.size()];
+		for (int i = 0; i < costs.length; i++) {
+			for (int j = 0; j < costs.length; j++) {
+				costs[i][j] = MapUtils.getDistance(ls.get(i), ls.get(j));
+			}
+		}
+		return readInput(costs, returnToInitialPoint);
+	}
+
+	// full matrix of costs, for example real route costs from RouteMatrix.toCostMatrix
+	public TspHeldKarp readInput(double[][] costs, boolean returnToInitialPoint) {
+		n = costs.length;
 		order = new int[n];
 		cost = new double[n][n];
 		// TSPLIB distances are rounded to the nearest integer to avoid the sum of square roots problem
@@ -35,7 +46,7 @@ public class TspHeldKarp {
 				if (!returnToInitialPoint && (j == 0)) {
 					cost[i][j] = 0;
 				} else {
-					cost[i][j] = Math.rint(MapUtils.getDistance(ls.get(i), ls.get(j)));
+					cost[i][j] = Math.rint(costs[i][j]);
 				}
 			}
 			System.out.println(Arrays.toString(cost[i]));
@@ -1,9 +1,9 @@
 package net.osmand.binary;
 
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.hash.TIntLongHashMap;
-import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -49,7 +49,7 @@ public class BinaryMapAddressReaderAdapter {
 
 	public static class AddressRegion extends BinaryIndexPart {
 		String enName;
-		int indexNameOffset = -1;
+		long indexNameOffset = -1;
 		List<String> attributeTagsTable = new ArrayList<String>();
 		List<CitiesBlock> cities = new ArrayList<BinaryMapAddressReaderAdapter.CitiesBlock>();
 
@@ -71,7 +71,7 @@ public class BinaryMapAddressReaderAdapter {
 			return attributeTagsTable;
 		}
 
-		public int getIndexNameOffset() {
+		public long getIndexNameOffset() {
 			return indexNameOffset;
 		}
 
@@ -144,7 +144,7 @@ public class BinaryMapAddressReaderAdapter {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			int length;
-			int oldLimit;
+			long oldLimit;
 			switch (tag) {
 			case 0:
 				if (region.enName == null || region.enName.length() == 0) {
@@ -159,14 +159,14 @@ public class BinaryMapAddressReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndAddressIndex.BOUNDARIES_FIELD_NUMBER:
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				readBoundariesIndex(region);
 				codedIS.popLimit(oldLimit);
 				region.enName = codedIS.readString();
 				break;
 			case OsmandOdb.OsmAndAddressIndex.ATTRIBUTETAGSTABLE_FIELD_NUMBER:
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				region.attributeTagsTable = map.readStringTable();
 				codedIS.popLimit(oldLimit);
 				break;
@@ -214,9 +214,9 @@ public class BinaryMapAddressReaderAdapter {
 			case 0:
 				return;
 			case CitiesIndex.CITIES_FIELD_NUMBER:
-				int fp = codedIS.getTotalBytesRead();
+				long fp = codedIS.getTotalBytesRead();
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				City c = readCityHeader(new DefaultCityMatcher(matcher), fp, additionalTagsTable);
 				if (c != null) {
 					if (resultMatcher == null || resultMatcher.publish(c)) {
@@ -249,7 +249,7 @@ public class BinaryMapAddressReaderAdapter {
 				Street s = new Street(city);
 				s.setFileOffset(codedIS.getTotalBytesRead());
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				readStreet(s, null, false, x >> 7, y >> 7, city.isPostcode() ? city.getName() : null,
 						attributeTagsTable);
 				if (resultMatcher == null || resultMatcher.publish(s)) {
@@ -299,7 +299,7 @@ public class BinaryMapAddressReaderAdapter {
 		}
 	}
 
-	protected City readCityHeader(CityMatcher matcher, int filePointer, List<String> additionalTagsTable) throws IOException {
+	protected City readCityHeader(CityMatcher matcher, long filePointer, List<String> additionalTagsTable) throws IOException {
 		int x = 0;
 		int y = 0;
 		City c = null;
@@ -354,7 +354,7 @@ public class BinaryMapAddressReaderAdapter {
 				c.setLocation(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x));
 				break;
 			case OsmandOdb.CityIndex.SHIFTTOCITYBLOCKINDEX_FIELD_NUMBER:
-				int offset = readInt();
+				long offset = readInt();
 				offset += filePointer;
 				c.setFileOffset(offset);
 				break;
@@ -427,7 +427,7 @@ public class BinaryMapAddressReaderAdapter {
 			case OsmandOdb.StreetIndex.INTERSECTIONS_FIELD_NUMBER:
 				int length = codedIS.readRawVarint32();
 				if (loadBuildingsAndIntersected) {
-					int oldLimit = codedIS.pushLimit(length);
+					long oldLimit = codedIS.pushLimitLong(length);
 					Street si = readIntersectedStreet(s.getCity(), x, y, additionalTagsTable);
 					s.addIntersectedStreet(si);
 					codedIS.popLimit(oldLimit);
@@ -436,10 +436,10 @@ public class BinaryMapAddressReaderAdapter {
 				}
 				break;
 			case OsmandOdb.StreetIndex.BUILDINGS_FIELD_NUMBER:
-				int offset = codedIS.getTotalBytesRead();
+				long offset = codedIS.getTotalBytesRead();
 				length = codedIS.readRawVarint32();
 				if (loadBuildingsAndIntersected) {
-					int oldLimit = codedIS.pushLimit(length);
+					long oldLimit = codedIS.pushLimitLong(length);
 					Building b = readBuilding(offset, x, y, additionalTagsTable);
 					if (postcodeFilter == null || postcodeFilter.equalsIgnoreCase(b.getPostcode())) {
 						if (buildingsMatcher == null || buildingsMatcher.publish(b)) {
@@ -510,7 +510,7 @@ public class BinaryMapAddressReaderAdapter {
 		}
 	}
 
-	protected Building readBuilding(int fileOffset, int street24X, int street24Y, List<String> additionalTagsTable) throws IOException {
+	protected Building readBuilding(long fileOffset, int street24X, int street24Y, List<String> additionalTagsTable) throws IOException {
 		int x = 0;
 		int y = 0;
 		int x2 = 0;
@@ -605,7 +605,7 @@ public class BinaryMapAddressReaderAdapter {
 			}
 		};
 		long time = System.currentTimeMillis();
-		int indexOffset = 0;
+		long indexOffset = 0;
 		while (true) {
 			if (req.isCancelled()) {
 				return;
@@ -618,7 +618,7 @@ public class BinaryMapAddressReaderAdapter {
 			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
 				int length = readInt();
 				indexOffset = codedIS.getTotalBytesRead();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				// here offsets are sorted by distance
 				map.readIndexedStringTable(stringMatcher.getCollator(), req.nameQuery, "", loffsets, 0);
 				codedIS.popLimit(oldLimit);
@@ -627,27 +627,27 @@ public class BinaryMapAddressReaderAdapter {
 				// also offsets can be randomly skipped by limit
 				loffsets.sort();
 				
-				TIntArrayList[] refs = new TIntArrayList[5];
-				TIntArrayList[] refsContainer = new TIntArrayList[5];
+				TLongArrayList[] refs = new TLongArrayList[5];
+				TLongArrayList[] refsContainer = new TLongArrayList[5];
 				for (int i = 0; i < refs.length; i++) {
-					refs[i] = new TIntArrayList();
-					refsContainer[i] = new TIntArrayList();
+					refs[i] = new TLongArrayList();
+					refsContainer[i] = new TLongArrayList();
 				}
 
 				LOG.info("Searched address structure in " + (System.currentTimeMillis() - time) + "ms. Found " + loffsets.size()
 						+ " subtress");
 				for (int j = 0; j < loffsets.size(); j++) {
-					int fp = indexOffset + loffsets.get(j);
+					long fp = indexOffset + loffsets.get(j);
 					codedIS.seek(fp);
 					int len = codedIS.readRawVarint32();
-					int oldLim = codedIS.pushLimit(len);
+					long oldLim = codedIS.pushLimitLong(len);
 					int stag = 0;
 					do {
 						int st = codedIS.readTag();
 						stag = WireFormat.getTagFieldNumber(st);
 						if (stag == AddressNameIndexData.ATOM_FIELD_NUMBER) {
 							int slen = codedIS.readRawVarint32();
-							int soldLim = codedIS.pushLimit(slen);
+							long soldLim = codedIS.pushLimitLong(slen);
 							readAddressNameData(req, refs, refsContainer, fp);
 							codedIS.popLimit(soldLim);
 						} else if (stag != 0) {
@@ -664,33 +664,33 @@ public class BinaryMapAddressReaderAdapter {
 					typeFilter = TYPES;
 				}
 				for (int i = 0; i < typeFilter.size() && !req.isCancelled(); i++) {
-					TIntArrayList list = refs[typeFilter.get(i)];
-					TIntArrayList listContainer = refsContainer[typeFilter.get(i)];
+					TLongArrayList list = refs[typeFilter.get(i)];
+					TLongArrayList listContainer = refsContainer[typeFilter.get(i)];
 					
 					if (typeFilter.get(i) == STREET_TYPE) {
-						TIntLongHashMap mp = new TIntLongHashMap();
+						TLongObjectHashMap<Long> mp = new TLongObjectHashMap<Long>();
 						for (int j = 0; j < list.size(); j++) {
 							mp.put(list.get(j), listContainer.get(j));
 						}
 						list.sort();
 						for (int j = 0; j < list.size() && !req.isCancelled(); j ++) {
-							int offset = list.get(j);
+							long offset = list.get(j);
 							if (j > 0 &&  offset == list.get(j - 1)) {
 								continue;
 							}
 							City obj;
 							{
-								int contOffset = (int) mp.get(offset);
+								long contOffset = mp.get(offset);
 								codedIS.seek(contOffset);
 								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
+								long old = codedIS.pushLimitLong(len);
 								obj = readCityHeader(null, contOffset, reg.attributeTagsTable);
 								codedIS.popLimit(old);
 							}
 							if (obj != null) {
 								codedIS.seek(offset);
 								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
+								long old = codedIS.pushLimitLong(len);
 								LatLon l = obj.getLocation();
 								Street s = new Street(obj);
 								s.setFileOffset(offset);
@@ -714,15 +714,15 @@ public class BinaryMapAddressReaderAdapter {
 						}
 					} else {
 						list.sort();
-						TIntSet published = new TIntHashSet();
+						TLongHashSet published = new TLongHashSet();
 						for (int j = 0; j < list.size() && !req.isCancelled(); j++) {
-							int offset = list.get(j);
+							long offset = list.get(j);
 							if (j > 0 && offset == list.get(j - 1)) {
 								continue;
 							}
 							codedIS.seek(offset);
 							int len = codedIS.readRawVarint32();
-							int old = codedIS.pushLimit(len);
+							long old = codedIS.pushLimitLong(len);
 							City obj = readCityHeader(cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
 							if (obj != null && !published.contains(offset)) {
 								req.publish(obj);
@@ -743,12 +743,12 @@ public class BinaryMapAddressReaderAdapter {
 
 	}
 
-	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
-			TIntArrayList[] refsContainer, int fp) throws IOException {
-		TIntArrayList toAdd = null;
-		TIntArrayList toAddCity = null;
-		int shiftindex = 0;
-		int shiftcityindex = 0;
+	private void readAddressNameData(SearchRequest<MapObject> req, TLongArrayList[] refs,
+			TLongArrayList[] refsContainer, long fp) throws IOException {
+		TLongArrayList toAdd = null;
+		TLongArrayList toAddCity = null;
+		long shiftindex = 0;
+		long shiftcityindex = 0;
 		boolean add = true; 
 		while (true) {
 			if (req.isCancelled()) {
@@ -0,0 +1,209 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.data.MapObject;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Runs one search request on all registered files at the same time (one task per file which intersects request bbox).
+ * Each task uses own reader from {@link BinaryMapIndexReaderPool} and own copy of request,
+ * results are published to original result matcher one by one and merged into original request
+ * in order of registered files.
+ */
+public class BinaryMapIndexParallelSearch {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapIndexParallelSearch.class);
+	private static final int THREAD_SECONDS_TO_WORK = 30;
+
+	private final ThreadPoolExecutor executor;
+	private final List<BinaryMapIndexReaderPool> pools = new ArrayList<BinaryMapIndexReaderPool>();
+
+	public BinaryMapIndexParallelSearch() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public BinaryMapIndexParallelSearch(int numberOfThreads) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, THREAD_SECONDS_TO_WORK, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Map search " + threadNumber.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public synchronized void addReaderPool(BinaryMapIndexReaderPool pool) {
+		if (!pools.contains(pool)) {
+			pools.add(pool);
+		}
+	}
+
+	public synchronized boolean removeReaderPool(BinaryMapIndexReaderPool pool) {
+		return pools.remove(pool);
+	}
+
+	public synchronized List<BinaryMapIndexReaderPool> getReaderPools() {
+		return new ArrayList<BinaryMapIndexReaderPool>(pools);
+	}
+
+	public List<BinaryMapDataObject> searchMapIndex(final SearchRequest<BinaryMapDataObject> req) throws IOException {
+		return search(req, new ReaderSearch<BinaryMapDataObject>() {
+			@Override
+			public boolean accept(BinaryMapIndexReader r) {
+				return r.containsMapData(req.left, req.top, req.right, req.bottom, req.zoom);
+			}
+
+			@Override
+			public void search(BinaryMapIndexReader r, SearchRequest<BinaryMapDataObject> subRequest) throws IOException {
+				r.searchMapIndex(subRequest);
+			}
+		});
+	}
+
+	public List<Amenity> searchPoi(final SearchRequest<Amenity> req) throws IOException {
+		return search(req, new ReaderSearch<Amenity>() {
+			@Override
+			public boolean accept(BinaryMapIndexReader r) {
+				return r.containsPoiData(req.left, req.top, req.right, req.bottom);
+			}
+
+			@Override
+			public void search(BinaryMapIndexReader r, SearchRequest<Amenity> subRequest) throws IOException {
+				r.searchPoi(subRequest);
+			}
+		});
+	}
+
+	public List<MapObject> searchAddressDataByName(final SearchRequest<MapObject> req) throws IOException {
+		return search(req, new ReaderSearch<MapObject>() {
+			@Override
+			public boolean accept(BinaryMapIndexReader r) {
+				if (req.isBboxSpecified()) {
+					return r.containsAddressData(req.left, req.top, req.right, req.bottom);
+				}
+				return r.containsAddressData();
+			}
+
+			@Override
+			public void search(BinaryMapIndexReader r, SearchRequest<MapObject> subRequest) throws IOException {
+				r.searchAddressDataByName(subRequest);
+			}
+		});
+	}
+
+	private <T> List<T> search(final SearchRequest<T> req, final ReaderSearch<T> readerSearch) throws IOException {
+		// stops other tasks after error, original request is not modified
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		final ResultMatcher<T> matcher = new ResultMatcher<T>() {
+			@Override
+			public boolean publish(T object) {
+				synchronized (req) {
+					return req.matchResult(object);
+				}
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return stopped.get() || req.isCancelled();
+			}
+		};
+		List<SearchRequest<T>> subRequests = new ArrayList<SearchRequest<T>>();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (final BinaryMapIndexReaderPool pool : getReaderPools()) {
+			if (!readerSearch.accept(pool.getInitialReader())) {
+				continue;
+			}
+			final SearchRequest<T> subRequest = req.copyRequest(matcher);
+			subRequests.add(subRequest);
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					if (subRequest.isCancelled()) {
+						return;
+					}
+					try {
+						BinaryMapIndexReader reader = pool.acquire();
+						try {
+							readerSearch.search(reader, subRequest);
+						} finally {
+							pool.release(reader);
+						}
+					} catch (IOException e) {
+						throw new SearchException(e);
+					}
+				}
+			}));
+		}
+		IOException error = null;
+		for (Future<?> f : futures) {
+			try {
+				if (error == null) {
+					f.get();
+				} else {
+					f.cancel(false);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopped.set(true);
+				error = new IOException(e.getMessage(), e);
+			} catch (CancellationException e) {
+				// skip
+			} catch (ExecutionException e) {
+				stopped.set(true);
+				if (e.getCause() instanceof SearchException) {
+					error = (IOException) e.getCause().getCause();
+				} else {
+					error = new IOException(e.getCause());
+				}
+			}
+		}
+		if (error != null) {
+			log.error(error.getMessage(), error);
+			throw error;
+		}
+		for (SearchRequest<T> subRequest : subRequests) {
+			req.mergeResults(subRequest);
+		}
+		return req.getSearchResults();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private interface ReaderSearch<T> {
+
+		boolean accept(BinaryMapIndexReader r);
+
+		void search(BinaryMapIndexReader r, SearchRequest<T> subRequest) throws IOException;
+	}
+
+	private static class SearchException extends RuntimeException {
+		private static final long serialVersionUID = 2376434920263563129L;
+
+		public SearchException(IOException cause) {
+			super(cause);
+		}
+	}
+}
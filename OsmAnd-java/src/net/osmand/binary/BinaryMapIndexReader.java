@@ -16,6 +16,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -96,6 +97,9 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	// shared between readers of the same file, null if file is read through raf
+	private final ByteBuffer[] mappedSegments;
+	private MapDataBlockCache mapDataBlockCache;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -119,22 +123,28 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		init();
+		this(raf, file, true, false);
 	}
 
 	/*private */BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param useMemoryMapping read file through memory mapped buffers, so seeks don't cause system calls
+	 * and data is not copied into intermediate buffer (file could be bigger than 2 GB)
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean useMemoryMapping)
+			throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		if (useMemoryMapping) {
+			mappedSegments = CodedInputStream.mapFile(raf);
+			codedIS = CodedInputStream.newInstance(mappedSegments);
+		} else {
+			mappedSegments = null;
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
 		poiAdapter = new BinaryMapPoiReaderAdapter(this);
@@ -147,8 +157,13 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		mappedSegments = referenceToSameFile.mappedSegments;
+		mapDataBlockCache = referenceToSameFile.mapDataBlockCache;
+		if (mappedSegments != null) {
+			codedIS = CodedInputStream.newInstance(mappedSegments);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
@@ -192,7 +207,7 @@ public class BinaryMapIndexReader {
 				MapIndex mapIndex = new MapIndex();
 				mapIndex.length = readInt();
 				mapIndex.filePointer = codedIS.getTotalBytesRead();
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
+				long oldLimit = codedIS.pushLimitLong(mapIndex.length);
 				readMapIndex(mapIndex, false);
 				basemap = basemap || mapIndex.isBaseMap();
 				codedIS.popLimit(oldLimit);
@@ -205,7 +220,7 @@ public class BinaryMapIndexReader {
 				region.length = readInt();
 				region.filePointer = codedIS.getTotalBytesRead();
 				if(addressAdapter != null){
-					oldLimit = codedIS.pushLimit(region.length);
+					oldLimit = codedIS.pushLimitLong(region.length);
 					addressAdapter.readAddressIndex(region);
 					if(region.name != null){
 						addressIndexes.add(region);
@@ -220,7 +235,7 @@ public class BinaryMapIndexReader {
 				ind.length = readInt();
 				ind.filePointer = codedIS.getTotalBytesRead();
 				if (transportAdapter != null) {
-					oldLimit = codedIS.pushLimit(ind.length);
+					oldLimit = codedIS.pushLimitLong(ind.length);
 					transportAdapter.readTransportIndex(ind);
 					codedIS.popLimit(oldLimit);
 					transportIndexes.add(ind);
@@ -233,7 +248,7 @@ public class BinaryMapIndexReader {
 				routeReg.length = readInt();
 				routeReg.filePointer = codedIS.getTotalBytesRead();
 				if (routeAdapter != null) {
-					oldLimit = codedIS.pushLimit(routeReg.length);
+					oldLimit = codedIS.pushLimitLong(routeReg.length);
 					routeAdapter.readRouteIndex(routeReg);
 					codedIS.popLimit(oldLimit);
 					routingIndexes.add(routeReg);
@@ -246,7 +261,7 @@ public class BinaryMapIndexReader {
 				poiInd.length = readInt();
 				poiInd.filePointer = codedIS.getTotalBytesRead();
 				if (poiAdapter != null) {
-					oldLimit = codedIS.pushLimit(poiInd.length);
+					oldLimit = codedIS.pushLimitLong(poiInd.length);
 					poiAdapter.readPoiIndex(poiInd, false);
 					codedIS.popLimit(oldLimit);
 					poiIndexes.add(poiInd);
@@ -387,6 +402,21 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return mappedSegments != null;
+	}
+
+	/**
+	 * @param mapDataBlockCache cache of decoded map data blocks to skip decoding on repeated queries (null to disable)
+	 */
+	public void setMapDataBlockCache(MapDataBlockCache mapDataBlockCache) {
+		this.mapDataBlockCache = mapDataBlockCache;
+	}
+
+	public MapDataBlockCache getMapDataBlockCache() {
+		return mapDataBlockCache;
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -509,7 +539,7 @@ public class BinaryMapIndexReader {
 		return transportIndexes;
 	}
 
-	private TransportIndex getTransportIndex(int filePointer) {
+	private TransportIndex getTransportIndex(long filePointer) {
 		TransportIndex ind = null;
 		for (TransportIndex i : transportIndexes) {
 			if (i.filePointer <= filePointer && (filePointer - i.filePointer) < i.length) {
@@ -551,7 +581,7 @@ public class BinaryMapIndexReader {
 				continue;
 			}
 			codedIS.seek(index.stopsFileOffset);
-			int oldLimit = codedIS.pushLimit(index.stopsFileLength);
+			long oldLimit = codedIS.pushLimitLong(index.stopsFileLength);
 			int offset = req.searchResults.size();
 			transportAdapter.searchTransportTreeBounds(0, 0, 0, 0, req);
 			codedIS.popLimit(oldLimit);
@@ -602,7 +632,7 @@ public class BinaryMapIndexReader {
 			for (CitiesBlock block : r.cities) {
 				if (block.type == cityType) {
 					codedIS.seek(block.filePointer);
-					int old = codedIS.pushLimit(block.length);
+					long old = codedIS.pushLimitLong(block.length);
 					addressAdapter.readCities(cities, resultMatcher, matcher, r.attributeTagsTable);
 					codedIS.popLimit(old);
 				}
@@ -621,7 +651,7 @@ public class BinaryMapIndexReader {
 		for (CitiesBlock block : region.cities) {
 			if (block.type == cityType) {
 				codedIS.seek(block.filePointer);
-				int old = codedIS.pushLimit(block.length);
+				long old = codedIS.pushLimitLong(block.length);
 				addressAdapter.readCities(cities, resultMatcher, matcher, region.attributeTagsTable);
 				codedIS.popLimit(old);
 			}
@@ -638,13 +668,13 @@ public class BinaryMapIndexReader {
 		}
 		codedIS.seek(c.getFileOffset());
 		int size = codedIS.readRawVarint32();
-		int old = codedIS.pushLimit(size);
+		long old = codedIS.pushLimitLong(size);
 		addressAdapter.readCityStreets(resultMatcher, c, reg.attributeTagsTable);
 		codedIS.popLimit(old);
 		return size;
 	}
 
-	private AddressRegion checkAddressIndex(int offset) {
+	private AddressRegion checkAddressIndex(long offset) {
 		for (AddressRegion r : addressIndexes) {
 			if (offset >= r.filePointer && offset <= (r.length + r.filePointer)) {
 				return r;
@@ -658,7 +688,7 @@ public class BinaryMapIndexReader {
 		AddressRegion reg = checkAddressIndex(s.getFileOffset());
 		codedIS.seek(s.getFileOffset());
 		int size = codedIS.readRawVarint32();
-		int old = codedIS.pushLimit(size);
+		long old = codedIS.pushLimitLong(size);
 		City city = s.getCity();
 		addressAdapter.readStreet(s, resultMatcher, true, 0, 0, city != null && city.isPostcode() ? city.getName() : null,
 				reg.attributeTagsTable);
@@ -672,7 +702,7 @@ public class BinaryMapIndexReader {
 
 	private void readMapIndex(MapIndex index, boolean onlyInitEncodingRules) throws IOException {
 		int defaultId = 1;
-		int oldLimit;
+		long oldLimit;
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -690,7 +720,7 @@ public class BinaryMapIndexReader {
 			case OsmandOdb.OsmAndMapIndex.RULES_FIELD_NUMBER :
 				if (onlyInitEncodingRules) {
 					int len = codedIS.readInt32();
-					oldLimit = codedIS.pushLimit(len);
+					oldLimit = codedIS.pushLimitLong(len);
 					readMapEncodingRule(index, defaultId++);
 					codedIS.popLimit(oldLimit);
 				} else {
@@ -699,9 +729,9 @@ public class BinaryMapIndexReader {
 				break;
 			case OsmandOdb.OsmAndMapIndex.LEVELS_FIELD_NUMBER :
 				int length = readInt();
-				int filePointer = codedIS.getTotalBytesRead();
+				long filePointer = codedIS.getTotalBytesRead();
 				if (!onlyInitEncodingRules) {
-					oldLimit = codedIS.pushLimit(length);
+					oldLimit = codedIS.pushLimitLong(length);
 					MapRoot mapRoot = readMapLevel(new MapRoot());
 					mapRoot.length = length;
 					mapRoot.filePointer = filePointer;
@@ -776,13 +806,13 @@ public class BinaryMapIndexReader {
 				break;
 			case MapRootLevel.BOXES_FIELD_NUMBER :
 				int length = readInt();
-				int filePointer = codedIS.getTotalBytesRead();
+				long filePointer = codedIS.getTotalBytesRead();
 				if (root.trees != null) {
 					MapTree r = new MapTree();
 					// left, ... already initialized
 					r.length = length;
 					r.filePointer = filePointer;
-					int oldLimit = codedIS.pushLimit(r.length);
+					long oldLimit = codedIS.pushLimitLong(r.length);
 					readMapTreeBounds(r, root.left, root.right, root.top, root.bottom);
 					root.trees.add(r);
 					codedIS.popLimit(oldLimit);
@@ -851,12 +881,14 @@ public class BinaryMapIndexReader {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
-			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
+			// lazy initializing rules (index could be shared between readers of the same file)
+			synchronized (mapIndex) {
+				if (mapIndex.encodingRules.isEmpty()) {
+					codedIS.seek(mapIndex.filePointer);
+					long oldLimit = codedIS.pushLimitLong(mapIndex.length);
+					readMapIndex(mapIndex, true);
+					codedIS.popLimit(oldLimit);
+				}
 			}
 			for (MapRoot index : mapIndex.getRoots()) {
 				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
@@ -865,12 +897,14 @@ public class BinaryMapIndexReader {
 					}
 
 					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						int oldLimit = codedIS.pushLimit(index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
+					synchronized (index) {
+						if (index.trees == null) {
+							index.trees = new ArrayList<MapTree>();
+							codedIS.seek(index.filePointer);
+							long oldLimit = codedIS.pushLimitLong(index.length);
+							readMapLevel(index);
+							codedIS.popLimit(oldLimit);
+						}
 					}
 
 					for (MapTree tree : index.trees) {
@@ -878,7 +912,7 @@ public class BinaryMapIndexReader {
 							continue;
 						}
 						codedIS.seek(tree.filePointer);
-						int oldLimit = codedIS.pushLimit(tree.length);
+						long oldLimit = codedIS.pushLimitLong(tree.length);
 						searchMapTreeBounds(tree, index, req, foundSubtrees);
 						codedIS.popLimit(oldLimit);
 					}
@@ -890,10 +924,15 @@ public class BinaryMapIndexReader {
 						}
 					});
 					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
+						if (req.isCancelled()) {
+							continue;
+						}
+						if (mapDataBlockCache != null && file != null) {
+							readCachedMapDataBlocks(req, tree, mapIndex);
+						} else {
 							codedIS.seek(tree.mapDataBlock);
 							int length = codedIS.readRawVarint32();
-							int oldLimit = codedIS.pushLimit(length);
+							long oldLimit = codedIS.pushLimitLong(length);
 							readMapDataBlocks(req, tree, mapIndex);
 							codedIS.popLimit(oldLimit);
 						}
@@ -912,6 +951,59 @@ public class BinaryMapIndexReader {
 
 	
 
+	private void readCachedMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
+		List<BinaryMapDataObject> objects = mapDataBlockCache.get(file, tree.mapDataBlock);
+		if (objects == null) {
+			// decode whole block, bbox and filter are checked below for every request
+			SearchRequest<BinaryMapDataObject> blockReq = buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE,
+					req.zoom, null);
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			long oldLimit = codedIS.pushLimitLong(length);
+			readMapDataBlocks(blockReq, tree, root);
+			codedIS.popLimit(oldLimit);
+			objects = blockReq.getSearchResults();
+			mapDataBlockCache.put(file, tree.mapDataBlock, objects);
+		}
+		for (BinaryMapDataObject o : objects) {
+			if (req.isCancelled()) {
+				return;
+			}
+			req.numberOfVisitedObjects++;
+			int[] c = o.coordinates;
+			int minX = Integer.MAX_VALUE;
+			int maxX = 0;
+			int minY = Integer.MAX_VALUE;
+			int maxY = 0;
+			for (int i = 0; i < c.length; i += 2) {
+				minX = Math.min(minX, c[i]);
+				maxX = Math.max(maxX, c[i]);
+				minY = Math.min(minY, c[i + 1]);
+				maxY = Math.max(maxY, c[i + 1]);
+			}
+			if (maxX < req.left || minX > req.right || minY > req.bottom || maxY < req.top) {
+				continue;
+			}
+			if (req.searchFilter != null) {
+				req.cacheTypes.clear();
+				req.cacheTypes.add(o.types);
+				if (!req.searchFilter.accept(req.cacheTypes, root)) {
+					continue;
+				}
+				if (req.searchFilter instanceof SearchGeometryFilter) {
+					req.cacheCoordinates.clear();
+					req.cacheCoordinates.add(c);
+					if (!((SearchGeometryFilter) req.searchFilter).acceptGeometry(req.cacheTypes, req.cacheCoordinates,
+							o.area, root)) {
+						continue;
+					}
+				}
+			}
+			req.numberOfAcceptedObjects++;
+			req.publish(o);
+		}
+	}
+
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
 		List<BinaryMapDataObject> tempResults = null;
 		long baseId = 0;
@@ -937,7 +1029,7 @@ public class BinaryMapIndexReader {
 				break;
 			case MapDataBlock.DATAOBJECTS_FIELD_NUMBER:
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				if(READ_STATS) {
 					req.stat.lastObjectSize += length;
 					req.stat.addBlockHeader(MapDataBlock.DATAOBJECTS_FIELD_NUMBER, length);
@@ -957,7 +1049,7 @@ public class BinaryMapIndexReader {
 				break;
 			case MapDataBlock.STRINGTABLE_FIELD_NUMBER:
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				if(READ_STATS) {
 					req.stat.addBlockHeader(MapDataBlock.STRINGTABLE_FIELD_NUMBER, length);
 					req.stat.lastBlockStringTableSize += length;
@@ -1042,7 +1134,7 @@ public class BinaryMapIndexReader {
 				MapTree child = new MapTree();
 				child.length = readInt();
 				child.filePointer = codedIS.getTotalBytesRead();
-				int oldLimit = codedIS.pushLimit(child.length);
+				long oldLimit = codedIS.pushLimitLong(child.length);
 				if(current.ocean != null ){
 					child.ocean = current.ocean;
 				}
@@ -1066,13 +1158,16 @@ public class BinaryMapIndexReader {
 			throw new IllegalArgumentException();
 		}
 		req.cacheCoordinates.clear();
+		req.cacheAdditionalTypes.clear();
+		req.cacheInnerCoordinates.clear();
+		req.cacheInnerPolygonEnds.clear();
 		int size = codedIS.readRawVarint32();
 		if (READ_STATS) {
 			req.stat.lastObjectCoordinates += size;
 			req.stat.addTagHeader(OsmandOdb.MapData.COORDINATES_FIELD_NUMBER,
 					size);
 		}
-		int old = codedIS.pushLimit(size);
+		long old = codedIS.pushLimitLong(size);
 		int px = tree.left & MASK_TO_READ;
 		int py = tree.top & MASK_TO_READ;
 		boolean contains = false;
@@ -1112,10 +1207,7 @@ public class BinaryMapIndexReader {
 
 		// read 
 
-		List<TIntArrayList> innercoordinates = null;
-		TIntArrayList additionalTypes = null;
-		TIntObjectHashMap<String> stringNames = null;
-		TIntArrayList stringOrder = null;
+		boolean hasNames = false;
 		long id = 0;
 
 		boolean loop = true;
@@ -1127,11 +1219,6 @@ public class BinaryMapIndexReader {
 				loop = false;
 				break;
 			case OsmandOdb.MapData.POLYGONINNERCOORDINATES_FIELD_NUMBER:
-				if (innercoordinates == null) {
-					innercoordinates = new ArrayList<TIntArrayList>();
-				}
-				TIntArrayList polygon = new TIntArrayList();
-				innercoordinates.add(polygon);
 				px = tree.left & MASK_TO_READ;
 				py = tree.top & MASK_TO_READ;
 				size = codedIS.readRawVarint32();
@@ -1140,28 +1227,28 @@ public class BinaryMapIndexReader {
 					req.stat.addTagHeader(OsmandOdb.MapData.POLYGONINNERCOORDINATES_FIELD_NUMBER,
 							size);
 				}
-				old = codedIS.pushLimit(size);
+				old = codedIS.pushLimitLong(size);
 				while (codedIS.getBytesUntilLimit() > 0) {
 					int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
 					int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
-					polygon.add(x);
-					polygon.add(y);
+					req.cacheInnerCoordinates.add(x);
+					req.cacheInnerCoordinates.add(y);
 					px = x;
 					py = y;
 				}
+				req.cacheInnerPolygonEnds.add(req.cacheInnerCoordinates.size());
 				codedIS.popLimit(old);
 				break;
 			case OsmandOdb.MapData.ADDITIONALTYPES_FIELD_NUMBER:
-				additionalTypes = new TIntArrayList();
 				int sizeL = codedIS.readRawVarint32();
-				old = codedIS.pushLimit(sizeL);
+				old = codedIS.pushLimitLong(sizeL);
 				if(READ_STATS) {
 					req.stat.lastObjectAdditionalTypes += sizeL;
 					req.stat.addTagHeader(OsmandOdb.MapData.ADDITIONALTYPES_FIELD_NUMBER,
 							sizeL);
 				}
 				while (codedIS.getBytesUntilLimit() > 0) {
-					additionalTypes.add(codedIS.readRawVarint32());
+					req.cacheAdditionalTypes.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 
@@ -1169,7 +1256,7 @@ public class BinaryMapIndexReader {
 			case OsmandOdb.MapData.TYPES_FIELD_NUMBER:
 				req.cacheTypes.clear();
 				sizeL = codedIS.readRawVarint32();
-				old = codedIS.pushLimit(sizeL);
+				old = codedIS.pushLimitLong(sizeL);
 				if(READ_STATS) {
 					req.stat.addTagHeader(OsmandOdb.MapData.TYPES_FIELD_NUMBER, sizeL);
 					req.stat.lastObjectTypes += sizeL;
@@ -1197,15 +1284,14 @@ public class BinaryMapIndexReader {
 				}
 				break;
 			case OsmandOdb.MapData.STRINGNAMES_FIELD_NUMBER:
-				stringNames = new TIntObjectHashMap<String>();
-				stringOrder = new TIntArrayList();
+				hasNames = true;
+				req.cacheNames.clear();
 				sizeL = codedIS.readRawVarint32();
-				old = codedIS.pushLimit(sizeL);
+				old = codedIS.pushLimitLong(sizeL);
 				while (codedIS.getBytesUntilLimit() > 0) {
-					int stag = codedIS.readRawVarint32();
-					int pId = codedIS.readRawVarint32();
-					stringNames.put(stag, ((char)pId)+"");
-					stringOrder.add(stag);
+					// tag and string table index
+					req.cacheNames.add(codedIS.readRawVarint32());
+					req.cacheNames.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 				if(READ_STATS) {
@@ -1218,25 +1304,31 @@ public class BinaryMapIndexReader {
 				break;
 			}
 		}
+		if (req.searchFilter instanceof SearchGeometryFilter
+				&& !((SearchGeometryFilter) req.searchFilter).acceptGeometry(req.cacheTypes, req.cacheCoordinates, area, root)) {
+			return null;
+		}
 		BinaryMapDataObject dataObject = new BinaryMapDataObject();
 		dataObject.area = area;
 		dataObject.coordinates = req.cacheCoordinates.toArray();
-		dataObject.objectNames = stringNames;
-		dataObject.namesOrder = stringOrder;
-		if (innercoordinates == null) {
-			dataObject.polygonInnerCoordinates = new int[0][0];
-		} else {
-			dataObject.polygonInnerCoordinates = new int[innercoordinates.size()][];
-			for (int i = 0; i < innercoordinates.size(); i++) {
-				dataObject.polygonInnerCoordinates[i] = innercoordinates.get(i).toArray();
-			}
+		if (hasNames) {
+			dataObject.objectNames = new TIntObjectHashMap<String>();
+			dataObject.namesOrder = new TIntArrayList(req.cacheNames.size() / 2);
+			for (int i = 0; i < req.cacheNames.size(); i += 2) {
+				int stag = req.cacheNames.get(i);
+				dataObject.objectNames.put(stag, ((char) req.cacheNames.get(i + 1)) + "");
+				dataObject.namesOrder.add(stag);
+			}
+		}
+		int innerPolygons = req.cacheInnerPolygonEnds.size();
+		dataObject.polygonInnerCoordinates = new int[innerPolygons][];
+		for (int i = 0; i < innerPolygons; i++) {
+			int start = i == 0 ? 0 : req.cacheInnerPolygonEnds.get(i - 1);
+			dataObject.polygonInnerCoordinates[i] = req.cacheInnerCoordinates.toArray(start,
+					req.cacheInnerPolygonEnds.get(i) - start);
 		}
 		dataObject.types = req.cacheTypes.toArray();
-		if (additionalTypes != null) {
-			dataObject.additionalTypes = additionalTypes.toArray();
-		} else {
-			dataObject.additionalTypes = new int[0];
-		}
+		dataObject.additionalTypes = req.cacheAdditionalTypes.toArray();
 		dataObject.id = id;
 		dataObject.area = area;
 		dataObject.mapIndex = root;
@@ -1248,7 +1340,7 @@ public class BinaryMapIndexReader {
 			if (reg.indexNameOffset != -1) {
 				codedIS.seek(reg.indexNameOffset);
 				int len = readInt();
-				int old = codedIS.pushLimit(len);
+				long old = codedIS.pushLimitLong(len);
 				addressAdapter.searchAddressDataByName(reg, req, typeFilter);
 				codedIS.popLimit(old);
 			}
@@ -1271,7 +1363,7 @@ public class BinaryMapIndexReader {
 		for (PoiRegion poiIndex : poiIndexes) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
-			int old = codedIS.pushLimit(poiIndex.length);
+			long old = codedIS.pushLimitLong(poiIndex.length);
 			poiAdapter.searchPoiByName(poiIndex, req);
 			codedIS.popLimit(old);
 		}
@@ -1318,7 +1410,7 @@ public class BinaryMapIndexReader {
 		for (PoiRegion poiIndex : poiIndexes) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
-			int old = codedIS.pushLimit(poiIndex.length);
+			long old = codedIS.pushLimitLong(poiIndex.length);
 			poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
 			codedIS.popLimit(old);
 		}
@@ -1336,7 +1428,7 @@ public class BinaryMapIndexReader {
 
 		poiAdapter.initCategories(poiIndex);
 		codedIS.seek(poiIndex.filePointer);
-		int old = codedIS.pushLimit(poiIndex.length);
+		long old = codedIS.pushLimitLong(poiIndex.length);
 		poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
 		codedIS.popLimit(old);
 
@@ -1530,6 +1622,19 @@ public class BinaryMapIndexReader {
 
 	}
 
+	/**
+	 * Filter which is also called with geometry of object before object is created,
+	 * so objects which are not accepted are not allocated at all
+	 */
+	public static interface SearchGeometryFilter extends SearchFilter {
+
+		/**
+		 * @param coordinates x, y pairs of 31 tile numbers, buffer is reused and valid only during the call
+		 */
+		public boolean acceptGeometry(TIntArrayList types, TIntArrayList coordinates, boolean area, MapIndex index);
+
+	}
+
 	public static interface SearchPoiTypeFilter {
 
 		public boolean accept(PoiCategory type, String subcategory);
@@ -1609,6 +1714,11 @@ public class BinaryMapIndexReader {
 		// cache information
 		TIntArrayList cacheCoordinates = new TIntArrayList();
 		TIntArrayList cacheTypes = new TIntArrayList();
+		TIntArrayList cacheAdditionalTypes = new TIntArrayList();
+		TIntArrayList cacheNames = new TIntArrayList();
+		// inner polygons coordinates one after another and end index of each polygon
+		TIntArrayList cacheInnerCoordinates = new TIntArrayList();
+		TIntArrayList cacheInnerPolygonEnds = new TIntArrayList();
 
 		MapObjectStat stat = new MapObjectStat();
 
@@ -1619,7 +1729,7 @@ public class BinaryMapIndexReader {
 		int numberOfAcceptedObjects = 0;
 		int numberOfReadSubtrees = 0;
 		int numberOfAcceptedSubtrees = 0;
-		boolean interrupted = false;
+		volatile boolean interrupted = false;
 
 
 		protected SearchRequest() {
@@ -1735,6 +1845,48 @@ public class BinaryMapIndexReader {
 		public boolean isBboxSpecified() {
 			return left != 0 || right != 0;
 		}
+
+		/**
+		 * Copies search parameters into new request with its own results and read state,
+		 * so same query could be run on different readers at the same time
+		 */
+		SearchRequest<T> copyRequest(ResultMatcher<T> resultMatcher) {
+			SearchRequest<T> request = new SearchRequest<T>();
+			request.x = x;
+			request.y = y;
+			request.left = left;
+			request.right = right;
+			request.top = top;
+			request.bottom = bottom;
+			request.zoom = zoom;
+			request.limit = limit;
+			request.tiles = tiles;
+			request.radius = radius;
+			request.nameQuery = nameQuery;
+			request.matcherMode = matcherMode;
+			request.searchFilter = searchFilter;
+			request.poiTypeFilter = poiTypeFilter;
+			request.log = log;
+			if (stringTable != null) {
+				request.stringTable = new TIntObjectHashMap<String>();
+			}
+			request.resultMatcher = resultMatcher;
+			return request;
+		}
+
+		boolean matchResult(T obj) {
+			return resultMatcher == null || resultMatcher.publish(obj);
+		}
+
+		void mergeResults(SearchRequest<T> request) {
+			searchResults.addAll(request.searchResults);
+			land |= request.land;
+			ocean |= request.ocean;
+			numberOfVisitedObjects += request.numberOfVisitedObjects;
+			numberOfAcceptedObjects += request.numberOfAcceptedObjects;
+			numberOfReadSubtrees += request.numberOfReadSubtrees;
+			numberOfAcceptedSubtrees += request.numberOfAcceptedSubtrees;
+		}
 	}
 
 
@@ -2009,7 +2161,7 @@ public class BinaryMapIndexReader {
 	}
 
 	private static class MapTree {
-		int filePointer = 0;
+		long filePointer = 0;
 		int length = 0;
 
 		long mapDataBlock = 0;
@@ -2040,7 +2192,7 @@ public class BinaryMapIndexReader {
 			return length;
 		}
 
-		public int getFilePointer() {
+		public long getFilePointer() {
 			return filePointer;
 		}
 
@@ -2325,7 +2477,7 @@ public class BinaryMapIndexReader {
 				break;
 			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
 				int len = codedIS.readRawVarint32();
-				int oldLim = codedIS.pushLimit(len);
+				long oldLim = codedIS.pushLimitLong(len);
 				if (key != null) {
 					charMatches = readIndexedStringTable(instance, query, key, list, charMatches);
 				} else {
@@ -0,0 +1,123 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.osmand.PlatformUtil;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Pool of readers for one .obf file. {@link BinaryMapIndexReader} keeps cursor state (file position, limits)
+ * so one instance can't be used from different threads. All readers of the pool share index metadata
+ * (parsed once by initial reader) and memory mapped segments (if initial reader is memory mapped),
+ * each reader has only its own file descriptor and cursor.
+ */
+public class BinaryMapIndexReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapIndexReaderPool.class);
+
+	private final BinaryMapIndexReader initialReader;
+	private final ConcurrentLinkedQueue<BinaryMapIndexReader> freeReaders = new ConcurrentLinkedQueue<BinaryMapIndexReader>();
+	private final List<BinaryMapIndexReader> createdReaders = new ArrayList<BinaryMapIndexReader>();
+	private final ThreadLocal<BinaryMapIndexReader> threadReaders = new ThreadLocal<BinaryMapIndexReader>();
+	private volatile boolean closed;
+
+	public BinaryMapIndexReaderPool(File file, boolean useMemoryMapping) throws IOException {
+		this(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, true, useMemoryMapping));
+	}
+
+	public BinaryMapIndexReaderPool(BinaryMapIndexReader initialReader) {
+		this.initialReader = initialReader;
+	}
+
+	/**
+	 * Reader only to access index metadata (regions, bounds), it shouldn't be used for searching
+	 */
+	public BinaryMapIndexReader getInitialReader() {
+		return initialReader;
+	}
+
+	public File getFile() {
+		return initialReader.getFile();
+	}
+
+	/**
+	 * Takes free reader or opens new one, reader should be returned by {@link #release(BinaryMapIndexReader)}
+	 */
+	public BinaryMapIndexReader acquire() throws IOException {
+		if (closed) {
+			throw new IOException("Reader pool is closed " + getFile().getName());
+		}
+		BinaryMapIndexReader reader = freeReaders.poll();
+		if (reader == null) {
+			reader = createReader();
+		}
+		return reader;
+	}
+
+	public void release(BinaryMapIndexReader reader) {
+		if (reader == null) {
+			return;
+		}
+		if (closed) {
+			closeReader(reader);
+		} else {
+			freeReaders.offer(reader);
+		}
+	}
+
+	/**
+	 * Reader bound to the current thread, it is not returned to the pool until pool is closed
+	 */
+	public BinaryMapIndexReader getReader() throws IOException {
+		BinaryMapIndexReader reader = threadReaders.get();
+		if (reader == null) {
+			reader = acquire();
+			threadReaders.set(reader);
+		}
+		return reader;
+	}
+
+	public int getOpenedReaders() {
+		synchronized (createdReaders) {
+			return createdReaders.size();
+		}
+	}
+
+	private BinaryMapIndexReader createReader() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(getFile(), "r");
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, initialReader);
+		synchronized (createdReaders) {
+			createdReaders.add(reader);
+		}
+		return reader;
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Closes all readers opened by pool, readers acquired at this moment could not be used anymore
+	 */
+	public void close() {
+		closed = true;
+		freeReaders.clear();
+		synchronized (createdReaders) {
+			for (BinaryMapIndexReader r : createdReaders) {
+				closeReader(r);
+			}
+			createdReaders.clear();
+		}
+		closeReader(initialReader);
+	}
+}
@@ -139,7 +139,7 @@ public class BinaryMapPoiReaderAdapter {
 
 	protected void readPoiIndex(PoiRegion region, boolean readCategories) throws IOException {
 		int length;
-		int oldLimit;
+		long oldLimit;
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -151,7 +151,7 @@ public class BinaryMapPoiReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndPoiIndex.BOUNDARIES_FIELD_NUMBER:
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				readPoiBoundariesIndex(region);
 				codedIS.popLimit(oldLimit);
 				break;
@@ -161,7 +161,7 @@ public class BinaryMapPoiReaderAdapter {
 					return;
 				}
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				readCategory(region);
 				codedIS.popLimit(oldLimit);
 				break;
@@ -171,7 +171,7 @@ public class BinaryMapPoiReaderAdapter {
 					return;
 				}
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				readSubtypes(region);
 				codedIS.popLimit(oldLimit);
 				break;
@@ -217,7 +217,7 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmandOdb.OsmAndSubtypesTable.SUBTYPES_FIELD_NUMBER:
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				PoiSubType st = new PoiSubType();
 				cycle: while(true){
 					int inT = codedIS.readTag();
@@ -253,11 +253,14 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		// region could be shared between readers of the same file
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				long oldLimit = codedIS.pushLimitLong(region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -271,7 +274,7 @@ public class BinaryMapPoiReaderAdapter {
 		CollatorStringMatcher matcher = new CollatorStringMatcher(query,
 				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
 		long time = System.currentTimeMillis();
-		int indexOffset = codedIS.getTotalBytesRead();
+		long indexOffset = codedIS.getTotalBytesRead();
 		while (true) {
 			if (req.isCancelled()) {
 				return;
@@ -283,7 +286,7 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmandOdb.OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER:
 				int length = readInt();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				// here offsets are sorted by distance
 				offsets = readPoiNameIndex(matcher.getCollator(), query, req);
 				codedIS.popLimit(oldLimit);
@@ -323,7 +326,7 @@ public class BinaryMapPoiReaderAdapter {
 				for (int j = 0; j < offKeys.length; j++) {
 					codedIS.seek(offKeys[j] + indexOffset);
 					int len = readInt();
-					int oldLim = codedIS.pushLimit(len);
+					long oldLim = codedIS.pushLimitLong(len);
 					readPoiData(matcher, req, region);
 					codedIS.popLimit(oldLim);
 					if (req.isCancelled() || req.limitExceeded()) {
@@ -344,7 +347,7 @@ public class BinaryMapPoiReaderAdapter {
 	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		TIntArrayList dataOffsets = null;
-		int offset = 0;
+		long offset = 0;
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -353,7 +356,7 @@ public class BinaryMapPoiReaderAdapter {
 				return offsets;
 			case OsmandOdb.OsmAndPoiNameIndex.TABLE_FIELD_NUMBER: {
 				int length = readInt();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				dataOffsets = new TIntArrayList();
 				offset = codedIS.getTotalBytesRead();
 				map.readIndexedStringTable(instance, query, "", dataOffsets, 0);
@@ -366,7 +369,7 @@ public class BinaryMapPoiReaderAdapter {
 					for (int i = 0; i < dataOffsets.size(); i++) {
 						codedIS.seek(dataOffsets.get(i) + offset);
 						int len = codedIS.readRawVarint32();
-						int oldLim = codedIS.pushLimit(len);
+						long oldLim = codedIS.pushLimitLong(len);
 						readPoiNameIndexData(offsets, req);
 						codedIS.popLimit(oldLim);
 						if (req.isCancelled()) {
@@ -395,7 +398,7 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER:
 				int len = codedIS.readRawVarint32();
-				int oldLim = codedIS.pushLimit(len);
+				long oldLim = codedIS.pushLimitLong(len);
 				readPoiNameIndexDataAtom(offsets, req);
 				codedIS.popLimit(oldLim);
 				break;
@@ -443,14 +446,14 @@ public class BinaryMapPoiReaderAdapter {
 
 	protected void searchPoiIndex(int left31, int right31, int top31, int bottom31,
 			SearchRequest<Amenity> req, PoiRegion region) throws IOException {
-		int indexOffset = codedIS.getTotalBytesRead();
+		long indexOffset = codedIS.getTotalBytesRead();
 		long time = System.currentTimeMillis();
 		TLongHashSet skipTiles = null;
 		if (req.zoom >= 0 && req.zoom < 16) {
 			skipTiles = new TLongHashSet();
 		}
 		int length;
-		int oldLimit;
+		long oldLimit;
 		TIntLongHashMap offsetsMap = new TIntLongHashMap();
 		while (true) {
 			if (req.isCancelled()) {
@@ -463,7 +466,7 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
 				length = readInt();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				readBoxField(left31, right31, top31, bottom31, 0, 0, 0, offsetsMap, skipTiles, req, region);
 				codedIS.popLimit(oldLimit);
 				break;
@@ -489,7 +492,7 @@ public class BinaryMapPoiReaderAdapter {
 					}
 					codedIS.seek(offsets[j] + indexOffset);
 					int len = readInt();
-					int oldLim = codedIS.pushLimit(len);
+					long oldLim = codedIS.pushLimitLong(len);
 					boolean read = readPoiData(left31, right31, top31, bottom31, req, region, skipTiles,
 							req.zoom == -1 ? 31 : req.zoom + ZOOM_TO_SKIP_FILTER);
 					if (read && skipVal != -1 && skipTiles != null) {
@@ -533,7 +536,7 @@ public class BinaryMapPoiReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
 				int len = codedIS.readRawVarint32();
-				int oldLim = codedIS.pushLimit(len);
+				long oldLim = codedIS.pushLimitLong(len);
 				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
 				codedIS.popLimit(oldLim);
 				if (am != null) {
@@ -597,7 +600,7 @@ public class BinaryMapPoiReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
 				int len = codedIS.readRawVarint32();
-				int oldLim = codedIS.pushLimit(len);
+				long oldLim = codedIS.pushLimitLong(len);
 				Amenity am = readPoiPoint(left31, right31, top31, bottom31, x, y, zoom, req, region, true);
 				codedIS.popLimit(oldLim);
 				if (am != null) {
@@ -855,7 +858,7 @@ public class BinaryMapPoiReaderAdapter {
 					skipUnknownField(t);
 				} else {
 					int length = codedIS.readRawVarint32();
-					int oldLimit = codedIS.pushLimit(length);
+					long oldLimit = codedIS.pushLimitLong(length);
 					boolean check = checkCategories(req, region);
 					codedIS.popLimit(oldLimit);
 					if (!check) {
@@ -883,7 +886,7 @@ public class BinaryMapPoiReaderAdapter {
 				}
 
 				int length = readInt();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				boolean exists = readBoxField(left31, right31, top31, bottom31, x, y, zoom, offsetsMap, skipTiles, req, region);
 				codedIS.popLimit(oldLimit);
 
@@ -14,6 +14,7 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
@@ -43,6 +44,32 @@ public class BinaryMapRouteReaderAdapter {
 		float floatValue;
 	}
 
+	/**
+	 * Index of first active condition for each time bucket of one week (-1 if no condition is active)
+	 */
+	private static class ConditionalWeek {
+		final int week;
+		final byte[] activeConditions = new byte[RouteTypeRule.BUCKETS_IN_WEEK];
+
+		ConditionalWeek(int week, List<RouteTypeCondition> conditions) {
+			this.week = week;
+			// calendar fields of shifted time are local time fields
+			Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+			long firstBucket = (long) week * RouteTypeRule.BUCKETS_IN_WEEK - RouteTypeRule.FIRST_WEEK_SHIFT;
+			for (int i = 0; i < activeConditions.length; i++) {
+				c.setTimeInMillis((firstBucket + i) * RouteTypeRule.BUCKET_MINUTES * 60 * 1000);
+				activeConditions[i] = -1;
+				for (int k = 0; k < conditions.size() && k < Byte.MAX_VALUE; k++) {
+					OpeningHoursParser.OpeningHours hours = conditions.get(k).hours;
+					if (hours != null && hours.isOpenedForTime(c)) {
+						activeConditions[i] = (byte) k;
+						break;
+					}
+				}
+			}
+		}
+	}
+
 	public static class RouteTypeRule {
 		private final static int ACCESS = 1;
 		private final static int ONEWAY = 2;
@@ -50,6 +77,11 @@ public class BinaryMapRouteReaderAdapter {
 		private final static int MAXSPEED = 4;
 		private final static int ROUNDABOUT = 5;
 		public final static int TRAFFIC_SIGNALS = 6;
+		// conditions are evaluated once for each 15 minutes of week
+		static final int BUCKET_MINUTES = 15;
+		static final int BUCKETS_IN_WEEK = 7 * 24 * 60 / BUCKET_MINUTES;
+		// 1 January 1970 is Thursday and weeks start on Monday
+		static final int FIRST_WEEK_SHIFT = 3 * 24 * 60 / BUCKET_MINUTES;
 		public final static int RAILWAY_CROSSING = 7;
 		private final static int LANES = 8;
 		private final String t;
@@ -58,6 +90,8 @@ public class BinaryMapRouteReaderAdapter {
 		private float floatValue;
 		private int type;
 		private List<RouteTypeCondition> conditions = null;
+		private ConditionalWeek conditionalWeek = null;
+		private ConditionalWeek previousWeek = null;
 		private int forward;
 
 		public RouteTypeRule(String t, String v) {
@@ -124,6 +158,56 @@ public class BinaryMapRouteReaderAdapter {
 			return -1;
 		}
 
+		/**
+		 * Conditional value at the start of time bucket, used by route calculation with pinned departure time
+		 * (live values should be checked with {@link #maxSpeed()})
+		 * @param timeBucket see {@link #getTimeBucket(long)}
+		 */
+		public float maxSpeed(int timeBucket) {
+			if (type == MAXSPEED) {
+				if (conditions != null) {
+					int c = getActiveCondition(timeBucket);
+					if (c >= 0) {
+						return conditions.get(c).floatValue;
+					}
+				}
+				return floatValue;
+			}
+			return -1;
+		}
+
+		/**
+		 * Conditions are compiled into table of week which contains time bucket (tables of 2 last used weeks are
+		 * kept, so route crossing the end of week doesn't rebuild them)
+		 * @return index of active condition or -1
+		 */
+		int getActiveCondition(int timeBucket) {
+			int shifted = timeBucket + FIRST_WEEK_SHIFT;
+			int week = shifted / BUCKETS_IN_WEEK;
+			ConditionalWeek cw = conditionalWeek;
+			if (cw == null || cw.week != week) {
+				ConditionalWeek pw = previousWeek;
+				if (pw != null && pw.week == week) {
+					previousWeek = cw;
+					cw = pw;
+				} else {
+					previousWeek = cw;
+					cw = new ConditionalWeek(week, conditions);
+				}
+				conditionalWeek = cw;
+			}
+			return cw.activeConditions[shifted % BUCKETS_IN_WEEK];
+		}
+
+		/**
+		 * @return number of 15 minutes interval of local time since 1970, conditional values
+		 * are the same within interval
+		 */
+		public static int getTimeBucket(long timeMillis) {
+			long local = timeMillis + TimeZone.getDefault().getOffset(timeMillis);
+			return (int) (local / (BUCKET_MINUTES * 60 * 1000));
+		}
+
 		public int lanes(){
 			if(type == LANES){
 				return intValue;
@@ -167,7 +251,7 @@ public class BinaryMapRouteReaderAdapter {
 					int ch = c.indexOf('@');
 					if (ch > 0) {
 						RouteTypeCondition cond = new RouteTypeCondition();
-						cond.floatValue = RouteDataObject.parseSpeed(c.substring(0, ch), 0);
+						cond.floatValue = RouteDataObject.parseSpeed(c.substring(0, ch).trim(), 0);
 						cond.condition = c.substring(ch + 1).trim();
 						if (cond.condition.startsWith("(")) {
 							cond.condition = cond.condition.substring(1, cond.condition.length()).trim();
@@ -427,14 +511,13 @@ public class BinaryMapRouteReaderAdapter {
 			this.routeReg = routeReg;
 		}
 		public int length;
-		public int filePointer;
+		public long filePointer;
 		public int left;
 		public int right;
 		public int top;
 		public int bottom;
 		public int shiftToData;
 		public List<RouteSubregion> subregions = null;
-		public List<RouteDataObject> dataObjects = null;
 		
 		public int getEstimatedSize(){
 			int shallow = 7 * INT_SIZE + 4*3;
@@ -488,7 +571,7 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndRoutingIndex.RULES_FIELD_NUMBER: {
 				int len = codedIS.readInt32();
-				int oldLimit = codedIS.pushLimit(len);
+				long oldLimit = codedIS.pushLimitLong(len);
 				readRouteEncodingRule(region, routeEncodingRule++);
 				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				codedIS.popLimit(oldLimit);
@@ -498,7 +581,7 @@ public class BinaryMapRouteReaderAdapter {
 				RouteSubregion subregion = new RouteSubregion(region);
 				subregion.length = readInt();
 				subregion.filePointer = codedIS.getTotalBytesRead();
-				int oldLimit = codedIS.pushLimit(subregion.length);
+				long oldLimit = codedIS.pushLimitLong(subregion.length);
 				readRouteTree(subregion, null, 0, true);
 				if(tag == OsmandOdb.OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER) {
 					region.subregions.add(subregion);
@@ -565,7 +648,7 @@ public class BinaryMapRouteReaderAdapter {
 				return o;
 			case RouteData.TYPES_FIELD_NUMBER:
 				int len = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(len);
+				long oldLimit = codedIS.pushLimitLong(len);
 				while(codedIS.getBytesUntilLimit() > 0) {
 					types.add(codedIS.readRawVarint32());
 				}
@@ -574,7 +657,7 @@ public class BinaryMapRouteReaderAdapter {
 			case RouteData.STRINGNAMES_FIELD_NUMBER:
 				o.names = new TIntObjectHashMap<String>();
 				int sizeL = codedIS.readRawVarint32();
-				int old = codedIS.pushLimit(sizeL);
+				long old = codedIS.pushLimitLong(sizeL);
 				TIntArrayList list = new TIntArrayList();
 				while (codedIS.getBytesUntilLimit() > 0) {
 					int stag = codedIS.readRawVarint32();
@@ -587,7 +670,7 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case RouteData.POINTS_FIELD_NUMBER:
 				len = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(len);
+				oldLimit = codedIS.pushLimitLong(len);
 				int px = pleftx >> SHIFT_COORDINATES;
 				int py = ptopy >> SHIFT_COORDINATES;
 				while(codedIS.getBytesUntilLimit() > 0){
@@ -602,7 +685,7 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case RouteData.POINTNAMES_FIELD_NUMBER:
 				len = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(len);
+				oldLimit = codedIS.pushLimitLong(len);
 				while (codedIS.getBytesUntilLimit() > 0) {
 					int pointInd = codedIS.readRawVarint32();
 					int pointNameType = codedIS.readRawVarint32();
@@ -621,12 +704,12 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case RouteData.POINTTYPES_FIELD_NUMBER:
 				len = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(len);
+				oldLimit = codedIS.pushLimitLong(len);
 				while (codedIS.getBytesUntilLimit() > 0) {
 					int pointInd = codedIS.readRawVarint32();
 					TIntArrayList pointTypes = new TIntArrayList();
 					int lens = codedIS.readRawVarint32();
-					int oldLimits = codedIS.pushLimit(lens);
+					long oldLimits = codedIS.pushLimitLong(lens);
 					while (codedIS.getBytesUntilLimit() > 0) {
 						pointTypes.add(codedIS.readRawVarint32());
 					}
@@ -648,9 +731,9 @@ public class BinaryMapRouteReaderAdapter {
 			}
 		}
 	}
-	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
+	private List<RouteDataObject> readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
 			TLongObjectHashMap<TLongArrayList> restrictions) throws IOException {
-		routeTree.dataObjects = new ArrayList<RouteDataObject>();
+		List<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
 		List<String> stringTable = null;
@@ -663,7 +746,7 @@ public class BinaryMapRouteReaderAdapter {
 				while (it.hasNext()) {
 					it.advance();
 					int from = (int) it.key();
-					RouteDataObject fromr = routeTree.dataObjects.get(from);
+					RouteDataObject fromr = dataObjects.get(from);
 					fromr.restrictions = new long[it.value().size()];
 					for (int k = 0; k < fromr.restrictions.length; k++) {
 						int to = (int) (it.value().get(k) >> RouteDataObject.RESTRICTION_SHIFT);
@@ -671,7 +754,7 @@ public class BinaryMapRouteReaderAdapter {
 						fromr.restrictions[k] = valto;
 					}
 				}
-				for (RouteDataObject o : routeTree.dataObjects) {
+				for (RouteDataObject o : dataObjects) {
 					if (o != null) {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
@@ -693,21 +776,21 @@ public class BinaryMapRouteReaderAdapter {
 						}
 					}
 				}
-				return;
+				return dataObjects;
 			case RouteDataBlock.DATAOBJECTS_FIELD_NUMBER :
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
-				while(obj.id >= routeTree.dataObjects.size()) {
-					routeTree.dataObjects.add(null);
+				while(obj.id >= dataObjects.size()) {
+					dataObjects.add(null);
 				}
-				routeTree.dataObjects.set((int) obj.id,obj);
+				dataObjects.set((int) obj.id,obj);
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteDataBlock.IDTABLE_FIELD_NUMBER :
 				long routeId = 0;
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				idLoop : while(true){
 					int ts = codedIS.readTag();
 					int tags = WireFormat.getTagFieldNumber(ts);
@@ -727,7 +810,7 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case RouteDataBlock.RESTRICTIONS_FIELD_NUMBER :
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				long from = 0;
 				long to = 0;
 				long type = 0;
@@ -759,7 +842,7 @@ public class BinaryMapRouteReaderAdapter {
 				break;
 			case RouteDataBlock.STRINGTABLE_FIELD_NUMBER :
 				length = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(length);
+				oldLimit = codedIS.pushLimitLong(length);
 				stringTable = map.readStringTable();
 //				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				codedIS.popLimit(oldLimit);
@@ -849,7 +932,7 @@ public class BinaryMapRouteReaderAdapter {
 					RouteSubregion subregion = new RouteSubregion(thisTree.routeReg);
 					subregion.length = readInt();
 					subregion.filePointer = codedIS.getTotalBytesRead();
-					int oldLimit = codedIS.pushLimit(subregion.length);
+					long oldLimit = codedIS.pushLimitLong(subregion.length);
 					readRouteTree(subregion, thisTree, depth - 1, true);
 					thisTree.subregions.add(subregion);
 					codedIS.popLimit(oldLimit);
@@ -875,11 +958,14 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			int oldLimit = codedIS.pushLimit(routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		// region could be shared between readers of the same file
+		synchronized (routeReg) {
+			if (routeReg.routeEncodingRules.isEmpty()) {
+				codedIS.seek(routeReg.filePointer);
+				long oldLimit = codedIS.pushLimitLong(routeReg.length);
+				readRouteIndex(routeReg);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -887,15 +973,11 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<TLongArrayList> restrictionMap = new TLongObjectHashMap<TLongArrayList>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
-		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
+		codedIS.seek(rs.filePointer + rs.shiftToData);
+		int limit = codedIS.readRawVarint32();
+		long oldLimit = codedIS.pushLimitLong(limit);
+		List<RouteDataObject> res = readRouteTreeData(rs, idMap, restrictionMap);
+		codedIS.popLimit(oldLimit);
 		return res;
 	}
 	
@@ -903,28 +985,24 @@ public class BinaryMapRouteReaderAdapter {
 		Collections.sort(toLoad, new Comparator<RouteSubregion>() {
 			@Override
 			public int compare(RouteSubregion o1, RouteSubregion o2) {
-				int p1 = o1.filePointer + o1.shiftToData;
-				int p2 = o2.filePointer + o2.shiftToData;
+				long p1 = o1.filePointer + o1.shiftToData;
+				long p2 = o2.filePointer + o2.shiftToData;
 				return p1 == p2 ? 0 : (p1 < p2 ? -1 : 1);
 			}
 		});
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<TLongArrayList> restrictionMap = new TLongObjectHashMap<TLongArrayList>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
-			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			codedIS.seek(rs.filePointer + rs.shiftToData);
+			int limit = codedIS.readRawVarint32();
+			long oldLimit = codedIS.pushLimitLong(limit);
+			List<RouteDataObject> dataObjects = readRouteTreeData(rs, idMap, restrictionMap);
+			codedIS.popLimit(oldLimit);
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 		}
 	}
 
@@ -932,11 +1010,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						long old = codedIS.pushLimitLong(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -953,11 +1033,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						long old = codedIS.pushLimitLong(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -39,7 +39,7 @@ public class BinaryMapTransportReaderAdapter {
 		int top = 0;
 		int bottom = 0;
 
-		int stopsFileOffset = 0;
+		long stopsFileOffset = 0;
 		int stopsFileLength = 0;
 		
 		public String getPartName() {
@@ -70,7 +70,7 @@ public class BinaryMapTransportReaderAdapter {
 	}
 
 	protected static class IndexStringTable {
-		int fileOffset = 0;
+		long fileOffset = 0;
 		int length = 0;
 
 		// offset from start for each SIZE_OFFSET_ARRAY elements
@@ -96,7 +96,7 @@ public class BinaryMapTransportReaderAdapter {
 			case OsmandOdb.OsmAndTransportIndex.STOPS_FIELD_NUMBER :
 				ind.stopsFileLength = readInt();
 				ind.stopsFileOffset = codedIS.getTotalBytesRead();
-				int old = codedIS.pushLimit(ind.stopsFileLength);
+				long old = codedIS.pushLimitLong(ind.stopsFileLength);
 				readTransportBounds(ind);
 				codedIS.popLimit(old);
 				break;
@@ -186,9 +186,9 @@ public class BinaryMapTransportReaderAdapter {
 				init |= 8;
 				break;
 			case OsmandOdb.TransportStopsTree.LEAFS_FIELD_NUMBER :
-				int stopOffset = codedIS.getTotalBytesRead();
+				long stopOffset = codedIS.getTotalBytesRead();
 				int length = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(length);
+				long oldLimit = codedIS.pushLimitLong(length);
 				if(lastIndexResult == -1){
 					lastIndexResult = req.getSearchResults().size();
 				}
@@ -202,9 +202,9 @@ public class BinaryMapTransportReaderAdapter {
 			case OsmandOdb.TransportStopsTree.SUBTREES_FIELD_NUMBER :
 				// left, ... already initialized 
 				length = readInt();
-				int filePointer = codedIS.getTotalBytesRead();
+				long filePointer = codedIS.getTotalBytesRead();
 				if (req.limit == -1 || req.limit >= req.getSearchResults().size()) {
-					oldLimit = codedIS.pushLimit(length);
+					oldLimit = codedIS.pushLimitLong(length);
 					searchTransportTreeBounds(cleft, cright, ctop, cbottom, req);
 					codedIS.popLimit(oldLimit);
 				}
@@ -240,7 +240,7 @@ public class BinaryMapTransportReaderAdapter {
 			boolean onlyDescription) throws IOException {
 		codedIS.seek(filePointer);
 		int routeLength = codedIS.readRawVarint32();
-		int old = codedIS.pushLimit(routeLength);
+		long old = codedIS.pushLimitLong(routeLength);
 		net.osmand.data.TransportRoute dataObject = new net.osmand.data.TransportRoute();
 		boolean end = false;
 		long rid = 0;
@@ -276,7 +276,7 @@ public class BinaryMapTransportReaderAdapter {
 				break;
 			case OsmandOdb.TransportRoute.GEOMETRY_FIELD_NUMBER:
 				int sizeL = codedIS.readRawVarint32();
-				int pold = codedIS.pushLimit(sizeL);
+				long pold = codedIS.pushLimitLong(sizeL);
 				int px = 0; 
 				int py = 0;
 				Way w = new Way(-1);
@@ -311,7 +311,7 @@ public class BinaryMapTransportReaderAdapter {
 					break;
 				}
 				int length = codedIS.readRawVarint32();
-				int olds = codedIS.pushLimit(length);
+				long olds = codedIS.pushLimitLong(length);
 				TransportStop stop = readTransportRouteStop(rx, ry, rid, stringTable, filePointer);
 				dataObject.getForwardStops().add(stop);
 				rid = stop.getId();
@@ -334,7 +334,7 @@ public class BinaryMapTransportReaderAdapter {
 		int[] values = stringTable.keys();
 		Arrays.sort(values);
 		codedIS.seek(ind.stringTable.fileOffset);
-		int oldLimit = codedIS.pushLimit(ind.stringTable.length);
+		long oldLimit = codedIS.pushLimitLong(ind.stringTable.length);
 		int current = 0;
 		int i = 0;
 		while (i < values.length) {
@@ -435,7 +435,7 @@ public class BinaryMapTransportReaderAdapter {
 		return dataObject;
 	}
 	
-	private TransportStop readTransportStop(int shift, int cleft, int cright, int ctop, int cbottom, SearchRequest<TransportStop> req) throws IOException {
+	private TransportStop readTransportStop(long shift, int cleft, int cright, int ctop, int cbottom, SearchRequest<TransportStop> req) throws IOException {
 		int tag = WireFormat.getTagFieldNumber(codedIS.readTag());
 		if(OsmandOdb.TransportStop.DX_FIELD_NUMBER != tag) {
 			throw new IllegalArgumentException();
@@ -469,7 +469,7 @@ public class BinaryMapTransportReaderAdapter {
 				}
 				return dataObject;
 			case OsmandOdb.TransportStop.ROUTES_FIELD_NUMBER :
-				req.cacheTypes.add(shift - codedIS.readUInt32());
+				req.cacheTypes.add((int) (shift - codedIS.readUInt32()));
 				break;
 			case OsmandOdb.TransportStop.NAME_EN_FIELD_NUMBER :
 				if (req.stringTable != null) {
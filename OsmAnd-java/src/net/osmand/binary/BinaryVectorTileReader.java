@@ -1,22 +1,202 @@
 package net.osmand.binary;
 
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
-import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
+import gnu.trove.list.array.TIntArrayList;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.VectorTile.Tile;
 import net.osmand.data.GeometryTile;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Streaming reader of mapbox vector tiles : layers which are not requested are skipped without decoding
+ * and geometry of features stays in packed commands (see {@link GeometryTile.Feature}).
+ */
 public class BinaryVectorTileReader {
 
 	public static GeometryTile readTile(File file) throws IOException {
-		GeometryFactory geomFactory = new GeometryFactory();
-		return new GeometryTile(
-				MvtReader.loadMvt(new FileInputStream(file), geomFactory, new TagKeyValueMapConverter()));
+		return readTile(file, null);
+	}
+
+	/**
+	 * @param layers names of layers to read or null to read all layers
+	 */
+	public static GeometryTile readTile(File file, Collection<String> layers) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return readTile(is, layers);
+		} finally {
+			is.close();
+		}
+	}
+
+	public static GeometryTile readTile(InputStream is, Collection<String> layers) throws IOException {
+		// coded stream reads input by buffer
+		CodedInputStream codedIS = CodedInputStream.newInstance(is);
+		codedIS.setSizeLimit(Integer.MAX_VALUE);
+		List<GeometryTile.Layer> res = new ArrayList<GeometryTile.Layer>();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return new GeometryTile(res);
+			case Tile.LAYERS_FIELD_NUMBER:
+				int length = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(length);
+				GeometryTile.Layer layer = readLayer(codedIS, layers);
+				codedIS.popLimit(oldLimit);
+				if (layer != null) {
+					res.add(layer);
+				}
+				break;
+			default:
+				codedIS.skipField(t);
+				break;
+			}
+		}
+	}
+
+	private static GeometryTile.Layer readLayer(CodedInputStream codedIS, Collection<String> layers) throws IOException {
+		String name = null;
+		int extent = 4096;
+		List<String> keys = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+		// features are created when keys and values are read (they could be stored after features)
+		List<Long> ids = new ArrayList<Long>();
+		TIntArrayList types = new TIntArrayList();
+		List<int[]> tags = new ArrayList<int[]>();
+		List<int[]> geometries = new ArrayList<int[]>();
+		TIntArrayList tagsBuffer = new TIntArrayList();
+		TIntArrayList geometryBuffer = new TIntArrayList();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				if (name == null) {
+					return null;
+				}
+				GeometryTile.Layer layer = new GeometryTile.Layer(name, extent, keys.toArray(new String[keys.size()]),
+						values.toArray());
+				for (int i = 0; i < types.size(); i++) {
+					layer.getFeatures().add(new GeometryTile.Feature(layer, ids.get(i), types.get(i), tags.get(i),
+							geometries.get(i)));
+				}
+				return layer;
+			case Tile.Layer.NAME_FIELD_NUMBER:
+				name = codedIS.readString();
+				if (layers != null && !layers.contains(name)) {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+					return null;
+				}
+				break;
+			case Tile.Layer.EXTENT_FIELD_NUMBER:
+				extent = codedIS.readUInt32();
+				break;
+			case Tile.Layer.KEYS_FIELD_NUMBER:
+				keys.add(codedIS.readString());
+				break;
+			case Tile.Layer.VALUES_FIELD_NUMBER:
+				int length = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(length);
+				values.add(readValue(codedIS));
+				codedIS.popLimit(oldLimit);
+				break;
+			case Tile.Layer.FEATURES_FIELD_NUMBER:
+				length = codedIS.readRawVarint32();
+				oldLimit = codedIS.pushLimit(length);
+				tagsBuffer.resetQuick();
+				geometryBuffer.resetQuick();
+				Long id = null;
+				int type = GeometryTile.TYPE_UNKNOWN;
+				int ft;
+				while ((ft = codedIS.readTag()) != 0) {
+					switch (WireFormat.getTagFieldNumber(ft)) {
+					case Tile.Feature.ID_FIELD_NUMBER:
+						id = codedIS.readUInt64();
+						break;
+					case Tile.Feature.TYPE_FIELD_NUMBER:
+						type = codedIS.readEnum();
+						break;
+					case Tile.Feature.TAGS_FIELD_NUMBER:
+						readUInt32s(codedIS, ft, tagsBuffer);
+						break;
+					case Tile.Feature.GEOMETRY_FIELD_NUMBER:
+						readUInt32s(codedIS, ft, geometryBuffer);
+						break;
+					default:
+						codedIS.skipField(ft);
+						break;
+					}
+				}
+				codedIS.popLimit(oldLimit);
+				if (type != GeometryTile.TYPE_UNKNOWN) {
+					ids.add(id);
+					types.add(type);
+					tags.add(tagsBuffer.toArray());
+					geometries.add(geometryBuffer.toArray());
+				}
+				break;
+			default:
+				codedIS.skipField(t);
+				break;
+			}
+		}
+	}
+
+	private static void readUInt32s(CodedInputStream codedIS, int t, TIntArrayList res) throws IOException {
+		if (WireFormat.getTagWireType(t) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+			int length = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(length);
+			while (codedIS.getBytesUntilLimit() > 0) {
+				res.add(codedIS.readRawVarint32());
+			}
+			codedIS.popLimit(oldLimit);
+		} else {
+			res.add(codedIS.readUInt32());
+		}
+	}
+
+	private static Object readValue(CodedInputStream codedIS) throws IOException {
+		Object value = null;
+		int t;
+		while ((t = codedIS.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(t)) {
+			case Tile.Value.STRING_VALUE_FIELD_NUMBER:
+				value = codedIS.readString();
+				break;
+			case Tile.Value.FLOAT_VALUE_FIELD_NUMBER:
+				value = codedIS.readFloat();
+				break;
+			case Tile.Value.DOUBLE_VALUE_FIELD_NUMBER:
+				value = codedIS.readDouble();
+				break;
+			case Tile.Value.INT_VALUE_FIELD_NUMBER:
+				value = codedIS.readInt64();
+				break;
+			case Tile.Value.UINT_VALUE_FIELD_NUMBER:
+				value = codedIS.readUInt64();
+				break;
+			case Tile.Value.SINT_VALUE_FIELD_NUMBER:
+				value = codedIS.readSInt64();
+				break;
+			case Tile.Value.BOOL_VALUE_FIELD_NUMBER:
+				value = codedIS.readBool();
+				break;
+			default:
+				codedIS.skipField(t);
+				break;
+			}
+		}
+		return value;
 	}
 }
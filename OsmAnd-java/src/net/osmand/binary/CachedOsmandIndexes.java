@@ -40,6 +40,10 @@ public class CachedOsmandIndexes {
 	public static final int VERSION = 2;
 
 	public void addToCache(BinaryMapIndexReader reader, File f) {
+		if (f.length() > Integer.MAX_VALUE) {
+			// some offsets are stored as int32 in cache
+			return;
+		}
 		hasChanged = true;
 		if(storedIndexBuilder == null) {
 			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
@@ -90,7 +94,7 @@ public class CachedOsmandIndexes {
 			if(index.getEnName() != null) {
 				addr.setNameEn(index.getEnName());
 			}
-			addr.setIndexNameOffset(index.getIndexNameOffset());
+			addr.setIndexNameOffset((int) index.getIndexNameOffset());
 			for(CitiesBlock mr : index.getCities() ) {
 				CityBlock.Builder cblock = OsmandIndex.CityBlock.newBuilder();
 				cblock.setSize(mr.length);
@@ -130,9 +134,9 @@ public class CachedOsmandIndexes {
 			transport.setTop(index.getTop());
 			transport.setBottom(index.getBottom());
 			transport.setStopsTableLength(index.stopsFileLength);
-			transport.setStopsTableOffset(index.stopsFileOffset);
+			transport.setStopsTableOffset((int) index.stopsFileOffset);
 			transport.setStringTableLength(index.stringTable.length);
-			transport.setStringTableOffset(index.stringTable.fileOffset);
+			transport.setStringTableOffset((int) index.stringTable.fileOffset);
 			fileIndex.addTransportIndex(transport);
 		}
 		
@@ -170,6 +174,10 @@ public class CachedOsmandIndexes {
 	}
 	
 	public BinaryMapIndexReader getReader(File f) throws IOException {
+		return getReader(f, false);
+	}
+
+	public BinaryMapIndexReader getReader(File f, boolean useMemoryMapping) throws IOException {
 		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		FileIndex found = null;
 		if (storedIndex != null) {
@@ -185,32 +193,33 @@ public class CachedOsmandIndexes {
 		BinaryMapIndexReader reader = null;
 		if (found == null) {
 			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
+			reader = new BinaryMapIndexReader(mf, f, true, useMemoryMapping);
 			addToCache(reader, f);
 			if (log.isDebugEnabled()) {
 				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val ) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
-			reader = initFileIndex(found, mf, f);
+			reader = initFileIndex(found, mf, f, useMemoryMapping);
 		}
 		return reader;
 	}
 	
-	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
-		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
+	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f,
+			boolean useMemoryMapping) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false, useMemoryMapping);
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
 		
 		for(MapPart index : found.getMapIndexList()) {
 			MapIndex mi = new MapIndex();
 			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
+			mi.filePointer = index.getOffset();
 			mi.name = index.getName();
 			
 			for(MapLevel mr : index.getLevelsList()) {
 				MapRoot root = new MapRoot();
 				root.length = (int) mr.getSize();
-				root.filePointer = (int) mr.getOffset();
+				root.filePointer = mr.getOffset();
 				root.left = mr.getLeft();
 				root.right = mr.getRight();
 				root.top = mr.getTop();
@@ -227,14 +236,14 @@ public class CachedOsmandIndexes {
 		for(AddressPart index : found.getAddressIndexList()) {
 			AddressRegion mi = new AddressRegion();
 			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
+			mi.filePointer = index.getOffset();
 			mi.name = index.getName();
 			mi.enName = index.getNameEn();
 			mi.indexNameOffset = index.getIndexNameOffset();
 			for(CityBlock mr : index.getCitiesList() ) {
 				CitiesBlock cblock = new CitiesBlock();
 				cblock.length = (int) mr.getSize();
-				cblock.filePointer = (int) mr.getOffset();
+				cblock.filePointer = mr.getOffset();
 				cblock.type = mr.getType();
 				mi.cities.add(cblock);
 			}
@@ -248,7 +257,7 @@ public class CachedOsmandIndexes {
 		for(PoiPart index : found.getPoiIndexList()) {
 			PoiRegion mi = new PoiRegion();
 			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
+			mi.filePointer = index.getOffset();
 			mi.name = index.getName();
 			mi.left31 = index.getLeft();
 			mi.right31 = index.getRight();
@@ -261,7 +270,7 @@ public class CachedOsmandIndexes {
 		for(TransportPart index : found.getTransportIndexList()) {
 			TransportIndex mi = new TransportIndex();
 			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
+			mi.filePointer = index.getOffset();
 			mi.name = index.getName();
 			mi.left = index.getLeft();
 			mi.right =index.getRight();
@@ -279,13 +288,13 @@ public class CachedOsmandIndexes {
 		for(RoutingPart  index : found.getRoutingIndexList()) {
 			RouteRegion mi = new RouteRegion();
 			mi.length = (int) index.getSize();
-			mi.filePointer = (int) index.getOffset();
+			mi.filePointer = index.getOffset();
 			mi.name = index.getName();
 			
 			for(RoutingSubregion mr : index.getSubregionsList()) {
 				RouteSubregion sub = new RouteSubregion(mi);
 				sub.length = (int) mr.getSize();
-				sub.filePointer = (int) mr.getOffset();
+				sub.filePointer = mr.getOffset();
 				sub.left = mr.getLeft();
 				sub.right = mr.getRight();
 				sub.top = mr.getTop();
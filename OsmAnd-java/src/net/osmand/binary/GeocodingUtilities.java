@@ -12,6 +12,7 @@ import net.osmand.data.MapObject;
 import net.osmand.data.Street;
 import net.osmand.router.BinaryRoutePlanner;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.NearestRouteSegments;
 import net.osmand.router.RoutePlannerFrontEnd;
 import net.osmand.router.RoutingContext;
 import net.osmand.util.Algorithms;
@@ -31,7 +32,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
-import gnu.trove.set.hash.TLongHashSet;
 
 public class GeocodingUtilities {
 
@@ -84,7 +84,7 @@ public class GeocodingUtilities {
 		public LatLon searchPoint;
 		// 1st step
 		public LatLon connectionPoint;
-		public int regionFP;
+		public long regionFP;
 		public int regionLen;
 		public RouteSegmentPoint point;
 		public String streetName;
@@ -138,40 +138,77 @@ public class GeocodingUtilities {
 
 
 	public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon) throws IOException {
+		return reverseGeocodingSearch(ctx, lat, lon, new RoutePlannerFrontEnd(false),
+				new NearestRouteSegments(RoutePlannerFrontEnd.NEAREST_SEGMENTS_LIMIT));
+	}
+
+	/**
+	 * Reverse geocoding of many points with the same context (results are in order of points).
+	 * Points are processed in order of routing tiles and nearest roads buffer is reused.
+	 */
+	public List<List<GeocodingResult>> reverseGeocodingSearch(RoutingContext ctx, List<LatLon> points) throws IOException {
 		RoutePlannerFrontEnd rp = new RoutePlannerFrontEnd(false);
+		NearestRouteSegments buffer = new NearestRouteSegments(RoutePlannerFrontEnd.NEAREST_SEGMENTS_LIMIT);
+		List<List<GeocodingResult>> res = new ArrayList<List<GeocodingResult>>(points.size());
+		for (int i = 0; i < points.size(); i++) {
+			res.add(null);
+		}
+		for (int i : RoutePlannerFrontEnd.sortByTiles(points, ctx.config.ZOOM_TO_LOAD_TILES)) {
+			LatLon l = points.get(i);
+			res.set(i, reverseGeocodingSearch(ctx, l.getLatitude(), l.getLongitude(), rp, buffer));
+		}
+		return res;
+	}
+
+	private List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon,
+			RoutePlannerFrontEnd rp, NearestRouteSegments buffer) throws IOException {
 		List<GeocodingResult> lst = new ArrayList<GeocodingUtilities.GeocodingResult>();
-		List<RouteSegmentPoint> listR = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
-		rp.findRouteSegment(lat, lon, ctx, listR);
+		buffer.clear();
+		if (ctx.nativeLib == null) {
+			int px = MapUtils.get31TileNumberX(lon);
+			int py = MapUtils.get31TileNumberY(lat);
+			ctx.findNearestSegments(px, py, 17, buffer);
+			if (buffer.size() == 0) {
+				ctx.findNearestSegments(px, py, 15, buffer);
+			}
+		} else {
+			List<RouteSegmentPoint> listR = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
+			rp.findRouteSegment(lat, lon, ctx, listR);
+			for (RouteSegmentPoint p : listR) {
+				buffer.add(p.getRoad(), p.getSegmentStart(), p.distSquare, p.preciseX, p.preciseY);
+			}
+		}
 		double distSquare = 0;
-		TLongHashSet set = new TLongHashSet();
 		Set<String> streetNames = new HashSet<String>();
-		for (RouteSegmentPoint p : listR) {
-			RouteDataObject road = p.getRoad();
-			if (!set.add(road.getId())) {
-				continue;
-			}
-//			System.out.println(road.toString() +  " " + Math.sqrt(p.distSquare));
+		for (int i = 0; i < buffer.size(); i++) {
+			// one segment per road
+			RouteDataObject road = buffer.getRoad(i);
+			double pDistSquare = buffer.getDistSquare(i);
+//			System.out.println(road.toString() +  " " + Math.sqrt(pDistSquare));
 			boolean emptyName = Algorithms.isEmpty(road.getName()) && Algorithms.isEmpty(road.getRef("", false, true));
 			if (!emptyName) {
-				if (distSquare == 0 || distSquare > p.distSquare) {
-					distSquare = p.distSquare;
+				if (distSquare == 0 || distSquare > pDistSquare) {
+					distSquare = pDistSquare;
 				}
 				GeocodingResult sr = new GeocodingResult();
 				sr.searchPoint = new LatLon(lat, lon);
 				sr.streetName = Algorithms.isEmpty(road.getName()) ? road.getRef("", false, true) : road.getName();
-				sr.point = p;
-				sr.connectionPoint = new LatLon(MapUtils.get31LatitudeY(p.preciseY), MapUtils.get31LongitudeX(p.preciseX));
-				sr.regionFP = road.region.getFilePointer();
-				sr.regionLen = road.region.getLength();
 				if (streetNames.add(sr.streetName)) {
+					RouteSegmentPoint p = new RouteSegmentPoint(road, buffer.getSegmentStart(i), pDistSquare);
+					p.preciseX = buffer.getPreciseX(i);
+					p.preciseY = buffer.getPreciseY(i);
+					sr.point = p;
+					sr.connectionPoint = new LatLon(MapUtils.get31LatitudeY(p.preciseY), MapUtils.get31LongitudeX(p.preciseX));
+					sr.regionFP = road.region.getFilePointer();
+					sr.regionLen = road.region.getLength();
 					lst.add(sr);
 				}
 			}
-			if (p.distSquare > STOP_SEARCHING_STREET_WITH_MULTIPLIER_RADIUS * STOP_SEARCHING_STREET_WITH_MULTIPLIER_RADIUS &&
-					distSquare != 0 && p.distSquare > THRESHOLD_MULTIPLIER_SKIP_STREETS_AFTER * distSquare) {
+			if (pDistSquare > STOP_SEARCHING_STREET_WITH_MULTIPLIER_RADIUS * STOP_SEARCHING_STREET_WITH_MULTIPLIER_RADIUS &&
+					distSquare != 0 && pDistSquare > THRESHOLD_MULTIPLIER_SKIP_STREETS_AFTER * distSquare) {
 				break;
 			}
-			if (p.distSquare > STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS * STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS) {
+			if (pDistSquare > STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS * STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS) {
 				break;
 			}
 		}
@@ -0,0 +1,181 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * LRU cache of decoded map data blocks (all objects of block with resolved names) limited by approximate size in bytes.
+ * Objects are shared between all requests that read same block, so they shouldn't be modified.
+ * Cache could be shared by readers of different files.
+ */
+public class MapDataBlockCache {
+
+	// approximate sizes of java objects
+	private static final int OBJECT_SIZE = 96;
+	private static final int ARRAY_SIZE = 16;
+	private static final int STRING_SIZE = 48;
+
+	private final LinkedHashMap<BlockKey, CachedBlock> blocks = new LinkedHashMap<BlockKey, CachedBlock>(64, 0.75f, true);
+	private long maxSizeBytes;
+	private long sizeBytes;
+	private long hits;
+	private long misses;
+
+	public MapDataBlockCache(long maxSizeBytes) {
+		this.maxSizeBytes = maxSizeBytes;
+	}
+
+	public synchronized List<BinaryMapDataObject> get(File file, long mapDataBlock) {
+		CachedBlock b = blocks.get(new BlockKey(file, mapDataBlock));
+		if (b == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return b.objects;
+	}
+
+	public synchronized void put(File file, long mapDataBlock, List<BinaryMapDataObject> objects) {
+		CachedBlock b = new CachedBlock(objects);
+		if (b.size > maxSizeBytes) {
+			return;
+		}
+		CachedBlock old = blocks.put(new BlockKey(file, mapDataBlock), b);
+		if (old != null) {
+			sizeBytes -= old.size;
+		}
+		sizeBytes += b.size;
+		trim();
+	}
+
+	public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+		this.maxSizeBytes = maxSizeBytes;
+		trim();
+	}
+
+	public synchronized long getMaxSizeBytes() {
+		return maxSizeBytes;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public synchronized int getBlocksCount() {
+		return blocks.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		blocks.clear();
+		sizeBytes = 0;
+	}
+
+	/**
+	 * Removes all blocks of file (when file is closed or updated)
+	 */
+	public synchronized void clear(File file) {
+		Iterator<Entry<BlockKey, CachedBlock>> it = blocks.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<BlockKey, CachedBlock> e = it.next();
+			if (e.getKey().file.equals(file)) {
+				sizeBytes -= e.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	private void trim() {
+		Iterator<CachedBlock> it = blocks.values().iterator();
+		while (sizeBytes > maxSizeBytes && it.hasNext()) {
+			sizeBytes -= it.next().size;
+			it.remove();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Map data block cache: " + blocks.size() + " blocks, " + (sizeBytes >> 10) + " KB, hits " + hits
+				+ ", misses " + misses;
+	}
+
+	private static long estimateSize(BinaryMapDataObject o) {
+		long size = OBJECT_SIZE;
+		if (o.coordinates != null) {
+			size += ARRAY_SIZE + 4 * o.coordinates.length;
+		}
+		if (o.polygonInnerCoordinates != null) {
+			size += ARRAY_SIZE;
+			for (int[] inner : o.polygonInnerCoordinates) {
+				size += ARRAY_SIZE + 4 * inner.length;
+			}
+		}
+		if (o.types != null) {
+			size += ARRAY_SIZE + 4 * o.types.length;
+		}
+		if (o.additionalTypes != null) {
+			size += ARRAY_SIZE + 4 * o.additionalTypes.length;
+		}
+		if (o.objectNames != null) {
+			size += OBJECT_SIZE;
+			for (String s : o.objectNames.valueCollection()) {
+				size += STRING_SIZE + 2 * s.length();
+			}
+		}
+		if (o.namesOrder != null) {
+			size += ARRAY_SIZE + 4 * o.namesOrder.size();
+		}
+		return size;
+	}
+
+	private static class CachedBlock {
+		final List<BinaryMapDataObject> objects;
+		final long size;
+
+		CachedBlock(List<BinaryMapDataObject> objects) {
+			this.objects = objects;
+			long s = OBJECT_SIZE + ARRAY_SIZE + 4 * objects.size();
+			for (BinaryMapDataObject o : objects) {
+				s += estimateSize(o);
+			}
+			this.size = s;
+		}
+	}
+
+	private static class BlockKey {
+		final File file;
+		final long mapDataBlock;
+
+		BlockKey(File file, long mapDataBlock) {
+			this.file = file;
+			this.mapDataBlock = mapDataBlock;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * file.hashCode() + (int) (mapDataBlock ^ (mapDataBlock >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return mapDataBlock == other.mapDataBlock && file.equals(other.file);
+		}
+	}
+}
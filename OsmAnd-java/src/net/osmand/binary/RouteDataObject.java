@@ -470,7 +470,18 @@ public class RouteDataObject {
 		return types;
 	}
 
+	/**
+	 * Conditional speed is checked for current time (minute exact)
+	 */
 	public float getMaximumSpeed(boolean direction){
+		return getMaximumSpeed(direction, -1);
+	}
+
+	/**
+	 * @param timeBucket time to check conditional speed (see {@link RouteTypeRule#getTimeBucket(long)}),
+	 * negative - current time
+	 */
+	public float getMaximumSpeed(boolean direction, int timeBucket) {
 		int sz = types.length;
 		float maxSpeed = 0;
 		for (int i = 0; i < sz; i++) {
@@ -480,7 +491,7 @@ public class RouteDataObject {
 					continue;
 				}
 			}
-			float mx = r.maxSpeed();
+			float mx = timeBucket < 0 ? r.maxSpeed() : r.maxSpeed(timeBucket);
 			if (mx > 0) {
 				maxSpeed = mx;
 				// conditional has priority
@@ -1,18 +1,253 @@
 package net.osmand.data;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
+import com.wdtinc.mapbox_vector_tile.encoding.ZigZag;
+
+import net.osmand.binary.VectorTile;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Decoded vector tile. Geometry of features is kept in packed MVT commands and it is decoded
+ * only when feature is drawn ({@link Feature#decodeGeometry}) or converted to JTS ({@link Feature#toGeometry}).
+ */
 public class GeometryTile {
 
-	private List<Geometry> data;
+	public static final int TYPE_UNKNOWN = 0;
+	public static final int TYPE_POINT = 1;
+	public static final int TYPE_LINE = 2;
+	public static final int TYPE_POLYGON = 3;
+
+	private static final int CMD_MOVE_TO = 1;
+	private static final int CMD_LINE_TO = 2;
+	private static final int CMD_CLOSE_PATH = 7;
+
+	private final List<Layer> layers;
+
+	public GeometryTile(List<Layer> layers) {
+		this.layers = layers;
+	}
+
+	public List<Layer> getLayers() {
+		return layers;
+	}
 
-	public GeometryTile(List<Geometry> data) {
-		this.data = data;
+	public Layer getLayer(String name) {
+		for (Layer l : layers) {
+			if (l.name.equals(name)) {
+				return l;
+			}
+		}
+		return null;
 	}
 
+	/**
+	 * Converts all features to JTS geometries with attributes map as user data (expensive, geometries are not cached)
+	 */
 	public List<Geometry> getData() {
-		return data;
+		GeometryFactory geomFactory = new GeometryFactory();
+		List<Geometry> res = new ArrayList<Geometry>();
+		for (Layer l : layers) {
+			for (Feature f : l.features) {
+				Geometry g = f.toGeometry(geomFactory);
+				if (g != null) {
+					res.add(g);
+				}
+			}
+		}
+		return res;
+	}
+
+	public static class Layer {
+		private final String name;
+		private final int extent;
+		private final String[] keys;
+		private final Object[] values;
+		private final List<Feature> features = new ArrayList<Feature>();
+
+		public Layer(String name, int extent, String[] keys, Object[] values) {
+			this.name = name;
+			this.extent = extent;
+			this.keys = keys;
+			this.values = values;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getExtent() {
+			return extent;
+		}
+
+		public List<Feature> getFeatures() {
+			return features;
+		}
+
+		public int getKeyIndex(String key) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	public static class Feature {
+		private final Layer layer;
+		private final Long id;
+		private final int type;
+		// key index, value index pairs
+		private final int[] tags;
+		private final int[] geometry;
+
+		public Feature(Layer layer, Long id, int type, int[] tags, int[] geometry) {
+			this.layer = layer;
+			this.id = id;
+			this.type = type;
+			this.tags = tags;
+			this.geometry = geometry;
+		}
+
+		public Layer getLayer() {
+			return layer;
+		}
+
+		/**
+		 * @return id or null if it is not specified
+		 */
+		public Long getId() {
+			return id;
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		public int[] getGeometryCommands() {
+			return geometry;
+		}
+
+		public Object getAttribute(String key) {
+			int keyIndex = layer.getKeyIndex(key);
+			if (keyIndex >= 0) {
+				for (int i = 0; i < tags.length - 1; i += 2) {
+					if (tags[i] == keyIndex) {
+						return getValue(tags[i + 1]);
+					}
+				}
+			}
+			return null;
+		}
+
+		public Map<String, Object> getAttributes() {
+			Map<String, Object> attributes = new HashMap<String, Object>((tags.length + 1) / 2);
+			for (int i = 0; i < tags.length - 1; i += 2) {
+				if (tags[i] >= 0 && tags[i] < layer.keys.length && tags[i + 1] >= 0 && tags[i + 1] < layer.values.length) {
+					attributes.put(layer.keys[tags[i]], layer.values[tags[i + 1]]);
+				}
+			}
+			return attributes;
+		}
+
+		private Object getValue(int ind) {
+			return ind >= 0 && ind < layer.values.length ? layer.values[ind] : null;
+		}
+
+		/**
+		 * @return true if geometry has no coordinates (otherwise first point is {@link #getX()}, {@link #getY()})
+		 */
+		public boolean isEmpty() {
+			return geometry.length < 3 || (geometry[0] & 0x7) != CMD_MOVE_TO || (geometry[0] >>> 3) == 0;
+		}
+
+		public int getX() {
+			return ZigZag.decode(geometry[1]);
+		}
+
+		public int getY() {
+			return ZigZag.decode(geometry[2]);
+		}
+
+		/**
+		 * Decodes coordinates into x, y pairs. Every move to command starts new part (point, line or ring), close path
+		 * command repeats first point of ring.
+		 * @param coordinates x, y pairs of all parts
+		 * @param partSizes number of points in each part
+		 */
+		public void decodeGeometry(TIntArrayList coordinates, TIntArrayList partSizes) {
+			coordinates.resetQuick();
+			partSizes.resetQuick();
+			int x = 0;
+			int y = 0;
+			int partStart = 0;
+			int i = 0;
+			while (i < geometry.length) {
+				int cmd = geometry[i] & 0x7;
+				int length = geometry[i] >>> 3;
+				i++;
+				if (cmd == CMD_MOVE_TO || cmd == CMD_LINE_TO) {
+					for (int k = 0; k < length && i + 1 < geometry.length; k++) {
+						if (cmd == CMD_MOVE_TO) {
+							addPart(coordinates, partSizes, partStart);
+							partStart = coordinates.size();
+						}
+						x += ZigZag.decode(geometry[i++]);
+						y += ZigZag.decode(geometry[i++]);
+						coordinates.add(x);
+						coordinates.add(y);
+					}
+				} else if (cmd == CMD_CLOSE_PATH) {
+					if (coordinates.size() > partStart) {
+						coordinates.add(coordinates.get(partStart));
+						coordinates.add(coordinates.get(partStart + 1));
+					}
+				} else {
+					break;
+				}
+			}
+			addPart(coordinates, partSizes, partStart);
+		}
+
+		private void addPart(TIntArrayList coordinates, TIntArrayList partSizes, int partStart) {
+			int points = (coordinates.size() - partStart) / 2;
+			if (points > 0) {
+				partSizes.add(points);
+			}
+		}
+
+		/**
+		 * @return JTS geometry with attributes map as user data or null
+		 */
+		public Geometry toGeometry(GeometryFactory geomFactory) {
+			VectorTile.Tile.GeomType geomType = VectorTile.Tile.GeomType.valueOf(type);
+			if (geomType == null || geomType == VectorTile.Tile.GeomType.UNKNOWN) {
+				return null;
+			}
+			Geometry g = MvtReader.readGeometry(new AbstractList<Integer>() {
+				@Override
+				public Integer get(int index) {
+					return geometry[index];
+				}
+
+				@Override
+				public int size() {
+					return geometry.length;
+				}
+			}, geomType, geomFactory);
+			if (g != null) {
+				g.setUserData(getAttributes());
+			}
+			return g;
+		}
 	}
 }
@@ -201,6 +201,18 @@ public class OsmandRegions {
 		return t % 2 == 1;
 	}
 
+	private static boolean contain(TIntArrayList coordinates, int tx, int ty) {
+		int t = 0;
+		for (int i = 2; i < coordinates.size(); i += 2) {
+			int fx = MapAlgorithms.ray_intersect_x(coordinates.get(i - 2), coordinates.get(i - 1),
+					coordinates.get(i), coordinates.get(i + 1), ty);
+			if (Integer.MIN_VALUE != fx && tx >= fx) {
+				t++;
+			}
+		}
+		return t % 2 == 1;
+	}
+
 	public boolean intersect(BinaryMapDataObject bo, int lx, int ty, int rx, int by) {
 		// 1. polygon in object 
 		if (contain(bo, lx, ty)) {
@@ -309,23 +321,24 @@ public class OsmandRegions {
 	private synchronized List<BinaryMapDataObject> queryNoInit(final int tile31x, final int tile31y) throws IOException {
 		final List<BinaryMapDataObject> result = new ArrayList<BinaryMapDataObject>();
 		BinaryMapIndexReader.SearchRequest<BinaryMapDataObject> sr = BinaryMapIndexReader.buildSearchRequest(tile31x, tile31x, tile31y, tile31y,
-				5, new BinaryMapIndexReader.SearchFilter() {
+				5, new BinaryMapIndexReader.SearchGeometryFilter() {
 					@Override
 					public boolean accept(TIntArrayList types, BinaryMapIndexReader.MapIndex index) {
 						return true;
 					}
+
+					@Override
+					public boolean acceptGeometry(TIntArrayList types, TIntArrayList coordinates, boolean area,
+							BinaryMapIndexReader.MapIndex index) {
+						return coordinates.size() > 0 && contain(coordinates, tile31x, tile31y);
+					}
 				}, new ResultMatcher<BinaryMapDataObject>() {
 
 
 					@Override
 					public boolean publish(BinaryMapDataObject object) {
-						if (object.getPointsLength() < 1) {
-							return false;
-						}
 						initTypes(object);
-						if (contain(object, tile31x, tile31y)) {
-							result.add(object);
-						}
+						result.add(object);
 						return false;
 					}
 
@@ -30,6 +30,19 @@ public class RenderingRule {
 		init(attributes);
 	}
 	
+	/**
+	 * Rule with already parsed values (see {@link RenderingRulesStorageSerializer})
+	 */
+	RenderingRule(RenderingRulesStorage storage, boolean isGroup, RenderingRuleProperty[] properties,
+			int[] intProperties, float[] floatProperties, RenderingRule[] attributesRef) {
+		this.storage = storage;
+		this.isGroup = isGroup;
+		this.properties = properties;
+		this.intProperties = intProperties;
+		this.floatProperties = floatProperties;
+		this.attributesRef = attributesRef;
+	}
+	
 	public void storeAttributes(Map<String, String> attributes){
 		this.attributes = new HashMap<String, String>(attributes);
 	}
@@ -131,6 +144,22 @@ public class RenderingRule {
 	protected float getFloatProp(int ind){
 		return floatProperties[ind];
 	}
+
+	int[] getIntProperties() {
+		return intProperties;
+	}
+	
+	float[] getFloatProperties() {
+		return floatProperties;
+	}
+	
+	RenderingRule[] getAttributesRef() {
+		return attributesRef;
+	}
+	
+	Map<String, String> getStoredAttributes() {
+		return attributes;
+	}
 	
 	public RenderingRuleProperty[] getProperties() {
 		return properties;
@@ -1,5 +1,9 @@
 package net.osmand.render;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import net.osmand.binary.BinaryMapDataObject;
 import net.osmand.util.Algorithms;
 
@@ -16,6 +20,16 @@ public class RenderingRuleSearchRequest {
 	float[] savedFvalues;
 	
 	boolean searchResult = false;
+
+	// results of search by state and all values before search (custom properties, tag, zoom, outputs of previous search)
+	private static final int SEARCH_CACHE_LIMIT = 8192;
+	private final Map<SearchKey, SearchResult> searchCache = new HashMap<SearchKey, SearchResult>();
+	private final SearchKey searchKey = new SearchKey();
+	private boolean searchCacheEnabled = true;
+	private boolean useCompiledRules = true;
+	private int searchCacheVersion;
+	private int searchCacheHits;
+	private int searchCacheMisses;
 	
 	
 	public final RenderingRuleStorageProperties ALL;
@@ -51,6 +65,8 @@ public class RenderingRuleSearchRequest {
 	}
 
 	public void saveState() {
+		// custom properties could be changed
+		searchCache.clear();
 		savedValues = new int[values.length];
 		savedFvalues = new float[fvalues.length];
 		System.arraycopy(values, 0, savedValues, 0, values.length);
@@ -100,6 +116,15 @@ public class RenderingRuleSearchRequest {
 	
 	public boolean searchRenderingAttribute(String attribute) {
 		searchResult = false;
+		RenderingRulesProgram program = getProgram();
+		if (program != null) {
+			int node = program.getAttributeNode(attribute);
+			if (node < 0) {
+				return false;
+			}
+			searchResult = visitNode(program, node, true);
+			return searchResult;
+		}
 		RenderingRule rule = storage.getRenderingAttributeRule(attribute);
 		if(rule == null){
 			return false;
@@ -114,6 +139,46 @@ public class RenderingRuleSearchRequest {
 	}
 	
 	public boolean search(int state, boolean loadOutput) {
+		if (!searchCacheEnabled) {
+			return searchRules(state, loadOutput);
+		}
+		if (searchCacheVersion != storage.getVersion()) {
+			searchCache.clear();
+			searchCacheVersion = storage.getVersion();
+		}
+		searchKey.set(state, loadOutput, values, fvalues, object);
+		SearchResult res = searchCache.get(searchKey);
+		if (res != null) {
+			searchCacheHits++;
+			System.arraycopy(res.values, 0, values, 0, values.length);
+			System.arraycopy(res.fvalues, 0, fvalues, 0, fvalues.length);
+			searchResult = res.found;
+			return res.found;
+		}
+		searchCacheMisses++;
+		SearchKey key = searchKey.copy();
+		boolean found = searchRules(state, loadOutput);
+		if (searchCache.size() >= SEARCH_CACHE_LIMIT) {
+			searchCache.clear();
+		}
+		searchCache.put(key, new SearchResult(found, values.clone(), fvalues.clone()));
+		return found;
+	}
+
+	public void setSearchCacheEnabled(boolean searchCacheEnabled) {
+		this.searchCacheEnabled = searchCacheEnabled;
+		searchCache.clear();
+	}
+
+	public int getSearchCacheHits() {
+		return searchCacheHits;
+	}
+
+	public int getSearchCacheMisses() {
+		return searchCacheMisses;
+	}
+
+	private boolean searchRules(int state, boolean loadOutput) {
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
@@ -141,11 +206,21 @@ public class RenderingRuleSearchRequest {
 		values[storage.PROPS.R_TAG.getId()] = tagKey;
 		values[storage.PROPS.R_VALUE.getId()] = valueKey;
 		values[storage.PROPS.R_DISABLE.getId()] = 0;
-		RenderingRule accept = storage.getRule(state, tagKey, valueKey);
-		if (accept == null) {
-			return false;
+		boolean match;
+		RenderingRulesProgram program = getProgram();
+		if (program != null) {
+			int node = program.getRootNode(state, tagKey, valueKey);
+			if (node < 0) {
+				return false;
+			}
+			match = visitNode(program, node, loadOutput);
+		} else {
+			RenderingRule accept = storage.getRule(state, tagKey, valueKey);
+			if (accept == null) {
+				return false;
+			}
+			match = visitRule(accept, loadOutput);
 		}
-		boolean match = visitRule(accept, loadOutput);
 		if(match && values[storage.PROPS.R_DISABLE.getId()] != 0) {
 			return false;
 		}
@@ -185,6 +260,125 @@ public class RenderingRuleSearchRequest {
 		
 	}
 
+	private RenderingRulesProgram getProgram() {
+		return useCompiledRules ? storage.getCompiledRules() : null;
+	}
+
+	public void setUseCompiledRules(boolean useCompiledRules) {
+		this.useCompiledRules = useCompiledRules;
+	}
+
+	/**
+	 * Same as {@link #visitRule(RenderingRule, boolean)} for node of compiled program
+	 */
+	private boolean visitNode(RenderingRulesProgram program, int node, boolean loadOutput) {
+		int[] code = program.code;
+		int p = node;
+		boolean group = (code[p++] & RenderingRulesProgram.FLAG_GROUP) != 0;
+		int conditions = code[p++];
+		for (int i = 0; i < conditions; i++, p += 3) {
+			int kind = code[p];
+			int id = code[p + 1];
+			int v = code[p + 2];
+			boolean match;
+			switch (kind & RenderingRulesProgram.COND_KIND_MASK) {
+			case RenderingRulesProgram.COND_INT:
+				match = v == values[id];
+				break;
+			case RenderingRulesProgram.COND_FLOAT:
+				match = program.floats[p + 2] == fvalues[id];
+				break;
+			case RenderingRulesProgram.COND_MIN:
+				match = v <= values[id];
+				break;
+			case RenderingRulesProgram.COND_MAX:
+				match = v >= values[id];
+				break;
+			case RenderingRulesProgram.COND_CUSTOM:
+				RenderingRuleProperty rp = program.customProperties[kind >> RenderingRulesProgram.COND_KIND_SHIFT];
+				match = rp.isFloat() ? rp.accept(program.floats[p + 2], fvalues[id], this) : rp.accept(v, values[id], this);
+				break;
+			case RenderingRulesProgram.COND_SET_DISABLE:
+				values[id] = v;
+				match = true;
+				break;
+			default:
+				match = false;
+			}
+			if (!match) {
+				return false;
+			}
+		}
+		if (!loadOutput && !group) {
+			return true;
+		}
+		int outputs = p;
+		p += 1 + 4 * code[p];
+		if (!group) {
+			loadOutputNodeProperties(program, outputs, true);
+		}
+		int ifElse = p;
+		p += 1 + code[p];
+		boolean match = false;
+		for (int i = 1; i <= code[ifElse]; i++) {
+			match = visitNode(program, code[ifElse + i], loadOutput);
+			if (match) {
+				break;
+			}
+		}
+		boolean fit = (match || !group);
+		if (fit && loadOutput) {
+			if (group) {
+				loadOutputNodeProperties(program, outputs, false);
+			}
+			for (int i = 1; i <= code[p]; i++) {
+				visitNode(program, code[p + i], loadOutput);
+			}
+		}
+		return fit;
+	}
+
+	private void loadOutputNodeProperties(RenderingRulesProgram program, int p, boolean override) {
+		int[] code = program.code;
+		int outputs = code[p++];
+		for (int i = 0; i < outputs; i++, p += 4) {
+			int kind = code[p];
+			int id = code[p + 1];
+			if (!override) {
+				boolean specified;
+				if ((kind & RenderingRulesProgram.OUT_FLOAT_PROPERTY) != 0) {
+					specified = fvalues[id] != 0 || values[id] != -1;
+				} else if ((kind & RenderingRulesProgram.OUT_COLOR_PROPERTY) != 0) {
+					specified = values[id] != 0;
+				} else {
+					specified = values[id] != -1;
+				}
+				if (specified) {
+					continue;
+				}
+			}
+			switch (kind & RenderingRulesProgram.OUT_KIND_MASK) {
+			case RenderingRulesProgram.OUT_ATTR:
+				visitNode(program, code[p + 3], true);
+				if (isSpecified(storage.PROPS.R_ATTR_COLOR_VALUE)) {
+					values[id] = getIntPropertyValue(storage.PROPS.R_ATTR_COLOR_VALUE);
+				} else if (isSpecified(storage.PROPS.R_ATTR_INT_VALUE)) {
+					values[id] = getIntPropertyValue(storage.PROPS.R_ATTR_INT_VALUE);
+					fvalues[id] = getFloatPropertyValue(storage.PROPS.R_ATTR_INT_VALUE);
+				} else if (isSpecified(storage.PROPS.R_ATTR_BOOL_VALUE)) {
+					values[id] = getIntPropertyValue(storage.PROPS.R_ATTR_BOOL_VALUE);
+				}
+				break;
+			case RenderingRulesProgram.OUT_FLOAT:
+				fvalues[id] = program.floats[p + 2];
+				values[id] = code[p + 2];
+				break;
+			default:
+				values[id] = code[p + 2];
+			}
+		}
+	}
+
 	protected void loadOutputProperties(RenderingRule rule, boolean override) {
 		RenderingRuleProperty[] properties = rule.getProperties();
 		for (int i = 0; i < properties.length; i++) {
@@ -294,4 +488,73 @@ public class RenderingRuleSearchRequest {
 		return storage;
 	}
 
+	private static class SearchKey {
+		int state;
+		boolean loadOutput;
+		int[] values;
+		float[] fvalues;
+		// additional tags of object are checked by rules (types are decoded by map index)
+		Object mapIndex;
+		int[] additionalTypes;
+		int hash;
+
+		void set(int state, boolean loadOutput, int[] values, float[] fvalues, BinaryMapDataObject object) {
+			this.state = state;
+			this.loadOutput = loadOutput;
+			this.values = values;
+			this.fvalues = fvalues;
+			this.mapIndex = object == null ? null : object.getMapIndex();
+			this.additionalTypes = object == null ? null : object.getAdditionalTypes();
+			int h = 31 * state + (loadOutput ? 1 : 0);
+			h = 31 * h + Arrays.hashCode(values);
+			h = 31 * h + Arrays.hashCode(fvalues);
+			h = 31 * h + System.identityHashCode(mapIndex);
+			h = 31 * h + Arrays.hashCode(additionalTypes);
+			this.hash = h;
+		}
+
+		SearchKey copy() {
+			SearchKey k = new SearchKey();
+			k.state = state;
+			k.loadOutput = loadOutput;
+			k.values = values.clone();
+			k.fvalues = fvalues.clone();
+			k.mapIndex = mapIndex;
+			k.additionalTypes = additionalTypes == null ? null : additionalTypes.clone();
+			k.hash = hash;
+			return k;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof SearchKey)) {
+				return false;
+			}
+			SearchKey o = (SearchKey) obj;
+			return hash == o.hash && state == o.state && loadOutput == o.loadOutput && mapIndex == o.mapIndex
+					&& Arrays.equals(values, o.values) && Arrays.equals(fvalues, o.fvalues)
+					&& Arrays.equals(additionalTypes, o.additionalTypes);
+		}
+	}
+
+	private static class SearchResult {
+		final boolean found;
+		final int[] values;
+		final float[] fvalues;
+
+		SearchResult(boolean found, int[] values, float[] fvalues) {
+			this.found = found;
+			this.values = values;
+			this.fvalues = fvalues;
+		}
+	}
+
 }
\ No newline at end of file
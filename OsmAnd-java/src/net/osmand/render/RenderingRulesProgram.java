@@ -0,0 +1,243 @@
+package net.osmand.render;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Rules of storage compiled into one int array (see {@link RenderingRulesStorage#compileRules()}).
+ * Every rule is a node : [flags, conditions count, (kind, property id, value) * count,
+ * outputs count, (kind and type, property id, value, attribute node) * count, if-else children count, children offsets,
+ * if children count, children offsets]. Float values are stored in float array at the same index as int values.
+ * Usual conditions (equality, zoom ranges) are checked inline, only custom properties call
+ * {@link RenderingRuleProperty#accept}. Search by program has the same semantics as search by rules
+ * ({@link RenderingRuleSearchRequest} uses program if it is compiled for current version of storage).
+ */
+public class RenderingRulesProgram {
+
+	static final int FLAG_GROUP = 1;
+
+	static final int COND_INT = 0;
+	static final int COND_FLOAT = 1;
+	// rule value <= request value
+	static final int COND_MIN = 2;
+	// rule value >= request value
+	static final int COND_MAX = 3;
+	// index of property in custom properties is stored in high bits of kind
+	static final int COND_CUSTOM = 4;
+	static final int COND_KIND_MASK = 0xf;
+	static final int COND_KIND_SHIFT = 4;
+	// not input property : disable value is set during check
+	static final int COND_SET_DISABLE = 5;
+	// property which never accepts values
+	static final int COND_FALSE = 6;
+
+	static final int OUT_INT = 0;
+	static final int OUT_FLOAT = 1;
+	static final int OUT_ATTR = 2;
+	// type of output property (to check if value is specified)
+	static final int OUT_KIND_MASK = 0xf;
+	static final int OUT_FLOAT_PROPERTY = 1 << 4;
+	static final int OUT_COLOR_PROPERTY = 1 << 5;
+
+	final int version;
+	final int[] code;
+	final float[] floats;
+	// sorted tag value keys and offsets of root nodes for each state
+	final int[][] stateKeys;
+	final int[][] stateNodes;
+	final Map<String, Integer> attributeNodes = new LinkedHashMap<String, Integer>();
+	final RenderingRuleProperty[] customProperties;
+
+	private RenderingRulesProgram(Compiler c, int version) {
+		this.version = version;
+		this.code = c.code.toArray();
+		this.floats = new float[c.floats.size()];
+		for (int i = 0; i < floats.length; i++) {
+			floats[i] = Float.intBitsToFloat(c.floats.get(i));
+		}
+		this.stateKeys = c.stateKeys;
+		this.stateNodes = c.stateNodes;
+		this.attributeNodes.putAll(c.attributeNodes);
+		this.customProperties = c.customProperties.toArray(new RenderingRuleProperty[c.customProperties.size()]);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return size of program in ints
+	 */
+	public int size() {
+		return code.length;
+	}
+
+	/**
+	 * @return offset of root node or -1
+	 */
+	int getRootNode(int state, int tagKey, int valueKey) {
+		int tagValueKey = (tagKey << RenderingRulesStorage.SHIFT_TAG_VAL) | valueKey;
+		if (state >= stateKeys.length || stateKeys[state] == null) {
+			return -1;
+		}
+		int ind = Arrays.binarySearch(stateKeys[state], tagValueKey);
+		return ind < 0 ? -1 : stateNodes[state][ind];
+	}
+
+	int getAttributeNode(String attribute) {
+		Integer n = attributeNodes.get(attribute);
+		return n == null ? -1 : n;
+	}
+
+	static RenderingRulesProgram compile(RenderingRulesStorage storage) {
+		Compiler c = new Compiler(storage);
+		int length = storage.tagValueGlobalRules.length;
+		c.stateKeys = new int[length][];
+		c.stateNodes = new int[length][];
+		for (int state = 0; state < length; state++) {
+			TIntObjectHashMap<RenderingRule> rules = storage.tagValueGlobalRules[state];
+			if (rules == null) {
+				continue;
+			}
+			int[] keys = rules.keys();
+			Arrays.sort(keys);
+			int[] nodes = new int[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				nodes[i] = c.compile(rules.get(keys[i]));
+			}
+			c.stateKeys[state] = keys;
+			c.stateNodes[state] = nodes;
+		}
+		for (Entry<String, RenderingRule> e : storage.renderingAttributes.entrySet()) {
+			c.attributeNodes.put(e.getKey(), c.compile(e.getValue()));
+		}
+		return new RenderingRulesProgram(c, storage.getVersion());
+	}
+
+	private static class Compiler {
+		final RenderingRulesStorage storage;
+		final TIntArrayList code = new TIntArrayList();
+		// bits of float values
+		final TIntArrayList floats = new TIntArrayList();
+		// rules could be shared (merged styles, attributes)
+		final Map<RenderingRule, Integer> compiled = new IdentityHashMap<RenderingRule, Integer>();
+		final Map<String, Integer> attributeNodes = new LinkedHashMap<String, Integer>();
+		final List<RenderingRuleProperty> customProperties = new ArrayList<RenderingRuleProperty>();
+		int[][] stateKeys;
+		int[][] stateNodes;
+
+		Compiler(RenderingRulesStorage storage) {
+			this.storage = storage;
+		}
+
+		int compile(RenderingRule rule) {
+			Integer offset = compiled.get(rule);
+			if (offset != null) {
+				return offset;
+			}
+			RenderingRuleProperty[] props = rule.getProperties();
+			int conditions = 0;
+			int outputs = 0;
+			for (RenderingRuleProperty rp : props) {
+				if (rp.isInputProperty() || rp == storage.PROPS.R_DISABLE) {
+					conditions++;
+				}
+				if (rp.isOutputProperty()) {
+					outputs++;
+				}
+			}
+			List<RenderingRule> ifElse = rule.getIfElseChildren();
+			List<RenderingRule> ifChildren = rule.getIfChildren();
+			int start = code.size();
+			int size = 2 + 3 * conditions + 1 + 4 * outputs + 1 + ifElse.size() + 1 + ifChildren.size();
+			for (int i = 0; i < size; i++) {
+				code.add(0);
+				floats.add(0);
+			}
+			// offset is registered before children are compiled (rules could refer to each other)
+			compiled.put(rule, start);
+			int p = start;
+			set(p++, rule.isGroup() ? FLAG_GROUP : 0, 0);
+			set(p++, conditions, 0);
+			for (int i = 0; i < props.length; i++) {
+				RenderingRuleProperty rp = props[i];
+				if (rp.isInputProperty()) {
+					set(p++, getConditionKind(rp), 0);
+					set(p++, rp.getId(), 0);
+					set(p++, rule.getIntProp(i), rp.isFloat() ? getFloatProp(rule, i) : 0);
+				} else if (rp == storage.PROPS.R_DISABLE) {
+					set(p++, COND_SET_DISABLE, 0);
+					set(p++, rp.getId(), 0);
+					set(p++, rule.getIntProp(i), 0);
+				}
+			}
+			set(p++, outputs, 0);
+			int outputsStart = p;
+			p += 4 * outputs;
+			set(p++, ifElse.size(), 0);
+			int ifElseStart = p;
+			p += ifElse.size();
+			set(p++, ifChildren.size(), 0);
+			int ifStart = p;
+
+			p = outputsStart;
+			for (int i = 0; i < props.length; i++) {
+				RenderingRuleProperty rp = props[i];
+				if (rp.isOutputProperty()) {
+					RenderingRule attr = rule.getAttrProp(i);
+					int kind = attr != null ? OUT_ATTR : (rp.isFloat() ? OUT_FLOAT : OUT_INT);
+					kind |= rp.isFloat() ? OUT_FLOAT_PROPERTY : (rp.isColor() ? OUT_COLOR_PROPERTY : 0);
+					set(p++, kind, 0);
+					set(p++, rp.getId(), 0);
+					set(p++, rule.getIntProp(i), rp.isFloat() ? getFloatProp(rule, i) : 0);
+					set(p++, attr != null ? compile(attr) : -1, 0);
+				}
+			}
+			for (int i = 0; i < ifElse.size(); i++) {
+				set(ifElseStart + i, compile(ifElse.get(i)), 0);
+			}
+			for (int i = 0; i < ifChildren.size(); i++) {
+				set(ifStart + i, compile(ifChildren.get(i)), 0);
+			}
+			return start;
+		}
+
+		private void set(int ind, int v, float f) {
+			code.set(ind, v);
+			floats.set(ind, Float.floatToIntBits(f));
+		}
+
+		private float getFloatProp(RenderingRule rule, int i) {
+			// float values are not created for attribute references
+			return rule.getAttrProp(i) != null ? 0 : rule.getFloatProp(i);
+		}
+
+		private int getConditionKind(RenderingRuleProperty rp) {
+			if (rp == storage.PROPS.R_MINZOOM) {
+				return COND_MIN;
+			} else if (rp == storage.PROPS.R_MAXZOOM) {
+				return COND_MAX;
+			} else if (rp.getClass() != RenderingRuleProperty.class) {
+				int ind = customProperties.indexOf(rp);
+				if (ind < 0) {
+					ind = customProperties.size();
+					customProperties.add(rp);
+				}
+				return COND_CUSTOM | (ind << COND_KIND_SHIFT);
+			} else if (rp.isFloat()) {
+				return COND_FLOAT;
+			} else if (rp.isIntParse()) {
+				return COND_INT;
+			}
+			return COND_FALSE;
+		}
+	}
+}
@@ -38,7 +38,7 @@ public class RenderingRulesStorage {
 	public final static int ORDER_RULES = 5;
 	public final static int LENGTH_RULES = 6;
 	
-	private final static int SHIFT_TAG_VAL = 16;
+	final static int SHIFT_TAG_VAL = 16;
 	
 	// C++
 	List<String> dictionary = new ArrayList<String>();
@@ -54,6 +54,9 @@ public class RenderingRulesStorage {
 	
 	protected String renderingName;
 	protected String internalRenderingName;
+	// changed when rules are changed (cached search results are not valid)
+	private int version;
+	private RenderingRulesProgram compiledRules;
 	
 	
 	public static interface RenderingRulesStorageResolver {
@@ -143,6 +146,36 @@ public class RenderingRulesStorage {
 			}
 
 		}
+		rulesChanged();
+		compileRules();
+	}
+
+	/**
+	 * Should be called when rules are modified after parsing
+	 */
+	public void rulesChanged() {
+		version++;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Compiles rules into flat program which is used by search requests instead of rule tree.
+	 * Called when style is parsed, program is not used after rules are changed until it is compiled again.
+	 */
+	public RenderingRulesProgram compileRules() {
+		compiledRules = RenderingRulesProgram.compile(this);
+		return compiledRules;
+	}
+
+	/**
+	 * @return program compiled for current rules or null
+	 */
+	public RenderingRulesProgram getCompiledRules() {
+		RenderingRulesProgram p = compiledRules;
+		return p != null && p.getVersion() == version ? p : null;
 	}
 
 	public static String colorToString(int color) {
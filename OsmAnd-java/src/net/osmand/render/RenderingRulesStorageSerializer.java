@@ -0,0 +1,355 @@
+package net.osmand.render;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Binary format of fully resolved storage (depends styles are merged) : dictionary, custom properties,
+ * constants, rules and attributes. Loading is one sequential read without xml parsing.
+ * File keeps hash of source xml files (see {@link #updateHash(long, InputStream)}) and it is not loaded
+ * when hash or format version are different.
+ */
+public class RenderingRulesStorageSerializer {
+
+	private static final int MAGIC = 0x4f535253;
+	private static final int FORMAT_VERSION = 1;
+	private static final long HASH_INIT = 0xcbf29ce484222325L;
+	private static final long HASH_PRIME = 0x100000001b3L;
+
+	public static long updateHash(long hash, InputStream is) throws IOException {
+		if (hash == 0) {
+			hash = HASH_INIT;
+		}
+		byte[] buf = new byte[8192];
+		int read;
+		while ((read = is.read(buf)) != -1) {
+			for (int i = 0; i < read; i++) {
+				hash = (hash ^ (buf[i] & 0xff)) * HASH_PRIME;
+			}
+		}
+		return hash;
+	}
+
+	public static void write(RenderingRulesStorage storage, long sourceHash, OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(sourceHash);
+		out.writeUTF(storage.renderingName == null ? "" : storage.renderingName);
+		writeString(out, storage.internalRenderingName);
+		writeMap(out, storage.renderingConstants);
+		out.writeInt(storage.dictionary.size());
+		for (String s : storage.dictionary) {
+			out.writeUTF(s);
+		}
+		List<RenderingRuleProperty> custom = new ArrayList<RenderingRuleProperty>(storage.PROPS.customRules);
+		sortById(custom);
+		out.writeInt(custom.size());
+		for (RenderingRuleProperty p : custom) {
+			out.writeUTF(p.getAttrName());
+			out.writeInt(p.type);
+			out.writeBoolean(p.isInputProperty());
+			writeString(out, p.getName());
+			writeString(out, p.getDescription());
+			writeString(out, p.getDefaultValueDescription());
+			writeString(out, p.getCategory());
+			String[] possibleValues = p.possibleValues;
+			out.writeInt(possibleValues == null ? -1 : possibleValues.length);
+			if (possibleValues != null) {
+				for (String s : possibleValues) {
+					out.writeUTF(s);
+				}
+			}
+		}
+
+		Map<RenderingRule, Integer> index = new IdentityHashMap<RenderingRule, Integer>();
+		List<RenderingRule> rules = new ArrayList<RenderingRule>();
+		for (TIntObjectHashMap<RenderingRule> m : storage.tagValueGlobalRules) {
+			if (m != null) {
+				for (RenderingRule r : m.valueCollection()) {
+					collectRules(r, index, rules);
+				}
+			}
+		}
+		for (RenderingRule r : storage.renderingAttributes.values()) {
+			collectRules(r, index, rules);
+		}
+		out.writeInt(rules.size());
+		for (RenderingRule r : rules) {
+			writeRule(out, r, index);
+		}
+		out.writeInt(storage.tagValueGlobalRules.length);
+		for (TIntObjectHashMap<RenderingRule> m : storage.tagValueGlobalRules) {
+			out.writeInt(m == null ? -1 : m.size());
+			if (m != null) {
+				for (int key : m.keys()) {
+					out.writeInt(key);
+					out.writeInt(index.get(m.get(key)));
+				}
+			}
+		}
+		out.writeInt(storage.renderingAttributes.size());
+		for (Entry<String, RenderingRule> e : storage.renderingAttributes.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeInt(index.get(e.getValue()));
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return storage or null if file is written for different source or format version
+	 */
+	public static RenderingRulesStorage read(InputStream is, long sourceHash) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != sourceHash) {
+			return null;
+		}
+		String name = in.readUTF();
+		String internalName = readString(in);
+		Map<String, String> constants = readMap(in);
+		RenderingRulesStorage storage = new RenderingRulesStorage(name, constants);
+		storage.internalRenderingName = internalName;
+		int dictionarySize = in.readInt();
+		storage.dictionary = new ArrayList<String>(dictionarySize);
+		storage.dictionaryMap = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < dictionarySize; i++) {
+			String s = in.readUTF();
+			storage.dictionary.add(s);
+			storage.dictionaryMap.put(s, i);
+		}
+		int customSize = in.readInt();
+		for (int i = 0; i < customSize; i++) {
+			RenderingRuleProperty p = new RenderingRuleProperty(in.readUTF(), in.readInt(), in.readBoolean());
+			p.setName(readString(in));
+			p.setDescription(readString(in));
+			p.setDefaultValueDescription(readString(in));
+			p.setCategory(readString(in));
+			int possibleValues = in.readInt();
+			if (possibleValues >= 0) {
+				String[] vls = new String[possibleValues];
+				for (int k = 0; k < vls.length; k++) {
+					vls[k] = in.readUTF();
+				}
+				p.setPossibleValues(vls);
+			}
+			storage.PROPS.registerRule(p);
+		}
+
+		int rulesSize = in.readInt();
+		RenderingRule[] rules = new RenderingRule[rulesSize];
+		// references are resolved when all rules are created
+		int[][] refs = new int[rulesSize][];
+		for (int i = 0; i < rulesSize; i++) {
+			rules[i] = readRule(in, storage, refs, i);
+		}
+		for (int i = 0; i < rulesSize; i++) {
+			int[] ref = refs[i];
+			int p = 0;
+			RenderingRule[] attributesRef = rules[i].getAttributesRef();
+			if (attributesRef != null) {
+				for (int k = 0; k < attributesRef.length; k++) {
+					int ind = ref[p++];
+					attributesRef[k] = ind < 0 ? null : rules[ind];
+				}
+			}
+			int ifElse = ref[p++];
+			for (int k = 0; k < ifElse; k++) {
+				rules[i].addIfElseChildren(rules[ref[p++]]);
+			}
+			int ifChildren = ref[p++];
+			for (int k = 0; k < ifChildren; k++) {
+				rules[i].addIfChildren(rules[ref[p++]]);
+			}
+		}
+		int states = in.readInt();
+		for (int state = 0; state < states && state < storage.tagValueGlobalRules.length; state++) {
+			int size = in.readInt();
+			if (size >= 0) {
+				TIntObjectHashMap<RenderingRule> m = new TIntObjectHashMap<RenderingRule>();
+				for (int i = 0; i < size; i++) {
+					int key = in.readInt();
+					m.put(key, rules[in.readInt()]);
+				}
+				storage.tagValueGlobalRules[state] = m;
+			}
+		}
+		int attributes = in.readInt();
+		for (int i = 0; i < attributes; i++) {
+			String attr = in.readUTF();
+			storage.renderingAttributes.put(attr, rules[in.readInt()]);
+		}
+		storage.rulesChanged();
+		storage.compileRules();
+		return storage;
+	}
+
+	private static void collectRules(RenderingRule r, Map<RenderingRule, Integer> index, List<RenderingRule> rules) {
+		if (r == null || index.containsKey(r)) {
+			return;
+		}
+		index.put(r, rules.size());
+		rules.add(r);
+		RenderingRule[] attributesRef = r.getAttributesRef();
+		if (attributesRef != null) {
+			for (RenderingRule a : attributesRef) {
+				collectRules(a, index, rules);
+			}
+		}
+		for (RenderingRule c : r.getIfElseChildren()) {
+			collectRules(c, index, rules);
+		}
+		for (RenderingRule c : r.getIfChildren()) {
+			collectRules(c, index, rules);
+		}
+	}
+
+	private static void writeRule(DataOutputStream out, RenderingRule r, Map<RenderingRule, Integer> index)
+			throws IOException {
+		RenderingRuleProperty[] props = r.getProperties();
+		int[] intProps = r.getIntProperties();
+		float[] floatProps = r.getFloatProperties();
+		RenderingRule[] attributesRef = r.getAttributesRef();
+		out.writeBoolean(r.isGroup());
+		out.writeInt(props.length);
+		for (int i = 0; i < props.length; i++) {
+			out.writeUTF(props[i].getAttrName());
+			out.writeInt(intProps[i]);
+		}
+		// arrays are allocated by number of xml attributes which could be bigger than number of properties
+		out.writeInt(intProps.length);
+		out.writeInt(floatProps == null ? -1 : floatProps.length);
+		if (floatProps != null) {
+			for (float f : floatProps) {
+				out.writeFloat(f);
+			}
+		}
+		out.writeInt(attributesRef == null ? -1 : attributesRef.length);
+		if (attributesRef != null) {
+			for (RenderingRule a : attributesRef) {
+				out.writeInt(a == null ? -1 : index.get(a));
+			}
+		}
+		out.writeInt(r.getIfElseChildren().size());
+		for (RenderingRule c : r.getIfElseChildren()) {
+			out.writeInt(index.get(c));
+		}
+		out.writeInt(r.getIfChildren().size());
+		for (RenderingRule c : r.getIfChildren()) {
+			out.writeInt(index.get(c));
+		}
+		writeMap(out, r.getStoredAttributes());
+	}
+
+	private static RenderingRule readRule(DataInputStream in, RenderingRulesStorage storage, int[][] refs, int ind)
+			throws IOException {
+		boolean isGroup = in.readBoolean();
+		int propsLength = in.readInt();
+		RenderingRuleProperty[] props = new RenderingRuleProperty[propsLength];
+		int[] values = new int[propsLength];
+		for (int i = 0; i < propsLength; i++) {
+			String attr = in.readUTF();
+			props[i] = storage.PROPS.get(attr);
+			if (props[i] == null) {
+				throw new IOException("Unknown rendering property " + attr);
+			}
+			values[i] = in.readInt();
+		}
+		int[] intProps = new int[in.readInt()];
+		System.arraycopy(values, 0, intProps, 0, propsLength);
+		int floatsLength = in.readInt();
+		float[] floatProps = null;
+		if (floatsLength >= 0) {
+			floatProps = new float[floatsLength];
+			for (int i = 0; i < floatsLength; i++) {
+				floatProps[i] = in.readFloat();
+			}
+		}
+		int refsLength = in.readInt();
+		RenderingRule[] attributesRef = refsLength >= 0 ? new RenderingRule[refsLength] : null;
+		int[] attrRefs = new int[Math.max(refsLength, 0)];
+		for (int i = 0; i < attrRefs.length; i++) {
+			attrRefs[i] = in.readInt();
+		}
+		int ifElse = in.readInt();
+		int[] ifElseRefs = new int[ifElse];
+		for (int i = 0; i < ifElse; i++) {
+			ifElseRefs[i] = in.readInt();
+		}
+		int ifChildren = in.readInt();
+		int[] ref = new int[attrRefs.length + 1 + ifElse + 1 + ifChildren];
+		int p = 0;
+		System.arraycopy(attrRefs, 0, ref, p, attrRefs.length);
+		p += attrRefs.length;
+		ref[p++] = ifElse;
+		System.arraycopy(ifElseRefs, 0, ref, p, ifElse);
+		p += ifElse;
+		ref[p++] = ifChildren;
+		for (int i = 0; i < ifChildren; i++) {
+			ref[p++] = in.readInt();
+		}
+		refs[ind] = ref;
+		RenderingRule r = new RenderingRule(storage, isGroup, props, intProps, floatProps, attributesRef);
+		Map<String, String> attrs = readMap(in);
+		if (attrs != null) {
+			r.storeAttributes(attrs);
+		}
+		return r;
+	}
+
+	private static void sortById(List<RenderingRuleProperty> props) {
+		Collections.sort(props, new Comparator<RenderingRuleProperty>() {
+			@Override
+			public int compare(RenderingRuleProperty o1, RenderingRuleProperty o2) {
+				return o1.getId() < o2.getId() ? -1 : (o1.getId() == o2.getId() ? 0 : 1);
+			}
+		});
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeMap(DataOutputStream out, Map<String, String> m) throws IOException {
+		out.writeInt(m == null ? -1 : m.size());
+		if (m != null) {
+			for (Entry<String, String> e : m.entrySet()) {
+				out.writeUTF(e.getKey());
+				writeString(out, e.getValue());
+			}
+		}
+	}
+
+	private static Map<String, String> readMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		Map<String, String> m = new LinkedHashMap<String, String>();
+		for (int i = 0; i < size; i++) {
+			m.put(in.readUTF(), readString(in));
+		}
+		return m;
+	}
+}
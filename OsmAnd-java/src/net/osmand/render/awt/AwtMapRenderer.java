@@ -0,0 +1,852 @@
+package net.osmand.render.awt;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.procedure.TIntObjectProcedure;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.TexturePaint;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.data.QuadRect;
+import net.osmand.data.QuadTree;
+import net.osmand.render.RenderingRuleProperty;
+import net.osmand.render.RenderingRuleSearchRequest;
+import net.osmand.render.RenderingRulesStorage;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Pure java port of android OsmandRenderer : draws map objects styled by {@link RenderingRuleSearchRequest}
+ * into {@link BufferedImage}. Renderer keeps caches (strokes, icons) and it is not thread safe,
+ * every rendering thread should have its own instance.
+ */
+public class AwtMapRenderer {
+	private static final Log log = PlatformUtil.getLog(AwtMapRenderer.class);
+
+	public static final int DEFAULT_POLYGON_MAX = 11;
+	public static final int TILE_SIZE = 256;
+	private static final int MAX_V = 10;
+	private static final int MAX_V_AREA = 2000;
+
+	private final Map<String, float[]> parsedDashEffects = new HashMap<String, float[]>();
+	private final Map<String, BufferedImage> icons = new HashMap<String, BufferedImage>();
+	private File iconsDir;
+
+	private static class MapDataObjectPrimitive {
+		BinaryMapDataObject obj;
+		int typeInd;
+		double order;
+		double area;
+		int objectType;
+	}
+
+	private static class IconDrawInfo {
+		float x;
+		float y;
+		String resId;
+		String shieldId;
+		int iconOrder;
+		float iconSize;
+	}
+
+	private static class TextDrawInfo {
+		String text;
+		float centerX;
+		float centerY;
+		// angle of text drawn on path
+		double pathRotate;
+		boolean onPath;
+		float textSize;
+		int textColor = 0xff000000;
+		int textShadow;
+		int textShadowColor = 0xffffffff;
+		int textOrder = 100;
+		boolean bold;
+		boolean italic;
+		QuadRect bounds;
+	}
+
+	public static class RenderingContext extends net.osmand.RenderingContext {
+		final List<TextDrawInfo> textToDraw = new ArrayList<TextDrawInfo>();
+		final List<IconDrawInfo> iconsToDraw = new ArrayList<IconDrawInfo>();
+		// pixels in one tile (zoom level of context)
+		float tileSize = TILE_SIZE;
+		float tempX;
+		float tempY;
+
+		/**
+		 * Sets bounds of tile x, y (zoom) in image of width x height
+		 */
+		public void setTile(int zoom, double tileX, double tileY, int width, int height) {
+			this.zoom = zoom;
+			this.leftX = tileX;
+			this.topY = tileY;
+			this.width = width;
+			this.height = height;
+			this.tileDivisor = MapUtils.getPowZoom(31 - zoom);
+			this.tileSize = width;
+			setDensityValue(width / (float) TILE_SIZE);
+		}
+
+		void clear() {
+			textToDraw.clear();
+			iconsToDraw.clear();
+			pointCount = 0;
+			pointInsideCount = 0;
+			visible = 0;
+			allObjects = 0;
+		}
+	}
+
+	public void setIconsDir(File iconsDir) {
+		this.iconsDir = iconsDir;
+	}
+
+	/**
+	 * @return icon by resource id (png from icons folder) or null
+	 */
+	protected BufferedImage getIcon(String resId) {
+		if (resId == null || iconsDir == null) {
+			return null;
+		}
+		if (!icons.containsKey(resId)) {
+			BufferedImage img = null;
+			File f = new File(iconsDir, resId + ".png");
+			if (!f.exists()) {
+				f = new File(iconsDir, "h_" + resId + ".png");
+			}
+			if (f.exists()) {
+				try {
+					img = ImageIO.read(f);
+				} catch (IOException e) {
+					log.warn("Icon is not loaded " + f, e);
+				}
+			}
+			icons.put(resId, img);
+		}
+		return icons.get(resId);
+	}
+
+	public void render(RenderingContext rc, List<BinaryMapDataObject> objects, RenderingRuleSearchRequest render,
+			BufferedImage img) {
+		long now = System.currentTimeMillis();
+		rc.clear();
+		Graphics2D g = img.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setComposite(AlphaComposite.Src);
+			g.setColor(new Color(rc.defaultColor | 0xff000000, true));
+			g.fillRect(0, 0, img.getWidth(), img.getHeight());
+			g.setComposite(AlphaComposite.SrcOver);
+			if (objects == null || objects.isEmpty() || rc.width <= 0 || rc.height <= 0) {
+				return;
+			}
+			List<MapDataObjectPrimitive> pointsArray = new ArrayList<MapDataObjectPrimitive>();
+			List<MapDataObjectPrimitive> polygonsArray = new ArrayList<MapDataObjectPrimitive>();
+			List<MapDataObjectPrimitive> linesArray = new ArrayList<MapDataObjectPrimitive>();
+			sortObjectsByProperOrder(rc, objects, render, pointsArray, polygonsArray, linesArray);
+
+			drawObject(rc, g, render, polygonsArray, 0);
+			if (rc.shadowRenderingMode > 1) {
+				drawObject(rc, g, render, linesArray, 1);
+			}
+			drawObject(rc, g, render, linesArray, 2);
+			drawObject(rc, g, render, pointsArray, 3);
+			long beforeIconTextTime = System.currentTimeMillis() - now;
+			drawIcons(rc, g);
+			drawText(rc, g);
+			long time = System.currentTimeMillis() - now;
+			rc.textRenderingTime = (int) (time - beforeIconTextTime);
+			rc.renderingDebugInfo = String.format("Rendering: %s ms  (%s text) "
+					+ "(%s points, %s points inside, %s of %s objects visible)",
+					time, rc.textRenderingTime, rc.pointCount, rc.pointInsideCount, rc.visible, rc.allObjects);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	private void drawObject(RenderingContext rc, Graphics2D g, RenderingRuleSearchRequest req,
+			List<MapDataObjectPrimitive> array, int objOrder) {
+		double minPolygonSize = 1. / rc.polygonMinSizeToDisplay;
+		for (int i = 0; i < array.size(); i++) {
+			rc.allObjects++;
+			MapDataObjectPrimitive p = array.get(i);
+			BinaryMapDataObject mObj = p.obj;
+			TagValuePair pair = mObj.getMapIndex().decodeType(mObj.getTypes()[p.typeInd]);
+			if (p.objectType == 3) {
+				if (p.order > minPolygonSize + ((int) p.order)) {
+					continue;
+				}
+				drawPolygon(mObj, req, g, rc, pair, p.area);
+			} else if (p.objectType == 2) {
+				drawPolyline(mObj, req, g, rc, pair, mObj.getSimpleLayer(), objOrder == 1);
+			} else if (p.objectType == 1) {
+				drawPoint(mObj, req, rc, pair, p.typeInd == 0);
+			}
+			if (i % 25 == 0 && rc.interrupted) {
+				return;
+			}
+		}
+	}
+
+	private Comparator<MapDataObjectPrimitive> sortByOrder() {
+		return new Comparator<MapDataObjectPrimitive>() {
+
+			@Override
+			public int compare(MapDataObjectPrimitive i, MapDataObjectPrimitive j) {
+				if (i.order == j.order) {
+					if (i.typeInd == j.typeInd) {
+						return Algorithms.compare(i.obj.getPointsLength(), j.obj.getPointsLength());
+					}
+					return i.typeInd < j.typeInd ? -1 : 1;
+				}
+				return (i.order < j.order ? -1 : 1);
+			}
+		};
+	}
+
+	private void sortObjectsByProperOrder(RenderingContext rc, List<BinaryMapDataObject> objects,
+			RenderingRuleSearchRequest render, List<MapDataObjectPrimitive> pointsArray,
+			List<MapDataObjectPrimitive> polygonsArray, List<MapDataObjectPrimitive> linesArray) {
+		render.clearState();
+		float mult = (float) (1. / MapUtils.getPowZoom(Math.max(31 - (rc.zoom + 8), 0)));
+		for (BinaryMapDataObject o : objects) {
+			for (int j = 0; j < o.getTypes().length; j++) {
+				int layer = 0;
+				if (o.getPointsLength() > 1) {
+					layer = o.getSimpleLayer();
+				}
+				TagValuePair pair = o.getMapIndex().decodeType(o.getTypes()[j]);
+				if (pair == null) {
+					continue;
+				}
+				render.setTagValueZoomLayer(pair.tag, pair.value, rc.zoom, layer, o);
+				render.setBooleanFilter(render.ALL.R_AREA, o.isArea());
+				render.setBooleanFilter(render.ALL.R_POINT, o.getPointsLength() == 1);
+				render.setBooleanFilter(render.ALL.R_CYCLE, o.isCycle());
+				if (render.search(RenderingRulesStorage.ORDER_RULES)) {
+					int objectType = render.getIntPropertyValue(render.ALL.R_OBJECT_TYPE);
+					boolean ignorePointArea = render.getIntPropertyValue(render.ALL.R_IGNORE_POLYGON_AS_POINT_AREA) != 0;
+					int order = render.getIntPropertyValue(render.ALL.R_ORDER);
+					MapDataObjectPrimitive mapObj = new MapDataObjectPrimitive();
+					mapObj.objectType = objectType;
+					mapObj.order = order;
+					mapObj.typeInd = j;
+					mapObj.obj = o;
+					if (objectType == 3) {
+						double area = polygonArea(o, mult);
+						mapObj.area = area;
+						if (area > MAX_V) {
+							mapObj.order = mapObj.order + (1. / area);
+							if (order < DEFAULT_POLYGON_MAX) {
+								polygonsArray.add(mapObj);
+							} else {
+								linesArray.add(mapObj);
+							}
+							if (area > MAX_V_AREA || ignorePointArea) {
+								MapDataObjectPrimitive pointObj = new MapDataObjectPrimitive();
+								pointObj.objectType = 1;
+								pointObj.order = mapObj.order;
+								pointObj.typeInd = j;
+								pointObj.obj = o;
+								pointObj.area = area;
+								pointsArray.add(pointObj);
+							}
+						}
+					} else if (objectType == 1) {
+						pointsArray.add(mapObj);
+					} else {
+						linesArray.add(mapObj);
+					}
+					if (render.isSpecified(render.ALL.R_SHADOW_LEVEL)) {
+						render.clearValue(render.ALL.R_SHADOW_LEVEL);
+					}
+				}
+			}
+			if (rc.interrupted) {
+				return;
+			}
+		}
+		Collections.sort(polygonsArray, sortByOrder());
+		Collections.sort(pointsArray, sortByOrder());
+		Collections.sort(linesArray, sortByOrder());
+	}
+
+	private double polygonArea(BinaryMapDataObject obj, float mult) {
+		double area = 0.;
+		int j = obj.getPointsLength() - 1;
+		for (int i = 0; i < obj.getPointsLength(); i++) {
+			int px = obj.getPoint31XTile(i);
+			int py = obj.getPoint31YTile(i);
+			int sx = obj.getPoint31XTile(j);
+			int sy = obj.getPoint31YTile(j);
+			area += (sx + ((float) px)) * (sy - ((float) py));
+			j = i;
+		}
+		return Math.abs(area) * mult * mult * .5;
+	}
+
+	private void calcPoint(int xt, int yt, RenderingContext rc) {
+		rc.pointCount++;
+		rc.tempX = (float) ((xt / rc.tileDivisor - rc.leftX) * rc.tileSize);
+		rc.tempY = (float) ((yt / rc.tileDivisor - rc.topY) * rc.tileSize);
+		if (rc.tempX >= 0 && rc.tempX < rc.width && rc.tempY >= 0 && rc.tempY < rc.height) {
+			rc.pointInsideCount++;
+		}
+	}
+
+	private void drawPolygon(BinaryMapDataObject obj, RenderingRuleSearchRequest render, Graphics2D g,
+			RenderingContext rc, TagValuePair pair, double area) {
+		if (pair == null) {
+			return;
+		}
+		render.setInitialTagValueZoom(pair.tag, pair.value, rc.zoom, obj);
+		boolean rendered = render.search(RenderingRulesStorage.POLYGON_RULES);
+		int len = obj.getPointsLength();
+		if (!rendered || len == 0 || !updatePaint(render, g, 0, true, rc)) {
+			return;
+		}
+		rc.visible++;
+		float xText = 0;
+		float yText = 0;
+		Path2D.Float path = new Path2D.Float(Path2D.WIND_EVEN_ODD, len);
+		for (int i = 0; i < len; i++) {
+			calcPoint(obj.getPoint31XTile(i), obj.getPoint31YTile(i), rc);
+			xText += rc.tempX;
+			yText += rc.tempY;
+			if (i == 0) {
+				path.moveTo(rc.tempX, rc.tempY);
+			} else {
+				path.lineTo(rc.tempX, rc.tempY);
+			}
+		}
+		int[][] polygonInnerCoordinates = obj.getPolygonInnerCoordinates();
+		if (polygonInnerCoordinates != null) {
+			for (int j = 0; j < polygonInnerCoordinates.length; j++) {
+				for (int i = 0; i < polygonInnerCoordinates[j].length; i += 2) {
+					calcPoint(polygonInnerCoordinates[j][i], polygonInnerCoordinates[j][i + 1], rc);
+					if (i == 0) {
+						path.moveTo(rc.tempX, rc.tempY);
+					} else {
+						path.lineTo(rc.tempX, rc.tempY);
+					}
+				}
+			}
+		}
+		g.fill(path);
+		if (updatePaint(render, g, 1, false, rc)) {
+			g.draw(path);
+		}
+		boolean ignorePointArea = render.getIntPropertyValue(render.ALL.R_IGNORE_POLYGON_AS_POINT_AREA) != 0;
+		if (area > MAX_V_AREA || ignorePointArea) {
+			renderText(obj, render, rc, pair, xText / len, yText / len, null);
+		}
+	}
+
+	private void drawPoint(BinaryMapDataObject obj, RenderingRuleSearchRequest render, RenderingContext rc,
+			TagValuePair pair, boolean renderText) {
+		if (pair == null) {
+			return;
+		}
+		render.setInitialTagValueZoom(pair.tag, pair.value, rc.zoom, obj);
+		render.setIntFilter(render.ALL.R_TEXT_LENGTH, obj.getName().length());
+		render.search(RenderingRulesStorage.POINT_RULES);
+		String resId = render.getStringPropertyValue(render.ALL.R_ICON);
+		if (resId == null && !renderText) {
+			return;
+		}
+		int len = obj.getPointsLength();
+		rc.visible++;
+		float x = 0;
+		float y = 0;
+		for (int i = 0; i < len; i++) {
+			calcPoint(obj.getPoint31XTile(i), obj.getPoint31YTile(i), rc);
+			x += rc.tempX;
+			y += rc.tempY;
+		}
+		if (len > 1) {
+			x /= len;
+			y /= len;
+		}
+		if (resId != null) {
+			IconDrawInfo ico = new IconDrawInfo();
+			ico.x = x;
+			ico.y = y;
+			ico.iconOrder = render.getIntPropertyValue(render.ALL.R_ICON_ORDER, 100);
+			ico.iconSize = rc.getComplexValue(render, render.ALL.R_ICON_VISIBLE_SIZE, -1);
+			ico.shieldId = render.getStringPropertyValue(render.ALL.R_SHIELD);
+			ico.resId = resId;
+			rc.iconsToDraw.add(ico);
+		}
+		if (renderText) {
+			renderText(obj, render, rc, pair, x, y, null);
+		}
+	}
+
+	private void drawPolyline(BinaryMapDataObject obj, RenderingRuleSearchRequest render, Graphics2D g,
+			RenderingContext rc, TagValuePair pair, int layer, boolean drawOnlyShadow) {
+		int length = obj.getPointsLength();
+		if (pair == null || length < 2) {
+			return;
+		}
+		render.setInitialTagValueZoom(pair.tag, pair.value, rc.zoom, obj);
+		render.setIntFilter(render.ALL.R_LAYER, layer);
+		boolean rendered = render.search(RenderingRulesStorage.LINE_RULES);
+		if (!rendered || !updatePaint(render, g, 0, false, rc)) {
+			return;
+		}
+		int oneway = 0;
+		if (rc.zoom >= 16 && "highway".equals(pair.tag)) {
+			if (obj.containsAdditionalType(obj.getMapIndex().onewayAttribute)) {
+				oneway = 1;
+			} else if (obj.containsAdditionalType(obj.getMapIndex().onewayReverseAttribute)) {
+				oneway = -1;
+			}
+		}
+		float[] points = drawOnlyShadow ? null : new float[length * 2];
+		Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, length);
+		boolean intersect = false;
+		float prevX = 0;
+		float prevY = 0;
+		for (int i = 0; i < length; i++) {
+			calcPoint(obj.getPoint31XTile(i), obj.getPoint31YTile(i), rc);
+			float x = rc.tempX;
+			float y = rc.tempY;
+			if (points != null) {
+				points[2 * i] = x;
+				points[2 * i + 1] = y;
+			}
+			if (!intersect) {
+				if (x >= 0 && y >= 0 && x < rc.width && y < rc.height) {
+					intersect = true;
+				} else if (i > 0) {
+					intersect = !((x < 0 && prevX < 0) || (y < 0 && prevY < 0) || (x > rc.width && prevX > rc.width)
+							|| (y > rc.height && prevY > rc.height));
+				}
+			}
+			if (i == 0) {
+				path.moveTo(x, y);
+			} else {
+				path.lineTo(x, y);
+			}
+			prevX = x;
+			prevY = y;
+		}
+		if (!intersect) {
+			return;
+		}
+		rc.visible++;
+		if (drawOnlyShadow) {
+			int shadowColor = render.getIntPropertyValue(render.ALL.R_SHADOW_COLOR);
+			int shadowRadius = (int) rc.getComplexValue(render, render.ALL.R_SHADOW_RADIUS);
+			if (shadowColor == 0) {
+				shadowColor = rc.shadowRenderingColor;
+			}
+			// blur shadow is not supported by java2d and it is drawn as solid border
+			if (rc.shadowRenderingMode >= 2 && shadowRadius > 0) {
+				BasicStroke s = (BasicStroke) g.getStroke();
+				g.setStroke(new BasicStroke(s.getLineWidth() + shadowRadius * 2, s.getEndCap(), s.getLineJoin(),
+						s.getMiterLimit(), s.getDashArray(), s.getDashPhase()));
+				g.setPaint(new Color(shadowColor, true));
+				g.draw(path);
+			}
+			return;
+		}
+		boolean update = false;
+		for (int ind = -3; ind <= -1; ind++) {
+			if (updatePaint(render, g, ind, false, rc)) {
+				update = true;
+				g.draw(path);
+			}
+		}
+		if (update) {
+			updatePaint(render, g, 0, false, rc);
+		}
+		g.draw(path);
+		for (int ind = 1; ind <= 4; ind++) {
+			if (updatePaint(render, g, ind, false, rc)) {
+				g.draw(path);
+			}
+		}
+		if (oneway != 0) {
+			drawOneway(g, rc, path, oneway);
+		}
+		renderText(obj, render, rc, pair, 0, 0, points);
+	}
+
+	private void drawOneway(Graphics2D g, RenderingContext rc, Shape path, int oneway) {
+		float rmin = rc.getDensityValue(1);
+		if (rmin > 1) {
+			rmin = rmin * 2 / 3;
+		}
+		g.setPaint(new Color(0xff6c70d5, true));
+		float[][] dashes;
+		float[] widths;
+		if (oneway > 0) {
+			dashes = new float[][] { { 0, 12, 10 * rmin, 152 }, { 0, 12, 9 * rmin, 152 + rmin },
+					{ 0, 12 + 6 * rmin, 2 * rmin, 152 + 2 * rmin }, { 0, 12 + 6 * rmin, 1 * rmin, 152 + 3 * rmin } };
+			widths = new float[] { rmin, rmin * 2, rmin * 3, rmin * 4 };
+		} else {
+			dashes = new float[][] { { 0, 12, 10 * rmin, 152 }, { 0, 12 + rmin, 9 * rmin, 152 },
+					{ 0, 12 + 2 * rmin, 2 * rmin, 152 + 6 * rmin }, { 0, 12 + 3 * rmin, 1 * rmin, 152 + 6 * rmin } };
+			widths = new float[] { rmin * 2, rmin, rmin * 3, rmin * 4 };
+		}
+		for (int i = 0; i < dashes.length; i++) {
+			g.setStroke(new BasicStroke(widths[i], BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, dashes[i], i == 0 ? 0 : 1));
+			g.draw(path);
+		}
+	}
+
+	private boolean updatePaint(RenderingRuleSearchRequest req, Graphics2D g, int ind, boolean area, RenderingContext rc) {
+		RenderingRuleProperty rColor;
+		RenderingRuleProperty rStrokeW;
+		RenderingRuleProperty rCap;
+		RenderingRuleProperty rPathEff;
+		if (ind == 0) {
+			rColor = req.ALL.R_COLOR;
+			rStrokeW = req.ALL.R_STROKE_WIDTH;
+			rCap = req.ALL.R_CAP;
+			rPathEff = req.ALL.R_PATH_EFFECT;
+		} else if (ind == 1) {
+			rColor = req.ALL.R_COLOR_2;
+			rStrokeW = req.ALL.R_STROKE_WIDTH_2;
+			rCap = req.ALL.R_CAP_2;
+			rPathEff = req.ALL.R_PATH_EFFECT_2;
+		} else if (ind == -1) {
+			rColor = req.ALL.R_COLOR_0;
+			rStrokeW = req.ALL.R_STROKE_WIDTH_0;
+			rCap = req.ALL.R_CAP_0;
+			rPathEff = req.ALL.R_PATH_EFFECT_0;
+		} else if (ind == -2) {
+			rColor = req.ALL.R_COLOR__1;
+			rStrokeW = req.ALL.R_STROKE_WIDTH__1;
+			rCap = req.ALL.R_CAP__1;
+			rPathEff = req.ALL.R_PATH_EFFECT__1;
+		} else if (ind == 2) {
+			rColor = req.ALL.R_COLOR_3;
+			rStrokeW = req.ALL.R_STROKE_WIDTH_3;
+			rCap = req.ALL.R_CAP_3;
+			rPathEff = req.ALL.R_PATH_EFFECT_3;
+		} else if (ind == -3) {
+			rColor = req.ALL.R_COLOR__2;
+			rStrokeW = req.ALL.R_STROKE_WIDTH__2;
+			rCap = req.ALL.R_CAP__2;
+			rPathEff = req.ALL.R_PATH_EFFECT__2;
+		} else if (ind == 3) {
+			rColor = req.ALL.R_COLOR_4;
+			rStrokeW = req.ALL.R_STROKE_WIDTH_4;
+			rCap = req.ALL.R_CAP_4;
+			rPathEff = req.ALL.R_PATH_EFFECT_4;
+		} else {
+			rColor = req.ALL.R_COLOR_5;
+			rStrokeW = req.ALL.R_STROKE_WIDTH_5;
+			rCap = req.ALL.R_CAP_5;
+			rPathEff = req.ALL.R_PATH_EFFECT_5;
+		}
+		if (area) {
+			if (!req.isSpecified(rColor) && !req.isSpecified(req.ALL.R_SHADER)) {
+				return false;
+			}
+		} else {
+			if (!req.isSpecified(rStrokeW)) {
+				return false;
+			}
+			float width = rc.getComplexValue(req, rStrokeW);
+			int cap = BasicStroke.CAP_BUTT;
+			String capValue = req.getStringPropertyValue(rCap);
+			if ("round".equalsIgnoreCase(capValue)) {
+				cap = BasicStroke.CAP_ROUND;
+			} else if ("square".equalsIgnoreCase(capValue)) {
+				cap = BasicStroke.CAP_SQUARE;
+			}
+			float[] dashes = getDashes(rc, req.getStringPropertyValue(rPathEff));
+			g.setStroke(new BasicStroke(Math.max(width, 0), cap, BasicStroke.JOIN_ROUND, 10, dashes, 0));
+		}
+		Paint paint = new Color(req.getIntPropertyValue(rColor), true);
+		if (ind == 0) {
+			BufferedImage shader = getIcon(req.getStringPropertyValue(req.ALL.R_SHADER));
+			if (shader != null) {
+				paint = new TexturePaint(shader, new Rectangle2D.Float(0, 0, shader.getWidth(), shader.getHeight()));
+			}
+		}
+		g.setPaint(paint);
+		return true;
+	}
+
+	private float[] getDashes(RenderingContext rc, String pathEffect) {
+		if (Algorithms.isEmpty(pathEffect)) {
+			return null;
+		}
+		float[] vs = parsedDashEffects.get(pathEffect);
+		if (vs == null && !parsedDashEffects.containsKey(pathEffect)) {
+			String[] vls = pathEffect.split("_");
+			vs = new float[vls.length * 2];
+			float sum = 0;
+			try {
+				for (int i = 0; i < vls.length; i++) {
+					// dash length could be specified as density independent and pixel parts : 3:1
+					int s = vls[i].indexOf(':');
+					String pre = s == -1 ? vls[i] : vls[i].substring(0, s);
+					String post = s == -1 ? "" : vls[i].substring(s + 1);
+					if (pre.length() > 0) {
+						vs[i * 2] = Float.parseFloat(pre);
+					}
+					if (post.length() > 0) {
+						vs[i * 2 + 1] = Float.parseFloat(post);
+					}
+					sum += vs[i * 2] + vs[i * 2 + 1];
+				}
+			} catch (NumberFormatException e) {
+				sum = 0;
+			}
+			if (sum <= 0) {
+				vs = null;
+			}
+			parsedDashEffects.put(pathEffect, vs);
+		}
+		if (vs == null) {
+			return null;
+		}
+		float[] dashes = new float[vs.length / 2];
+		for (int i = 0; i < dashes.length; i++) {
+			dashes[i] = rc.getDensityValue(vs[i * 2]) + vs[i * 2 + 1];
+		}
+		return dashes;
+	}
+
+	private void renderText(final BinaryMapDataObject obj, final RenderingRuleSearchRequest render,
+			final RenderingContext rc, final TagValuePair pair, final float xMid, final float yMid, final float[] points) {
+		final TIntObjectHashMap<String> map = obj.getObjectNames();
+		if (map == null) {
+			return;
+		}
+		map.forEachEntry(new TIntObjectProcedure<String>() {
+			@Override
+			public boolean execute(int tag, String name) {
+				if (name != null && name.trim().length() > 0) {
+					boolean isName = tag == obj.getMapIndex().nameEncodingType;
+					String nameTag = isName ? "" : obj.getMapIndex().decodeType(tag).tag;
+					if (!isName || rc.preferredLocale.equals("") || !map.containsKey(obj.getMapIndex().nameEnEncodingType)) {
+						createTextDrawInfo(obj, render, rc, pair, xMid, yMid, points, name, nameTag);
+					}
+				}
+				return true;
+			}
+		});
+	}
+
+	private void createTextDrawInfo(BinaryMapDataObject o, RenderingRuleSearchRequest render, RenderingContext rc,
+			TagValuePair pair, float xMid, float yMid, float[] points, String name, String tagName) {
+		render.setInitialTagValueZoom(pair.tag, pair.value, rc.zoom, o);
+		render.setIntFilter(render.ALL.R_TEXT_LENGTH, name.length());
+		render.setStringFilter(render.ALL.R_NAME_TAG, tagName);
+		if (!render.search(RenderingRulesStorage.TEXT_RULES) || render.getFloatPropertyValue(render.ALL.R_TEXT_SIZE) <= 0) {
+			return;
+		}
+		TextDrawInfo text = new TextDrawInfo();
+		text.text = name;
+		float vOffset = (int) rc.getComplexValue(render, render.ALL.R_TEXT_DY);
+		int textColor = render.getIntPropertyValue(render.ALL.R_TEXT_COLOR);
+		if (textColor != 0) {
+			text.textColor = textColor;
+		}
+		text.textSize = rc.getComplexValue(render, render.ALL.R_TEXT_SIZE);
+		text.textShadow = (int) rc.getComplexValue(render, render.ALL.R_TEXT_HALO_RADIUS);
+		int textShadowColor = render.getIntPropertyValue(render.ALL.R_TEXT_HALO_COLOR);
+		if (textShadowColor != 0) {
+			text.textShadowColor = textShadowColor;
+		}
+		text.bold = render.getIntPropertyValue(render.ALL.R_TEXT_BOLD, 0) > 0;
+		text.italic = render.getIntPropertyValue(render.ALL.R_TEXT_ITALIC, 0) > 0;
+		text.textOrder = render.getIntPropertyValue(render.ALL.R_TEXT_ORDER, 100);
+		if (points != null) {
+			if (render.getIntPropertyValue(render.ALL.R_TEXT_ON_PATH, 0) == 0 || !placeOnPath(rc, text, points)) {
+				return;
+			}
+		} else {
+			text.centerX = xMid;
+			text.centerY = yMid + vOffset;
+		}
+		// bounds are estimated by font size to avoid font metrics calculation for texts which are not drawn
+		float w = text.textSize * 0.6f * name.length() / 2 + rc.getDensityValue(3);
+		float h = text.textSize / 2 + rc.getDensityValue(5);
+		if (text.onPath) {
+			float cos = (float) Math.abs(Math.cos(text.pathRotate));
+			float sin = (float) Math.abs(Math.sin(text.pathRotate));
+			float rw = w * cos + h * sin;
+			h = w * sin + h * cos;
+			w = rw;
+		}
+		text.bounds = new QuadRect(text.centerX - w, text.centerY - h, text.centerX + w, text.centerY + h);
+		rc.textToDraw.add(text);
+	}
+
+	private boolean placeOnPath(RenderingContext rc, TextDrawInfo text, float[] points) {
+		// text is placed on the longest visible segment
+		int len = points.length / 2;
+		float maxLength = 0;
+		int ind = -1;
+		for (int i = 1; i < len; i++) {
+			float x = (points[2 * i] + points[2 * i - 2]) / 2;
+			float y = (points[2 * i + 1] + points[2 * i - 1]) / 2;
+			if (x < 0 || y < 0 || x > rc.width || y > rc.height) {
+				continue;
+			}
+			float dx = points[2 * i] - points[2 * i - 2];
+			float dy = points[2 * i + 1] - points[2 * i - 1];
+			float l = dx * dx + dy * dy;
+			if (l > maxLength) {
+				maxLength = l;
+				ind = i;
+			}
+		}
+		if (ind == -1 || Math.sqrt(maxLength) < text.textSize * 0.6f * text.text.length()) {
+			return false;
+		}
+		double angle = Math.atan2(points[2 * ind + 1] - points[2 * ind - 1], points[2 * ind] - points[2 * ind - 2]);
+		if (angle > Math.PI / 2) {
+			angle -= Math.PI;
+		} else if (angle < -Math.PI / 2) {
+			angle += Math.PI;
+		}
+		text.onPath = true;
+		text.pathRotate = angle;
+		text.centerX = (points[2 * ind] + points[2 * ind - 2]) / 2;
+		text.centerY = (points[2 * ind + 1] + points[2 * ind - 1]) / 2;
+		return true;
+	}
+
+	private QuadTree<QuadRect> initBoundIntersections(RenderingContext rc) {
+		QuadRect bounds = new QuadRect(0, 0, rc.width, rc.height);
+		bounds.inset(-bounds.width() / 4, -bounds.height() / 4);
+		return new QuadTree<QuadRect>(bounds, 4, 0.6f);
+	}
+
+	private boolean intersects(QuadTree<QuadRect> boundIntersections, QuadRect r, List<QuadRect> tmp) {
+		boundIntersections.queryInBox(r, tmp);
+		for (QuadRect q : tmp) {
+			if (QuadRect.intersects(q, r)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void drawIcons(RenderingContext rc, Graphics2D g) {
+		if (rc.iconsToDraw.isEmpty()) {
+			return;
+		}
+		Collections.sort(rc.iconsToDraw, new Comparator<IconDrawInfo>() {
+			@Override
+			public int compare(IconDrawInfo object1, IconDrawInfo object2) {
+				return Algorithms.compare(object1.iconOrder, object2.iconOrder);
+			}
+		});
+		QuadTree<QuadRect> boundIntersections = initBoundIntersections(rc);
+		List<QuadRect> tmp = new ArrayList<QuadRect>();
+		float coeff = rc.getDensityValue(rc.screenDensityRatio * rc.textScale);
+		for (IconDrawInfo icon : rc.iconsToDraw) {
+			BufferedImage ico = getIcon(icon.resId);
+			if (ico == null || icon.y < 0 || icon.y >= rc.height || icon.x < 0 || icon.x >= rc.width) {
+				continue;
+			}
+			float visibleWidth = (icon.iconSize >= 0 ? icon.iconSize : ico.getWidth()) * coeff;
+			float visibleHeight = (icon.iconSize >= 0 ? icon.iconSize : ico.getHeight()) * coeff;
+			QuadRect visibleRect = new QuadRect(icon.x - visibleWidth / 2, icon.y - visibleHeight / 2,
+					icon.x + visibleWidth / 2, icon.y + visibleHeight / 2);
+			if (visibleWidth > 0 && visibleHeight > 0 && intersects(boundIntersections, visibleRect, tmp)) {
+				continue;
+			}
+			BufferedImage shield = getIcon(icon.shieldId);
+			if (shield != null) {
+				drawImage(g, shield, icon.x, icon.y, coeff);
+			}
+			drawImage(g, ico, icon.x, icon.y, coeff);
+			if (visibleWidth > 0 && visibleHeight > 0) {
+				visibleRect.inset(-visibleRect.width() / 4, -visibleRect.height() / 4);
+				boundIntersections.insert(visibleRect, visibleRect);
+			}
+			if (rc.interrupted) {
+				return;
+			}
+		}
+	}
+
+	private void drawImage(Graphics2D g, BufferedImage img, float x, float y, float coeff) {
+		int w = (int) (img.getWidth() * coeff);
+		int h = (int) (img.getHeight() * coeff);
+		g.drawImage(img, (int) (x - w / 2), (int) (y - h / 2), w, h, null);
+	}
+
+	private void drawText(RenderingContext rc, Graphics2D g) {
+		if (rc.textToDraw.isEmpty()) {
+			return;
+		}
+		Collections.sort(rc.textToDraw, new Comparator<TextDrawInfo>() {
+			@Override
+			public int compare(TextDrawInfo object1, TextDrawInfo object2) {
+				return Algorithms.compare(object1.textOrder, object2.textOrder);
+			}
+		});
+		QuadTree<QuadRect> boundIntersections = initBoundIntersections(rc);
+		List<QuadRect> tmp = new ArrayList<QuadRect>();
+		FontRenderContext frc = g.getFontRenderContext();
+		AffineTransform tr = g.getTransform();
+		for (TextDrawInfo text : rc.textToDraw) {
+			if (text.bounds.right < 0 || text.bounds.left > rc.width || text.bounds.bottom < 0
+					|| text.bounds.top > rc.height || intersects(boundIntersections, text.bounds, tmp)) {
+				continue;
+			}
+			boundIntersections.insert(text.bounds, text.bounds);
+			int style = (text.bold ? Font.BOLD : 0) | (text.italic ? Font.ITALIC : 0);
+			Font font = new Font(Font.SANS_SERIF, style, Math.max(1, Math.round(text.textSize)));
+			TextLayout layout = new TextLayout(text.text, font, frc);
+			Rectangle2D tb = layout.getBounds();
+			g.translate(text.centerX, text.centerY);
+			if (text.onPath) {
+				g.rotate(text.pathRotate);
+			}
+			Shape outline = layout.getOutline(AffineTransform.getTranslateInstance(-tb.getCenterX(),
+					text.onPath ? -tb.getCenterY() : 0));
+			if (text.textShadow > 0) {
+				g.setPaint(new Color(text.textShadowColor, true));
+				g.setStroke(new BasicStroke(text.textShadow * 2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+				g.draw(outline);
+			}
+			g.setPaint(new Color(text.textColor, true));
+			g.fill(outline);
+			g.setTransform(tr);
+			if (rc.interrupted) {
+				return;
+			}
+		}
+	}
+}
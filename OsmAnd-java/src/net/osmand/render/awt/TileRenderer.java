@@ -0,0 +1,254 @@
+package net.osmand.render.awt;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.SearchFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.render.RenderingRuleProperty;
+import net.osmand.render.RenderingRuleSearchRequest;
+import net.osmand.render.RenderingRuleStorageProperties;
+import net.osmand.render.RenderingRulesStorage;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Renders map tiles of obf files without android and native library. Files are opened once and
+ * every rendering thread has its own reader copies, search request and {@link AwtMapRenderer}
+ * (all of them are not thread safe), rendering style is shared.
+ */
+public class TileRenderer {
+
+	private static final Log log = PlatformUtil.getLog(TileRenderer.class);
+
+	public static class Settings {
+		public int threads = Runtime.getRuntime().availableProcessors();
+		public int tileSize = AwtMapRenderer.TILE_SIZE;
+		public boolean nightMode;
+		// values of custom style properties (not specified boolean properties are false)
+		public Map<String, String> properties = Collections.emptyMap();
+		public File iconsDir;
+		public boolean useMemoryMapping = true;
+	}
+
+	private final Settings settings;
+	private final RenderingRulesStorage storage;
+	private final BinaryMapIndexReader[] readers;
+	private final ExecutorService executor;
+	private final List<BinaryMapIndexReader> workerReaders = Collections.synchronizedList(new ArrayList<BinaryMapIndexReader>());
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>();
+
+	public TileRenderer(List<File> obfFiles, RenderingRulesStorage storage, Settings settings) throws IOException {
+		this.settings = settings;
+		this.storage = storage;
+		if (storage.getCompiledRules() == null) {
+			storage.compileRules();
+		}
+		readers = new BinaryMapIndexReader[obfFiles.size()];
+		for (int i = 0; i < readers.length; i++) {
+			File f = obfFiles.get(i);
+			readers[i] = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f, true, settings.useMemoryMapping);
+		}
+		final AtomicInteger threadId = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(settings.threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Render-" + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public Future<BufferedImage> submit(final int zoom, final int x, final int y) {
+		return executor.submit(new Callable<BufferedImage>() {
+			@Override
+			public BufferedImage call() throws IOException {
+				return renderTile(zoom, x, y);
+			}
+		});
+	}
+
+	/**
+	 * Renders tile in current thread
+	 */
+	public BufferedImage renderTile(int zoom, int x, int y) throws IOException {
+		Worker w = getWorker();
+		List<BinaryMapDataObject> objects = w.searchObjects(zoom, x, y);
+		AwtMapRenderer.RenderingContext rc = w.createContext(zoom, x, y);
+		BufferedImage img = new BufferedImage(settings.tileSize, settings.tileSize, BufferedImage.TYPE_INT_ARGB);
+		w.renderer.render(rc, objects, w.request, img);
+		if (log.isDebugEnabled()) {
+			log.debug(zoom + "/" + x + "/" + y + " : " + objects.size() + " objects. " + rc.renderingDebugInfo);
+		}
+		return img;
+	}
+
+	private Worker getWorker() throws IOException {
+		Worker w = workers.get();
+		if (w == null) {
+			w = new Worker();
+			workers.set(w);
+		}
+		return w;
+	}
+
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		List<BinaryMapIndexReader> toClose = new ArrayList<BinaryMapIndexReader>(workerReaders);
+		Collections.addAll(toClose, readers);
+		for (BinaryMapIndexReader r : toClose) {
+			try {
+				r.close();
+			} catch (IOException e) {
+				log.warn("Reader is not closed " + r.getFile(), e);
+			}
+		}
+	}
+
+	/**
+	 * Tile is covered by water (coastlines are not processed into polygons), ocean is first object to be drawn
+	 * under other objects of tile (islands, bridges)
+	 */
+	static void addOcean(List<BinaryMapDataObject> result, MapIndex oceanIndex, int left, int top, int right,
+			int bottom) {
+		int[] coordinates = new int[] { left, top, right, top, right, bottom, left, bottom, left, top };
+		BinaryMapDataObject o = new BinaryMapDataObject(-1, coordinates, new int[0][],
+				RenderingRulesStorage.POLYGON_RULES, true, new int[] { oceanIndex.coastlineEncodingType }, new int[0]);
+		o.setMapIndex(oceanIndex);
+		result.add(0, o);
+	}
+
+	private class Worker {
+		final BinaryMapIndexReader[] readers;
+		final RenderingRuleSearchRequest request;
+		final AwtMapRenderer renderer = new AwtMapRenderer();
+
+		Worker() throws IOException {
+			readers = new BinaryMapIndexReader[TileRenderer.this.readers.length];
+			for (int i = 0; i < readers.length; i++) {
+				BinaryMapIndexReader ref = TileRenderer.this.readers[i];
+				readers[i] = new BinaryMapIndexReader(new RandomAccessFile(ref.getFile(), "r"), ref);
+				workerReaders.add(readers[i]);
+			}
+			renderer.setIconsDir(settings.iconsDir);
+			request = new RenderingRuleSearchRequest(storage);
+			request.setBooleanFilter(request.ALL.R_NIGHT_MODE, settings.nightMode);
+			for (RenderingRuleProperty customProp : storage.PROPS.getCustomRules()) {
+				String value = settings.properties.get(customProp.getAttrName());
+				if (customProp.isBoolean()) {
+					request.setBooleanFilter(customProp, "true".equals(value));
+				} else {
+					request.setStringFilter(customProp, value == null ? "" : value);
+				}
+			}
+			request.saveState();
+		}
+
+		AwtMapRenderer.RenderingContext createContext(int zoom, int x, int y) {
+			AwtMapRenderer.RenderingContext rc = new AwtMapRenderer.RenderingContext();
+			rc.setTile(zoom, x, y, settings.tileSize, settings.tileSize);
+			rc.nightMode = settings.nightMode;
+			request.clearState();
+			request.setIntFilter(request.ALL.R_MINZOOM, zoom);
+			if (request.searchRenderingAttribute(RenderingRuleStorageProperties.A_DEFAULT_COLOR)) {
+				rc.defaultColor = request.getIntPropertyValue(request.ALL.R_ATTR_COLOR_VALUE);
+			}
+			request.clearState();
+			request.setIntFilter(request.ALL.R_MINZOOM, zoom);
+			if (request.searchRenderingAttribute(RenderingRuleStorageProperties.A_SHADOW_RENDERING)) {
+				rc.shadowRenderingMode = request.getIntPropertyValue(request.ALL.R_ATTR_INT_VALUE);
+				rc.shadowRenderingColor = request.getIntPropertyValue(request.ALL.R_SHADOW_COLOR);
+			}
+			if (request.searchRenderingAttribute("polygonMinSizeToDisplay")) {
+				rc.polygonMinSizeToDisplay = request.getIntPropertyValue(request.ALL.R_ATTR_INT_VALUE);
+			}
+			return rc;
+		}
+
+		List<BinaryMapDataObject> searchObjects(final int zoom, int x, int y) throws IOException {
+			int shift = 31 - zoom;
+			int left = x << shift;
+			int top = y << shift;
+			// right and bottom of last tile are outside of int range
+			int right = (int) Math.min(Integer.MAX_VALUE, ((long) x + 1) << shift);
+			int bottom = (int) Math.min(Integer.MAX_VALUE, ((long) y + 1) << shift);
+			SearchFilter searchFilter = null;
+			if (zoom <= 16) {
+				request.clearState();
+				searchFilter = new SearchFilter() {
+					@Override
+					public boolean accept(TIntArrayList types, MapIndex index) {
+						return isRendered(types, index, zoom);
+					}
+				};
+			}
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(left, right, top, bottom,
+					zoom, searchFilter);
+			List<BinaryMapDataObject> result = new ArrayList<BinaryMapDataObject>();
+			TLongHashSet ids = new TLongHashSet();
+			MapIndex oceanIndex = null;
+			boolean land = false;
+			for (BinaryMapIndexReader r : readers) {
+				req.clearSearchResults();
+				for (BinaryMapDataObject o : r.searchMapIndex(req)) {
+					// the same object could be stored in several files
+					if (o.getId() <= 0 || ids.add(o.getId())) {
+						result.add(o);
+					}
+				}
+				if (req.isOcean() && !r.getMapIndexes().isEmpty()) {
+					oceanIndex = r.getMapIndexes().get(0);
+				}
+				land |= req.isLand();
+			}
+			if (oceanIndex != null && !land) {
+				addOcean(result, oceanIndex, left, top, right, bottom);
+			}
+			return result;
+		}
+
+		boolean isRendered(TIntArrayList types, MapIndex index, int zoom) {
+			for (int j = 0; j < types.size(); j++) {
+				TagValuePair pair = index.decodeType(types.get(j));
+				if (pair == null) {
+					continue;
+				}
+				request.setIntFilter(request.ALL.R_MINZOOM, zoom);
+				request.setStringFilter(request.ALL.R_TAG, pair.tag);
+				request.setStringFilter(request.ALL.R_VALUE, pair.value);
+				for (int state = 1; state <= 3; state++) {
+					if (request.search(state, false)) {
+						return true;
+					}
+				}
+				if (request.search(RenderingRulesStorage.TEXT_RULES, false)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package net.osmand.render.awt;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import net.osmand.PlatformUtil;
+import net.osmand.render.RenderingRulesStorage;
+import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+import net.osmand.util.MapUtils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Throughput benchmark of {@link TileRenderer} : random tiles inside bbox are rendered for every zoom
+ * and tiles per second are reported. Example :
+ * -obfDir=/maps -style=/styles/default.render.xml -bbox=52.6,13.1,52.3,13.7 -zooms=10-17 -tiles=200 -threads=8
+ */
+public class TileRendererBenchmark {
+
+	private static class Params {
+		File obfDir;
+		File style;
+		// top lat, left lon, bottom lat, right lon
+		double[] bbox;
+		int minZoom = 10;
+		int maxZoom = 16;
+		int tiles = 100;
+		long seed = 1;
+		File output;
+		TileRenderer.Settings settings = new TileRenderer.Settings();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Params p = parseParams(args);
+		if (p.obfDir == null || p.style == null || p.bbox == null) {
+			System.out.println("Usage : -obfDir=folder -style=file.render.xml -bbox=topLat,leftLon,bottomLat,rightLon "
+					+ "[-zooms=10-16] [-tiles=N] [-threads=N] [-tileSize=256] [-icons=folder] [-output=folder] "
+					+ "[-night=true] [-seed=N] [-<styleProperty>=value]");
+			return;
+		}
+		List<File> files = new ArrayList<File>();
+		for (File f : p.obfDir.listFiles()) {
+			if (f.getName().endsWith(".obf")) {
+				files.add(f);
+			}
+		}
+		long time = System.currentTimeMillis();
+		RenderingRulesStorage storage = loadStyle(p.style);
+		System.out.println("Style " + storage.getName() + " is loaded in " + (System.currentTimeMillis() - time) + " ms");
+		TileRenderer renderer = new TileRenderer(files, storage, p.settings);
+		System.out.println(String.format("%d files, %d threads, tile size %d", files.size(), p.settings.threads,
+				p.settings.tileSize));
+		Random rnd = new Random(p.seed);
+		// warm up : readers are opened and jit compiles rendering code
+		render(renderer, generateTiles(rnd, p.bbox, p.maxZoom, p.settings.threads * 2), p.maxZoom);
+		for (int zoom = p.minZoom; zoom <= p.maxZoom; zoom++) {
+			List<int[]> tiles = generateTiles(rnd, p.bbox, zoom, p.tiles);
+			long start = System.nanoTime();
+			List<BufferedImage> images = render(renderer, tiles, zoom);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("Zoom %2d : %d tiles in %.2f s : %.1f tiles/s", zoom, tiles.size(),
+					seconds, tiles.size() / seconds));
+			// png encoding is not measured
+			if (p.output != null) {
+				write(images, tiles, zoom, p.output);
+			}
+		}
+		renderer.shutdown();
+	}
+
+	private static List<BufferedImage> render(TileRenderer renderer, List<int[]> tiles, int zoom) throws Exception {
+		List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+		for (int[] t : tiles) {
+			futures.add(renderer.submit(zoom, t[0], t[1]));
+		}
+		List<BufferedImage> images = new ArrayList<BufferedImage>(futures.size());
+		for (Future<BufferedImage> f : futures) {
+			images.add(f.get());
+		}
+		return images;
+	}
+
+	private static void write(List<BufferedImage> images, List<int[]> tiles, int zoom, File output) throws IOException {
+		for (int i = 0; i < images.size(); i++) {
+			File f = new File(output, zoom + "/" + tiles.get(i)[0] + "/" + tiles.get(i)[1] + ".png");
+			f.getParentFile().mkdirs();
+			ImageIO.write(images.get(i), "png", f);
+		}
+	}
+
+	private static List<int[]> generateTiles(Random rnd, double[] bbox, int zoom, int count) {
+		int left = (int) MapUtils.getTileNumberX(zoom, bbox[1]);
+		int right = (int) MapUtils.getTileNumberX(zoom, bbox[3]);
+		int top = (int) MapUtils.getTileNumberY(zoom, bbox[0]);
+		int bottom = (int) MapUtils.getTileNumberY(zoom, bbox[2]);
+		List<int[]> tiles = new ArrayList<int[]>();
+		for (int i = 0; i < count; i++) {
+			tiles.add(new int[] { left + rnd.nextInt(right - left + 1), top + rnd.nextInt(bottom - top + 1) });
+		}
+		return tiles;
+	}
+
+	private static RenderingRulesStorage loadStyle(File style) throws XmlPullParserException, IOException {
+		final File dir = style.getParentFile();
+		// constants of default style are used by all other styles
+		final Map<String, String> renderingConstants = new LinkedHashMap<String, String>();
+		File defaultStyle = new File(dir, "default.render.xml");
+		if (defaultStyle.exists()) {
+			readConstants(defaultStyle, renderingConstants);
+		}
+		RenderingRulesStorageResolver resolver = new RenderingRulesStorageResolver() {
+			@Override
+			public RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref)
+					throws XmlPullParserException, IOException {
+				RenderingRulesStorage depends = new RenderingRulesStorage(name, renderingConstants);
+				InputStream is = new FileInputStream(new File(dir, name + ".render.xml"));
+				try {
+					depends.parseRulesFromXmlInputStream(is, ref);
+				} finally {
+					is.close();
+				}
+				return depends;
+			}
+		};
+		String name = style.getName();
+		if (name.endsWith(".render.xml")) {
+			name = name.substring(0, name.length() - ".render.xml".length());
+		}
+		RenderingRulesStorage storage = new RenderingRulesStorage(name, renderingConstants);
+		InputStream is = new FileInputStream(style);
+		try {
+			storage.parseRulesFromXmlInputStream(is, resolver);
+		} finally {
+			is.close();
+		}
+		return storage;
+	}
+
+	private static void readConstants(File f, Map<String, String> renderingConstants) throws XmlPullParserException,
+			IOException {
+		InputStream is = new FileInputStream(f);
+		try {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(is, "UTF-8");
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.START_TAG && parser.getName().equals("renderingConstant")) {
+					String name = parser.getAttributeValue("", "name");
+					if (!renderingConstants.containsKey(name)) {
+						renderingConstants.put(name, parser.getAttributeValue("", "value"));
+					}
+				}
+			}
+		} finally {
+			is.close();
+		}
+	}
+
+	private static Params parseParams(String[] args) {
+		Params p = new Params();
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		for (String a : args) {
+			int i = a.indexOf('=');
+			if (i < 0) {
+				continue;
+			}
+			String key = a.substring(0, i);
+			String val = a.substring(i + 1);
+			if (key.equals("-obfDir")) {
+				p.obfDir = new File(val);
+			} else if (key.equals("-style")) {
+				p.style = new File(val);
+			} else if (key.equals("-bbox")) {
+				String[] s = val.split(",");
+				p.bbox = new double[] { Double.parseDouble(s[0]), Double.parseDouble(s[1]),
+						Double.parseDouble(s[2]), Double.parseDouble(s[3]) };
+			} else if (key.equals("-zooms")) {
+				int d = val.indexOf('-');
+				p.minZoom = Integer.parseInt(d < 0 ? val : val.substring(0, d));
+				p.maxZoom = d < 0 ? p.minZoom : Integer.parseInt(val.substring(d + 1));
+			} else if (key.equals("-tiles")) {
+				p.tiles = Integer.parseInt(val);
+			} else if (key.equals("-seed")) {
+				p.seed = Long.parseLong(val);
+			} else if (key.equals("-output")) {
+				p.output = new File(val);
+			} else if (key.equals("-threads")) {
+				p.settings.threads = Integer.parseInt(val);
+			} else if (key.equals("-tileSize")) {
+				p.settings.tileSize = Integer.parseInt(val);
+			} else if (key.equals("-icons")) {
+				p.settings.iconsDir = new File(val);
+			} else if (key.equals("-night")) {
+				p.settings.nightMode = Boolean.parseBoolean(val);
+			} else if (key.startsWith("-")) {
+				properties.put(key.substring(1), val);
+			}
+		}
+		p.settings.properties = properties;
+		return p;
+	}
+}
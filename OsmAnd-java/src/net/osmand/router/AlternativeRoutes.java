@@ -0,0 +1,108 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Selects alternative routes from candidates of one bidirectional search (see {@link BinaryRoutePlanner#searchRouteCandidates}).
+ * Candidate is a route through a meeting point of direct and reverse search trees (via-node),
+ * it is accepted if it doesn't pass same road interval twice and its part shared with
+ * the best route and accepted alternatives is not more than max overlap.
+ * Candidates with via-node on accepted route are skipped (they repeat it).
+ * Local optimality of alternatives is not checked (part of route around via-node could be a detour).
+ */
+class AlternativeRoutes {
+
+	private static final Log log = PlatformUtil.getLog(AlternativeRoutes.class);
+	// candidates are converted to segments to check overlap, so their number is limited
+	private static final int MAX_CANDIDATES_TO_CHECK = 50;
+
+	private final RoutingContext ctx;
+	private final float maxOverlap;
+	// lengths of road intervals of accepted routes
+	private final TLongObjectHashMap<Float> acceptedIntervals = new TLongObjectHashMap<Float>();
+
+	AlternativeRoutes(RoutingContext ctx, float maxOverlap) {
+		this.ctx = ctx;
+		this.maxOverlap = maxOverlap;
+	}
+
+	/**
+	 * @param candidates ordered by cost, the first one is the best route
+	 * @return best route and up to maxAlternatives alternatives (segments are not prepared)
+	 */
+	List<List<RouteSegmentResult>> selectRoutes(List<FinalRouteSegment> candidates, int maxAlternatives) {
+		List<List<RouteSegmentResult>> routes = new ArrayList<List<RouteSegmentResult>>();
+		RouteResultPreparation preparation = new RouteResultPreparation();
+		int checked = 0;
+		for (FinalRouteSegment frs : candidates) {
+			if (routes.size() > maxAlternatives || checked >= MAX_CANDIDATES_TO_CHECK) {
+				break;
+			}
+			// trees meet at many points of the best route, route via point of accepted route is (almost) the same
+			if (!routes.isEmpty() && isOnAcceptedRoute(frs)) {
+				continue;
+			}
+			checked++;
+			List<RouteSegmentResult> route = preparation.collectRouteSegments(ctx, frs);
+			TLongObjectHashMap<Float> intervals = new TLongObjectHashMap<Float>();
+			float length = collectIntervals(route, intervals);
+			if (length < 0) {
+				continue;
+			}
+			if (!routes.isEmpty()) {
+				float shared = 0;
+				for (long key : intervals.keys()) {
+					if (acceptedIntervals.containsKey(key)) {
+						shared += intervals.get(key);
+					}
+				}
+				if (length == 0 || shared / length > maxOverlap) {
+					continue;
+				}
+				log.info("Alternative route accepted : cost " + frs.distanceFromStart + ", overlap " + shared / length);
+			}
+			acceptedIntervals.putAll(intervals);
+			routes.add(route);
+		}
+		return routes;
+	}
+
+	private boolean isOnAcceptedRoute(FinalRouteSegment frs) {
+		RouteDataObject road = frs.getRoad();
+		int point = frs.getSegmentStart();
+		return acceptedIntervals.containsKey(BinaryRoutePlanner.calculateRoutePointId(road, point, true))
+				|| (point > 0 && acceptedIntervals.containsKey(BinaryRoutePlanner.calculateRoutePointId(road, point - 1, true)));
+	}
+
+	/**
+	 * @return length of route or -1 if route passes same interval twice
+	 */
+	private static float collectIntervals(List<RouteSegmentResult> route, TLongObjectHashMap<Float> intervals) {
+		float length = 0;
+		for (RouteSegmentResult r : route) {
+			RouteDataObject road = r.getObject();
+			int st = Math.min(r.getStartPointIndex(), r.getEndPointIndex());
+			int end = Math.max(r.getStartPointIndex(), r.getEndPointIndex());
+			for (int i = st; i < end; i++) {
+				long key = BinaryRoutePlanner.calculateRoutePointId(road, i, true);
+				if (intervals.containsKey(key)) {
+					return -1;
+				}
+				float d = (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+						road.getPoint31XTile(i + 1), road.getPoint31YTile(i + 1));
+				intervals.put(key, d);
+				length += d;
+			}
+		}
+		return length;
+	}
+}
@@ -4,14 +4,22 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.Isochrone.ReachedSegment;
+import net.osmand.router.RoutingMetricsListener.RoutingPhase;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -29,6 +37,13 @@ public class BinaryRoutePlanner {
 
 	private static final int ROUTE_POINTS = 11;
 	private static final boolean TRACE_ROUTING = false;
+	// queue sizes are reported to metrics listener every N visited segments
+	static final int METRICS_SAMPLE_SEGMENTS = 1000;
+
+	// opposite segments are reverse search tree of previous calculation, its time to the target is known only for the way
+	// which was searched, so direct search continues through the tree and the cheapest final segment is polled first.
+	// Parallel search continues too : visited segments of direction which runs ahead don't have the best time yet
+	private boolean continueThroughOpposite;
 
 
 	public static double squareRootDist(int x1, int y1, int x2, int y2) {
@@ -50,6 +65,13 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	private static class DistanceFromStartComparator implements Comparator<RouteSegment> {
+		@Override
+		public int compare(RouteSegment o1, RouteSegment o2) {
+			return Float.compare(o1.distanceFromStart, o2.distanceFromStart);
+		}
+	}
+
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -60,6 +82,13 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	private static Queue<RouteSegment> createSegmentsQueue(RoutingContext ctx) {
+		if (ctx.config.heapArity >= 2) {
+			return new RouteSegmentHeap(ctx.config.heapArity, ctx.config.heuristicCoefficient);
+		}
+		return new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+	}
+
 	/**
 	 * Calculate route between start.segmentEnd and end.segmentStart (using A* algorithm)
 	 * return list of segments
@@ -67,6 +96,10 @@ public class BinaryRoutePlanner {
 	@SuppressWarnings("unused")
 	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 			RouteSegment recalculationEnd ) throws InterruptedException, IOException {
+		if (ctx.config.parallelSearch && ctx.planRouteIn2Directions() && recalculationEnd == null
+				&& ctx.precalculatedRouteDirection == null && ctx.nativeLib == null) {
+			return searchRouteInternalParallel(ctx, start, end);
+		}
 		// measure time
 		ctx.timeToLoad = 0;
 		ctx.visitedSegments = 0;
@@ -76,20 +109,19 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		Queue<RouteSegment> graphDirectSegments = createSegmentsQueue(ctx);
+		Queue<RouteSegment> graphReverseSegments = createSegmentsQueue(ctx);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
 		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
 
-		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
-				visitedDirectSegments, visitedOppositeSegments);
+		initQueuesWithStartEnd(ctx, ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments);
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		Queue<RouteSegment> graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -99,7 +131,7 @@ public class BinaryRoutePlanner {
 			// use accumulative approach
 			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
 					(graphDirectSegments.size() +
-					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD + getReverseSearchTreeSize(ctx);
 			
 			if (TRACE_ROUTING) {
 				printRoad(">", segment, !forwardSearch);
@@ -168,11 +200,422 @@ public class BinaryRoutePlanner {
 			}
 		}
 		printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+		reportSearchFinished(ctx);
+		if (recalculationEnd == null) {
+			buildReverseSearchTree(ctx, end, visitedOppositeSegments, finalSegment);
+		}
+		return finalSegment;
+	}
+
+	private void buildReverseSearchTree(final RoutingContext ctx, RouteSegmentPoint end,
+			TLongObjectHashMap<RouteSegment> visitedOppositeSegments, FinalRouteSegment finalSegment) {
+		if (ctx.config.incrementalRecalculation && finalSegment != null && ctx.planRouteIn2Directions()) {
+			// tree of previous calculation is replaced
+			ctx.reverseSearchTree = null;
+			if (!ReverseSearchTree.isWithinMemoryLimit(ctx, visitedOppositeSegments.size())) {
+				printInfo("Reverse search tree is not built : " + visitedOppositeSegments.size() + " segments");
+				return;
+			}
+			long time = System.nanoTime();
+			ReverseSearchTree tree = new ReverseSearchTree(ctx, end);
+			tree.addReverseSegments(visitedOppositeSegments);
+			tree.addRoute(finalSegment);
+			ctx.reverseSearchTree = tree;
+			printInfo("Reverse search tree " + tree.size() + " segments built in " + (System.nanoTime() - time) / 1e6 + " ms");
+		}
+	}
+
+	/**
+	 * Recalculation to the target of reverse search tree : only direct search runs, every segment of the tree
+	 * it reaches gives final segment (route from there to the target is already known) and the cheapest one is the result.
+	 * @return null if tree was not reached
+	 */
+	FinalRouteSegment searchRouteIncremental(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			ReverseSearchTree tree) throws InterruptedException, IOException {
+		ctx.timeToLoad = 0;
+		ctx.visitedSegments = 0;
+		ctx.memoryOverhead = 1000;
+		ctx.timeToCalculate = System.nanoTime();
+		Queue<RouteSegment> graphDirectSegments = createSegmentsQueue(ctx);
+		// reverse search doesn't run
+		Queue<RouteSegment> graphReverseSegments = createSegmentsQueue(ctx);
+		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
+		initQueuesWithStartEnd(ctx, ctx, start, end, null, graphDirectSegments, graphReverseSegments);
+		continueThroughOpposite = true;
+		AtomicReference<FinalRouteSegment> best = new AtomicReference<FinalRouteSegment>();
+		searchOneDirection(ctx, false, graphDirectSegments, visitedDirectSegments, tree.segments,
+				new AtomicBoolean(false), best);
+		FinalRouteSegment finalSegment = best.get();
+		if (finalSegment != null && ReverseSearchTree.isWithinMemoryLimit(ctx, tree.size() + visitedDirectSegments.size())) {
+			tree.addRoute(finalSegment);
+		}
+		printInfo("Incremental search : visited segments " + ctx.visitedSegments + ", tree segments " + tree.size());
+		reportSearchFinished(ctx);
+		return finalSegment;
+	}
+
+	/**
+	 * Bidirectional search which continues after the best route is found : every meeting point of direct and
+	 * reverse search defines a route (via-node), routes not longer than best * maxStretch are collected.
+	 * Search stops when queues are beyond max cost or it visited twice more segments than needed for the best route.
+	 * @return final segments ordered by cost (best route is the first one), empty list if route is not found
+	 */
+	List<FinalRouteSegment> searchRouteCandidates(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			float maxStretch) throws InterruptedException, IOException {
+		ctx.timeToLoad = 0;
+		ctx.visitedSegments = 0;
+		ctx.memoryOverhead = 1000;
+		ctx.timeToCalculate = System.nanoTime();
+		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
+		Queue<RouteSegment> graphDirectSegments = createSegmentsQueue(ctx);
+		Queue<RouteSegment> graphReverseSegments = createSegmentsQueue(ctx);
+		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		initQueuesWithStartEnd(ctx, ctx, start, end, null, graphDirectSegments, graphReverseSegments);
+
+		List<FinalRouteSegment> candidates = new ArrayList<FinalRouteSegment>();
+		float maxCost = -1;
+		int maxVisitedSegments = -1;
+		boolean forwardSearch = true;
+		Queue<RouteSegment> graphSegments = graphDirectSegments;
+		while (!graphSegments.isEmpty()) {
+			RouteSegment segment = graphSegments.poll();
+			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
+					(graphDirectSegments.size() + graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (segment instanceof FinalRouteSegment) {
+				if (candidates.isEmpty()) {
+					maxCost = segment.distanceFromStart * maxStretch;
+					maxVisitedSegments = 2 * ctx.visitedSegments;
+				}
+				if (segment.distanceFromStart <= maxCost) {
+					candidates.add((FinalRouteSegment) segment);
+				}
+			} else {
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				ctx.visitedSegments++;
+				if (forwardSearch) {
+					processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments, segment,
+							visitedOppositeSegments, false);
+				} else {
+					processRouteSegment(ctx, true, graphReverseSegments, visitedOppositeSegments, segment,
+							visitedDirectSegments, false);
+				}
+				updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
+			}
+			if (candidates.isEmpty()) {
+				checkIfGraphIsEmpty(ctx, true, graphReverseSegments, end, visitedOppositeSegments,
+						"Route is not found to selected target point.");
+				checkIfGraphIsEmpty(ctx, true, graphDirectSegments, start, visitedDirectSegments,
+						"Route is not found from selected start point.");
+			} else if (ctx.visitedSegments > maxVisitedSegments) {
+				break;
+			}
+			// after best route is found one queue could be exhausted or beyond max cost
+			boolean direct = isQueueWithinCost(graphDirectSegments, maxCost);
+			boolean reverse = isQueueWithinCost(graphReverseSegments, maxCost);
+			if (direct && reverse) {
+				forwardSearch = nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(),
+						graphReverseSegments.peek()) < 0;
+			} else if (direct || reverse) {
+				forwardSearch = direct;
+			} else {
+				break;
+			}
+			graphSegments = forwardSearch ? graphDirectSegments : graphReverseSegments;
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+		printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+		Collections.sort(candidates, new DistanceFromStartComparator());
+		printInfo("Route candidates " + candidates.size() + ", visited segments " + ctx.visitedSegments);
+		reportSearchFinished(ctx);
+		return candidates;
+	}
+
+	private static int getReverseSearchTreeSize(RoutingContext ctx) {
+		return ctx.reverseSearchTree == null ? 0 : ctx.reverseSearchTree.getEstimatedSize();
+	}
+
+	private static boolean isQueueWithinCost(Queue<RouteSegment> graphSegments, float maxCost) {
+		if (graphSegments.isEmpty()) {
+			return false;
+		}
+		RouteSegment peek = graphSegments.peek();
+		return maxCost < 0 || peek.distanceFromStart + peek.distanceToEnd <= maxCost;
+	}
+
+	/**
+	 * Dijkstra search from start without target (no heuristic) which visits all roads reachable within max time
+	 * @return passed parts of roads with arrival times
+	 */
+	List<ReachedSegment> searchReachableSegments(final RoutingContext ctx, RouteSegmentPoint start, float maxTime)
+			throws InterruptedException, IOException {
+		ctx.timeToLoad = 0;
+		ctx.visitedSegments = 0;
+		ctx.memoryOverhead = 1000;
+		ctx.timeToCalculate = System.nanoTime();
+		Queue<RouteSegment> graphSegments = new PriorityQueue<RouteSegment>(50, new DistanceFromStartComparator());
+		Queue<RouteSegment> emptyQueue = new PriorityQueue<RouteSegment>(1, new DistanceFromStartComparator());
+		TLongObjectHashMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+		// there is no opposite search, so final segment is never found
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		RouteSegment startPos = initRouteSegment(ctx, start, true);
+		RouteSegment startNeg = initRouteSegment(ctx, start, false);
+		if (startPos != null) {
+			graphSegments.add(startPos);
+		}
+		if (startNeg != null) {
+			graphSegments.add(startNeg);
+		}
+		List<ReachedSegment> result = new ArrayList<ReachedSegment>();
+		while (!graphSegments.isEmpty()) {
+			RouteSegment segment = graphSegments.poll();
+			if (segment.distanceFromStart > maxTime) {
+				break;
+			}
+			ctx.memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD +
+					graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			ctx.visitedSegments++;
+			if (checkIfInitialMovementAllowedOnSegment(ctx, false, visitedSegments, segment, segment.getRoad())) {
+				ReachedSegment reached = calculateReachedSegment(ctx, segment, maxTime);
+				if (reached != null) {
+					result.add(reached);
+				}
+			}
+			processRouteSegment(ctx, false, graphSegments, visitedSegments, segment, visitedOppositeSegments, false);
+			updateCalculationProgress(ctx, graphSegments, emptyQueue);
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+		printInfo("Reachable segments " + result.size() + " within " + maxTime + " s found in "
+				+ (System.nanoTime() - ctx.timeToCalculate) / 1e6 + " ms, visited segments " + ctx.visitedSegments);
+		reportSearchFinished(ctx);
+		return result;
+	}
+
+	/**
+	 * Arrival times to points of road from segment start (same costs as processRouteSegment uses)
+	 */
+	private ReachedSegment calculateReachedSegment(final RoutingContext ctx, RouteSegment segment, float maxTime) {
+		RouteDataObject road = segment.getRoad();
+		int d = segment.isPositive() ? 1 : -1;
+		int count = segment.isPositive() ? road.getPointsLength() - segment.getSegmentStart() : segment.getSegmentStart() + 1;
+		float[] times = new float[count];
+		times[0] = segment.distanceFromStart;
+		float obstaclesTime = 0;
+		float segmentDist = 0;
+		int i = 1;
+		for (; i < count; i++) {
+			int prevInd = segment.getSegmentStart() + (i - 1) * d;
+			int ind = prevInd + d;
+			segmentDist += squareRootDist(road.getPoint31XTile(prevInd), road.getPoint31YTile(prevInd),
+					road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+			double obstacle = ctx.getRouter().defineRoutingObstacle(road, ind);
+			double heightObstacle = ctx.getRouter().defineHeightObstacle(road, (short) prevInd, (short) ind);
+			if (obstacle < 0 || heightObstacle < 0) {
+				break;
+			}
+			obstaclesTime += obstacle + heightObstacle;
+			times[i] = segment.distanceFromStart + calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+			if (times[i] > maxTime) {
+				i++;
+				break;
+			}
+		}
+		if (i < 2) {
+			return null;
+		}
+		if (i < count) {
+			times = Arrays.copyOf(times, i);
+		}
+		return new ReachedSegment(road, segment.getSegmentStart(), segment.getSegmentStart() + (i - 1) * d, times);
+	}
+
+	/**
+	 * Same search as searchRouteInternal but direct and reverse searches run in 2 threads.
+	 * Reverse search uses its own routing context (segments keep search state), so loaded tiles are not shared
+	 * (except tile cache) and both contexts could use up to memory limit. Searches meet through synchronized visited segments,
+	 * meeting is found by the direction which visits the segment second. Every direction runs until its queue is empty
+	 * or until it can't find cheaper final segment than the best one, so result doesn't depend on speed of threads.
+	 */
+	private FinalRouteSegment searchRouteInternalParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end) throws InterruptedException, IOException {
+		ctx.timeToLoad = 0;
+		ctx.visitedSegments = 0;
+		ctx.memoryOverhead = 1000;
+		ctx.timeToCalculate = System.nanoTime();
+		final RoutingContext reverseCtx = new RoutingContext(ctx);
+		reverseCtx.startX = ctx.startX;
+		reverseCtx.startY = ctx.startY;
+		reverseCtx.targetX = ctx.targetX;
+		reverseCtx.targetY = ctx.targetY;
+		reverseCtx.calculationProgress = ctx.calculationProgress;
+		reverseCtx.memoryOverhead = 1000;
+
+		// one direction could run far ahead, so meeting doesn't stop other direction on the road
+		continueThroughOpposite = true;
+		final Queue<RouteSegment> graphDirectSegments = createSegmentsQueue(ctx);
+		final Queue<RouteSegment> graphReverseSegments = createSegmentsQueue(reverseCtx);
+		final TLongObjectHashMap<RouteSegment> visitedDirectSegments = new SynchronizedVisitedSegments();
+		final TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new SynchronizedVisitedSegments();
+		initQueuesWithStartEnd(ctx, reverseCtx, start, end, null, graphDirectSegments, graphReverseSegments);
+
+		// set only when other direction fails
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final AtomicReference<FinalRouteSegment> best = new AtomicReference<FinalRouteSegment>();
+		final Exception[] reverseException = new Exception[1];
+		Thread reverseThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					searchOneDirection(reverseCtx, true, graphReverseSegments, visitedOppositeSegments,
+							visitedDirectSegments, finished, best);
+				} catch (Exception e) {
+					reverseException[0] = e;
+					finished.set(true);
+				}
+			}
+		}, "Reverse route search");
+		reverseThread.start();
+		try {
+			searchOneDirection(ctx, false, graphDirectSegments, visitedDirectSegments,
+					visitedOppositeSegments, finished, best);
+		} catch (InterruptedException e) {
+			finished.set(true);
+			throw e;
+		} catch (IOException e) {
+			finished.set(true);
+			throw e;
+		} catch (RuntimeException e) {
+			finished.set(true);
+			throw e;
+		} finally {
+			reverseThread.join();
+		}
+		if (reverseException[0] instanceof InterruptedException) {
+			throw (InterruptedException) reverseException[0];
+		} else if (reverseException[0] instanceof IOException) {
+			throw (IOException) reverseException[0];
+		} else if (reverseException[0] != null) {
+			throw new IllegalStateException(reverseException[0]);
+		}
+		FinalRouteSegment finalSegment = best.get();
+		ctx.visitedSegments += reverseCtx.visitedSegments;
+		ctx.timeToLoad += reverseCtx.timeToLoad;
+		ctx.loadedTiles += reverseCtx.loadedTiles;
+		ctx.distinctLoadedTiles += reverseCtx.distinctLoadedTiles;
+		printInfo("Parallel search : direct visited segments " + (ctx.visitedSegments - reverseCtx.visitedSegments)
+				+ ", reverse visited segments " + reverseCtx.visitedSegments);
+		printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+		reportSearchFinished(ctx);
+		buildReverseSearchTree(ctx, end, visitedOppositeSegments, finalSegment);
 		return finalSegment;
 	}
 
+	/**
+	 * Search of one direction in parallel mode : final segments of this direction are offered to best,
+	 * search stops when queue is empty, other direction failed or next segment is not cheaper than best
+	 */
+	private void searchOneDirection(final RoutingContext ctx, boolean reverseWaySearch,
+			Queue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments,
+			TLongObjectHashMap<RouteSegment> oppositeSegments, AtomicBoolean finished,
+			AtomicReference<FinalRouteSegment> best) throws InterruptedException, IOException {
+		boolean doNotAddIntersections = reverseWaySearch ? ctx.getPlanRoadDirection() > 0 : ctx.getPlanRoadDirection() < 0;
+		while (!graphSegments.isEmpty() && !finished.get()) {
+			RouteSegment segment = graphSegments.poll();
+			ctx.memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD +
+					graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD + getReverseSearchTreeSize(ctx);
+			FinalRouteSegment bestSegment = best.get();
+			if (bestSegment != null && ctx.roadPriorityComparator(segment.distanceFromStart, segment.distanceToEnd,
+					bestSegment.distanceFromStart, 0) >= 0) {
+				return;
+			}
+			if (segment instanceof FinalRouteSegment) {
+				offerFinalSegment(best, (FinalRouteSegment) segment);
+				continue;
+			}
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			ctx.visitedSegments++;
+			processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment, oppositeSegments,
+					doNotAddIntersections);
+			if (ctx.config.metricsListener != null && ctx.visitedSegments % METRICS_SAMPLE_SEGMENTS == 0) {
+				ctx.config.metricsListener.queueSizes(ctx, ctx.visitedSegments, reverseWaySearch ? 0 : graphSegments.size(),
+						reverseWaySearch ? graphSegments.size() : 0);
+			}
+			if (ctx.calculationProgress != null) {
+				RouteSegment peek = graphSegments.peek();
+				if (reverseWaySearch) {
+					ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+					if (peek != null) {
+						ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+								ctx.calculationProgress.distanceFromEnd);
+						ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+					}
+				} else {
+					ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+					if (peek != null) {
+						ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+								ctx.calculationProgress.distanceFromBegin);
+						ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+					}
+				}
+				if (ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+	}
+
+	private static void offerFinalSegment(AtomicReference<FinalRouteSegment> best, FinalRouteSegment segment) {
+		while (true) {
+			FinalRouteSegment b = best.get();
+			if (b != null && b.distanceFromStart <= segment.distanceFromStart) {
+				return;
+			}
+			if (best.compareAndSet(b, segment)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Visited segments of one direction which are checked by search of other direction in other thread
+	 */
+	private static class SynchronizedVisitedSegments extends TLongObjectHashMap<RouteSegment> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized RouteSegment get(long key) {
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized RouteSegment put(long key, RouteSegment value) {
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized boolean containsKey(long key) {
+			return super.containsKey(key);
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			Queue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -241,13 +684,13 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+	private void initQueuesWithStartEnd(final RoutingContext ctx, final RoutingContext reverseCtx, RouteSegment start,
+			RouteSegment end, RouteSegment recalculationEnd, Queue<RouteSegment> graphDirectSegments,
+			Queue<RouteSegment> graphReverseSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false);
-		RouteSegment endPos = initRouteSegment(ctx, end, true);
-		RouteSegment endNeg = initRouteSegment(ctx, end, false);
+		RouteSegment endPos = initRouteSegment(reverseCtx, end, true);
+		RouteSegment endNeg = initRouteSegment(reverseCtx, end, false);
 		// for start : f(start) = g(start) + h(start) = 0 + h(start) = h(start)
 		if (ctx.config.initialDirection != null) {
 			// mark here as positive for further check
@@ -304,8 +747,12 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, Queue<RouteSegment> graphDirectSegments,
+			Queue<RouteSegment> graphReverseSegments) {
+		if (ctx.config.metricsListener != null && ctx.visitedSegments % METRICS_SAMPLE_SEGMENTS == 0) {
+			ctx.config.metricsListener.queueSizes(ctx, ctx.visitedSegments, graphDirectSegments.size(),
+					graphReverseSegments.size());
+		}
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -359,6 +806,12 @@ public class BinaryRoutePlanner {
 	}
 
 
+	private void reportSearchFinished(final RoutingContext ctx) {
+		if (ctx.config.metricsListener != null) {
+			ctx.config.metricsListener.phaseFinished(ctx, RoutingPhase.SEARCH, System.nanoTime() - ctx.timeToCalculate);
+		}
+	}
+
 	private static void println(String logMsg) {
 //		log.info(logMsg);
 		System.out.println(logMsg);
@@ -368,7 +821,7 @@ public class BinaryRoutePlanner {
 		log.warn(logMsg);
 	}
 	
-	public void printDebugMemoryInformation(RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+	public void printDebugMemoryInformation(RoutingContext ctx, Queue<RouteSegment> graphDirectSegments, Queue<RouteSegment> graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments,TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		printInfo("Time to calculate : " + (System.nanoTime() - ctx.timeToCalculate) / 1e6 + 
 				", time to load : " + ctx.timeToLoad / 1e6 + ", time to load headers : " + ctx.timeToLoadHeaders / 1e6 + 
@@ -391,7 +844,7 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+			Queue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
 		final RouteDataObject road = segment.road;
 		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, visitedSegments, segment, road);
@@ -456,7 +909,7 @@ public class BinaryRoutePlanner {
 					segmentPoint, segmentDist, obstaclesTime);
 			obstaclesTime += obstacle;
 			obstaclesTime += heightObstacle;
-			if (alreadyVisited) {
+			if (alreadyVisited && !continueThroughOpposite) {
 				directionAllowed = false;
 				continue;
 			}
@@ -549,7 +1002,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
+			Queue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
 			int segmentPoint, float segmentDist, float obstaclesTime) {
 		RouteDataObject road = segment.getRoad();
 		long opp = calculateRoutePointId(road, segment.isPositive() ? segmentPoint - 1 : segmentPoint, !segment.isPositive());
@@ -591,7 +1044,7 @@ public class BinaryRoutePlanner {
 		return obstaclesTime + distOnRoadToPass / speed;
 	}
 
-	private long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
+	static long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
 		if (intervalId < 0) {
 			// should be assert
 			throw new IllegalStateException("Assert failed");
@@ -599,7 +1052,7 @@ public class BinaryRoutePlanner {
 		return (road.getId() << ROUTE_POINTS) + (intervalId << 1) + (positive ? 1 : 0);
 	}
 
-	private long calculateRoutePointId(RouteSegment segm, boolean direction) {
+	static long calculateRoutePointId(RouteSegment segm, boolean direction) {
 		if (segm.getSegmentStart() == 0 && !direction) {
 			throw new IllegalStateException("Assert failed");
 		}
@@ -706,7 +1159,7 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, Queue<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  float distFromStart, RouteSegment segment,
 			short segmentPoint, RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, 
 			boolean[] processFurther) {
@@ -777,7 +1230,7 @@ public class BinaryRoutePlanner {
 
 
 	@SuppressWarnings("unused")
-	private void processOneRoadIntersection(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private void processOneRoadIntersection(RoutingContext ctx, Queue<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
 			int segmentPoint, RouteSegment next) {
 		if (next != null) {
@@ -872,6 +1325,8 @@ public class BinaryRoutePlanner {
 		// distance measured in time (seconds)
 		float distanceFromStart = 0;
 		float distanceToEnd = 0;
+		// position in RouteSegmentHeap
+		int heapIndex = -1;
 
 		public RouteSegment(RouteDataObject road, int segmentStart) {
 			this.road = road;
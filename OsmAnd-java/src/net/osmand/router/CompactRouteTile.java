@@ -0,0 +1,294 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Route data objects of one subregion packed into few primitive arrays (struct of arrays)
+ * with sorted index of points instead of map of route segments.
+ * Objects are created on first access, so ways which search doesn't reach take only packed data.
+ * Objects of one tile are supposed to be from the same route region.
+ */
+class CompactRouteTile {
+
+	private final RouteRegion region;
+	private final int size;
+	private final long[] ids;
+	// offsets of data of each object in packed arrays (length is size + 1)
+	private final int[] pointOffsets;
+	private final int[] pointsX;
+	private final int[] pointsY;
+	private final int[] typeOffsets;
+	private final int[] types;
+	private final int[] restrictionOffsets;
+	private final long[] restrictions;
+	private final int[] nameOffsets;
+	private final int[] nameIds;
+	private final String[] names;
+	// offsets of types of each point (null if there are no point types in tile)
+	private final int[] pointTypeOffsets;
+	private final int[] pointTypes;
+	// rare data is not packed
+	private final TIntObjectHashMap<String[][]> pointNames = new TIntObjectHashMap<String[][]>();
+	private final TIntObjectHashMap<int[][]> pointNameTypes = new TIntObjectHashMap<int[][]>();
+
+	// sorted keys of points (x31 << 31 + y31) and indexes of points in packed arrays
+	private final long[] pointKeys;
+	private final int[] pointRefs;
+
+	private RouteDataObject[] objects;
+	private int objectsSize;
+
+	CompactRouteTile(RouteRegion region, List<RouteDataObject> list) {
+		this.region = region;
+		this.size = list.size();
+		int points = 0, tps = 0, rs = 0, nms = 0, pointTps = 0;
+		boolean hasPointTypes = false;
+		for (RouteDataObject o : list) {
+			points += o.getPointsLength();
+			tps += o.types == null ? 0 : o.types.length;
+			rs += o.restrictions == null ? 0 : o.restrictions.length;
+			nms += o.names == null ? 0 : o.names.size();
+			if (o.pointTypes != null) {
+				hasPointTypes = true;
+				for (int[] pt : o.pointTypes) {
+					pointTps += pt == null ? 0 : pt.length;
+				}
+			}
+		}
+		ids = new long[size];
+		pointOffsets = new int[size + 1];
+		pointsX = new int[points];
+		pointsY = new int[points];
+		typeOffsets = new int[size + 1];
+		types = new int[tps];
+		restrictionOffsets = new int[size + 1];
+		restrictions = new long[rs];
+		nameOffsets = new int[size + 1];
+		nameIds = new int[nms];
+		names = new String[nms];
+		pointTypeOffsets = hasPointTypes ? new int[points + 1] : null;
+		pointTypes = hasPointTypes ? new int[pointTps] : null;
+		pointKeys = new long[points];
+		pointRefs = new int[points];
+		points = tps = rs = nms = pointTps = 0;
+		for (int k = 0; k < size; k++) {
+			RouteDataObject o = list.get(k);
+			ids[k] = o.id;
+			for (int i = 0; i < o.getPointsLength(); i++) {
+				pointsX[points] = o.pointsX[i];
+				pointsY[points] = o.pointsY[i];
+				pointKeys[points] = (((long) o.pointsX[i]) << 31) + (long) o.pointsY[i];
+				pointRefs[points] = points;
+				if (pointTypeOffsets != null) {
+					pointTypeOffsets[points] = pointTps;
+					int[] pt = o.getPointTypes(i);
+					if (pt != null) {
+						System.arraycopy(pt, 0, pointTypes, pointTps, pt.length);
+						pointTps += pt.length;
+					}
+				}
+				points++;
+			}
+			if (o.types != null) {
+				System.arraycopy(o.types, 0, types, tps, o.types.length);
+				tps += o.types.length;
+			}
+			if (o.restrictions != null) {
+				System.arraycopy(o.restrictions, 0, restrictions, rs, o.restrictions.length);
+				rs += o.restrictions.length;
+			}
+			if (o.names != null) {
+				int[] keys = o.nameIds != null && o.nameIds.length == o.names.size() ? o.nameIds : o.names.keys();
+				for (int key : keys) {
+					nameIds[nms] = key;
+					names[nms] = o.names.get(key);
+					nms++;
+				}
+			}
+			if (o.pointNames != null) {
+				pointNames.put(k, o.pointNames);
+				pointNameTypes.put(k, o.pointNameTypes);
+			}
+			pointOffsets[k + 1] = points;
+			typeOffsets[k + 1] = tps;
+			restrictionOffsets[k + 1] = rs;
+			nameOffsets[k + 1] = nms;
+		}
+		if (pointTypeOffsets != null) {
+			pointTypeOffsets[points] = pointTps;
+		}
+		sort(pointKeys, pointRefs, 0, points - 1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getPointsCount() {
+		return pointsX.length;
+	}
+
+	/**
+	 * @return estimated size of packed data and created objects
+	 */
+	public int getEstimatedSize() {
+		int sz = 8 * ids.length + 4 * (pointOffsets.length + typeOffsets.length + restrictionOffsets.length + nameOffsets.length);
+		sz += 4 * (pointsX.length + pointsY.length + types.length + nameIds.length) + 8 * restrictions.length;
+		sz += 12 * pointKeys.length;
+		for (String s : names) {
+			sz += 4 + (s == null ? 0 : 12 + 2 * s.length());
+		}
+		if (pointTypeOffsets != null) {
+			sz += 4 * (pointTypeOffsets.length + pointTypes.length);
+		}
+		sz += 64 * pointNames.size();
+		return sz + objectsSize;
+	}
+
+	public RouteDataObject getObject(int k) {
+		if (objects == null) {
+			objects = new RouteDataObject[size];
+		}
+		RouteDataObject o = objects[k];
+		if (o == null) {
+			o = createObject(k);
+			objects[k] = o;
+			objectsSize += RoutingContext.getEstimatedSize(o);
+		}
+		return o;
+	}
+
+	public void getAllObjects(List<RouteDataObject> toFillIn) {
+		for (int k = 0; k < size; k++) {
+			toFillIn.add(getObject(k));
+		}
+	}
+
+	/**
+	 * Same as search in map of route segments : segments of all objects going through the point are added
+	 * to the beginning of list (the longest object is used for duplicates).
+	 */
+	public RouteSegment loadRouteSegment(int x31, int y31, TLongObjectHashMap<RouteDataObject> excludeDuplications,
+			RouteSegment original) {
+		long l = (((long) x31) << 31) + (long) y31;
+		int ind = Arrays.binarySearch(pointKeys, l);
+		if (ind < 0) {
+			return original;
+		}
+		while (ind > 0 && pointKeys[ind - 1] == l) {
+			ind--;
+		}
+		for (; ind < pointKeys.length && pointKeys[ind] == l; ind++) {
+			int ref = pointRefs[ind];
+			int k = findObject(ref);
+			int segmentStart = ref - pointOffsets[k];
+			long routeId = (ids[k] << 10) + segmentStart;
+			RouteDataObject toCmp = excludeDuplications.get(routeId);
+			if (toCmp == null || toCmp.getPointsLength() < pointOffsets[k + 1] - pointOffsets[k]) {
+				RouteDataObject ro = getObject(k);
+				excludeDuplications.put(routeId, ro);
+				RouteSegment s = new RouteSegment(ro, segmentStart);
+				s.next = original;
+				original = s;
+			}
+		}
+		return original;
+	}
+
+	private int findObject(int ref) {
+		int ind = Arrays.binarySearch(pointOffsets, ref);
+		if (ind < 0) {
+			return -(ind + 1) - 1;
+		}
+		// objects without points have same offsets
+		while (pointOffsets[ind + 1] == ref) {
+			ind++;
+		}
+		return ind;
+	}
+
+	private RouteDataObject createObject(int k) {
+		RouteDataObject o;
+		int nameStart = nameOffsets[k];
+		int nameEnd = nameOffsets[k + 1];
+		if (nameEnd > nameStart) {
+			o = new RouteDataObject(region, Arrays.copyOfRange(nameIds, nameStart, nameEnd),
+					Arrays.copyOfRange(names, nameStart, nameEnd));
+		} else {
+			o = new RouteDataObject(region);
+		}
+		o.id = ids[k];
+		int start = pointOffsets[k];
+		int end = pointOffsets[k + 1];
+		o.pointsX = Arrays.copyOfRange(pointsX, start, end);
+		o.pointsY = Arrays.copyOfRange(pointsY, start, end);
+		o.types = Arrays.copyOfRange(types, typeOffsets[k], typeOffsets[k + 1]);
+		if (restrictionOffsets[k + 1] > restrictionOffsets[k]) {
+			o.restrictions = Arrays.copyOfRange(restrictions, restrictionOffsets[k], restrictionOffsets[k + 1]);
+		}
+		if (pointTypeOffsets != null) {
+			int last = -1;
+			for (int i = start; i < end; i++) {
+				if (pointTypeOffsets[i + 1] > pointTypeOffsets[i]) {
+					last = i;
+				}
+			}
+			if (last >= 0) {
+				o.pointTypes = new int[last - start + 1][];
+				for (int i = start; i <= last; i++) {
+					if (pointTypeOffsets[i + 1] > pointTypeOffsets[i]) {
+						o.pointTypes[i - start] = Arrays.copyOfRange(pointTypes, pointTypeOffsets[i], pointTypeOffsets[i + 1]);
+					}
+				}
+			}
+		}
+		o.pointNames = pointNames.get(k);
+		o.pointNameTypes = pointNameTypes.get(k);
+		return o;
+	}
+
+	private static void sort(long[] keys, int[] refs, int left, int right) {
+		// refs are unique, so (key, ref) order is total and keeps order of objects for same point
+		while (left < right) {
+			int mid = (left + right) >>> 1;
+			long pivotKey = keys[mid];
+			int pivotRef = refs[mid];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (keys[i] < pivotKey || (keys[i] == pivotKey && refs[i] < pivotRef)) {
+					i++;
+				}
+				while (keys[j] > pivotKey || (keys[j] == pivotKey && refs[j] > pivotRef)) {
+					j--;
+				}
+				if (i <= j) {
+					long tk = keys[i];
+					keys[i] = keys[j];
+					keys[j] = tk;
+					int tr = refs[i];
+					refs[i] = refs[j];
+					refs[j] = tr;
+					i++;
+					j--;
+				}
+			}
+			// recursion for smaller part only
+			if (j - left < right - i) {
+				sort(keys, refs, left, j);
+				left = i;
+			} else {
+				sort(keys, refs, i, right);
+				right = j;
+			}
+		}
+	}
+}
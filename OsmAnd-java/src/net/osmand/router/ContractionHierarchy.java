@@ -0,0 +1,559 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Contraction hierarchy of road graph precalculated for one routing profile (see {@link ContractionHierarchyBuilder}).
+ * Nodes are road points shared by several roads (and road ends), edges are pieces of roads between nodes
+ * and shortcuts which replace 2 edges through contracted node. Route is found by bidirectional Dijkstra
+ * which goes only to nodes with higher rank, so only small part of graph is visited.
+ * Turn costs are not part of the graph and via restrictions are only checked on the result.
+ */
+public class ContractionHierarchy {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+	private static final int MAGIC = 0x4f534348; // OSCH
+	private static final int VERSION = 1;
+
+	private final String profile;
+	private final List<String> sourceFiles;
+	// nodes sorted by (x31 << 31 | y31)
+	final long[] nodeKeys;
+	final int[] nodeRank;
+	// edges (original road pieces has child1 = -1, shortcuts consist of child1 and child2 edges)
+	final int[] edgeFrom;
+	final int[] edgeTo;
+	final float[] edgeCost;
+	final int[] edgeChild1;
+	final int[] edgeChild2;
+	final long[] edgeRoadId;
+	final int[] edgeStartPoint;
+	final int[] edgeEndPoint;
+	// edges to nodes with higher rank (forward search) and from nodes with higher rank (backward search)
+	private int[] upOutStart;
+	private int[] upOutEdges;
+	private int[] upInStart;
+	private int[] upInEdges;
+
+	ContractionHierarchy(String profile, List<String> sourceFiles, long[] nodeKeys, int[] nodeRank,
+			int[] edgeFrom, int[] edgeTo, float[] edgeCost, int[] edgeChild1, int[] edgeChild2,
+			long[] edgeRoadId, int[] edgeStartPoint, int[] edgeEndPoint) {
+		this.profile = profile;
+		this.sourceFiles = sourceFiles;
+		this.nodeKeys = nodeKeys;
+		this.nodeRank = nodeRank;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeCost = edgeCost;
+		this.edgeChild1 = edgeChild1;
+		this.edgeChild2 = edgeChild2;
+		this.edgeRoadId = edgeRoadId;
+		this.edgeStartPoint = edgeStartPoint;
+		this.edgeEndPoint = edgeEndPoint;
+		buildUpwardGraph();
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public List<String> getSourceFiles() {
+		return Collections.unmodifiableList(sourceFiles);
+	}
+
+	public int getNodesCount() {
+		return nodeKeys.length;
+	}
+
+	public int getEdgesCount() {
+		return edgeFrom.length;
+	}
+
+	private void buildUpwardGraph() {
+		upOutStart = new int[nodeKeys.length + 1];
+		upInStart = new int[nodeKeys.length + 1];
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upOutStart[edgeFrom[e] + 1]++;
+			} else {
+				upInStart[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodeKeys.length; i++) {
+			upOutStart[i + 1] += upOutStart[i];
+			upInStart[i + 1] += upInStart[i];
+		}
+		upOutEdges = new int[upOutStart[nodeKeys.length]];
+		upInEdges = new int[upInStart[nodeKeys.length]];
+		int[] outPos = Arrays.copyOf(upOutStart, nodeKeys.length);
+		int[] inPos = Arrays.copyOf(upInStart, nodeKeys.length);
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				upOutEdges[outPos[edgeFrom[e]]++] = e;
+			} else {
+				upInEdges[inPos[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	static long nodeKey(int x31, int y31) {
+		return (((long) x31) << 31) | y31;
+	}
+
+	/**
+	 * @return node index or -1 if point is not a node of graph
+	 */
+	public int findNode(int x31, int y31) {
+		int ind = Arrays.binarySearch(nodeKeys, nodeKey(x31, y31));
+		return ind < 0 ? -1 : ind;
+	}
+
+	/**
+	 * Time to pass road from point to point (in the order of points), the same as {@link BinaryRoutePlanner} calculates
+	 * without turn times.
+	 * @return time in seconds or -1 if the way is blocked by obstacle
+	 */
+	static float calculateTime(VehicleRouter router, RouteDataObject road, int from, int to, double startDistance) {
+		int d = from < to ? 1 : -1;
+		double distance = startDistance;
+		float obstaclesTime = 0;
+		for (int i = from; i != to; i += d) {
+			int next = i + d;
+			distance += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+					road.getPoint31XTile(next), road.getPoint31YTile(next));
+			float obstacle = router.defineRoutingObstacle(road, next);
+			if (obstacle < 0) {
+				return -1;
+			}
+			double heightObstacle = router.defineHeightObstacle(road, (short) i, (short) next);
+			if (heightObstacle < 0) {
+				return -1;
+			}
+			obstaclesTime += obstacle + heightObstacle;
+		}
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getMinDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxDefaultSpeed()) {
+			speed = router.getMaxDefaultSpeed();
+		}
+		return obstaclesTime + (float) (distance / speed);
+	}
+
+	/**
+	 * Finds shortest path between any of start nodes and any of end nodes (with initial costs).
+	 * @return original edges of path or null if nodes are not connected
+	 */
+	public TIntArrayList searchPath(int[] startNodes, float[] startCosts, int[] endNodes, float[] endCosts) {
+		TIntObjectHashMap<Label> forward = new TIntObjectHashMap<Label>();
+		TIntObjectHashMap<Label> backward = new TIntObjectHashMap<Label>();
+		PriorityQueue<Label> forwardQueue = new PriorityQueue<Label>();
+		PriorityQueue<Label> backwardQueue = new PriorityQueue<Label>();
+		for (int i = 0; i < startNodes.length; i++) {
+			relax(forward, forwardQueue, startNodes[i], startCosts[i], -1);
+		}
+		for (int i = 0; i < endNodes.length; i++) {
+			relax(backward, backwardQueue, endNodes[i], endCosts[i], -1);
+		}
+		float best = Float.POSITIVE_INFINITY;
+		int meetNode = -1;
+		while (true) {
+			Label f = peek(forward, forwardQueue);
+			Label b = peek(backward, backwardQueue);
+			boolean searchForward = f != null && f.cost < best;
+			boolean searchBackward = b != null && b.cost < best;
+			if (!searchForward && !searchBackward) {
+				break;
+			}
+			boolean direct = searchForward && (!searchBackward || f.cost <= b.cost);
+			Label l = direct ? forwardQueue.poll() : backwardQueue.poll();
+			TIntObjectHashMap<Label> labels = direct ? forward : backward;
+			TIntObjectHashMap<Label> opposite = direct ? backward : forward;
+			Label o = opposite.get(l.node);
+			if (o != null && l.cost + o.cost < best) {
+				best = l.cost + o.cost;
+				meetNode = l.node;
+			}
+			int[] start = direct ? upOutStart : upInStart;
+			int[] edges = direct ? upOutEdges : upInEdges;
+			for (int k = start[l.node]; k < start[l.node + 1]; k++) {
+				int e = edges[k];
+				int next = direct ? edgeTo[e] : edgeFrom[e];
+				float cost = l.cost + edgeCost[e];
+				if (relax(labels, direct ? forwardQueue : backwardQueue, next, cost, e)) {
+					o = opposite.get(next);
+					if (o != null && cost + o.cost < best) {
+						best = cost + o.cost;
+						meetNode = next;
+					}
+				}
+			}
+		}
+		if (meetNode == -1) {
+			return null;
+		}
+		TIntArrayList path = new TIntArrayList();
+		TIntArrayList upEdges = new TIntArrayList();
+		for (Label l = forward.get(meetNode); l.edge != -1; l = forward.get(edgeFrom[l.edge])) {
+			upEdges.add(l.edge);
+		}
+		for (int i = upEdges.size() - 1; i >= 0; i--) {
+			unpack(upEdges.get(i), path);
+		}
+		for (Label l = backward.get(meetNode); l.edge != -1; l = backward.get(edgeTo[l.edge])) {
+			unpack(l.edge, path);
+		}
+		return path;
+	}
+
+	private static boolean relax(TIntObjectHashMap<Label> labels, PriorityQueue<Label> queue, int node, float cost, int edge) {
+		Label ex = labels.get(node);
+		if (ex != null && ex.cost <= cost) {
+			return false;
+		}
+		Label l = new Label(node, cost, edge);
+		labels.put(node, l);
+		queue.add(l);
+		return true;
+	}
+
+	private static Label peek(TIntObjectHashMap<Label> labels, PriorityQueue<Label> queue) {
+		// skip labels which were improved after adding to queue
+		while (!queue.isEmpty() && labels.get(queue.peek().node) != queue.peek()) {
+			queue.poll();
+		}
+		return queue.peek();
+	}
+
+	private void unpack(int edge, TIntArrayList path) {
+		if (edgeChild1[edge] == -1) {
+			path.add(edge);
+		} else {
+			unpack(edgeChild1[edge], path);
+			unpack(edgeChild2[edge], path);
+		}
+	}
+
+	/**
+	 * Calculates route between route segment points using hierarchy. Road objects of route are loaded by context.
+	 * @return null if route couldn't be calculated by hierarchy and regular search should be used
+	 */
+	List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end) {
+		if (start.getRoad().getId() == end.getRoad().getId()) {
+			// could be shorter to go along the road
+			return null;
+		}
+		VehicleRouter router = ctx.getRouter();
+		List<Access> starts = findAccess(router, start, true);
+		List<Access> ends = findAccess(router, end, false);
+		if (starts.isEmpty() || ends.isEmpty()) {
+			return null;
+		}
+		int[] startNodes = new int[starts.size()];
+		float[] startCosts = new float[starts.size()];
+		for (int i = 0; i < starts.size(); i++) {
+			startNodes[i] = starts.get(i).node;
+			startCosts[i] = starts.get(i).cost;
+		}
+		int[] endNodes = new int[ends.size()];
+		float[] endCosts = new float[ends.size()];
+		for (int i = 0; i < ends.size(); i++) {
+			endNodes[i] = ends.get(i).node;
+			endCosts[i] = ends.get(i).cost;
+		}
+		TIntArrayList path = searchPath(startNodes, startCosts, endNodes, endCosts);
+		if (path == null) {
+			return null;
+		}
+		Access first = null;
+		Access last = null;
+		if (path.isEmpty()) {
+			// start and end are connected through one node
+			for (Access a : starts) {
+				for (Access b : ends) {
+					if (a.node == b.node && (first == null || a.cost + b.cost < first.cost + last.cost)) {
+						first = a;
+						last = b;
+					}
+				}
+			}
+		} else {
+			first = findAccess(starts, edgeFrom[path.get(0)]);
+			last = findAccess(ends, edgeTo[path.get(path.size() - 1)]);
+		}
+		if (first == null || last == null) {
+			return null;
+		}
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		addSegment(result, start.getRoad(), first.roadPoint, first.nodePoint);
+		for (int i = 0; i < path.size(); i++) {
+			int e = path.get(i);
+			RouteDataObject road = findRoad(ctx, e);
+			if (road == null) {
+				// road is not allowed or data is different from hierarchy
+				return null;
+			}
+			addSegment(result, road, edgeStartPoint[e], edgeEndPoint[e]);
+		}
+		addSegment(result, end.getRoad(), last.nodePoint, last.roadPoint);
+		for (int i = 1; i < result.size(); i++) {
+			if (result.get(i - 1).getObject().getId() != result.get(i).getObject().getId()
+					&& !checkViaRestrictions(result.get(i - 1).getObject(), result.get(i).getObject())) {
+				log.info("Route by contraction hierarchy violates restriction, use regular search");
+				return null;
+			}
+		}
+		ctx.routingTime = first.cost + last.cost;
+		for (int i = 0; i < path.size(); i++) {
+			ctx.routingTime += edgeCost[path.get(i)];
+		}
+		return result;
+	}
+
+	private static Access findAccess(List<Access> list, int node) {
+		Access res = null;
+		for (Access a : list) {
+			if (a.node == node && (res == null || a.cost < res.cost)) {
+				res = a;
+			}
+		}
+		return res;
+	}
+
+	static void addSegment(List<RouteSegmentResult> result, RouteDataObject road, int startPoint, int endPoint) {
+		if (startPoint == endPoint) {
+			return;
+		}
+		RouteSegmentResult prev = result.isEmpty() ? null : result.get(result.size() - 1);
+		if (prev != null && prev.getObject().getId() == road.getId() && prev.getEndPointIndex() == startPoint
+				&& (prev.getStartPointIndex() < startPoint) == (startPoint < endPoint)) {
+			prev.setEndPointIndex(endPoint);
+		} else {
+			result.add(new RouteSegmentResult(road, startPoint, endPoint));
+		}
+	}
+
+	/**
+	 * Copy of edge road (road could be cut by map borders) which has edge nodes at edge points
+	 */
+	private RouteDataObject findRoad(RoutingContext ctx, int e) {
+		long from = nodeKeys[edgeFrom[e]];
+		long to = nodeKeys[edgeTo[e]];
+		int startPoint = edgeStartPoint[e];
+		int endPoint = edgeEndPoint[e];
+		RouteSegment s = ctx.loadRouteSegment((int) (from >> 31), (int) (from & Integer.MAX_VALUE),
+				ctx.config.memoryLimitation - ctx.memoryOverhead);
+		for (; s != null; s = s.getNext()) {
+			RouteDataObject road = s.getRoad();
+			if (road.getId() == edgeRoadId[e] && Math.max(startPoint, endPoint) < road.getPointsLength()
+					&& nodeKey(road.getPoint31XTile(startPoint), road.getPoint31YTile(startPoint)) == from
+					&& nodeKey(road.getPoint31XTile(endPoint), road.getPoint31YTile(endPoint)) == to) {
+				return road;
+			}
+		}
+		return null;
+	}
+
+	private static boolean checkViaRestrictions(RouteDataObject from, RouteDataObject to) {
+		// same check as BinaryRoutePlanner does for meeting segments
+		for (int i = 0; i < from.getRestrictionLength(); i++) {
+			if (from.getRestrictionId(i) == to.getId()) {
+				int tp = from.getRestrictionType(i);
+				return tp != MapRenderingTypes.RESTRICTION_NO_LEFT_TURN && tp != MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN
+						&& tp != MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON && tp != MapRenderingTypes.RESTRICTION_NO_U_TURN;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Nearest nodes which could be reached from point along its road (or from which point could be reached)
+	 */
+	private List<Access> findAccess(VehicleRouter router, RouteSegmentPoint point, boolean fromPoint) {
+		List<Access> res = new ArrayList<Access>();
+		RouteDataObject road = point.getRoad();
+		int oneway = router.isOneWay(road);
+		int px = point.preciseX;
+		int py = point.preciseY;
+		for (int dir = 1; dir >= -1; dir -= 2) {
+			// moving by positive direction is allowed only for oneway >= 0
+			boolean positiveMove = fromPoint ? dir > 0 : dir < 0;
+			if ((positiveMove && oneway < 0) || (!positiveMove && oneway > 0)) {
+				continue;
+			}
+			int roadPoint = dir > 0 ? point.getSegmentStart() : point.getSegmentStart() - 1;
+			if (roadPoint < 0) {
+				continue;
+			}
+			int nodePoint = roadPoint;
+			int node = -1;
+			while (nodePoint >= 0 && nodePoint < road.getPointsLength()) {
+				node = findNode(road.getPoint31XTile(nodePoint), road.getPoint31YTile(nodePoint));
+				if (node != -1) {
+					break;
+				}
+				nodePoint += dir;
+			}
+			if (node == -1) {
+				continue;
+			}
+			double dist = BinaryRoutePlanner.squareRootDist(px, py, road.getPoint31XTile(roadPoint),
+					road.getPoint31YTile(roadPoint));
+			float cost = fromPoint ? calculateTime(router, road, roadPoint, nodePoint, dist)
+					: calculateTime(router, road, nodePoint, roadPoint, dist);
+			if (cost >= 0) {
+				res.add(new Access(node, cost, roadPoint, nodePoint));
+			}
+		}
+		return res;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(profile);
+			out.writeInt(sourceFiles.size());
+			for (String s : sourceFiles) {
+				out.writeUTF(s);
+			}
+			out.writeInt(nodeKeys.length);
+			for (int i = 0; i < nodeKeys.length; i++) {
+				out.writeLong(nodeKeys[i]);
+				out.writeInt(nodeRank[i]);
+			}
+			out.writeInt(edgeFrom.length);
+			for (int i = 0; i < edgeFrom.length; i++) {
+				out.writeInt(edgeFrom[i]);
+				out.writeInt(edgeTo[i]);
+				out.writeFloat(edgeCost[i]);
+				out.writeInt(edgeChild1[i]);
+				if (edgeChild1[i] == -1) {
+					out.writeLong(edgeRoadId[i]);
+					out.writeInt(edgeStartPoint[i]);
+					out.writeInt(edgeEndPoint[i]);
+				} else {
+					out.writeInt(edgeChild2[i]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("File " + file.getName() + " is not a contraction hierarchy");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version of contraction hierarchy " + version);
+			}
+			String profile = in.readUTF();
+			int sz = in.readInt();
+			List<String> sourceFiles = new ArrayList<String>(sz);
+			for (int i = 0; i < sz; i++) {
+				sourceFiles.add(in.readUTF());
+			}
+			int nodes = in.readInt();
+			long[] nodeKeys = new long[nodes];
+			int[] nodeRank = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				nodeKeys[i] = in.readLong();
+				nodeRank[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			int[] edgeFrom = new int[edges];
+			int[] edgeTo = new int[edges];
+			float[] edgeCost = new float[edges];
+			int[] edgeChild1 = new int[edges];
+			int[] edgeChild2 = new int[edges];
+			long[] edgeRoadId = new long[edges];
+			int[] edgeStartPoint = new int[edges];
+			int[] edgeEndPoint = new int[edges];
+			for (int i = 0; i < edges; i++) {
+				edgeFrom[i] = in.readInt();
+				edgeTo[i] = in.readInt();
+				edgeCost[i] = in.readFloat();
+				edgeChild1[i] = in.readInt();
+				if (edgeChild1[i] == -1) {
+					edgeChild2[i] = -1;
+					edgeRoadId[i] = in.readLong();
+					edgeStartPoint[i] = in.readInt();
+					edgeEndPoint[i] = in.readInt();
+				} else {
+					edgeChild2[i] = in.readInt();
+				}
+			}
+			return new ContractionHierarchy(profile, sourceFiles, nodeKeys, nodeRank, edgeFrom, edgeTo, edgeCost,
+					edgeChild1, edgeChild2, edgeRoadId, edgeStartPoint, edgeEndPoint);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Contraction hierarchy " + profile + ": " + nodeKeys.length + " nodes, " + edgeFrom.length + " edges";
+	}
+
+	private static class Access {
+		final int node;
+		final float cost;
+		final int roadPoint;
+		final int nodePoint;
+
+		Access(int node, float cost, int roadPoint, int nodePoint) {
+			this.node = node;
+			this.cost = cost;
+			this.roadPoint = roadPoint;
+			this.nodePoint = nodePoint;
+		}
+	}
+
+	private static class Label implements Comparable<Label> {
+		final int node;
+		final float cost;
+		// edge used to reach node (-1 for initial nodes)
+		final int edge;
+
+		Label(int node, float cost, int edge) {
+			this.node = node;
+			this.cost = cost;
+			this.edge = edge;
+		}
+
+		@Override
+		public int compareTo(Label o) {
+			return Float.compare(cost, o.cost);
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import org.apache.commons.logging.Log;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Offline preprocessing of routing data into {@link ContractionHierarchy} for one routing profile.
+ * All roads accepted by router are loaded in memory, so it is supposed to be run on server.
+ * Nodes are contracted in order of edge difference with lazy updates,
+ * witness searches are limited by number of settled nodes.
+ */
+public class ContractionHierarchyBuilder {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+	private static final int WITNESS_SEARCH_SETTLED_LIMIT = 500;
+
+	private final VehicleRouter router;
+	private final String profile;
+	private final List<String> sourceFiles = new ArrayList<String>();
+	private final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+	// longest copy of road by id (roads keep order of first copies)
+	private final TLongObjectHashMap<RouteDataObject> roadCopies = new TLongObjectHashMap<RouteDataObject>();
+
+	// graph under construction
+	private List<BuildEdge> edges;
+	private List<List<BuildEdge>> outEdges;
+	private List<List<BuildEdge>> inEdges;
+	private boolean[] contracted;
+	private int[] contractedNeighbours;
+	// witness search state (reused)
+	private float[] witnessCost;
+	private TIntArrayList witnessTouched;
+
+	public ContractionHierarchyBuilder(VehicleRouter router, String profile) {
+		this.router = router;
+		this.profile = profile;
+	}
+
+	public void addRoads(final BinaryMapIndexReader reader) throws IOException {
+		sourceFiles.add(reader.getFile().getName());
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE, 0,
+					Integer.MAX_VALUE, null);
+			List<RouteSubregion> subregions = reader.searchRouteIndexTree(req, reg.getSubregions());
+			reader.loadRouteIndexData(subregions, new ResultMatcher<RouteDataObject>() {
+				@Override
+				public boolean publish(RouteDataObject object) {
+					addRoad(object);
+					return false;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Road could be cut by map borders or stored in several files, the longest copy is kept
+	 * @return false if road is not accepted or it is not longer than already added copy
+	 */
+	public boolean addRoad(RouteDataObject road) {
+		if (road.getPointsLength() < 2 || !router.acceptLine(road)) {
+			return false;
+		}
+		RouteDataObject copy = roadCopies.get(road.getId());
+		if (copy != null && copy.getPointsLength() >= road.getPointsLength()) {
+			return false;
+		}
+		if (copy == null) {
+			roads.add(road);
+		}
+		roadCopies.put(road.getId(), road);
+		return true;
+	}
+
+	public ContractionHierarchy build() {
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < roads.size(); i++) {
+			roads.set(i, roadCopies.get(roads.get(i).getId()));
+		}
+		long[] nodeKeys = findNodes();
+		int n = nodeKeys.length;
+		outEdges = new ArrayList<List<BuildEdge>>(n);
+		inEdges = new ArrayList<List<BuildEdge>>(n);
+		for (int i = 0; i < n; i++) {
+			outEdges.add(new ArrayList<BuildEdge>(4));
+			inEdges.add(new ArrayList<BuildEdge>(4));
+		}
+		edges = new ArrayList<BuildEdge>();
+		for (RouteDataObject road : roads) {
+			addRoadEdges(road, nodeKeys);
+		}
+		int originalEdges = edges.size();
+		roads.clear();
+		roadCopies.clear();
+		log.info("Contraction hierarchy graph: " + n + " nodes, " + originalEdges + " edges");
+
+		contracted = new boolean[n];
+		contractedNeighbours = new int[n];
+		witnessCost = new float[n];
+		Arrays.fill(witnessCost, Float.POSITIVE_INFINITY);
+		witnessTouched = new TIntArrayList();
+		int[] rank = new int[n];
+		PriorityQueue<NodePriority> queue = new PriorityQueue<NodePriority>(Math.max(1, n));
+		for (int i = 0; i < n; i++) {
+			queue.add(new NodePriority(i, calculatePriority(i)));
+		}
+		int order = 0;
+		while (!queue.isEmpty()) {
+			NodePriority np = queue.poll();
+			// lazy update : priority could be changed by contraction of neighbours
+			int priority = calculatePriority(np.node);
+			if (!queue.isEmpty() && priority > queue.peek().priority) {
+				np.priority = priority;
+				queue.add(np);
+				continue;
+			}
+			contractNode(np.node, false);
+			rank[np.node] = order++;
+		}
+		int sz = edges.size();
+		int[] edgeFrom = new int[sz];
+		int[] edgeTo = new int[sz];
+		float[] edgeCost = new float[sz];
+		int[] edgeChild1 = new int[sz];
+		int[] edgeChild2 = new int[sz];
+		long[] edgeRoadId = new long[sz];
+		int[] edgeStartPoint = new int[sz];
+		int[] edgeEndPoint = new int[sz];
+		for (int i = 0; i < sz; i++) {
+			BuildEdge e = edges.get(i);
+			edgeFrom[i] = e.from;
+			edgeTo[i] = e.to;
+			edgeCost[i] = e.cost;
+			edgeChild1[i] = e.child1;
+			edgeChild2[i] = e.child2;
+			edgeRoadId[i] = e.roadId;
+			edgeStartPoint[i] = e.startPoint;
+			edgeEndPoint[i] = e.endPoint;
+		}
+		edges = null;
+		outEdges = null;
+		inEdges = null;
+		log.info("Contraction hierarchy built: " + (sz - originalEdges) + " shortcuts, "
+				+ (System.currentTimeMillis() - time) / 1000f + " seconds");
+		return new ContractionHierarchy(profile, new ArrayList<String>(sourceFiles), nodeKeys, rank, edgeFrom, edgeTo,
+				edgeCost, edgeChild1, edgeChild2, edgeRoadId, edgeStartPoint, edgeEndPoint);
+	}
+
+	private long[] findNodes() {
+		TLongHashSet visited = new TLongHashSet();
+		TLongHashSet nodes = new TLongHashSet();
+		for (RouteDataObject road : roads) {
+			int last = road.getPointsLength() - 1;
+			for (int i = 0; i <= last; i++) {
+				long key = ContractionHierarchy.nodeKey(road.getPoint31XTile(i), road.getPoint31YTile(i));
+				if (!visited.add(key) || i == 0 || i == last) {
+					nodes.add(key);
+				}
+			}
+		}
+		long[] keys = nodes.toArray();
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private void addRoadEdges(RouteDataObject road, long[] nodeKeys) {
+		int oneway = router.isOneWay(road);
+		int prevPoint = 0;
+		int prevNode = Arrays.binarySearch(nodeKeys, ContractionHierarchy.nodeKey(road.getPoint31XTile(0),
+				road.getPoint31YTile(0)));
+		for (int i = 1; i < road.getPointsLength(); i++) {
+			int node = Arrays.binarySearch(nodeKeys, ContractionHierarchy.nodeKey(road.getPoint31XTile(i),
+					road.getPoint31YTile(i)));
+			if (node < 0) {
+				continue;
+			}
+			if (node != prevNode) {
+				if (oneway >= 0) {
+					float cost = ContractionHierarchy.calculateTime(router, road, prevPoint, i, 0);
+					if (cost >= 0) {
+						addEdge(new BuildEdge(prevNode, node, cost, road.getId(), prevPoint, i));
+					}
+				}
+				if (oneway <= 0) {
+					float cost = ContractionHierarchy.calculateTime(router, road, i, prevPoint, 0);
+					if (cost >= 0) {
+						addEdge(new BuildEdge(node, prevNode, cost, road.getId(), i, prevPoint));
+					}
+				}
+			}
+			prevPoint = i;
+			prevNode = node;
+		}
+	}
+
+	private void addEdge(BuildEdge e) {
+		e.id = edges.size();
+		edges.add(e);
+		outEdges.get(e.from).add(e);
+		inEdges.get(e.to).add(e);
+	}
+
+	private int calculatePriority(int node) {
+		int degree = 0;
+		for (BuildEdge e : inEdges.get(node)) {
+			if (!contracted[e.from]) {
+				degree++;
+			}
+		}
+		for (BuildEdge e : outEdges.get(node)) {
+			if (!contracted[e.to]) {
+				degree++;
+			}
+		}
+		int shortcuts = contractNode(node, true);
+		return shortcuts - degree + contractedNeighbours[node];
+	}
+
+	/**
+	 * @return number of shortcuts which are needed (or added) to contract node
+	 */
+	private int contractNode(int node, boolean simulate) {
+		float maxOut = 0;
+		for (BuildEdge out : outEdges.get(node)) {
+			if (!contracted[out.to]) {
+				maxOut = Math.max(maxOut, out.cost);
+			}
+		}
+		int shortcuts = 0;
+		List<BuildEdge> newEdges = simulate ? null : new ArrayList<BuildEdge>();
+		for (BuildEdge in : inEdges.get(node)) {
+			if (contracted[in.from] || in.from == node) {
+				continue;
+			}
+			float limit = in.cost + maxOut;
+			witnessSearch(in.from, node, limit);
+			for (BuildEdge out : outEdges.get(node)) {
+				if (contracted[out.to] || out.to == in.from || out.to == node) {
+					continue;
+				}
+				float cost = in.cost + out.cost;
+				if (witnessCost[out.to] > cost) {
+					shortcuts++;
+					if (!simulate) {
+						BuildEdge s = new BuildEdge(in.from, out.to, cost, 0, -1, -1);
+						s.child1 = in.id;
+						s.child2 = out.id;
+						newEdges.add(s);
+					}
+				}
+			}
+			clearWitnessSearch();
+		}
+		if (!simulate) {
+			contracted[node] = true;
+			for (BuildEdge s : newEdges) {
+				addEdge(s);
+			}
+			for (BuildEdge e : inEdges.get(node)) {
+				contractedNeighbours[e.from]++;
+			}
+			for (BuildEdge e : outEdges.get(node)) {
+				contractedNeighbours[e.to]++;
+			}
+		}
+		return shortcuts;
+	}
+
+	private void witnessSearch(int source, int excluded, float limit) {
+		PriorityQueue<WitnessEntry> queue = new PriorityQueue<WitnessEntry>();
+		witnessCost[source] = 0;
+		witnessTouched.add(source);
+		queue.add(new WitnessEntry(source, 0));
+		int settled = 0;
+		while (!queue.isEmpty() && settled < WITNESS_SEARCH_SETTLED_LIMIT) {
+			WitnessEntry np = queue.poll();
+			if (np.cost > witnessCost[np.node]) {
+				continue;
+			}
+			if (np.cost > limit) {
+				break;
+			}
+			settled++;
+			for (BuildEdge e : outEdges.get(np.node)) {
+				if (contracted[e.to] || e.to == excluded) {
+					continue;
+				}
+				float c = np.cost + e.cost;
+				if (c < witnessCost[e.to]) {
+					if (witnessCost[e.to] == Float.POSITIVE_INFINITY) {
+						witnessTouched.add(e.to);
+					}
+					witnessCost[e.to] = c;
+					queue.add(new WitnessEntry(e.to, c));
+				}
+			}
+		}
+	}
+
+	private void clearWitnessSearch() {
+		for (int i = 0; i < witnessTouched.size(); i++) {
+			witnessCost[witnessTouched.get(i)] = Float.POSITIVE_INFINITY;
+		}
+		witnessTouched.clear();
+	}
+
+	/**
+	 * Usage : ContractionHierarchyBuilder output.ch profile [routing.xml] file.obf [file2.obf ...]
+	 */
+	public static void main(String[] args) throws IOException, XmlPullParserException {
+		if (args.length < 3) {
+			System.out.println("Usage : ContractionHierarchyBuilder output.ch profile [routing.xml] file.obf [file2.obf ...]");
+			return;
+		}
+		File output = new File(args[0]);
+		String profile = args[1];
+		int start = 2;
+		RoutingConfiguration.Builder config;
+		if (args[2].endsWith(".xml")) {
+			config = RoutingConfiguration.parseFromInputStream(new FileInputStream(args[2]));
+			start++;
+		} else {
+			config = RoutingConfiguration.getDefault();
+		}
+		RoutingConfiguration rc = config.build(profile, RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(rc.router, rc.routerName);
+		for (int i = start; i < args.length; i++) {
+			RandomAccessFile raf = new RandomAccessFile(args[i], "r");
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, new File(args[i]));
+			try {
+				builder.addRoads(reader);
+			} finally {
+				reader.close();
+			}
+		}
+		ContractionHierarchy ch = builder.build();
+		ch.writeToFile(output);
+		System.out.println(ch + " saved to " + output.getAbsolutePath());
+	}
+
+	private static class BuildEdge {
+		final int from;
+		final int to;
+		final float cost;
+		final long roadId;
+		final int startPoint;
+		final int endPoint;
+		int id;
+		int child1 = -1;
+		int child2 = -1;
+
+		BuildEdge(int from, int to, float cost, long roadId, int startPoint, int endPoint) {
+			this.from = from;
+			this.to = to;
+			this.cost = cost;
+			this.roadId = roadId;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+		}
+	}
+
+	private static class NodePriority implements Comparable<NodePriority> {
+		final int node;
+		int priority;
+
+		NodePriority(int node, int priority) {
+			this.node = node;
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(NodePriority o) {
+			return priority < o.priority ? -1 : (priority == o.priority ? 0 : 1);
+		}
+	}
+
+	private static class WitnessEntry implements Comparable<WitnessEntry> {
+		final int node;
+		final float cost;
+
+		WitnessEntry(int node, float cost) {
+			this.node = node;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(WitnessEntry o) {
+			return Float.compare(cost, o.cost);
+		}
+	}
+}
@@ -9,6 +9,7 @@ import net.osmand.util.MapUtils;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -18,12 +19,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gnu.trove.set.hash.TLongHashSet;
 
 public class GeneralRouter implements VehicleRouter {
 	
 	private static final float CAR_SHORTEST_DEFAULT_SPEED = 55/3.6f;
+	// cached result of evaluation when no rule matched
+	private static final Object NO_VALUE = new Object();
 	public static final String USE_SHORTEST_WAY = "short_way";
 	public static final String USE_HEIGHT_OBSTACLES = "height_obstacles";
 	public static final String AVOID_FERRIES = "avoid_ferries";
@@ -109,6 +113,7 @@ public class GeneralRouter implements VehicleRouter {
 		for (int i = 0; i < objectAttributes.length; i++) {
 			objectAttributes[i] = new RouteAttributeContext();
 		}
+		initEvaluationCache();
 		universalRules = new LinkedHashMap<String, Integer>();
 		universalRulesById = new ArrayList<String>();
 		tagRuleMask = new LinkedHashMap<String, BitSet>();
@@ -135,6 +140,7 @@ public class GeneralRouter implements VehicleRouter {
 		for (int i = 0; i < objectAttributes.length; i++) {
 			objectAttributes[i] = new RouteAttributeContext(parent.objectAttributes[i], params);
 		}
+		initEvaluationCache();
 		allowPrivate = params.containsKey(ALLOW_PRIVATE) && parseSilentBoolean(params.get(ALLOW_PRIVATE), false) ;
 		shortestRoute = params.containsKey(USE_SHORTEST_WAY) && parseSilentBoolean(params.get(USE_SHORTEST_WAY), false);
 		heightObstacles = params.containsKey(USE_HEIGHT_OBSTACLES) && parseSilentBoolean(params.get(USE_HEIGHT_OBSTACLES), false); 
@@ -144,6 +150,11 @@ public class GeneralRouter implements VehicleRouter {
 
 	}
 	
+	private void initEvaluationCache() {
+		// srtm speed depends on incline which is set before each evaluation
+		objectAttributes[RouteDataObjectAttribute.OBSTACLE_SRTM_ALT_SPEED.ordinal()].cacheable = false;
+	}
+
 	public GeneralRouterProfile getProfile() {
 		return profile;
 	}
@@ -326,8 +337,11 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					// incline is a parameter of shared context (parallel search evaluates both directions)
+					synchronized (objContext) {
+						objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
+						sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					}
 				}
 			}
 		}
@@ -493,9 +507,33 @@ public class GeneralRouter implements VehicleRouter {
 		private double incline = 0;
 	}
 	
+	private static class TypesKey {
+		private final int[] types;
+		private final int hash;
+
+		TypesKey(int[] types) {
+			this.types = types;
+			this.hash = Arrays.hashCode(types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TypesKey && Arrays.equals(types, ((TypesKey) obj).types);
+		}
+	}
+
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// evaluated values by region and types, read without locks by routing threads
+		private final Map<RouteRegion, Map<TypesKey, Object>> evaluationCache =
+				new ConcurrentHashMap<RouteRegion, Map<TypesKey, Object>>();
+		private boolean cacheable = true;
 		
 		public RouteAttributeContext(){
 		}
@@ -530,7 +568,38 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types);
+		}
+
+		private Object evaluate(RouteRegion region, int[] types) {
+			if (!cacheable) {
+				// tag registry is shared with parent router
+				synchronized (universalRules) {
+					return evaluate(convert(region, types));
+				}
+			}
+			Map<RouteRegion, Map<TypesKey, Object>> cache = evaluationCache;
+			Map<TypesKey, Object> regionCache = cache.get(region);
+			if (regionCache == null) {
+				synchronized (cache) {
+					regionCache = cache.get(region);
+					if (regionCache == null) {
+						regionCache = new ConcurrentHashMap<TypesKey, Object>();
+						cache.put(region, regionCache);
+					}
+				}
+			}
+			Object res = regionCache.get(new TypesKey(types));
+			if (res == null) {
+				synchronized (universalRules) {
+					res = evaluate(convert(region, types));
+				}
+				if (res == null) {
+					res = NO_VALUE;
+				}
+				regionCache.put(new TypesKey(types.clone()), res);
+			}
+			return res == NO_VALUE ? null : res;
 		}
 
 		public void printRules(PrintStream out) {
@@ -543,6 +612,7 @@ public class GeneralRouter implements VehicleRouter {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
 			rules.add(ev);	
+			evaluationCache.clear();
 			return ev;
 		}
 		
@@ -589,7 +659,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -605,7 +675,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
@@ -722,7 +792,6 @@ public class GeneralRouter implements VehicleRouter {
 		protected String selectType = null;
 		protected BitSet filterTypes = new BitSet();
 		protected BitSet filterNotTypes = new BitSet();
-		protected BitSet evalFilterTypes = new BitSet();
 		
 		protected Set<String> onlyTags = new LinkedHashSet<String>();
 		protected Set<String> onlyNotTags = new LinkedHashSet<String>();
@@ -838,7 +907,7 @@ public class GeneralRouter implements VehicleRouter {
 			parameters.add(param);
 		}
 
-		public synchronized Object eval(BitSet types, ParameterContext paramContext) {
+		public Object eval(BitSet types, ParameterContext paramContext) {
 			if (matches(types, paramContext)) {
 				return calcSelectValue(types, paramContext);
 			}
@@ -923,14 +992,12 @@ public class GeneralRouter implements VehicleRouter {
 		}
 
 		private boolean checkAllTypesShouldBePresent(BitSet types) {
-			// Bitset method subset is missing "filterTypes.isSubset(types)"    
-			// reset previous evaluation
-			// evalFilterTypes.clear(); // not needed same as or()
-			evalFilterTypes.or(filterTypes);
-			// evaluate bit intersection and check if filterTypes contained as set in types
-			evalFilterTypes.and(types);
-			if(!evalFilterTypes.equals(filterTypes)) {
-				return false;
+			// Bitset method subset is missing "filterTypes.isSubset(types)", check bits one by one
+			// to not use shared temporary bitset
+			for (int i = filterTypes.nextSetBit(0); i >= 0; i = filterTypes.nextSetBit(i + 1)) {
+				if (!types.get(i)) {
+					return false;
+				}
 			}
 			return true;
 		}
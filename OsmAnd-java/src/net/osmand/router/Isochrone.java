@@ -0,0 +1,308 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Road segments reachable from start point within time and outlines of areas reachable within several time thresholds.
+ * Outlines are built from grid of minimal arrival times (roads are slightly widened with off road speed)
+ * with marching squares, each outline is a list of closed rings (outer borders and holes).
+ */
+public class Isochrone {
+
+	private static final int MAX_GRID_SIZE = 1024;
+	// empty cells around reached area, so all rings are closed
+	private static final int GRID_PADDING = 2;
+
+	/**
+	 * Part of road passed in one direction, times are arrival times (seconds) to each point.
+	 * Last point could be reached later than max time of search (part of last interval is reachable).
+	 */
+	public static class ReachedSegment {
+		public final RouteDataObject road;
+		public final int startPoint;
+		public final int endPoint;
+		public final float[] times;
+
+		ReachedSegment(RouteDataObject road, int startPoint, int endPoint, float[] times) {
+			this.road = road;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+			this.times = times;
+		}
+
+		public int getPointIndex(int i) {
+			return startPoint < endPoint ? startPoint + i : startPoint - i;
+		}
+	}
+
+	private final float[] thresholds;
+	private final List<ReachedSegment> segments;
+	private final List<List<List<LatLon>>> outlines = new ArrayList<List<List<LatLon>>>();
+
+	// cell size in meters
+	private double cellSize = 100;
+	// speed to reach points around roads (m/s)
+	private double offRoadSpeed = 1.4;
+
+	private int left;
+	private int top;
+	private int cellX31;
+	private int cellY31;
+	private int width;
+	private int height;
+	private float[] grid;
+
+	public Isochrone(List<ReachedSegment> segments, float[] thresholds) {
+		this.segments = segments;
+		this.thresholds = thresholds.clone();
+		Arrays.sort(this.thresholds);
+	}
+
+	public void setCellSize(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	public void setOffRoadSpeed(double offRoadSpeed) {
+		this.offRoadSpeed = offRoadSpeed;
+	}
+
+	public List<ReachedSegment> getReachedSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return sorted thresholds (seconds)
+	 */
+	public float[] getThresholds() {
+		return thresholds;
+	}
+
+	/**
+	 * @return closed rings of area reachable within threshold
+	 */
+	public List<List<LatLon>> getOutline(int thresholdIndex) {
+		if (outlines.isEmpty()) {
+			buildOutlines();
+		}
+		return outlines.get(thresholdIndex);
+	}
+
+	private void buildOutlines() {
+		float maxTime = thresholds.length == 0 ? 0 : thresholds[thresholds.length - 1];
+		buildGrid(maxTime);
+		for (float t : thresholds) {
+			outlines.add(grid == null ? new ArrayList<List<LatLon>>() : traceContours(t));
+		}
+		grid = null;
+	}
+
+	private void buildGrid(float maxTime) {
+		int l = Integer.MAX_VALUE, t = Integer.MAX_VALUE, r = 0, b = 0;
+		for (ReachedSegment s : segments) {
+			for (int i = 0; i < s.times.length && s.times[i] <= maxTime; i++) {
+				int p = s.getPointIndex(i);
+				l = Math.min(l, s.road.getPoint31XTile(p));
+				r = Math.max(r, s.road.getPoint31XTile(p));
+				t = Math.min(t, s.road.getPoint31YTile(p));
+				b = Math.max(b, s.road.getPoint31YTile(p));
+			}
+		}
+		if (l > r) {
+			return;
+		}
+		int cx = (l + r) >>> 1;
+		int cy = (t + b) >>> 1;
+		// meters in one 31 tile unit in center of area
+		double ky = Math.abs(MapUtils.convert31YToMeters(cy, cy + (1 << 16), cx)) / (1 << 16);
+		double kx = Math.abs(MapUtils.convert31XToMeters(cx, cx + (1 << 16), cy)) / (1 << 16);
+		double size = cellSize;
+		while ((r - l) * kx / size > MAX_GRID_SIZE || (b - t) * ky / size > MAX_GRID_SIZE) {
+			size *= 2;
+		}
+		cellX31 = Math.max(1, (int) (size / kx));
+		cellY31 = Math.max(1, (int) (size / ky));
+		width = (r - l) / cellX31 + 1 + 2 * GRID_PADDING;
+		height = (b - t) / cellY31 + 1 + 2 * GRID_PADDING;
+		left = l - GRID_PADDING * cellX31;
+		top = t - GRID_PADDING * cellY31;
+		grid = new float[width * height];
+		Arrays.fill(grid, Float.POSITIVE_INFINITY);
+		for (ReachedSegment s : segments) {
+			for (int i = 0; i + 1 < s.times.length && s.times[i] <= maxTime; i++) {
+				int p1 = s.getPointIndex(i);
+				int p2 = s.getPointIndex(i + 1);
+				int x1 = s.road.getPoint31XTile(p1);
+				int y1 = s.road.getPoint31YTile(p1);
+				int x2 = s.road.getPoint31XTile(p2);
+				int y2 = s.road.getPoint31YTile(p2);
+				float t1 = s.times[i];
+				float t2 = s.times[i + 1];
+				// reachable part of interval
+				double maxF = t2 > maxTime ? (maxTime - t1) / (t2 - t1) : 1;
+				double len = Math.max(Math.abs(x2 - x1) * kx, Math.abs(y2 - y1) * ky);
+				int n = (int) Math.ceil(len * maxF * 2 / size) + 1;
+				for (int k = 0; k <= n; k++) {
+					double f = maxF * k / n;
+					setMinTime((int) (x1 + (x2 - x1) * f), (int) (y1 + (y2 - y1) * f), (float) (t1 + (t2 - t1) * f));
+				}
+			}
+			if (s.times.length == 1 && s.times[0] <= maxTime) {
+				int p = s.getPointIndex(0);
+				setMinTime(s.road.getPoint31XTile(p), s.road.getPoint31YTile(p), s.times[0]);
+			}
+		}
+		widenRoads((float) (size / offRoadSpeed));
+	}
+
+	private void setMinTime(int x31, int y31, float time) {
+		int c = ((y31 - top) / cellY31) * width + (x31 - left) / cellX31;
+		if (grid[c] > time) {
+			grid[c] = time;
+		}
+	}
+
+	private void widenRoads(float cellTime) {
+		float[] res = grid.clone();
+		float diagTime = (float) (cellTime * Math.sqrt(2));
+		for (int j = 1; j < height - 1; j++) {
+			for (int i = 1; i < width - 1; i++) {
+				float v = grid[j * width + i];
+				if (Float.isInfinite(v)) {
+					continue;
+				}
+				for (int dj = -1; dj <= 1; dj++) {
+					for (int di = -1; di <= 1; di++) {
+						int c = (j + dj) * width + i + di;
+						float nv = v + (di != 0 && dj != 0 ? diagTime : (di != 0 || dj != 0 ? cellTime : 0));
+						if (res[c] > nv) {
+							res[c] = nv;
+						}
+					}
+				}
+			}
+		}
+		grid = res;
+	}
+
+	private List<List<LatLon>> traceContours(float threshold) {
+		// each edge of grid (between centers of cells) crossed by contour is linked with 2 other edges
+		int[] link1 = new int[2 * width * height];
+		int[] link2 = new int[2 * width * height];
+		Arrays.fill(link1, -1);
+		Arrays.fill(link2, -1);
+		for (int j = 0; j < height - 1; j++) {
+			for (int i = 0; i < width - 1; i++) {
+				boolean tl = grid[j * width + i] <= threshold;
+				boolean tr = grid[j * width + i + 1] <= threshold;
+				boolean br = grid[(j + 1) * width + i + 1] <= threshold;
+				boolean bl = grid[(j + 1) * width + i] <= threshold;
+				int topEdge = horizontalEdge(i, j);
+				int rightEdge = verticalEdge(i + 1, j);
+				int bottomEdge = horizontalEdge(i, j + 1);
+				int leftEdge = verticalEdge(i, j);
+				if (tl == br && tr == bl && tl != tr) {
+					// saddle : inside corners are separated
+					if (tl) {
+						link(link1, link2, topEdge, leftEdge);
+						link(link1, link2, rightEdge, bottomEdge);
+					} else {
+						link(link1, link2, topEdge, rightEdge);
+						link(link1, link2, leftEdge, bottomEdge);
+					}
+					continue;
+				}
+				// not saddle : 0 or 2 edges are crossed
+				int first = -1;
+				int second = -1;
+				if (tl != tr) {
+					first = topEdge;
+				}
+				if (tr != br) {
+					if (first == -1) {
+						first = rightEdge;
+					} else {
+						second = rightEdge;
+					}
+				}
+				if (br != bl) {
+					if (first == -1) {
+						first = bottomEdge;
+					} else {
+						second = bottomEdge;
+					}
+				}
+				if (bl != tl) {
+					second = leftEdge;
+				}
+				if (second != -1) {
+					link(link1, link2, first, second);
+				}
+			}
+		}
+		List<List<LatLon>> rings = new ArrayList<List<LatLon>>();
+		boolean[] visited = new boolean[link1.length];
+		for (int e = 0; e < link1.length; e++) {
+			if (link1[e] == -1 || visited[e]) {
+				continue;
+			}
+			List<LatLon> ring = new ArrayList<LatLon>();
+			int prev = -1;
+			int cur = e;
+			while (cur != -1 && !visited[cur]) {
+				visited[cur] = true;
+				ring.add(edgePoint(cur, threshold));
+				int next = link1[cur] != prev ? link1[cur] : link2[cur];
+				prev = cur;
+				cur = next;
+			}
+			if (ring.size() > 2) {
+				ring.add(ring.get(0));
+				rings.add(ring);
+			}
+		}
+		return rings;
+	}
+
+	private int horizontalEdge(int i, int j) {
+		return 2 * (j * width + i);
+	}
+
+	private int verticalEdge(int i, int j) {
+		return 2 * (j * width + i) + 1;
+	}
+
+	private static void link(int[] link1, int[] link2, int e1, int e2) {
+		if (link1[e1] == -1) {
+			link1[e1] = e2;
+		} else {
+			link2[e1] = e2;
+		}
+		if (link1[e2] == -1) {
+			link1[e2] = e1;
+		} else {
+			link2[e2] = e1;
+		}
+	}
+
+	private LatLon edgePoint(int edge, float threshold) {
+		int c = edge >> 1;
+		int i = c % width;
+		int j = c / width;
+		boolean vertical = (edge & 1) == 1;
+		float v1 = grid[c];
+		float v2 = vertical ? grid[c + width] : grid[c + 1];
+		double f = 0.5;
+		if (!Float.isInfinite(v1) && !Float.isInfinite(v2) && v1 != v2) {
+			f = (threshold - v1) / (v2 - v1);
+		}
+		double x = left + (i + 0.5 + (vertical ? 0 : f)) * cellX31;
+		double y = top + (j + 0.5 + (vertical ? f : 0)) * cellY31;
+		return new LatLon(MapUtils.get31LatitudeY((int) y), MapUtils.get31LongitudeX((int) x));
+	}
+}
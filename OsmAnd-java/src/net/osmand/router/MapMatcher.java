@@ -0,0 +1,577 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.Location;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Matches GPS trace to roads with Hidden Markov Model (Newson, Krumm "Hidden Markov Map Matching Through Noise and Sparseness").
+ * Candidates of each location are nearest road segments, emission probability depends on distance to segment,
+ * transition probability depends on difference between route distance and distance between locations.
+ * Most probable sequence of candidates is found with Viterbi algorithm.
+ * <p>
+ * Locations could be added one by one : matched part of trace is passed to listener as soon as all
+ * candidate paths share it (or window is too long), so long traces are matched with bounded memory.
+ * All searches use the same routing context, so loaded tiles are reused.
+ */
+public class MapMatcher {
+
+	private static final Log log = PlatformUtil.getLog(MapMatcher.class);
+
+	public interface MapMatchingListener {
+
+		/**
+		 * Next matched part of trace (segments continue previous part unless trace was broken)
+		 */
+		public void segmentsMatched(List<RouteSegmentResult> segments, boolean traceBroken) throws IOException;
+	}
+
+	private final RoutingContext ctx;
+	private MapMatchingListener listener;
+	private boolean prepareResult = true;
+
+	// standard deviation of GPS error (meters) if location has no accuracy
+	private double gpsSigma = 10;
+	private double minGpsSigma = 4;
+	// scale of difference between route distance and straight distance (meters)
+	private double transitionBeta = 5;
+	private int maxCandidates = 8;
+	private double searchRadius = 50;
+	// route between candidates can't be longer than factor * straight distance + 2 * search radius
+	private double maxRouteFactor = 3;
+	// max number of not decided locations in streaming mode
+	private int maxWindow = 100;
+
+	private List<Candidate> current = Collections.emptyList();
+	private Candidate lastEmitted;
+	// last segment passed to listener
+	private RouteSegmentResult lastSegment;
+	private Location lastLocation;
+	private int window;
+	private boolean broken;
+	private final NearestRouteSegments buffer;
+
+	private int locations;
+	private int skippedLocations;
+	private long searchTime;
+
+	public MapMatcher(RoutingContext ctx) {
+		this.ctx = ctx;
+		this.buffer = new NearestRouteSegments(maxCandidates);
+	}
+
+	public void setListener(MapMatchingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param prepareResult calculate turns, times and attached roads of each matched part (true by default)
+	 */
+	public void setPrepareResult(boolean prepareResult) {
+		this.prepareResult = prepareResult;
+	}
+
+	public void setGpsSigma(double gpsSigma) {
+		this.gpsSigma = gpsSigma;
+	}
+
+	public void setTransitionBeta(double transitionBeta) {
+		this.transitionBeta = transitionBeta;
+	}
+
+	public void setSearchRadius(double searchRadius) {
+		this.searchRadius = searchRadius;
+	}
+
+	public void setMaxRouteFactor(double maxRouteFactor) {
+		this.maxRouteFactor = maxRouteFactor;
+	}
+
+	public void setMaxWindow(int maxWindow) {
+		this.maxWindow = maxWindow;
+	}
+
+	/**
+	 * Matches whole trace
+	 */
+	public List<RouteSegmentResult> match(List<Location> trace) throws IOException, InterruptedException {
+		final List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		MapMatchingListener prevListener = listener;
+		boolean prevPrepare = prepareResult;
+		listener = new MapMatchingListener() {
+			@Override
+			public void segmentsMatched(List<RouteSegmentResult> segments, boolean traceBroken) {
+				result.addAll(segments);
+			}
+		};
+		prepareResult = false;
+		reset();
+		try {
+			for (Location l : trace) {
+				addLocation(l);
+			}
+			finish();
+		} finally {
+			listener = prevListener;
+			prepareResult = prevPrepare;
+		}
+		return new RouteResultPreparation().prepareResult(ctx, result);
+	}
+
+	/**
+	 * Adds next location of trace (streaming mode)
+	 */
+	public void addLocation(Location loc) throws IOException, InterruptedException {
+		if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+			throw new InterruptedException();
+		}
+		locations++;
+		double sigma = loc.hasAccuracy() ? Math.max(loc.getAccuracy(), minGpsSigma) : gpsSigma;
+		// locations closer than 2 sigma don't give more information (Newson, Krumm)
+		if (lastLocation != null && !current.isEmpty()
+				&& MapUtils.getDistance(lastLocation.getLatitude(), lastLocation.getLongitude(),
+						loc.getLatitude(), loc.getLongitude()) < 2 * sigma) {
+			skippedLocations++;
+			return;
+		}
+		long time = System.nanoTime();
+		List<Candidate> candidates = findCandidates(loc, sigma);
+		if (candidates.isEmpty()) {
+			skippedLocations++;
+			searchTime += System.nanoTime() - time;
+			return;
+		}
+		if (current.isEmpty()) {
+			for (Candidate c : candidates) {
+				c.score = c.emission;
+			}
+		} else {
+			double straightDist = MapUtils.getDistance(lastLocation.getLatitude(), lastLocation.getLongitude(),
+					loc.getLatitude(), loc.getLongitude());
+			double maxDist = straightDist * maxRouteFactor + 2 * searchRadius;
+			boolean connected = false;
+			for (Candidate prev : current) {
+				List<List<RouteSegmentResult>> paths = new ArrayList<List<RouteSegmentResult>>(candidates.size());
+				double[] dists = searchPaths(prev, candidates, maxDist, paths);
+				for (int i = 0; i < candidates.size(); i++) {
+					Candidate c = candidates.get(i);
+					if (Double.isInfinite(dists[i])) {
+						continue;
+					}
+					double score = prev.score + c.emission - Math.abs(dists[i] - straightDist) / transitionBeta;
+					if (c.prev == null || score > c.score) {
+						c.score = score;
+						c.prev = prev;
+						c.path = paths.get(i);
+						connected = true;
+					}
+				}
+			}
+			if (!connected) {
+				// no route between locations : finish matched part and start new one
+				emit(best(current));
+				broken = true;
+				lastSegment = null;
+				for (Candidate c : candidates) {
+					c.score = c.emission;
+				}
+			} else {
+				List<Candidate> reached = new ArrayList<Candidate>(candidates.size());
+				for (Candidate c : candidates) {
+					if (c.prev != null) {
+						reached.add(c);
+					}
+				}
+				candidates = reached;
+			}
+		}
+		current = candidates;
+		lastLocation = loc;
+		window++;
+		Candidate common = findCommonAncestor(current);
+		if (common != null) {
+			emit(common);
+		} else if (window >= maxWindow) {
+			// force decision to keep memory bounded
+			Candidate b = best(current);
+			emit(b);
+			current = Collections.singletonList(b);
+		}
+		searchTime += System.nanoTime() - time;
+	}
+
+	/**
+	 * Emits rest of matched trace
+	 */
+	public void finish() throws IOException {
+		if (!current.isEmpty()) {
+			emit(best(current));
+		}
+		log.info("Map matching " + locations + " locations (" + skippedLocations + " skipped) in "
+				+ searchTime / 1000000 + " ms");
+		reset();
+	}
+
+	/**
+	 * Clears state of not finished trace, so matcher could be used for next trace
+	 */
+	public void reset() {
+		current = Collections.emptyList();
+		lastEmitted = null;
+		lastSegment = null;
+		lastLocation = null;
+		window = 0;
+		broken = false;
+		locations = 0;
+		skippedLocations = 0;
+		searchTime = 0;
+	}
+
+	private List<Candidate> findCandidates(Location loc, double sigma) {
+		int x31 = MapUtils.get31TileNumberX(loc.getLongitude());
+		int y31 = MapUtils.get31TileNumberY(loc.getLatitude());
+		buffer.clear(Math.max(searchRadius, 3 * sigma));
+		ctx.findNearestSegments(x31, y31, 17, buffer);
+		List<Candidate> candidates = new ArrayList<Candidate>(buffer.size());
+		for (int i = 0; i < buffer.size(); i++) {
+			RouteSegmentPoint p = new RouteSegmentPoint(buffer.getRoad(i), buffer.getSegmentStart(i), buffer.getDistSquare(i));
+			p.preciseX = buffer.getPreciseX(i);
+			p.preciseY = buffer.getPreciseY(i);
+			candidates.add(new Candidate(p, -0.5 * p.distSquare / (sigma * sigma)));
+		}
+		return candidates;
+	}
+
+	private static Candidate best(List<Candidate> list) {
+		Candidate b = null;
+		for (Candidate c : list) {
+			if (b == null || c.score > b.score) {
+				b = c;
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Latest candidate (not emitted yet) which is on the path of all current candidates
+	 */
+	private Candidate findCommonAncestor(List<Candidate> list) {
+		List<Candidate> level = list;
+		while (true) {
+			Candidate first = level.get(0);
+			boolean same = true;
+			for (Candidate c : level) {
+				if (c != first) {
+					same = false;
+					break;
+				}
+			}
+			if (same) {
+				return first == lastEmitted ? null : first;
+			}
+			List<Candidate> prevLevel = new ArrayList<Candidate>(level.size());
+			for (Candidate c : level) {
+				if (c.prev == null) {
+					return null;
+				}
+				prevLevel.add(c.prev);
+			}
+			level = prevLevel;
+		}
+	}
+
+	private void emit(Candidate to) throws IOException {
+		List<Candidate> chain = new ArrayList<Candidate>();
+		for (Candidate c = to; c != null && c != lastEmitted; c = c.prev) {
+			chain.add(c);
+		}
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			Candidate c = chain.get(i);
+			if (c.path != null) {
+				appendPath(result, c.path);
+			}
+			// release memory of emitted part
+			c.path = null;
+		}
+		to.prev = null;
+		lastEmitted = to;
+		if (!result.isEmpty()) {
+			lastSegment = result.get(result.size() - 1);
+		}
+		window = 0;
+		for (Candidate c : current) {
+			window = Math.max(window, depth(c));
+		}
+		if (!result.isEmpty() && listener != null) {
+			if (prepareResult) {
+				result = new RouteResultPreparation().prepareResult(ctx, result);
+			}
+			listener.segmentsMatched(result, broken);
+			broken = false;
+		}
+	}
+
+	private int depth(Candidate c) {
+		int d = 0;
+		for (; c != null && c != lastEmitted; c = c.prev) {
+			d++;
+		}
+		return d;
+	}
+
+	private void appendPath(List<RouteSegmentResult> result, List<RouteSegmentResult> path) {
+		for (int i = 0; i < path.size(); i++) {
+			RouteSegmentResult s = path.get(i);
+			int start = s.getStartPointIndex();
+			int end = s.getEndPointIndex();
+			RouteSegmentResult last = result.isEmpty() ? lastSegment : result.get(result.size() - 1);
+			// segment of candidate location is the end of previous path and the start of next one,
+			// next path continues from the end of emitted part if it goes in the same direction
+			if (i == 0 && last != null && last.getObject().getId() == s.getObject().getId()) {
+				int ls = last.getStartPointIndex();
+				int le = last.getEndPointIndex();
+				boolean forward = ls < le;
+				if (forward == (start < end) && (forward ? ls <= start && start <= le : le <= start && start <= ls)) {
+					if (forward ? end <= le : end >= le) {
+						continue;
+					}
+					start = le;
+				}
+			}
+			ContractionHierarchy.addSegment(result, s.getObject(), start, end);
+		}
+	}
+
+	/**
+	 * Dijkstra by distance from candidate to all next candidates
+	 * @return route distances to candidates (infinite if not reachable)
+	 */
+	private double[] searchPaths(Candidate from, List<Candidate> targets, double maxDist,
+			List<List<RouteSegmentResult>> paths) {
+		VehicleRouter router = ctx.getRouter();
+		double[] dists = new double[targets.size()];
+		Label[] targetLabels = new Label[targets.size()];
+		int[] targetPoints = new int[targets.size()];
+		TLongObjectHashMap<List<Access>> targetAccess = new TLongObjectHashMap<List<Access>>();
+		for (int t = 0; t < targets.size(); t++) {
+			dists[t] = Double.POSITIVE_INFINITY;
+			paths.add(null);
+			RouteSegmentPoint target = targets.get(t).point;
+			checkSameSegment(router, from.point, target, t, dists, paths);
+			for (Access a : findAccess(router, target, t, false)) {
+				List<Access> list = targetAccess.get(a.pointKey);
+				if (list == null) {
+					list = new ArrayList<Access>(2);
+					targetAccess.put(a.pointKey, list);
+				}
+				list.add(a);
+			}
+		}
+		TLongObjectHashMap<Label> labels = new TLongObjectHashMap<Label>();
+		PriorityQueue<Label> queue = new PriorityQueue<Label>();
+		RouteDataObject startRoad = from.point.getRoad();
+		for (Access a : findAccess(router, from.point, -1, true)) {
+			relax(labels, queue, a.x31, a.y31, a.pointKey, a.distance, null, startRoad, a.segmentPoint, a.roadPoint);
+		}
+		int targetsLeft = targets.size();
+		boolean[] settled = new boolean[targets.size()];
+		while (!queue.isEmpty() && targetsLeft > 0) {
+			Label l = queue.poll();
+			if (labels.get(l.pointKey) != l) {
+				continue;
+			}
+			if (l.distance > maxDist) {
+				break;
+			}
+			for (int t = 0; t < targets.size(); t++) {
+				if (!settled[t] && dists[t] <= l.distance) {
+					settled[t] = true;
+					targetsLeft--;
+				}
+			}
+			List<Access> list = targetAccess.get(l.pointKey);
+			if (list != null) {
+				for (Access a : list) {
+					if (l.distance + a.distance < dists[a.index]) {
+						dists[a.index] = l.distance + a.distance;
+						targetLabels[a.index] = l;
+						targetPoints[a.index] = a.roadPoint;
+						paths.set(a.index, null);
+					}
+				}
+			}
+			BinaryRoutePlanner.RouteSegment segment = ctx.loadRouteSegment(l.x31, l.y31,
+					ctx.config.memoryLimitation - ctx.memoryOverhead);
+			for (; segment != null; segment = segment.getNext()) {
+				RouteDataObject road = segment.getRoad();
+				int oneway = router.isOneWay(road);
+				int i = segment.getSegmentStart();
+				for (int d = -1; d <= 1; d += 2) {
+					int next = i + d;
+					if ((d > 0 && oneway < 0) || (d < 0 && oneway > 0) || next < 0 || next >= road.getPointsLength()) {
+						continue;
+					}
+					int x = road.getPoint31XTile(next);
+					int y = road.getPoint31YTile(next);
+					double dist = BinaryRoutePlanner.squareRootDist(l.x31, l.y31, x, y);
+					relax(labels, queue, x, y, ContractionHierarchy.nodeKey(x, y), l.distance + dist, l, road, i, next);
+				}
+			}
+		}
+		for (int t = 0; t < targets.size(); t++) {
+			if (targetLabels[t] != null && paths.get(t) == null) {
+				paths.set(t, buildPath(targetLabels[t], targets.get(t).point, targetPoints[t]));
+			}
+		}
+		return dists;
+	}
+
+	private static List<RouteSegmentResult> buildPath(Label label, RouteSegmentPoint target, int targetRoadPoint) {
+		List<Label> labels = new ArrayList<Label>();
+		for (Label l = label; l != null; l = l.parent) {
+			labels.add(l);
+		}
+		List<RouteSegmentResult> path = new ArrayList<RouteSegmentResult>();
+		for (int i = labels.size() - 1; i >= 0; i--) {
+			Label l = labels.get(i);
+			ContractionHierarchy.addSegment(path, l.road, l.fromPoint, l.toPoint);
+		}
+		// last segment leads from road point to target segment
+		int other = targetRoadPoint == target.getSegmentStart() ? target.getSegmentStart() - 1 : target.getSegmentStart();
+		ContractionHierarchy.addSegment(path, target.getRoad(), targetRoadPoint, other);
+		return path;
+	}
+
+	private static void checkSameSegment(VehicleRouter router, RouteSegmentPoint source, RouteSegmentPoint target,
+			int t, double[] dists, List<List<RouteSegmentResult>> paths) {
+		RouteDataObject road = source.getRoad();
+		if (road.getId() != target.getRoad().getId() || source.getSegmentStart() != target.getSegmentStart()) {
+			return;
+		}
+		int end = source.getSegmentStart();
+		int prev = end - 1;
+		int px = road.getPoint31XTile(prev);
+		int py = road.getPoint31YTile(prev);
+		// target is further from previous point than source
+		boolean positive = BinaryRoutePlanner.squareRootDist(px, py, source.preciseX, source.preciseY)
+				<= BinaryRoutePlanner.squareRootDist(px, py, target.preciseX, target.preciseY);
+		int oneway = router.isOneWay(road);
+		if ((positive && oneway >= 0) || (!positive && oneway <= 0)) {
+			dists[t] = BinaryRoutePlanner.squareRootDist(source.preciseX, source.preciseY, target.preciseX, target.preciseY);
+			List<RouteSegmentResult> path = new ArrayList<RouteSegmentResult>(1);
+			path.add(positive ? new RouteSegmentResult(road, prev, end) : new RouteSegmentResult(road, end, prev));
+			paths.set(t, path);
+		}
+	}
+
+	/**
+	 * Road points next to point on the road which could be reached from point (or from which point could be reached)
+	 */
+	private static List<Access> findAccess(VehicleRouter router, RouteSegmentPoint point, int index, boolean fromPoint) {
+		List<Access> res = new ArrayList<Access>(2);
+		RouteDataObject road = point.getRoad();
+		int oneway = router.isOneWay(road);
+		for (int d = -1; d <= 1; d += 2) {
+			// moving by positive direction is allowed only for oneway >= 0
+			boolean positiveMove = fromPoint ? d > 0 : d < 0;
+			if ((positiveMove && oneway < 0) || (!positiveMove && oneway > 0)) {
+				continue;
+			}
+			int roadPoint = d > 0 ? point.getSegmentStart() : point.getSegmentStart() - 1;
+			int segmentPoint = d > 0 ? point.getSegmentStart() - 1 : point.getSegmentStart();
+			int x = road.getPoint31XTile(roadPoint);
+			int y = road.getPoint31YTile(roadPoint);
+			double dist = BinaryRoutePlanner.squareRootDist(point.preciseX, point.preciseY, x, y);
+			res.add(new Access(index, x, y, roadPoint, segmentPoint, dist));
+		}
+		return res;
+	}
+
+	private static void relax(TLongObjectHashMap<Label> labels, PriorityQueue<Label> queue, int x31, int y31, long key,
+			double distance, Label parent, RouteDataObject road, int fromPoint, int toPoint) {
+		Label ex = labels.get(key);
+		if (ex != null && ex.distance <= distance) {
+			return;
+		}
+		Label l = new Label(x31, y31, key, distance, parent, road, fromPoint, toPoint);
+		labels.put(key, l);
+		queue.add(l);
+	}
+
+	private static class Candidate {
+		final RouteSegmentPoint point;
+		final double emission;
+		double score;
+		Candidate prev;
+		// path from previous candidate
+		List<RouteSegmentResult> path;
+
+		Candidate(RouteSegmentPoint point, double emission) {
+			this.point = point;
+			this.emission = emission;
+		}
+	}
+
+	private static class Access {
+		final int index;
+		final int x31;
+		final int y31;
+		final long pointKey;
+		final int roadPoint;
+		// other point of segment where location is
+		final int segmentPoint;
+		final double distance;
+
+		Access(int index, int x31, int y31, int roadPoint, int segmentPoint, double distance) {
+			this.index = index;
+			this.x31 = x31;
+			this.y31 = y31;
+			this.pointKey = ContractionHierarchy.nodeKey(x31, y31);
+			this.roadPoint = roadPoint;
+			this.segmentPoint = segmentPoint;
+			this.distance = distance;
+		}
+	}
+
+	private static class Label implements Comparable<Label> {
+		final int x31;
+		final int y31;
+		final long pointKey;
+		final double distance;
+		final Label parent;
+		// road segment which leads to point
+		final RouteDataObject road;
+		final int fromPoint;
+		final int toPoint;
+
+		Label(int x31, int y31, long pointKey, double distance, Label parent, RouteDataObject road, int fromPoint,
+				int toPoint) {
+			this.x31 = x31;
+			this.y31 = y31;
+			this.pointKey = pointKey;
+			this.distance = distance;
+			this.parent = parent;
+			this.road = road;
+			this.fromPoint = fromPoint;
+			this.toPoint = toPoint;
+		}
+
+		@Override
+		public int compareTo(Label o) {
+			return Double.compare(distance, o.distance);
+		}
+	}
+}
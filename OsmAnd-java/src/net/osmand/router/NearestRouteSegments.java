@@ -0,0 +1,118 @@
+package net.osmand.router;
+
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Reusable buffer of k nearest road segments (at most one segment per road) sorted by distance.
+ * Segment is identified by road and index of its end point (same as {@link BinaryRoutePlanner.RouteSegmentPoint}).
+ */
+public class NearestRouteSegments {
+
+	private final RouteDataObject[] roads;
+	private final int[] segmentStarts;
+	private final double[] distSquare;
+	private final int[] preciseX;
+	private final int[] preciseY;
+	private double maxDistSquare = Double.POSITIVE_INFINITY;
+	private int size;
+
+	public NearestRouteSegments(int capacity) {
+		roads = new RouteDataObject[capacity];
+		segmentStarts = new int[capacity];
+		distSquare = new double[capacity];
+		preciseX = new int[capacity];
+		preciseY = new int[capacity];
+	}
+
+	/**
+	 * @param maxDistance segments further than distance (meters) are not collected
+	 */
+	public void clear(double maxDistance) {
+		for (int i = 0; i < size; i++) {
+			roads[i] = null;
+		}
+		size = 0;
+		maxDistSquare = maxDistance * maxDistance;
+	}
+
+	public void clear() {
+		clear(Double.POSITIVE_INFINITY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return roads.length;
+	}
+
+	public RouteDataObject getRoad(int i) {
+		return roads[i];
+	}
+
+	public int getSegmentStart(int i) {
+		return segmentStarts[i];
+	}
+
+	/**
+	 * @return square of distance in meters
+	 */
+	public double getDistSquare(int i) {
+		return distSquare[i];
+	}
+
+	public int getPreciseX(int i) {
+		return preciseX[i];
+	}
+
+	public int getPreciseY(int i) {
+		return preciseY[i];
+	}
+
+	/**
+	 * Distance to which segments could still be accepted
+	 */
+	double getWorstDistSquare() {
+		return size == roads.length ? Math.min(distSquare[size - 1], maxDistSquare) : maxDistSquare;
+	}
+
+	/**
+	 * Adds segment if it is closer than the worst collected segment (or replaces further segment of the same road)
+	 */
+	public void add(RouteDataObject road, int segmentStart, double dist, int px, int py) {
+		if (dist >= getWorstDistSquare()) {
+			return;
+		}
+		int pos = size;
+		for (int i = 0; i < size; i++) {
+			if (roads[i].getId() == road.getId()) {
+				if (distSquare[i] <= dist) {
+					return;
+				}
+				pos = i;
+				break;
+			}
+		}
+		if (pos == size) {
+			if (size < roads.length) {
+				size++;
+			}
+			pos = size - 1;
+		}
+		// shift worse segments to the end
+		while (pos > 0 && distSquare[pos - 1] > dist) {
+			roads[pos] = roads[pos - 1];
+			segmentStarts[pos] = segmentStarts[pos - 1];
+			distSquare[pos] = distSquare[pos - 1];
+			preciseX[pos] = preciseX[pos - 1];
+			preciseY[pos] = preciseY[pos - 1];
+			pos--;
+		}
+		roads[pos] = road;
+		segmentStarts[pos] = segmentStart;
+		distSquare[pos] = dist;
+		preciseX[pos] = px;
+		preciseY[pos] = py;
+	}
+}
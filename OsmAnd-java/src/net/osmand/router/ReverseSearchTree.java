@@ -0,0 +1,167 @@
+package net.osmand.router;
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.util.Algorithms;
+
+/**
+ * Segments from which target of last calculation could be reached : segments visited by reverse search
+ * and segments of calculated route, each one with time and path to the target.
+ * Recalculation to the same target runs only direct search which ends when the cheapest route through the tree
+ * is found (see {@link RoutingConfiguration#incrementalRecalculation}).
+ * Segments are copies, so tree doesn't depend on loaded tiles and search state of routing context.
+ */
+public class ReverseSearchTree {
+
+	// tree is kept between calculations, so it could use only part of memory limit
+	private static final float MAX_MEMORY_PART = 0.25f;
+
+	// same keys as visited segments of reverse search (road id, interval, direction)
+	final TLongObjectHashMap<RouteSegment> segments = new TLongObjectHashMap<RouteSegment>();
+	private final long targetRoadId;
+	private final int targetSegmentStart;
+	private final String routerName;
+	private final Map<RouteSegment, RouteSegment> copies = new IdentityHashMap<RouteSegment, RouteSegment>();
+
+	ReverseSearchTree(RoutingContext ctx, RouteSegmentPoint target) {
+		this.targetRoadId = target.getRoad().getId();
+		this.targetSegmentStart = target.getSegmentStart();
+		this.routerName = ctx.config.routerName;
+	}
+
+	/**
+	 * Tree could be used only for the same target and router (costs),
+	 * tree should be dropped by caller when routing parameters are changed
+	 */
+	public boolean isApplicable(RoutingContext ctx, RouteSegmentPoint target) {
+		return Algorithms.objectEquals(routerName, ctx.config.routerName) && target.getRoad().getId() == targetRoadId
+				&& target.getSegmentStart() == targetSegmentStart;
+	}
+
+	public int size() {
+		return segments.size();
+	}
+
+	/**
+	 * @return estimated memory of tree, it is counted in memory overhead of search with context which keeps the tree
+	 */
+	public int getEstimatedSize() {
+		return segments.size() * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD;
+	}
+
+	static boolean isWithinMemoryLimit(RoutingContext ctx, int segments) {
+		return (long) segments * BinaryRoutePlanner.STANDARD_ROAD_VISITED_OVERHEAD <= ctx.config.memoryLimitation * MAX_MEMORY_PART;
+	}
+
+	void addReverseSegments(TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+		TLongObjectIterator<RouteSegment> it = visitedOppositeSegments.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (!segments.containsKey(it.key())) {
+				segments.put(it.key(), copy(it.value()));
+			}
+		}
+	}
+
+	/**
+	 * Adds direct search part of calculated route (reverse part is already in the tree)
+	 */
+	void addRoute(FinalRouteSegment finalSegment) {
+		float total = finalSegment.distanceFromStart;
+		// route is direct chain up to meeting point and then reverse chain (see RouteResultPreparation)
+		RouteSegment direct = finalSegment.reverseWaySearch ? finalSegment.opposite : finalSegment;
+		RouteSegment reverse = finalSegment.reverseWaySearch ? finalSegment : finalSegment.opposite;
+		// time from meeting point to the target
+		float remaining = finalSegment.reverseWaySearch ? total - finalSegment.opposite.distanceFromStart :
+				finalSegment.opposite.distanceFromStart;
+		RouteSegment node = copy(reverse);
+		node.distanceFromStart = remaining;
+		int start = finalSegment.reverseWaySearch ? finalSegment.opposite.getSegmentStart() : finalSegment.getSegmentStart();
+		// search doesn't count time between meeting point and start of reverse segment
+		addIntervals(direct, start, node.getSegmentStart(), node, 0);
+		RouteSegment prev = direct;
+		RouteSegment x = direct.getParentRoute();
+		while (x != null) {
+			// time from start when route leaves road of x
+			float leave = prev == finalSegment ? total - remaining : prev.distanceFromStart;
+			RouteSegment n = new RouteSegment(x.getRoad(), prev.getParentSegmentEnd());
+			n.parentRoute = node;
+			n.parentSegmentEnd = (short) start;
+			n.distanceFromStart = total - leave;
+			addIntervals(x, x.getSegmentStart(), prev.getParentSegmentEnd(), n, leave - x.distanceFromStart);
+			node = n;
+			start = x.getSegmentStart();
+			prev = x;
+			x = x.getParentRoute();
+		}
+		// copies are needed only to share parent chains
+		copies.clear();
+	}
+
+	/**
+	 * @param time time to pass road from start to end, it is divided between intervals by distance
+	 * (direct search meeting the tree after interval needs time from its far point)
+	 */
+	private void addIntervals(RouteSegment s, int start, int end, RouteSegment node, float time) {
+		RouteDataObject road = s.getRoad();
+		int d = start < end ? 1 : -1;
+		double length = 0;
+		for (int i = start; i != end; i += d) {
+			length += intervalLength(road, i, i + d);
+		}
+		double passed = 0;
+		for (int i = start; i != end; i += d) {
+			passed += intervalLength(road, i, i + d);
+			RouteSegment n = node;
+			if (time > 0 && length > 0) {
+				n = new RouteSegment(node.getRoad(), node.getSegmentStart());
+				n.directionAssgn = node.directionAssgn;
+				n.parentRoute = node.parentRoute;
+				n.parentSegmentEnd = node.parentSegmentEnd;
+				n.distanceFromStart = node.distanceFromStart + (float) (time * (length - passed) / length);
+			}
+			// direct search moving from start to end checks intervals of reverse search in opposite direction
+			segments.put(BinaryRoutePlanner.calculateRoutePointId(road, Math.min(i, i + d), d < 0), n);
+		}
+	}
+
+	private static double intervalLength(RouteDataObject road, int i, int j) {
+		return BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+				road.getPoint31XTile(j), road.getPoint31YTile(j));
+	}
+
+	private RouteSegment copy(RouteSegment s) {
+		RouteSegment first = null;
+		RouteSegment prevCopy = null;
+		while (s != null) {
+			RouteSegment c = copies.get(s);
+			boolean exists = c != null;
+			if (!exists) {
+				c = new RouteSegment(s.getRoad(), s.getSegmentStart());
+				c.directionAssgn = s.directionAssgn;
+				c.distanceFromStart = s.distanceFromStart;
+				c.parentSegmentEnd = s.parentSegmentEnd;
+				copies.put(s, c);
+			}
+			if (prevCopy == null) {
+				first = c;
+			} else {
+				prevCopy.parentRoute = c;
+			}
+			if (exists) {
+				break;
+			}
+			prevCopy = c;
+			s = s.getParentRoute();
+		}
+		return first;
+	}
+}
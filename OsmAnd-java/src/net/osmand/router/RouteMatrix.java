@@ -0,0 +1,62 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Travel times (seconds) and distances (meters) from each source to each target point.
+ * Unreachable targets have infinite time and distance.
+ */
+public class RouteMatrix {
+
+	private final float[][] times;
+	private final float[][] distances;
+
+	RouteMatrix(int sources, int targets) {
+		times = new float[sources][targets];
+		distances = new float[sources][targets];
+		for (int i = 0; i < sources; i++) {
+			Arrays.fill(times[i], Float.POSITIVE_INFINITY);
+			Arrays.fill(distances[i], Float.POSITIVE_INFINITY);
+		}
+	}
+
+	void set(int source, int target, float time, float distance) {
+		times[source][target] = time;
+		distances[source][target] = distance;
+	}
+
+	public int getSourcesCount() {
+		return times.length;
+	}
+
+	public int getTargetsCount() {
+		return times.length == 0 ? 0 : times[0].length;
+	}
+
+	public float getTime(int source, int target) {
+		return times[source][target];
+	}
+
+	public float getDistance(int source, int target) {
+		return distances[source][target];
+	}
+
+	public boolean isReachable(int source, int target) {
+		return !Float.isInfinite(times[source][target]);
+	}
+
+	/**
+	 * Matrix of costs which could be used by TSP solvers
+	 * @param time use travel time instead of distance
+	 * @param unreachableCost cost to use for not connected points
+	 */
+	public double[][] toCostMatrix(boolean time, double unreachableCost) {
+		double[][] res = new double[getSourcesCount()][getTargetsCount()];
+		for (int i = 0; i < res.length; i++) {
+			for (int j = 0; j < res[i].length; j++) {
+				res[i][j] = isReachable(i, j) ? (time ? times[i][j] : distances[i][j]) : unreachableCost;
+			}
+		}
+		return res;
+	}
+}
@@ -0,0 +1,264 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Calculates travel times between many points : one Dijkstra search from each source settles all targets.
+ * All searches use the same routing context, so road data is loaded only once.
+ * Costs are the same as {@link BinaryRoutePlanner} uses for roads and obstacles,
+ * turn times and via restrictions are not taken into account (points matrix is an estimation for ordering points).
+ */
+public class RouteMatrixPlanner {
+
+	private static final Log log = PlatformUtil.getLog(RouteMatrixPlanner.class);
+
+	private final RoutePlannerFrontEnd frontEnd;
+
+	public RouteMatrixPlanner() {
+		this(new RoutePlannerFrontEnd(false));
+	}
+
+	public RouteMatrixPlanner(RoutePlannerFrontEnd frontEnd) {
+		this.frontEnd = frontEnd;
+	}
+
+	/**
+	 * @param maxTime stop search from source when targets are further (seconds, 0 - unlimited)
+	 */
+	public RouteMatrix searchRouteMatrix(RoutingContext ctx, List<LatLon> sources, List<LatLon> targets, float maxTime)
+			throws IOException, InterruptedException {
+		long time = System.currentTimeMillis();
+		RouteMatrix matrix = new RouteMatrix(sources.size(), targets.size());
+		VehicleRouter router = ctx.getRouter();
+		List<RouteSegmentPoint> targetSegments = new ArrayList<RouteSegmentPoint>();
+		TLongObjectHashMap<List<Access>> targetAccess = new TLongObjectHashMap<List<Access>>();
+		for (int t = 0; t < targets.size(); t++) {
+			LatLon l = targets.get(t);
+			RouteSegmentPoint p = frontEnd.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			targetSegments.add(p);
+			if (p != null) {
+				for (Access a : findAccess(router, p, t, false)) {
+					List<Access> list = targetAccess.get(a.pointKey);
+					if (list == null) {
+						list = new ArrayList<Access>(2);
+						targetAccess.put(a.pointKey, list);
+					}
+					list.add(a);
+				}
+			}
+		}
+		for (int s = 0; s < sources.size(); s++) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException();
+			}
+			LatLon l = sources.get(s);
+			RouteSegmentPoint p = frontEnd.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			if (p != null) {
+				searchFromSource(ctx, p, s, targetSegments, targetAccess, matrix, maxTime);
+			}
+		}
+		log.info("Route matrix " + sources.size() + "x" + targets.size() + " calculated in "
+				+ (System.currentTimeMillis() - time) / 1000f + " seconds");
+		return matrix;
+	}
+
+	private void searchFromSource(RoutingContext ctx, RouteSegmentPoint source, int s, List<RouteSegmentPoint> targets,
+			TLongObjectHashMap<List<Access>> targetAccess, RouteMatrix matrix, float maxTime) {
+		VehicleRouter router = ctx.getRouter();
+		int targetsLeft = 0;
+		float[] targetTime = new float[targets.size()];
+		float[] targetDistance = new float[targets.size()];
+		// unsettled target times (old entries are skipped when polled)
+		PriorityQueue<TargetTime> targetQueue = new PriorityQueue<TargetTime>();
+		for (int t = 0; t < targets.size(); t++) {
+			targetTime[t] = Float.POSITIVE_INFINITY;
+			RouteSegmentPoint target = targets.get(t);
+			if (target != null) {
+				targetsLeft++;
+				checkSameSegment(router, source, target, t, targetTime, targetDistance);
+				if (!Float.isInfinite(targetTime[t])) {
+					targetQueue.add(new TargetTime(t, targetTime[t]));
+				}
+			}
+		}
+		TLongObjectHashMap<Label> labels = new TLongObjectHashMap<Label>();
+		PriorityQueue<Label> queue = new PriorityQueue<Label>();
+		for (Access a : findAccess(router, source, s, true)) {
+			relax(labels, queue, a.x31, a.y31, a.pointKey, a.time, a.distance);
+		}
+		boolean[] settledTargets = new boolean[targets.size()];
+		while (!queue.isEmpty() && targetsLeft > 0) {
+			Label l = queue.poll();
+			if (labels.get(l.pointKey) != l) {
+				continue;
+			}
+			if (maxTime > 0 && l.time > maxTime) {
+				break;
+			}
+			// targets which couldn't be improved anymore
+			while (!targetQueue.isEmpty() && targetQueue.peek().time <= l.time) {
+				TargetTime tt = targetQueue.poll();
+				if (!settledTargets[tt.index] && tt.time == targetTime[tt.index]) {
+					settledTargets[tt.index] = true;
+					targetsLeft--;
+				}
+			}
+			List<Access> list = targetAccess.get(l.pointKey);
+			if (list != null) {
+				for (Access a : list) {
+					if (l.time + a.time < targetTime[a.index]) {
+						targetTime[a.index] = l.time + a.time;
+						targetDistance[a.index] = l.distance + a.distance;
+						targetQueue.add(new TargetTime(a.index, targetTime[a.index]));
+					}
+				}
+			}
+			RouteSegment segment = ctx.loadRouteSegment(l.x31, l.y31, ctx.config.memoryLimitation - ctx.memoryOverhead);
+			for (; segment != null; segment = segment.getNext()) {
+				RouteDataObject road = segment.getRoad();
+				int oneway = router.isOneWay(road);
+				int i = segment.getSegmentStart();
+				for (int d = -1; d <= 1; d += 2) {
+					int next = i + d;
+					if ((d > 0 && oneway < 0) || (d < 0 && oneway > 0) || next < 0 || next >= road.getPointsLength()) {
+						continue;
+					}
+					float time = ContractionHierarchy.calculateTime(router, road, i, next, 0);
+					if (time < 0) {
+						continue;
+					}
+					int x = road.getPoint31XTile(next);
+					int y = road.getPoint31YTile(next);
+					float dist = (float) BinaryRoutePlanner.squareRootDist(l.x31, l.y31, x, y);
+					relax(labels, queue, x, y, ContractionHierarchy.nodeKey(x, y), l.time + time, l.distance + dist);
+				}
+			}
+		}
+		for (int t = 0; t < targets.size(); t++) {
+			if (!Float.isInfinite(targetTime[t])) {
+				matrix.set(s, t, targetTime[t], targetDistance[t]);
+			}
+		}
+	}
+
+	private static void relax(TLongObjectHashMap<Label> labels, PriorityQueue<Label> queue, int x31, int y31, long key,
+			float time, float distance) {
+		Label ex = labels.get(key);
+		if (ex != null && ex.time <= time) {
+			return;
+		}
+		Label l = new Label(x31, y31, key, time, distance);
+		labels.put(key, l);
+		queue.add(l);
+	}
+
+	private static void checkSameSegment(VehicleRouter router, RouteSegmentPoint source, RouteSegmentPoint target,
+			int t, float[] targetTime, float[] targetDistance) {
+		RouteDataObject road = source.getRoad();
+		if (road.getId() != target.getRoad().getId() || source.getSegmentStart() != target.getSegmentStart()) {
+			return;
+		}
+		int prev = source.getSegmentStart() - 1;
+		int px = road.getPoint31XTile(prev);
+		int py = road.getPoint31YTile(prev);
+		// target is further from previous point than source
+		boolean positive = BinaryRoutePlanner.squareRootDist(px, py, source.preciseX, source.preciseY)
+				<= BinaryRoutePlanner.squareRootDist(px, py, target.preciseX, target.preciseY);
+		int oneway = router.isOneWay(road);
+		if ((positive && oneway >= 0) || (!positive && oneway <= 0)) {
+			double dist = BinaryRoutePlanner.squareRootDist(source.preciseX, source.preciseY, target.preciseX, target.preciseY);
+			targetTime[t] = ContractionHierarchy.calculateTime(router, road, prev, prev, dist);
+			targetDistance[t] = (float) dist;
+		}
+	}
+
+	/**
+	 * Road points next to point on the road which could be reached from point (or from which point could be reached)
+	 */
+	private static List<Access> findAccess(VehicleRouter router, RouteSegmentPoint point, int index, boolean fromPoint) {
+		List<Access> res = new ArrayList<Access>(2);
+		RouteDataObject road = point.getRoad();
+		int oneway = router.isOneWay(road);
+		for (int d = -1; d <= 1; d += 2) {
+			// moving by positive direction is allowed only for oneway >= 0
+			boolean positiveMove = fromPoint ? d > 0 : d < 0;
+			if ((positiveMove && oneway < 0) || (!positiveMove && oneway > 0)) {
+				continue;
+			}
+			int roadPoint = d > 0 ? point.getSegmentStart() : point.getSegmentStart() - 1;
+			int x = road.getPoint31XTile(roadPoint);
+			int y = road.getPoint31YTile(roadPoint);
+			double dist = BinaryRoutePlanner.squareRootDist(point.preciseX, point.preciseY, x, y);
+			float time = ContractionHierarchy.calculateTime(router, road, roadPoint, roadPoint, dist);
+			res.add(new Access(index, x, y, time, (float) dist));
+		}
+		return res;
+	}
+
+	private static class Access {
+		final int index;
+		final int x31;
+		final int y31;
+		final long pointKey;
+		final float time;
+		final float distance;
+
+		Access(int index, int x31, int y31, float time, float distance) {
+			this.index = index;
+			this.x31 = x31;
+			this.y31 = y31;
+			this.pointKey = ContractionHierarchy.nodeKey(x31, y31);
+			this.time = time;
+			this.distance = distance;
+		}
+	}
+
+	private static class TargetTime implements Comparable<TargetTime> {
+		final int index;
+		final float time;
+
+		TargetTime(int index, float time) {
+			this.index = index;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(TargetTime o) {
+			return Float.compare(time, o.time);
+		}
+	}
+
+	private static class Label implements Comparable<Label> {
+		final int x31;
+		final int y31;
+		final long pointKey;
+		final float time;
+		final float distance;
+
+		Label(int x31, int y31, long pointKey, float time, float distance) {
+			this.x31 = x31;
+			this.y31 = y31;
+			this.pointKey = pointKey;
+			this.time = time;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(Label o) {
+			return Float.compare(time, o.time);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package net.osmand.router;
 
 
+import net.osmand.Location;
 import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapIndexReader;
@@ -9,8 +10,10 @@ import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.data.QuadPoint;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutingMetricsListener.RoutingPhase;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -28,6 +31,8 @@ public class RoutePlannerFrontEnd {
 	private boolean useOldVersion;
 	protected static final Log log = PlatformUtil.getLog(RoutePlannerFrontEnd.class);
 	public boolean useSmartRouteRecalculation = true;
+	// max number of roads found around route point
+	public static final int NEAREST_SEGMENTS_LIMIT = 32;
 
 	public RoutePlannerFrontEnd(boolean useOldVersion) {
 		this.useOldVersion = useOldVersion;
@@ -56,6 +61,9 @@ public class RoutePlannerFrontEnd {
 	}
 
 	public RouteSegmentPoint findRouteSegment(double lat, double lon, RoutingContext ctx, List<RouteSegmentPoint> list) throws IOException {
+		if (ctx.nativeLib == null) {
+			return findRouteSegment(lat, lon, ctx, list, new NearestRouteSegments(NEAREST_SEGMENTS_LIMIT));
+		}
 		int px = MapUtils.get31TileNumberX(lon);
 		int py = MapUtils.get31TileNumberY(lat);
 		ArrayList<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
@@ -101,10 +109,162 @@ public class RoutePlannerFrontEnd {
 	}
 
 
+	/**
+	 * Finds nearest roads using segment index of loaded tiles, buffer is reused between calls
+	 */
+	public RouteSegmentPoint findRouteSegment(double lat, double lon, RoutingContext ctx, List<RouteSegmentPoint> list,
+			NearestRouteSegments buffer) {
+		int px = MapUtils.get31TileNumberX(lon);
+		int py = MapUtils.get31TileNumberY(lat);
+		buffer.clear();
+		ctx.findNearestSegments(px, py, 17, buffer);
+		if (buffer.size() == 0) {
+			ctx.findNearestSegments(px, py, 15, buffer);
+		}
+		if (list == null) {
+			list = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
+		}
+		for (int i = 0; i < buffer.size(); i++) {
+			RouteSegmentPoint road = new RouteSegmentPoint(new RouteDataObject(buffer.getRoad(i)),
+					buffer.getSegmentStart(i), buffer.getDistSquare(i));
+			road.preciseX = buffer.getPreciseX(i);
+			road.preciseY = buffer.getPreciseY(i);
+			list.add(road);
+		}
+		if (list.size() > 0) {
+			RouteSegmentPoint ps = list.get(0);
+			ps.others = list;
+			return ps;
+		}
+		return null;
+	}
+
+	/**
+	 * Nearest roads for many points (one list of roads sorted by distance per point), points are processed
+	 * in order of tiles to reuse loaded data.
+	 */
+	public List<List<RouteSegmentPoint>> findRouteSegments(List<LatLon> points, final RoutingContext ctx) throws IOException {
+		List<List<RouteSegmentPoint>> res = new ArrayList<List<RouteSegmentPoint>>(points.size());
+		NearestRouteSegments buffer = new NearestRouteSegments(NEAREST_SEGMENTS_LIMIT);
+		for (int i = 0; i < points.size(); i++) {
+			res.add(null);
+		}
+		for (int i : sortByTiles(points, ctx.config.ZOOM_TO_LOAD_TILES)) {
+			LatLon l = points.get(i);
+			List<RouteSegmentPoint> list = new ArrayList<RouteSegmentPoint>();
+			if (ctx.nativeLib == null) {
+				findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, list, buffer);
+			} else {
+				findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, list);
+			}
+			res.set(i, list);
+		}
+		return res;
+	}
+
+	/**
+	 * @return indexes of points ordered by tiles of zoom
+	 */
+	public static int[] sortByTiles(final List<LatLon> points, int zoom) {
+		final long[] tiles = new long[points.size()];
+		Integer[] order = new Integer[points.size()];
+		for (int i = 0; i < points.size(); i++) {
+			long tx = MapUtils.get31TileNumberX(points.get(i).getLongitude()) >> (31 - zoom);
+			long ty = MapUtils.get31TileNumberY(points.get(i).getLatitude()) >> (31 - zoom);
+			tiles[i] = (tx << zoom) + ty;
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return tiles[o1] < tiles[o2] ? -1 : (tiles[o1] == tiles[o2] ? 0 : 1);
+			}
+		});
+		int[] res = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			res[i] = order[i];
+		}
+		return res;
+	}
+
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates) throws IOException, InterruptedException {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
 
+	/**
+	 * Travel times and distances between all sources and targets (one search per source over the same context)
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> sources, List<LatLon> targets) throws IOException, InterruptedException {
+		return new RouteMatrixPlanner(this).searchRouteMatrix(ctx, sources, targets, 0);
+	}
+
+	/**
+	 * Best route and up to maxAlternatives alternative routes found by one bidirectional search
+	 * (see {@link AlternativeRoutes}). Only best route is calculated for native and one direction routing.
+	 * @return routes ordered by cost, empty list if route is not found
+	 */
+	public List<List<RouteSegmentResult>> searchRouteAlternatives(final RoutingContext ctx, LatLon start, LatLon end,
+			int maxAlternatives) throws IOException, InterruptedException {
+		List<List<RouteSegmentResult>> routes = new ArrayList<List<RouteSegmentResult>>();
+		if (ctx.nativeLib != null || !ctx.planRouteIn2Directions() || useOldVersion) {
+			List<RouteSegmentResult> res = searchRoute(ctx, start, end, null);
+			if (res != null && !res.isEmpty()) {
+				routes.add(res);
+			}
+			return routes;
+		}
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
+		if (!addSegment(start, ctx, 0, points) || !addSegment(end, ctx, 1, points)) {
+			return routes;
+		}
+		ctx.initStartAndTargetPoints(points.get(0), points.get(1));
+		refreshProgressDistance(ctx);
+		List<FinalRouteSegment> candidates = new BinaryRoutePlanner().searchRouteCandidates(ctx, points.get(0),
+				points.get(1), ctx.config.alternativeMaxStretch);
+		if (candidates.isEmpty()) {
+			return routes;
+		}
+		ctx.routingTime = candidates.get(0).distanceFromStart;
+		AlternativeRoutes alternatives = new AlternativeRoutes(ctx, ctx.config.alternativeMaxOverlap);
+		RouteResultPreparation preparation = new RouteResultPreparation();
+		for (List<RouteSegmentResult> res : alternatives.selectRoutes(candidates, maxAlternatives)) {
+			preparation.prepareResult(ctx, res);
+			makeStartEndPointsPrecise(res, start, end, null);
+			routes.add(res);
+		}
+		return routes;
+	}
+
+	/**
+	 * Roads reachable from start within max of thresholds (seconds) and outlines of reachable areas for each threshold.
+	 * Routing context is unloaded after search (segments keep search state).
+	 */
+	public Isochrone searchIsochrone(final RoutingContext ctx, LatLon start, float[] thresholds) throws IOException, InterruptedException {
+		RouteSegmentPoint startPoint = findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null);
+		List<Isochrone.ReachedSegment> segments;
+		if (startPoint == null) {
+			segments = new ArrayList<Isochrone.ReachedSegment>();
+		} else {
+			float maxTime = 0;
+			for (float t : thresholds) {
+				maxTime = Math.max(maxTime, t);
+			}
+			segments = new BinaryRoutePlanner().searchReachableSegments(ctx, startPoint, maxTime);
+			ctx.unloadAllData();
+		}
+		return new Isochrone(segments, thresholds);
+	}
+
+	/**
+	 * Matches GPS trace to roads (see {@link MapMatcher} for streaming mode)
+	 */
+	public List<RouteSegmentResult> searchMapMatching(final RoutingContext ctx, List<Location> trace) throws IOException, InterruptedException {
+		return new MapMatcher(ctx).match(trace);
+	}
+
 	public void setUseFastRecalculation(boolean use) {
 		useSmartRouteRecalculation = use;
 	}
@@ -136,6 +296,22 @@ public class RoutePlannerFrontEnd {
 
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
 	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		RoutingMetricsListener metrics = ctx.config.metricsListener;
+		if (metrics == null) {
+			return searchRouteBetweenPoints(ctx, start, end, intermediates, routeDirection);
+		}
+		metrics.calculationStarted(ctx);
+		List<RouteSegmentResult> res = null;
+		try {
+			res = searchRouteBetweenPoints(ctx, start, end, intermediates, routeDirection);
+		} finally {
+			metrics.calculationFinished(ctx, res != null && !res.isEmpty());
+		}
+		return res;
+	}
+
+	private List<RouteSegmentResult> searchRouteBetweenPoints(final RoutingContext ctx, LatLon start, LatLon end,
+			List<LatLon> intermediates, PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
 		if (ctx.calculationProgress == null) {
 			ctx.calculationProgress = new RouteCalculationProgress();
 		}
@@ -157,7 +333,7 @@ public class RoutePlannerFrontEnd {
 			}
 		}
 		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
-				&& maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
+				&& ctx.config.contractionHierarchy == null && maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
 			RoutingContext nctx = buildRoutingContext(ctx.config, ctx.nativeLib, ctx.getMaps(), RouteCalculationMode.BASE);
 			nctx.calculationProgress = ctx.calculationProgress;
 			List<RouteSegmentResult> ls = searchRoute(nctx, start, end, intermediates);
@@ -182,6 +358,7 @@ public class RoutePlannerFrontEnd {
 			makeStartEndPointsPrecise(res, start, end, intermediates);
 			return res;
 		}
+		long time = System.nanoTime();
 		int indexNotFound = 0;
 		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
 		if (!addSegment(start, ctx, indexNotFound++, points)) {
@@ -197,6 +374,9 @@ public class RoutePlannerFrontEnd {
 		if (!addSegment(end, ctx, indexNotFound++, points)) {
 			return null;
 		}
+		if (ctx.config.metricsListener != null) {
+			ctx.config.metricsListener.phaseFinished(ctx, RoutingPhase.FIND_ROUTE_SEGMENTS, System.nanoTime() - time);
+		}
 		List<RouteSegmentResult> res = searchRoute(ctx, points, routeDirection);
 		// make start and end more precise
 		makeStartEndPointsPrecise(res, start, end, intermediates);
@@ -291,6 +471,9 @@ public class RoutePlannerFrontEnd {
 		}
 
 		if (insert != 0) {
+			// road could be shared with other contexts through tile cache, so point is inserted into copy
+			r = new RouteDataObject(r);
+			routeSegmentResult.setObject(r);
 			if (st && routeSegmentResult.getStartPointIndex() < routeSegmentResult.getEndPointIndex()) {
 				routeSegmentResult.setEndPointIndex(routeSegmentResult.getEndPointIndex() + 1);
 			}
@@ -328,6 +511,17 @@ public class RoutePlannerFrontEnd {
 
 	private List<RouteSegmentResult> searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		if (ctx.reverseSearchTree != null && ctx.config.incrementalRecalculation && ctx.nativeLib == null
+				&& routeDirection == null && ctx.planRouteIn2Directions() && ctx.reverseSearchTree.isApplicable(ctx, end)) {
+			ctx.initStartAndTargetPoints(start, end);
+			refreshProgressDistance(ctx);
+			ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteIncremental(ctx, start, end, ctx.reverseSearchTree);
+			if (ctx.finalRouteSegment != null) {
+				return new RouteResultPreparation().prepareResult(ctx, ctx.finalRouteSegment);
+			}
+			// loaded segments keep state of search
+			ctx.unloadAllData();
+		}
 		RouteSegment recalculationEnd = getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
@@ -341,6 +535,15 @@ public class RoutePlannerFrontEnd {
 			return runNativeRouting(ctx, recalculationEnd);
 		} else {
 			refreshProgressDistance(ctx);
+			if (ctx.config.contractionHierarchy != null && recalculationEnd == null
+					&& ctx.calculationMode != RouteCalculationMode.BASE) {
+				long time = System.nanoTime();
+				List<RouteSegmentResult> res = ctx.config.contractionHierarchy.searchRoute(ctx, start, end);
+				if (res != null) {
+					log.info("Route is calculated by contraction hierarchy in " + (System.nanoTime() - time) / 1e6 + " ms");
+					return new RouteResultPreparation().prepareResult(ctx, res);
+				}
+			}
 			// Split into 2 methods to let GC work in between
 			if (useOldVersion) {
 				new BinaryRoutePlannerOld().searchRouteInternal(ctx, start, end);
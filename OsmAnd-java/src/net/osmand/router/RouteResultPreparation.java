@@ -25,6 +25,7 @@ import net.osmand.osm.MapRenderingTypes;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingMetricsListener.RoutingPhase;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
@@ -46,6 +47,7 @@ public class RouteResultPreparation {
 	}
 
 	List<RouteSegmentResult> prepareResult(RoutingContext ctx, List<RouteSegmentResult> result) throws IOException {
+		long time = System.nanoTime();
 		validateAllPointsConnected(result);
 		splitRoadsAndAttachRoadSegments(ctx, result);
 		calculateTimeSpeed(ctx, result);
@@ -59,6 +61,9 @@ public class RouteResultPreparation {
 		ignorePrecedingStraightsOnSameIntersection(ctx.leftSideNavigation, result);
 		justifyUTurns(ctx.leftSideNavigation, result);
 		addTurnInfoDescriptions(result);
+		if (ctx.config.metricsListener != null) {
+			ctx.config.metricsListener.phaseFinished(ctx, RoutingPhase.PREPARE_RESULT, System.nanoTime() - time);
+		}
 		return result;
 	}
 
@@ -116,6 +121,11 @@ public class RouteResultPreparation {
 			if (speed == 0) {
 				speed = ctx.getRouter().getMinDefaultSpeed();
 			} else {
+				// vehicle doesn't exceed speed limit (conditional limit is checked for departure time)
+				float maxSpeed = road.getMaximumSpeed(rr.isForwardDirection(), ctx.conditionalTimeBucket);
+				if (maxSpeed > 0 && maxSpeed < speed) {
+					speed = maxSpeed;
+				}
 				if(speed > 15) {
 					// decrease speed proportionally from 15ms=50kmh - 
 					// reference speed 30ms=108kmh - 7kmh
@@ -224,10 +234,19 @@ public class RouteResultPreparation {
 	}
 
 	private List<RouteSegmentResult> convertFinalSegmentToResults(RoutingContext ctx, FinalRouteSegment finalSegment) {
-		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
 		if (finalSegment != null) {
 			ctx.routingTime = finalSegment.distanceFromStart;
 			println("Routing calculated time distance " + finalSegment.distanceFromStart);
+		}
+		return collectRouteSegments(ctx, finalSegment);
+	}
+
+	/**
+	 * Segments of route from parent chains of direct and reverse search (without preparation)
+	 */
+	List<RouteSegmentResult> collectRouteSegments(RoutingContext ctx, FinalRouteSegment finalSegment) {
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		if (finalSegment != null) {
 			// Get results from opposite direction roads
 			RouteSegment segment = finalSegment.reverseWaySearch ? finalSegment : 
 				finalSegment.opposite.getParentRoute();
@@ -373,7 +392,7 @@ public class RouteResultPreparation {
 				additional.append("rtime = \"").append(res.getRoutingTime()).append("\" ");
 				additional.append("name = \"").append(name).append("\" ");
 //				float ms = res.getSegmentSpeed();
-				float ms = res.getObject().getMaximumSpeed(res.isForwardDirection());
+				float ms = res.getObject().getMaximumSpeed(res.isForwardDirection(), ctx.conditionalTimeBucket);
 				if(ms > 0) {
 					additional.append("maxspeed = \"").append(ms * 3.6f).append("\" ").append(res.getObject().getHighway()).append(" ");
 				}
@@ -0,0 +1,159 @@
+package net.osmand.router;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Indexed d-ary min heap of route segments ordered by f(x) = g(x) + heuristicCoefficient * h(x).
+ * Priorities are kept in primitive array (comparison doesn't touch segments) and position of segment
+ * is stored in segment itself, so offering segment which is already in the heap updates its priority
+ * (decrease key) instead of adding duplicate as {@link java.util.PriorityQueue} does.
+ */
+class RouteSegmentHeap extends AbstractQueue<RouteSegment> {
+
+	private final int arity;
+	private final float heuristicCoefficient;
+	private RouteSegment[] segments;
+	private float[] priorities;
+	private int size;
+
+	RouteSegmentHeap(int arity, float heuristicCoefficient) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("Heap arity should be at least 2");
+		}
+		this.arity = arity;
+		this.heuristicCoefficient = heuristicCoefficient;
+		segments = new RouteSegment[64];
+		priorities = new float[64];
+	}
+
+	@Override
+	public boolean offer(RouteSegment segment) {
+		float priority = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+		int i = segment.heapIndex;
+		if (i >= 0 && i < size && segments[i] == segment) {
+			float old = priorities[i];
+			priorities[i] = priority;
+			if (priority < old) {
+				siftUp(i);
+			} else if (priority > old) {
+				siftDown(i);
+			}
+			return true;
+		}
+		if (size == segments.length) {
+			segments = Arrays.copyOf(segments, size * 2);
+			priorities = Arrays.copyOf(priorities, size * 2);
+		}
+		segments[size] = segment;
+		priorities[size] = priority;
+		segment.heapIndex = size;
+		size++;
+		siftUp(size - 1);
+		return true;
+	}
+
+	@Override
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment r = segments[0];
+		size--;
+		if (size > 0) {
+			set(0, segments[size], priorities[size]);
+			siftDown(0);
+		}
+		segments[size] = null;
+		r.heapIndex = -1;
+		return r;
+	}
+
+	@Override
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			segments[i].heapIndex = -1;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public Iterator<RouteSegment> iterator() {
+		return new Iterator<RouteSegment>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public RouteSegment next() {
+				return segments[i++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void siftUp(int i) {
+		RouteSegment s = segments[i];
+		float p = priorities[i];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			if (priorities[parent] <= p) {
+				break;
+			}
+			set(i, segments[parent], priorities[parent]);
+			i = parent;
+		}
+		set(i, s, p);
+	}
+
+	private void siftDown(int i) {
+		RouteSegment s = segments[i];
+		float p = priorities[i];
+		while (true) {
+			int first = i * arity + 1;
+			if (first >= size) {
+				break;
+			}
+			int last = Math.min(first + arity, size);
+			int min = first;
+			for (int c = first + 1; c < last; c++) {
+				if (priorities[c] < priorities[min]) {
+					min = c;
+				}
+			}
+			if (priorities[min] >= p) {
+				break;
+			}
+			set(i, segments[min], priorities[min]);
+			i = min;
+		}
+		set(i, s, p);
+	}
+
+	private void set(int i, RouteSegment s, float p) {
+		segments[i] = s;
+		priorities[i] = p;
+		s.heapIndex = i;
+	}
+}
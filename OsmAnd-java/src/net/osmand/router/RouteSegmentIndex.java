@@ -0,0 +1,187 @@
+package net.osmand.router;
+
+import java.util.Collection;
+
+import net.osmand.binary.RouteDataObject;
+import net.osmand.util.MapUtils;
+
+/**
+ * Uniform grid over bounding boxes of road segments of one routing tile.
+ * Segments are stored in packed arrays (cell offsets and segment ids), nearest segments are found
+ * by visiting cells ring by ring around the point until next ring can't contain closer segments.
+ */
+class RouteSegmentIndex {
+
+	// average number of segments in cell
+	private static final int SEGMENTS_PER_CELL = 4;
+	private static final int MAX_CELLS_SIDE = 256;
+
+	private final RouteDataObject[] roads;
+	private final int[] segmentRoad;
+	private final int[] segmentEnd;
+	private final int left;
+	private final int top;
+	private final int cellShift;
+	private final int cellsX;
+	private final int cellsY;
+	private final int[] cellStart;
+	private final int[] cellSegments;
+
+	RouteSegmentIndex(Collection<RouteDataObject> objects) {
+		roads = objects.toArray(new RouteDataObject[objects.size()]);
+		int segments = 0;
+		int l = Integer.MAX_VALUE, t = Integer.MAX_VALUE, r = 0, b = 0;
+		for (RouteDataObject ro : roads) {
+			segments += Math.max(0, ro.getPointsLength() - 1);
+			for (int i = 0; i < ro.getPointsLength(); i++) {
+				l = Math.min(l, ro.getPoint31XTile(i));
+				r = Math.max(r, ro.getPoint31XTile(i));
+				t = Math.min(t, ro.getPoint31YTile(i));
+				b = Math.max(b, ro.getPoint31YTile(i));
+			}
+		}
+		segmentRoad = new int[segments];
+		segmentEnd = new int[segments];
+		int k = 0;
+		for (int j = 0; j < roads.length; j++) {
+			for (int i = 1; i < roads[j].getPointsLength(); i++) {
+				segmentRoad[k] = j;
+				segmentEnd[k++] = i;
+			}
+		}
+		if (segments == 0) {
+			l = t = r = b = 0;
+		}
+		left = l;
+		top = t;
+		// choose cell size (power of 2) so cells contain few segments
+		long area = ((long) (r - l) + 1) * ((long) (b - t) + 1);
+		int shift = 0;
+		while (shift < 31 && (area >> (2 * shift)) * SEGMENTS_PER_CELL > segments) {
+			shift++;
+		}
+		while (shift < 31 && (((long) (r - l)) >> shift >= MAX_CELLS_SIDE || ((long) (b - t)) >> shift >= MAX_CELLS_SIDE)) {
+			shift++;
+		}
+		cellShift = shift;
+		cellsX = ((r - l) >> shift) + 1;
+		cellsY = ((b - t) >> shift) + 1;
+		cellStart = new int[cellsX * cellsY + 1];
+		for (int s = 0; s < segments; s++) {
+			RouteDataObject ro = roads[segmentRoad[s]];
+			int i = segmentEnd[s];
+			int cx1 = cellX(Math.min(ro.getPoint31XTile(i - 1), ro.getPoint31XTile(i)));
+			int cx2 = cellX(Math.max(ro.getPoint31XTile(i - 1), ro.getPoint31XTile(i)));
+			int cy1 = cellY(Math.min(ro.getPoint31YTile(i - 1), ro.getPoint31YTile(i)));
+			int cy2 = cellY(Math.max(ro.getPoint31YTile(i - 1), ro.getPoint31YTile(i)));
+			for (int cy = cy1; cy <= cy2; cy++) {
+				for (int cx = cx1; cx <= cx2; cx++) {
+					cellStart[cy * cellsX + cx + 1]++;
+				}
+			}
+		}
+		for (int c = 0; c < cellsX * cellsY; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellSegments = new int[cellStart[cellsX * cellsY]];
+		int[] pos = new int[cellsX * cellsY];
+		for (int s = 0; s < segments; s++) {
+			RouteDataObject ro = roads[segmentRoad[s]];
+			int i = segmentEnd[s];
+			int cx1 = cellX(Math.min(ro.getPoint31XTile(i - 1), ro.getPoint31XTile(i)));
+			int cx2 = cellX(Math.max(ro.getPoint31XTile(i - 1), ro.getPoint31XTile(i)));
+			int cy1 = cellY(Math.min(ro.getPoint31YTile(i - 1), ro.getPoint31YTile(i)));
+			int cy2 = cellY(Math.max(ro.getPoint31YTile(i - 1), ro.getPoint31YTile(i)));
+			for (int cy = cy1; cy <= cy2; cy++) {
+				for (int cx = cx1; cx <= cx2; cx++) {
+					int c = cy * cellsX + cx;
+					cellSegments[cellStart[c] + pos[c]++] = s;
+				}
+			}
+		}
+	}
+
+	private int cellX(int x31) {
+		return (int) ((((long) x31) - left) >> cellShift);
+	}
+
+	private int cellY(int y31) {
+		return (int) ((((long) y31) - top) >> cellShift);
+	}
+
+	int getSegmentsCount() {
+		return segmentRoad.length;
+	}
+
+	/**
+	 * Adds nearest segments of tile to result (result could already contain segments of other tiles)
+	 */
+	void findNearest(int x31, int y31, NearestRouteSegments result) {
+		if (segmentRoad.length == 0) {
+			return;
+		}
+		// meters in one 31 tile unit around point
+		double ky = Math.abs(MapUtils.convert31YToMeters(y31, y31 + (1 << 16), x31)) / (1 << 16);
+		double kx = Math.abs(MapUtils.convert31XToMeters(x31, x31 + (1 << 16), y31)) / (1 << 16);
+		double kmin = Math.min(kx, ky);
+		long cellSize = 1l << cellShift;
+		int pcx = cellX(x31);
+		int pcy = cellY(y31);
+		// rings which should be visited to cover all cells
+		int maxRing = Math.max(Math.max(Math.abs(pcx), Math.abs(pcx - cellsX + 1)),
+				Math.max(Math.abs(pcy), Math.abs(pcy - cellsY + 1)));
+		for (int ring = 0; ring <= maxRing; ring++) {
+			if (ring > 0) {
+				// closest possible point of this ring
+				double d = (ring - 1) * cellSize * kmin;
+				if (d * d > result.getWorstDistSquare()) {
+					break;
+				}
+			}
+			for (int cy = pcy - ring; cy <= pcy + ring; cy++) {
+				if (cy < 0 || cy >= cellsY) {
+					continue;
+				}
+				boolean border = cy == pcy - ring || cy == pcy + ring;
+				int step = border ? 1 : 2 * ring;
+				for (int cx = pcx - ring; cx <= pcx + ring; cx += Math.max(step, 1)) {
+					if (cx >= 0 && cx < cellsX) {
+						visitCell(cy * cellsX + cx, x31, y31, kx, ky, result);
+					}
+				}
+			}
+		}
+	}
+
+	private void visitCell(int cell, int px, int py, double kx, double ky, NearestRouteSegments result) {
+		for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+			int s = cellSegments[k];
+			RouteDataObject ro = roads[segmentRoad[s]];
+			int i = segmentEnd[s];
+			int x1 = ro.getPoint31XTile(i - 1);
+			int y1 = ro.getPoint31YTile(i - 1);
+			int x2 = ro.getPoint31XTile(i);
+			int y2 = ro.getPoint31YTile(i);
+			// projection in local metric
+			double dx = (x2 - x1) * kx;
+			double dy = (y2 - y1) * ky;
+			double len = dx * dx + dy * dy;
+			double proj = ((px - x1) * kx * dx + (py - y1) * ky * dy);
+			int prx;
+			int pry;
+			if (proj <= 0 || len == 0) {
+				prx = x1;
+				pry = y1;
+			} else if (proj >= len) {
+				prx = x2;
+				pry = y2;
+			} else {
+				prx = (int) (x1 + (x2 - x1) * (proj / len));
+				pry = (int) (y1 + (y2 - y1) * (proj / len));
+			}
+			double mx = (prx - px) * kx;
+			double my = (pry - py) * ky;
+			result.add(ro, i, mx * mx + my * my, prx, pry);
+		}
+	}
+}
@@ -13,7 +13,7 @@ import net.osmand.util.MapUtils;
 
 
 public class RouteSegmentResult {
-	private final RouteDataObject object;
+	private RouteDataObject object;
 	private int startPointIndex;
 	private int endPointIndex;
 	private List<RouteSegmentResult>[] attachedRoutes;
@@ -114,6 +114,10 @@ public class RouteSegmentResult {
 	public RouteDataObject getObject() {
 		return object;
 	}
+
+	public void setObject(RouteDataObject r) {
+		this.object = r;
+	}
 	
 	public float getSegmentTime() {
 		return segmentTime;
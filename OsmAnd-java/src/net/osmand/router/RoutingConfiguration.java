@@ -37,6 +37,13 @@ public class RoutingConfiguration {
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// queue of segments to visit : 0 - java.util.PriorityQueue, >= 2 - indexed heap with such arity
+	public int heapArity = 0;
+	// run direct and reverse search in 2 threads (only for 2 ways search)
+	public boolean parallelSearch = false;
+	// alternative routes : max cost relative to the best route and max part shared with other routes
+	public float alternativeMaxStretch = 1.3f;
+	public float alternativeMaxOverlap = 0.7f;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -45,9 +52,24 @@ public class RoutingConfiguration {
 	
 	// 1.4 Used to calculate route in movement
 	public Double initialDirection;
+	// time (ms) for conditional values of roads, 0 - time when routing context is created
+	public long departureTime = 0;
 	
 	// 1.5 Recalculate distance help
 	public float recalculateDistance = 20000f;
+	// keep reverse search tree to the target, so recalculation to the same target runs only direct search
+	public boolean incrementalRecalculation = false;
+
+	// 1.6 Route data shared between routing contexts (null - every context loads its own data)
+	public RoutingTileCache tileCache;
+	// keep loaded tiles packed in primitive arrays, objects are created only for ways reached by search
+	public boolean compactTiles = false;
+
+	// 1.7 Precalculated hierarchy of router profile (null - regular search)
+	public ContractionHierarchy contractionHierarchy;
+
+	// 1.8 Metrics of calculations (null - metrics are not collected)
+	public RoutingMetricsListener metricsListener;
 	
 
 	public static class Builder {
@@ -57,6 +79,9 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<String, String>();
 		private HashMap<Long, Location> impassableRoadLocations = new HashMap<Long, Location>();
 		private List<RouteDataObject> impassableRoads = new ArrayList<RouteDataObject>();  
+		private RoutingTileCache tileCache;
+		private ContractionHierarchy contractionHierarchy;
+		private RoutingMetricsListener metricsListener;
 		
 		// Example
 //		{
@@ -99,12 +124,59 @@ public class RoutingConfiguration {
 				i.memoryLimitation = memoryLimitMB * (1 << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.heapArity = parseSilentInt(getAttribute(i.router, "heapArity"), i.heapArity);
+			i.parallelSearch = parseSilentBoolean(getAttribute(i.router, "parallelSearch"), i.parallelSearch);
+			i.alternativeMaxStretch = parseSilentFloat(getAttribute(i.router, "alternativeMaxStretch"), i.alternativeMaxStretch);
+			i.alternativeMaxOverlap = parseSilentFloat(getAttribute(i.router, "alternativeMaxOverlap"), i.alternativeMaxOverlap);
+			i.incrementalRecalculation = parseSilentBoolean(getAttribute(i.router, "incrementalRecalculation"),
+					i.incrementalRecalculation);
+			i.compactTiles = parseSilentBoolean(getAttribute(i.router, "compactTiles"), i.compactTiles);
+			i.tileCache = tileCache;
+			i.metricsListener = metricsListener;
+			if (contractionHierarchy != null && contractionHierarchy.getProfile().equals(i.routerName)
+					&& (params == null || params.isEmpty())) {
+				// hierarchy costs are calculated with default parameters of router
+				i.contractionHierarchy = contractionHierarchy;
+			}
 //			i.planRoadDirection = 1;
 			
 			return i;
 		}
 		
 
+		public RoutingTileCache getTileCache() {
+			return tileCache;
+		}
+
+		/**
+		 * @param tileCache cache shared by all configurations built after the call (null to disable)
+		 */
+		public void setTileCache(RoutingTileCache tileCache) {
+			this.tileCache = tileCache;
+		}
+
+		public ContractionHierarchy getContractionHierarchy() {
+			return contractionHierarchy;
+		}
+
+		/**
+		 * @param contractionHierarchy hierarchy used by configurations of the same router without parameters
+		 */
+		public void setContractionHierarchy(ContractionHierarchy contractionHierarchy) {
+			this.contractionHierarchy = contractionHierarchy;
+		}
+
+		public RoutingMetricsListener getMetricsListener() {
+			return metricsListener;
+		}
+
+		/**
+		 * @param metricsListener listener of all configurations built after the call (null to disable)
+		 */
+		public void setMetricsListener(RoutingMetricsListener metricsListener) {
+			this.metricsListener = metricsListener;
+		}
+
 		public List<RouteDataObject> getImpassableRoads() {
 			return impassableRoads;
 		}
@@ -154,6 +226,13 @@ public class RoutingConfiguration {
 	}
 
 
+	private static boolean parseSilentBoolean(String t, boolean v) {
+		if (t == null || t.length() == 0) {
+			return v;
+		}
+		return Boolean.parseBoolean(t);
+	}
+
 	private static float parseSilentFloat(String t, float v) {
 		if (t == null || t.length() == 0) {
 			return v;
@@ -26,6 +26,7 @@ import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
@@ -66,7 +67,13 @@ public class RoutingContext {
 	public RouteCalculationProgress calculationProgress;
 	public boolean leftSideNavigation;
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
+	// built by search when incremental recalculation is enabled, should be passed to next context with the same target
+	// (it is counted in memory overhead of search)
+	public ReverseSearchTree reverseSearchTree;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
+	// departure time pinned for calculation (see RouteTypeRule.getTimeBucket), router speed is defined by profile
+	// rules, so it is only used to check conditional max speed of result
+	public int conditionalTimeBucket;
 
 	// 2. Routing memory cache (big objects)
 	TLongObjectHashMap<List<RoutingSubregionTile>> indexedSubregions = new TLongObjectHashMap<List<RoutingSubregionTile>>();
@@ -105,6 +112,8 @@ public class RoutingContext {
 
 	// old planner
 	public FinalRouteSegment finalRouteSegment;
+	// context of calculation which created this context (local contexts of calculation report metrics with it)
+	private final RoutingContext calculationContext;
 
 
 	
@@ -116,11 +125,14 @@ public class RoutingContext {
 		this.leftSideNavigation = cp.leftSideNavigation;
 		this.reverseMap.putAll(cp.reverseMap);
 		this.nativeLib = cp.nativeLib;
+		this.conditionalTimeBucket = cp.conditionalTimeBucket;
+		this.reverseSearchTree = cp.reverseSearchTree;
+		this.calculationContext = cp.calculationContext;
 		// copy local data and clear caches
 		for(RoutingSubregionTile tl : subregionTiles) {
 			if(tl.isLoaded()) {
 				subregionTiles.add(tl);
-				for (RouteSegment rs : tl.routes.valueCollection()) {
+				for (RouteSegment rs : tl.routes == null ? Collections.<RouteSegment>emptyList() : tl.routes.valueCollection()) {
 					RouteSegment s = rs;
 					while (s != null) {
 						s.parentRoute = null;
@@ -151,6 +163,13 @@ public class RoutingContext {
 		}
 		this.config = config;
 		this.nativeLib = nativeLibrary;
+		this.conditionalTimeBucket = RouteTypeRule.getTimeBucket(config.departureTime != 0 ? config.departureTime
+				: System.currentTimeMillis());
+		this.calculationContext = this;
+	}
+
+	public RoutingContext getCalculationContext() {
+		return calculationContext;
 	}
 	
 	
@@ -310,13 +329,30 @@ public class RoutingContext {
 	public void loadSubregionTile(final RoutingSubregionTile ts, boolean loadObjectsInMemory, List<RouteDataObject> toLoad, TLongHashSet excludeNotAllowed) {
 		boolean wasUnloaded = ts.isUnloaded();
 		int ucount = ts.getUnloadCont();
+		RoutingMetricsListener metrics = config.metricsListener;
 		if (nativeLib == null) {
 			long now = System.nanoTime();
+			long readTime = 0;
+			int bytes = 0;
+			int objects = 0;
 			try {
-				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res = config.tileCache == null ? null : config.tileCache.get(ts.subregion);
+				List<RouteDataObject> compact = config.compactTiles && toLoad == null ? new ArrayList<RouteDataObject>() : null;
+				if (res == null) {
+					BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
+					// reader could be used by contexts of parallel search
+					synchronized (reader) {
+						res = reader.loadRouteIndexData(ts.subregion);
+					}
+					bytes = ts.subregion.length;
+					if (config.tileCache != null) {
+						config.tileCache.put(ts.subregion, res);
+					}
+				}
+				readTime = System.nanoTime() - now;
 //				System.out.println(ts.subregion.shiftToData + " " + res);
+				objects = res.size();
 				if(toLoad != null) {
 					toLoad.addAll(res);
 				} else {
@@ -324,7 +360,11 @@ public class RoutingContext {
 						if(ro != null) {
 							if(config.router.acceptLine(ro)) {
 								if(excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
-									ts.add(ro);
+									if (compact != null) {
+										compact.add(ro);
+									} else {
+										ts.add(ro);
+									}
 								}
 							} else if(excludeNotAllowed != null && ro.getId() > 0){
 								excludeNotAllowed.add(ro.getId());
@@ -335,19 +375,31 @@ public class RoutingContext {
 							}
 						}
 					}
+					if (compact != null) {
+						ts.setCompact(new CompactRouteTile(ts.subregion.routeReg, compact));
+					}
 				}
 			} catch (IOException e) {
 				throw new RuntimeException("Loading data exception", e);
 			}
 
-			timeToLoad += (System.nanoTime() - now);
-			
+			long time = System.nanoTime() - now;
+			timeToLoad += time;
+			if (metrics != null) {
+				metrics.tileLoaded(this, ts.subregion, bytes, readTime, time - readTime, objects);
+			}
 		} else {
 			long now = System.nanoTime();
 			NativeRouteSearchResult ns = nativeLib.loadRouteRegion(ts.subregion, loadObjectsInMemory);
+			long readTime = System.nanoTime() - now;
 //			System.out.println(ts.subregion.shiftToData + " " + Arrays.toString(ns.objects));
 			ts.setLoadedNative(ns, this);
-			timeToLoad += (System.nanoTime() - now);
+			long time = System.nanoTime() - now;
+			timeToLoad += time;
+			if (metrics != null) {
+				metrics.tileLoaded(this, ts.subregion, ts.subregion.length, readTime, time - readTime,
+						ns.objects == null ? 0 : ns.objects.length);
+			}
 		}
 		loadedTiles++;
 		if (wasUnloaded) {
@@ -398,7 +450,10 @@ public class RoutingContext {
 		List<RoutingSubregionTile> list = new ArrayList<RoutingContext.RoutingSubregionTile>();
 		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
 				Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
-		List<RouteSubregion> subregs = reader.searchRouteIndexTree(request, Collections.singletonList(reg));
+		List<RouteSubregion> subregs;
+		synchronized (reader) {
+			subregs = reader.searchRouteIndexTree(request, Collections.singletonList(reg));
+		}
 		for(RouteSubregion s : subregs) {
 			list.add(new RoutingSubregionTile(s));
 		}
@@ -415,7 +470,10 @@ public class RoutingContext {
 				if (r.getValue().size() > 0) {
 					long now = System.nanoTime();
 					// int rg = r.getValue().get(0).routeReg.regionsRead;
-					List<RouteSubregion> subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					List<RouteSubregion> subregs;
+					synchronized (r.getKey()) {
+						subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					}
 					if(subregs.size() > 0) {
 						checkOldRoutingFiles(r.getKey());
 					}
@@ -467,6 +525,40 @@ public class RoutingContext {
 		timeToFindInitialSegments += (System.nanoTime() - now);
 	}
 	
+	/**
+	 * Finds nearest road segments (one per road) in tiles around point (loaded in memory as for {@link #loadTileData}),
+	 * uses segment index of each loaded tile instead of checking all roads.
+	 */
+	public void findNearestSegments(int x31, int y31, int zoomAround, NearestRouteSegments result) {
+		int t = config.ZOOM_TO_LOAD_TILES - zoomAround;
+		int coordinatesShift = (1 << (31 - config.ZOOM_TO_LOAD_TILES));
+		if (t <= 0) {
+			t = 1;
+			coordinatesShift = (1 << (31 - zoomAround));
+		} else {
+			t = 1 << t;
+		}
+		long now = System.nanoTime();
+		TLongHashSet ts = new TLongHashSet();
+		for (int i = -t; i <= t; i++) {
+			for (int j = -t; j <= t; j++) {
+				long tileId = getRoutingTile(x31 + i * coordinatesShift, y31 + j * coordinatesShift, 0, OPTION_IN_MEMORY_LOAD);
+				if (ts.add(tileId)) {
+					List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+					if (subregions != null) {
+						for (RoutingSubregionTile rs : subregions) {
+							RouteSegmentIndex index = rs.getSegmentIndex(this);
+							if (index != null) {
+								index.findNearest(x31, y31, result);
+							}
+						}
+					}
+				}
+			}
+		}
+		timeToFindInitialSegments += (System.nanoTime() - now);
+	}
+
 	@SuppressWarnings("unused")
 	private long getRoutingTile(int x31, int y31, int memoryLimit, int loadOptions){
 //		long now = System.nanoTime();
@@ -573,6 +665,7 @@ public class RoutingContext {
 			}
 		});
 		int i = 0;
+		int sizeBefore = getCurrentEstimatedSize();
 		while(getCurrentEstimatedSize() >= desirableSize && (list.size() - i) > loaded / 5 && i < list.size()) {
 			RoutingSubregionTile unload = list.get(i);
 			i++;
@@ -586,6 +679,9 @@ public class RoutingContext {
 		for(RoutingSubregionTile t : subregionTiles) {
 			t.access /= 3;
 		}
+		if (i > 0 && config.metricsListener != null) {
+			config.metricsListener.tilesUnloaded(this, i, sizeBefore - getCurrentEstimatedSize());
+		}
 	}
 	
 	private void getAllObjects(long tileId, final List<RouteDataObject> toFillIn, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
@@ -644,7 +740,9 @@ public class RoutingContext {
 		private NativeRouteSearchResult searchResult = null;
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
+		private CompactRouteTile compact = null;
 		private TLongHashSet excludedIds = null;
+		private RouteSegmentIndex segmentIndex = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
 			this.subregion = subregion;
@@ -668,6 +766,16 @@ public class RoutingContext {
 						rs = rs.next;
 					}
 				}
+			} else if (compact != null) {
+				int size = compact.getEstimatedSize();
+				for (int k = 0; k < compact.size(); k++) {
+					RouteDataObject ro = compact.getObject(k);
+					if (!excludeDuplications.contains(ro.id)) {
+						excludeDuplications.put(ro.id, ro);
+						toFillIn.add(ro);
+					}
+				}
+				updateCompactSize(ctx, size);
 			} else if(searchResult != null) {
 				RouteDataObject[] objects = searchResult.objects;
 				if(objects != null) {
@@ -683,10 +791,16 @@ public class RoutingContext {
 		
 		private RouteSegment loadRouteSegment(int x31, int y31, RoutingContext ctx, 
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original) {
-			if(searchResult == null && routes == null) {
+			if(searchResult == null && routes == null && compact == null) {
 				return original;
 			}
 			access++;
+			if (compact != null) {
+				int size = compact.getEstimatedSize();
+				original = compact.loadRouteSegment(x31, y31, excludeDuplications, original);
+				updateCompactSize(ctx, size);
+				return original;
+			}
 			if (searchResult == null) {
 				long l = (((long) x31) << 31) + (long) y31;
 				RouteSegment segment = routes.get(l);
@@ -732,6 +846,31 @@ public class RoutingContext {
 			return original;
 		}
 		
+		/**
+		 * @return index of road segments (built on first request) or null if tile is loaded natively
+		 */
+		RouteSegmentIndex getSegmentIndex(RoutingContext ctx) {
+			if (segmentIndex == null && compact != null) {
+				int size = compact.getEstimatedSize();
+				List<RouteDataObject> objects = new ArrayList<RouteDataObject>(compact.size());
+				compact.getAllObjects(objects);
+				updateCompactSize(ctx, size);
+				segmentIndex = new RouteSegmentIndex(objects);
+			}
+			if (segmentIndex == null && routes != null) {
+				TLongObjectHashMap<RouteDataObject> objects = new TLongObjectHashMap<RouteDataObject>();
+				for (RouteSegment rs : routes.valueCollection()) {
+					for (; rs != null; rs = rs.next) {
+						if (!objects.containsKey(rs.road.id)) {
+							objects.put(rs.road.id, rs.road);
+						}
+					}
+				}
+				segmentIndex = new RouteSegmentIndex(objects.valueCollection());
+			}
+			return segmentIndex;
+		}
+
 		public boolean isLoaded() {
 			return isLoaded > 0;
 		}
@@ -755,7 +894,9 @@ public class RoutingContext {
 			}
 			searchResult = null;
 			routes = null;
+			compact = null;
 			excludedIds = null;
+			segmentIndex = null;
 		}
 		
 		public void setLoadedNonNative(){
@@ -764,7 +905,31 @@ public class RoutingContext {
 			tileStatistics = new TileStatistics();
 		}
 		
+		/**
+		 * Replaces objects added to tile with packed objects (they are created on first access)
+		 */
+		void setCompact(CompactRouteTile compact) {
+			this.compact = compact;
+			this.routes = null;
+			this.segmentIndex = null;
+			tileStatistics.allRoutes += compact.size();
+			tileStatistics.coordinates += compact.getPointsCount() * 2;
+			tileStatistics.size += compact.getEstimatedSize();
+		}
+
+		private void updateCompactSize(RoutingContext ctx, int previousSize) {
+			// created objects are counted in memory of tile
+			int diff = compact.getEstimatedSize() - previousSize;
+			if (diff != 0) {
+				tileStatistics.size += diff;
+				if (ctx != null && ctx.global != null) {
+					ctx.global.size += diff;
+				}
+			}
+		}
+
 		public void add(RouteDataObject ro) {
+			segmentIndex = null;
 			tileStatistics.addObject(ro);
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
@@ -0,0 +1,245 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+/**
+ * Default metrics listener : keeps traces of last calculations and totals of all calculations,
+ * both could be exported as JSON.
+ */
+public class RoutingMetrics implements RoutingMetricsListener {
+
+	private static final int DEFAULT_TRACES_LIMIT = 50;
+	private static final int MAX_QUEUE_SAMPLES = 1000;
+
+	public static class RegionMetrics {
+		public int tiles;
+		public long bytes;
+		public long readNanoTime;
+		public long decodeNanoTime;
+	}
+
+	/**
+	 * Trace of one calculation (local contexts of calculation are included)
+	 */
+	public static class CalculationTrace {
+		public final long startTime = System.currentTimeMillis();
+		private final long startNanoTime = System.nanoTime();
+		public long nanoTime;
+		public boolean routeFound;
+		public final long[] phaseNanoTime = new long[RoutingPhase.values().length];
+		public int loadedTiles;
+		public int cachedTiles;
+		public long tileBytes;
+		public long tileReadNanoTime;
+		public long tileDecodeNanoTime;
+		public int unloadEvents;
+		public int unloadedTiles;
+		public long unloadedSize;
+		// (visited segments, direct queue size, reverse queue size) for each sample
+		public final TIntArrayList queueSamples = new TIntArrayList();
+		public final Map<String, RegionMetrics> regions = new LinkedHashMap<String, RegionMetrics>();
+
+		void tileLoaded(RouteSubregion subregion, int bytes, long readNanoTime, long decodeNanoTime) {
+			loadedTiles++;
+			if (bytes == 0) {
+				cachedTiles++;
+			}
+			tileBytes += bytes;
+			tileReadNanoTime += readNanoTime;
+			tileDecodeNanoTime += decodeNanoTime;
+			String name = subregion.routeReg == null ? "" : subregion.routeReg.getName();
+			RegionMetrics r = regions.get(name);
+			if (r == null) {
+				r = new RegionMetrics();
+				regions.put(name, r);
+			}
+			r.tiles++;
+			r.bytes += bytes;
+			r.readNanoTime += readNanoTime;
+			r.decodeNanoTime += decodeNanoTime;
+		}
+
+		public String toJson() {
+			StringBuilder b = new StringBuilder();
+			b.append("{\"start\":").append(startTime);
+			b.append(",\"timeMs\":").append(nanoTime / 1e6);
+			b.append(",\"routeFound\":").append(routeFound);
+			b.append(",\"phasesMs\":{");
+			for (RoutingPhase p : RoutingPhase.values()) {
+				b.append(p.ordinal() > 0 ? "," : "").append('"').append(p.name()).append("\":")
+						.append(phaseNanoTime[p.ordinal()] / 1e6);
+			}
+			b.append("},\"tiles\":{\"loaded\":").append(loadedTiles).append(",\"cached\":").append(cachedTiles)
+					.append(",\"bytes\":").append(tileBytes).append(",\"readMs\":").append(tileReadNanoTime / 1e6)
+					.append(",\"decodeMs\":").append(tileDecodeNanoTime / 1e6)
+					.append(",\"unloadEvents\":").append(unloadEvents).append(",\"unloaded\":").append(unloadedTiles)
+					.append(",\"unloadedSize\":").append(unloadedSize).append('}');
+			b.append(",\"regions\":{");
+			boolean first = true;
+			for (Entry<String, RegionMetrics> e : regions.entrySet()) {
+				b.append(first ? "" : ",").append('"').append(e.getKey().replace("\"", "'")).append("\":{\"tiles\":")
+						.append(e.getValue().tiles).append(",\"bytes\":").append(e.getValue().bytes)
+						.append(",\"readMs\":").append(e.getValue().readNanoTime / 1e6)
+						.append(",\"decodeMs\":").append(e.getValue().decodeNanoTime / 1e6).append('}');
+				first = false;
+			}
+			b.append("},\"queues\":[");
+			for (int i = 0; i + 2 < queueSamples.size(); i += 3) {
+				b.append(i > 0 ? "," : "").append('[').append(queueSamples.get(i)).append(',')
+						.append(queueSamples.get(i + 1)).append(',').append(queueSamples.get(i + 2)).append(']');
+			}
+			b.append("]}");
+			return b.toString();
+		}
+	}
+
+	private final int tracesLimit;
+	private final Map<RoutingContext, CalculationTrace> active = new IdentityHashMap<RoutingContext, CalculationTrace>();
+	private final LinkedList<CalculationTrace> traces = new LinkedList<CalculationTrace>();
+	// totals of finished calculations
+	private final CalculationTrace totals = new CalculationTrace();
+	private int calculations;
+	private int failedCalculations;
+
+	public RoutingMetrics() {
+		this(DEFAULT_TRACES_LIMIT);
+	}
+
+	public RoutingMetrics(int tracesLimit) {
+		this.tracesLimit = tracesLimit;
+	}
+
+	private CalculationTrace getTrace(RoutingContext ctx) {
+		CalculationTrace t = active.get(ctx.getCalculationContext());
+		// events out of calculation are counted only in totals
+		return t == null ? totals : t;
+	}
+
+	@Override
+	public synchronized void calculationStarted(RoutingContext ctx) {
+		active.put(ctx.getCalculationContext(), new CalculationTrace());
+	}
+
+	@Override
+	public synchronized void phaseFinished(RoutingContext ctx, RoutingPhase phase, long nanoTime) {
+		getTrace(ctx).phaseNanoTime[phase.ordinal()] += nanoTime;
+	}
+
+	@Override
+	public synchronized void tileLoaded(RoutingContext ctx, RouteSubregion subregion, int bytes, long readNanoTime,
+			long decodeNanoTime, int objects) {
+		getTrace(ctx).tileLoaded(subregion, bytes, readNanoTime, decodeNanoTime);
+	}
+
+	@Override
+	public synchronized void tilesUnloaded(RoutingContext ctx, int tiles, int freedSize) {
+		CalculationTrace t = getTrace(ctx);
+		t.unloadEvents++;
+		t.unloadedTiles += tiles;
+		t.unloadedSize += freedSize;
+	}
+
+	@Override
+	public synchronized void queueSizes(RoutingContext ctx, int visitedSegments, int directQueueSize, int reverseQueueSize) {
+		CalculationTrace t = getTrace(ctx);
+		if (t != totals && t.queueSamples.size() < 3 * MAX_QUEUE_SAMPLES) {
+			t.queueSamples.add(visitedSegments);
+			t.queueSamples.add(directQueueSize);
+			t.queueSamples.add(reverseQueueSize);
+		}
+	}
+
+	@Override
+	public synchronized void calculationFinished(RoutingContext ctx, boolean routeFound) {
+		CalculationTrace t = active.remove(ctx.getCalculationContext());
+		if (t == null) {
+			return;
+		}
+		t.nanoTime = System.nanoTime() - t.startNanoTime;
+		t.routeFound = routeFound;
+		calculations++;
+		if (!routeFound) {
+			failedCalculations++;
+		}
+		totals.nanoTime += t.nanoTime;
+		for (int i = 0; i < t.phaseNanoTime.length; i++) {
+			totals.phaseNanoTime[i] += t.phaseNanoTime[i];
+		}
+		totals.loadedTiles += t.loadedTiles;
+		totals.cachedTiles += t.cachedTiles;
+		totals.tileBytes += t.tileBytes;
+		totals.tileReadNanoTime += t.tileReadNanoTime;
+		totals.tileDecodeNanoTime += t.tileDecodeNanoTime;
+		totals.unloadEvents += t.unloadEvents;
+		totals.unloadedTiles += t.unloadedTiles;
+		totals.unloadedSize += t.unloadedSize;
+		for (Entry<String, RegionMetrics> e : t.regions.entrySet()) {
+			RegionMetrics r = totals.regions.get(e.getKey());
+			if (r == null) {
+				r = new RegionMetrics();
+				totals.regions.put(e.getKey(), r);
+			}
+			r.tiles += e.getValue().tiles;
+			r.bytes += e.getValue().bytes;
+			r.readNanoTime += e.getValue().readNanoTime;
+			r.decodeNanoTime += e.getValue().decodeNanoTime;
+		}
+		traces.addLast(t);
+		while (traces.size() > tracesLimit) {
+			traces.removeFirst();
+		}
+	}
+
+	/**
+	 * @return traces of last finished calculations
+	 */
+	public synchronized List<CalculationTrace> getTraces() {
+		return new ArrayList<CalculationTrace>(traces);
+	}
+
+	public synchronized int getCalculations() {
+		return calculations;
+	}
+
+	public synchronized int getFailedCalculations() {
+		return failedCalculations;
+	}
+
+	public synchronized String exportJson() {
+		StringBuilder b = new StringBuilder();
+		b.append("{\"calculations\":").append(calculations).append(",\"failed\":").append(failedCalculations);
+		b.append(",\"totals\":").append(totals.toJson());
+		b.append(",\"traces\":[");
+		boolean first = true;
+		for (CalculationTrace t : traces) {
+			b.append(first ? "" : ",").append(t.toJson());
+			first = false;
+		}
+		b.append("]}");
+		return b.toString();
+	}
+
+	public synchronized void clear() {
+		traces.clear();
+		calculations = 0;
+		failedCalculations = 0;
+		totals.regions.clear();
+		totals.queueSamples.clear();
+		totals.nanoTime = totals.tileBytes = totals.unloadedSize = 0;
+		totals.tileReadNanoTime = totals.tileDecodeNanoTime = 0;
+		totals.loadedTiles = totals.cachedTiles = totals.unloadEvents = totals.unloadedTiles = 0;
+		for (int i = 0; i < totals.phaseNanoTime.length; i++) {
+			totals.phaseNanoTime[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+/**
+ * Receives metrics of route calculations (see {@link RoutingConfiguration#metricsListener}).
+ * Callbacks are called from routing threads (several at once for parallel search or different calculations),
+ * they are called per phase, tile or sample, so implementation could be simple but shouldn't block.
+ * Context passed to callbacks could be local context of calculation, use {@link RoutingContext#getCalculationContext()}
+ * to group events.
+ */
+public interface RoutingMetricsListener {
+
+	enum RoutingPhase {
+		FIND_ROUTE_SEGMENTS,
+		SEARCH,
+		PREPARE_RESULT
+	}
+
+	void calculationStarted(RoutingContext ctx);
+
+	void phaseFinished(RoutingContext ctx, RoutingPhase phase, long nanoTime);
+
+	/**
+	 * @param bytes size of data read from file (0 if tile is taken from cache)
+	 * @param readNanoTime time to read road objects of tile from file (or take them from tile cache)
+	 * @param decodeNanoTime time to decode objects into routing tile (router filters, compact tile)
+	 */
+	void tileLoaded(RoutingContext ctx, RouteSubregion subregion, int bytes, long readNanoTime, long decodeNanoTime,
+			int objects);
+
+	void tilesUnloaded(RoutingContext ctx, int tiles, int freedSize);
+
+	/**
+	 * Sample of queue sizes, taken every {@link BinaryRoutePlanner#METRICS_SAMPLE_SEGMENTS} visited segments
+	 */
+	void queueSizes(RoutingContext ctx, int visitedSegments, int directQueueSize, int reverseQueueSize);
+
+	void calculationFinished(RoutingContext ctx, boolean routeFound);
+}
@@ -0,0 +1,147 @@
+package net.osmand.router;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Memory limited LRU cache of route data blocks shared by different routing contexts (could be used concurrently).
+ * Blocks are cached before router filtering so contexts with different profiles reuse the same data.
+ * Cached objects are shared between contexts and shouldn't be modified.
+ */
+public class RoutingTileCache {
+
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(256, 0.75f, true);
+	private final long maxSizeBytes;
+	private long sizeBytes;
+	private long hits;
+	private long misses;
+
+	public RoutingTileCache(int memoryLimitMB) {
+		this.maxSizeBytes = ((long) memoryLimitMB) << 20;
+	}
+
+	public synchronized List<RouteDataObject> get(RouteSubregion subregion) {
+		CachedTile tile = tiles.get(new TileKey(subregion));
+		if (tile == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return tile.objects;
+	}
+
+	public synchronized void put(RouteSubregion subregion, List<RouteDataObject> objects) {
+		int size = 0;
+		for (RouteDataObject o : objects) {
+			if (o != null) {
+				size += RoutingContext.getEstimatedSize(o);
+			}
+		}
+		if (size > maxSizeBytes) {
+			return;
+		}
+		CachedTile old = tiles.put(new TileKey(subregion), new CachedTile(objects, size));
+		if (old != null) {
+			sizeBytes -= old.size;
+		}
+		sizeBytes += size;
+		Iterator<CachedTile> it = tiles.values().iterator();
+		while (sizeBytes > maxSizeBytes && it.hasNext()) {
+			sizeBytes -= it.next().size;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Removes data of all files which are not in the list (should be called when set of readers is changed)
+	 */
+	public synchronized void retainReaders(BinaryMapIndexReader[] readers) {
+		Set<RouteRegion> regions = Collections.newSetFromMap(new IdentityHashMap<RouteRegion, Boolean>());
+		for (BinaryMapIndexReader r : readers) {
+			regions.addAll(r.getRoutingIndexes());
+		}
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<TileKey, CachedTile> e = it.next();
+			if (!regions.contains(e.getKey().routeReg)) {
+				sizeBytes -= e.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		sizeBytes = 0;
+	}
+
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Routing tile cache: " + tiles.size() + " tiles, " + (sizeBytes >> 20) + " MB, hits " + hits
+				+ ", misses " + misses;
+	}
+
+	private static class CachedTile {
+		final List<RouteDataObject> objects;
+		final int size;
+
+		CachedTile(List<RouteDataObject> objects, int size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	private static class TileKey {
+		// region object is same for all readers of one file and new when file is reopened
+		final RouteRegion routeReg;
+		final long dataPointer;
+
+		TileKey(RouteSubregion subregion) {
+			this.routeReg = subregion.routeReg;
+			this.dataPointer = subregion.filePointer + subregion.shiftToData;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(routeReg) + (int) (dataPointer ^ (dataPointer >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return routeReg == other.routeReg && dataPointer == other.dataPointer;
+		}
+	}
+}
@@ -29,6 +29,7 @@ public class TestRouting {
 	public static boolean TEST_BOTH_DIRECTION = false;
 	public static NativeLibrary lib = null;
 	public static boolean oldRouting = false;
+	public static boolean COMPARE_PARALLEL = false;
 	private static String vehicle = "car";
 	
 	
@@ -50,6 +51,8 @@ public class TestRouting {
 			for (String a : args) {
 				if (a.startsWith("-routingXmlPath=")) {
 					routingXmlFile = a.substring("-routingXmlPath=".length());
+				} else if (a.startsWith("-compareParallel")) {
+					COMPARE_PARALLEL = true;
 				} else if (a.startsWith("-verbose")) {
 					RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = true;
 				} else if (a.startsWith("-obfDir=")) {
@@ -115,10 +118,14 @@ public class TestRouting {
 //					params.endLat, params.endLon);
 			BinaryMapIndexReader[] rs = collectFiles(params.obfDir.getAbsolutePath());
 			vehicle = params.vehicle;
-			calculateRoute(params.startLat, params.startLon,
-					params.endLat, params.endLon, rs);
-			calculateRoute(params.startLat, params.startLon,
-					params.endLat, params.endLon, rs);
+			if (COMPARE_PARALLEL) {
+				compareParallelSearch(params.startLat, params.startLon, params.endLat, params.endLon, rs, params.configBuilder);
+			} else {
+				calculateRoute(params.startLat, params.startLon,
+						params.endLat, params.endLon, rs);
+				calculateRoute(params.startLat, params.startLon,
+						params.endLat, params.endLon, rs);
+			}
 		}
 
 	}
@@ -139,7 +146,8 @@ public class TestRouting {
 
 	public static void info() {
 		println("Run router tests is console utility to test route calculation for osmand. It is also possible to calculate one route from -start to -end.");
-		println("\nUsage for run tests : runTestsSuite [-routingXmlPath=PATH] [-verbose] [-obfDir=PATH] [-vehicle=VEHICLE_STRING] [-start=lat;lon] [-end=lat;lon]  [-testDir=PATH] {individualTestPath}");
+		println("\nUsage for run tests : runTestsSuite [-routingXmlPath=PATH] [-verbose] [-obfDir=PATH] [-vehicle=VEHICLE_STRING] [-start=lat;lon] [-end=lat;lon]  [-testDir=PATH] [-compareParallel] {individualTestPath}");
+		println("\n-compareParallel : calculate route from -start to -end by sequential and parallel bidirectional search and compare time and visited segments");
     }
 	
 
@@ -325,4 +333,33 @@ public class TestRouting {
 		System.out.println("Route is " + route.size() + " segments " + (System.currentTimeMillis() - ts) + " ms ");
 	}
 
+	/**
+	 * Prints time and visited segments of sequential and parallel bidirectional search (first runs are warm up)
+	 */
+	public static void compareParallelSearch(double startLat, double startLon, double endLat, double endLon,
+			BinaryMapIndexReader[] rs, Builder config) throws IOException, InterruptedException {
+		LatLon start = new LatLon(startLat, startLon);
+		LatLon end = new LatLon(endLat, endLon);
+		int runs = 3;
+		for (int k = 0; k < 2; k++) {
+			boolean parallel = k == 1;
+			long bestTime = Long.MAX_VALUE;
+			int visited = 0;
+			float routingTime = 0;
+			for (int r = 0; r < runs; r++) {
+				RoutingConfiguration rconfig = config.build(vehicle, MEMORY_TEST_LIMIT);
+				rconfig.parallelSearch = parallel;
+				RoutePlannerFrontEnd router = new RoutePlannerFrontEnd(false);
+				RoutingContext ctx = router.buildRoutingContext(rconfig, lib, rs);
+				long ts = System.currentTimeMillis();
+				router.searchRoute(ctx, start, end, null);
+				bestTime = Math.min(bestTime, System.currentTimeMillis() - ts);
+				visited = ctx.visitedSegments;
+				routingTime = ctx.routingTime;
+			}
+			println((parallel ? "Parallel  " : "Sequential") + " search : " + bestTime + " ms, visited segments "
+					+ visited + ", route time " + routingTime + " s");
+		}
+	}
+
 }
@@ -0,0 +1,78 @@
+package net.osmand.router.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.data.LatLon;
+
+/**
+ * Route request to {@link RoutingService}. Requests with same profile and parameters reuse routing configuration
+ * of worker.
+ */
+public class RouteRequest {
+
+	private final LatLon start;
+	private final LatLon end;
+	private final List<LatLon> intermediates = new ArrayList<LatLon>();
+	private final String profile;
+	private final Map<String, String> params = new LinkedHashMap<String, String>();
+	// 0 - default limit of service
+	private int memoryLimitMB;
+
+	public RouteRequest(LatLon start, LatLon end, String profile) {
+		this.start = start;
+		this.end = end;
+		this.profile = profile;
+	}
+
+	public LatLon getStart() {
+		return start;
+	}
+
+	public LatLon getEnd() {
+		return end;
+	}
+
+	public List<LatLon> getIntermediates() {
+		return intermediates;
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public Map<String, String> getParams() {
+		return params;
+	}
+
+	public int getMemoryLimitMB() {
+		return memoryLimitMB;
+	}
+
+	public RouteRequest setMemoryLimitMB(int memoryLimitMB) {
+		this.memoryLimitMB = memoryLimitMB;
+		return this;
+	}
+
+	public RouteRequest addIntermediate(LatLon l) {
+		intermediates.add(l);
+		return this;
+	}
+
+	public RouteRequest setParam(String key, String value) {
+		params.put(key, value);
+		return this;
+	}
+
+	List<Object> getConfigKey() {
+		return Arrays.<Object>asList(profile, params, memoryLimitMB);
+	}
+
+	@Override
+	public String toString() {
+		return profile + " " + start + " -> " + end;
+	}
+}
@@ -0,0 +1,60 @@
+package net.osmand.router.service;
+
+import java.util.List;
+
+import net.osmand.router.RouteSegmentResult;
+
+public class RouteResponse {
+
+	private final RouteRequest request;
+	private final List<RouteSegmentResult> route;
+	private final String error;
+	// time in queue and time of calculation (ms)
+	private final long waitTime;
+	private final long calculationTime;
+
+	RouteResponse(RouteRequest request, List<RouteSegmentResult> route, String error, long waitTime, long calculationTime) {
+		this.request = request;
+		this.route = route;
+		this.error = error;
+		this.waitTime = waitTime;
+		this.calculationTime = calculationTime;
+	}
+
+	public RouteRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return route segments or null if route is not found
+	 */
+	public List<RouteSegmentResult> getRoute() {
+		return route;
+	}
+
+	public boolean isRouteFound() {
+		return route != null && !route.isEmpty();
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public long getWaitTime() {
+		return waitTime;
+	}
+
+	public long getCalculationTime() {
+		return calculationTime;
+	}
+
+	public float getDistance() {
+		float d = 0;
+		if (route != null) {
+			for (RouteSegmentResult r : route) {
+				d += r.getDistance();
+			}
+		}
+		return d;
+	}
+}
@@ -0,0 +1,228 @@
+package net.osmand.router.service;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Load test of {@link RoutingService} : concurrent clients send random requests inside bbox and
+ * throughput and latency percentiles are reported. Example :
+ * -obfDir=/maps -bbox=52.6,13.1,52.3,13.7 -requests=1000 -clients=16 -workers=8 -batch=1 -maxDist=20
+ */
+public class RoutingLoadTest {
+
+	private static final Log log = PlatformUtil.getLog(RoutingLoadTest.class);
+
+	private static class Params {
+		File obfDir;
+		File routingXml;
+		String profile = "car";
+		// top lat, left lon, bottom lat, right lon
+		double[] bbox;
+		int requests = 200;
+		int clients = 8;
+		int batch = 1;
+		// max distance between start and end (km)
+		double maxDist = 30;
+		long seed = 1;
+		RoutingService.Settings settings = new RoutingService.Settings();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Params p = parseParams(args);
+		if (p.obfDir == null || p.bbox == null) {
+			System.out.println("Usage : -obfDir=folder -bbox=topLat,leftLon,bottomLat,rightLon [-profile=car] [-requests=N] "
+					+ "[-clients=N] [-workers=N] [-queue=N] [-batch=N] [-maxDist=km] [-memoryLimit=MB] "
+					+ "[-tileCache=MB] [-routingXml=file] [-seed=N]");
+			return;
+		}
+		List<File> files = new ArrayList<File>();
+		for (File f : p.obfDir.listFiles()) {
+			if (f.getName().endsWith(".obf")) {
+				files.add(f);
+			}
+		}
+		RoutingConfiguration.Builder builder = p.routingXml == null ? RoutingConfiguration.getDefault()
+				: RoutingConfiguration.parseFromInputStream(new FileInputStream(p.routingXml));
+		long time = System.currentTimeMillis();
+		RoutingService service = new RoutingService(files, builder, p.settings);
+		service.prewarm();
+		System.out.println("Service started in " + (System.currentTimeMillis() - time) + " ms : " + files.size()
+				+ " files, " + p.settings.workers + " workers");
+		List<RouteRequest> requests = generateRequests(p);
+		runWarmUp(service, requests);
+		run(service, requests, p);
+		service.shutdown();
+	}
+
+	private static void runWarmUp(RoutingService service, List<RouteRequest> requests) throws InterruptedException {
+		long time = System.currentTimeMillis();
+		int cnt = Math.min(requests.size(), 3);
+		for (int i = 0; i < cnt; i++) {
+			service.route(requests.get(i));
+		}
+		System.out.println("Warm up " + cnt + " requests : " + (System.currentTimeMillis() - time) + " ms, "
+				+ service.getTileCache());
+	}
+
+	private static void run(final RoutingService service, final List<RouteRequest> requests, final Params p)
+			throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger found = new AtomicInteger();
+		final AtomicInteger retries = new AtomicInteger();
+		final TLongArrayList latencies = new TLongArrayList();
+		final TLongArrayList calcTimes = new TLongArrayList();
+		long rejectedBefore = service.getRejectedRequests();
+		long time = System.nanoTime();
+		Thread[] clients = new Thread[p.clients];
+		for (int c = 0; c < clients.length; c++) {
+			clients[c] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					int start;
+					while ((start = next.getAndAdd(p.batch)) < requests.size()) {
+						List<RouteRequest> batch = requests.subList(start, Math.min(requests.size(), start + p.batch));
+						long t = System.nanoTime();
+						try {
+							List<Future<RouteResponse>> futures = submit(service, batch, retries);
+							for (Future<RouteResponse> f : futures) {
+								RouteResponse r = f.get();
+								long latency = (System.nanoTime() - t) / 1000000;
+								synchronized (latencies) {
+									latencies.add(latency);
+									calcTimes.add(r.getCalculationTime());
+								}
+								if (r.isRouteFound()) {
+									found.incrementAndGet();
+								}
+							}
+						} catch (Exception e) {
+							log.error("Client is stopped", e);
+							return;
+						}
+					}
+				}
+			}, "Client-" + c);
+			clients[c].start();
+		}
+		for (Thread t : clients) {
+			t.join();
+		}
+		double seconds = (System.nanoTime() - time) / 1e9;
+		System.out.println(String.format("Requests %d (found %d, failed %d) in %.1f s : throughput %.2f req/s",
+				latencies.size(), found.get(), latencies.size() - found.get(), seconds, latencies.size() / seconds));
+		System.out.println("Rejected submissions " + (service.getRejectedRequests() - rejectedBefore)
+				+ " (retried " + retries.get() + ")");
+		printPercentiles("Latency", latencies);
+		printPercentiles("Calculation time", calcTimes);
+		System.out.println(service.getTileCache());
+	}
+
+	private static List<Future<RouteResponse>> submit(RoutingService service, List<RouteRequest> batch,
+			AtomicInteger retries) throws InterruptedException {
+		while (true) {
+			try {
+				return service.submitBatch(batch);
+			} catch (RejectedExecutionException e) {
+				// back-pressure : client waits and retries
+				retries.incrementAndGet();
+				Thread.sleep(20);
+			}
+		}
+	}
+
+	private static void printPercentiles(String name, TLongArrayList values) {
+		if (values.isEmpty()) {
+			return;
+		}
+		long[] sorted = values.toArray();
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (long l : sorted) {
+			sum += l;
+		}
+		System.out.println(String.format("%s ms : avg %d, p50 %d, p90 %d, p99 %d, max %d", name, sum / sorted.length,
+				percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[sorted.length - 1]));
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		int ind = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, ind))];
+	}
+
+	private static List<RouteRequest> generateRequests(Params p) {
+		Random rnd = new Random(p.seed);
+		List<RouteRequest> requests = new ArrayList<RouteRequest>();
+		while (requests.size() < p.requests) {
+			LatLon start = randomPoint(rnd, p.bbox);
+			LatLon end = randomPoint(rnd, p.bbox);
+			if (MapUtils.getDistance(start, end) <= p.maxDist * 1000) {
+				requests.add(new RouteRequest(start, end, p.profile));
+			}
+		}
+		return requests;
+	}
+
+	private static LatLon randomPoint(Random rnd, double[] bbox) {
+		double lat = bbox[2] + rnd.nextDouble() * (bbox[0] - bbox[2]);
+		double lon = bbox[1] + rnd.nextDouble() * (bbox[3] - bbox[1]);
+		return new LatLon(lat, lon);
+	}
+
+	private static Params parseParams(String[] args) {
+		Params p = new Params();
+		for (String a : args) {
+			int i = a.indexOf('=');
+			if (i < 0) {
+				continue;
+			}
+			String key = a.substring(0, i);
+			String val = a.substring(i + 1);
+			if (key.equals("-obfDir")) {
+				p.obfDir = new File(val);
+			} else if (key.equals("-routingXml")) {
+				p.routingXml = new File(val);
+			} else if (key.equals("-profile")) {
+				p.profile = val;
+			} else if (key.equals("-bbox")) {
+				String[] s = val.split(",");
+				p.bbox = new double[] { Double.parseDouble(s[0]), Double.parseDouble(s[1]),
+						Double.parseDouble(s[2]), Double.parseDouble(s[3]) };
+			} else if (key.equals("-requests")) {
+				p.requests = Integer.parseInt(val);
+			} else if (key.equals("-clients")) {
+				p.clients = Integer.parseInt(val);
+			} else if (key.equals("-batch")) {
+				p.batch = Math.max(1, Integer.parseInt(val));
+			} else if (key.equals("-maxDist")) {
+				p.maxDist = Double.parseDouble(val);
+			} else if (key.equals("-seed")) {
+				p.seed = Long.parseLong(val);
+			} else if (key.equals("-workers")) {
+				p.settings.workers = Integer.parseInt(val);
+			} else if (key.equals("-queue")) {
+				p.settings.queueCapacity = Integer.parseInt(val);
+			} else if (key.equals("-memoryLimit")) {
+				p.settings.memoryLimitMB = Integer.parseInt(val);
+			} else if (key.equals("-tileCache")) {
+				p.settings.tileCacheMB = Integer.parseInt(val);
+			}
+		}
+		return p;
+	}
+}
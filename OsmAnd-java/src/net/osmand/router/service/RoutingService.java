@@ -0,0 +1,282 @@
+package net.osmand.router.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.RouteCalculationProgress;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RouteSegmentResult;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.router.RoutingTileCache;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Headless routing service for servers : files are opened once, every worker thread reads them through
+ * its own reader copies (readers are not thread safe) and all workers share one cache of route tiles.
+ * Number of accepted requests (running and queued) is limited, new requests are rejected
+ * with {@link RejectedExecutionException} when service is overloaded (back-pressure).
+ * Every request is a separate task (requests of batch are calculated in parallel), it has its own routing context
+ * (segments keep state of search) and reads tiles from shared cache. Worker keeps configuration for each
+ * profile and parameters, so router caches are reused by its next requests.
+ */
+public class RoutingService {
+
+	private static final Log log = PlatformUtil.getLog(RoutingService.class);
+
+	public static class Settings {
+		public int workers = Runtime.getRuntime().availableProcessors();
+		// max number of queued requests (in addition to running ones)
+		public int queueCapacity = 256;
+		public int memoryLimitMB = RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3;
+		public int tileCacheMB = 512;
+		public boolean useMemoryMapping = true;
+	}
+
+	private final Settings settings;
+	private final RoutingConfiguration.Builder configBuilder;
+	private final BinaryMapIndexReader[] readers;
+	private final RoutingTileCache tileCache;
+	private final ThreadPoolExecutor executor;
+	private final Semaphore capacity;
+	private final List<BinaryMapIndexReader> workerReaders = Collections.synchronizedList(new ArrayList<BinaryMapIndexReader>());
+	private final ThreadLocal<BinaryMapIndexReader[]> localReaders = new ThreadLocal<BinaryMapIndexReader[]>();
+	private final ThreadLocal<Map<List<Object>, RoutingConfiguration>> localConfigs =
+			new ThreadLocal<Map<List<Object>, RoutingConfiguration>>();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	public RoutingService(List<File> obfFiles, RoutingConfiguration.Builder configBuilder, Settings settings)
+			throws IOException {
+		this.settings = settings;
+		this.configBuilder = configBuilder;
+		this.tileCache = new RoutingTileCache(settings.tileCacheMB);
+		configBuilder.setTileCache(tileCache);
+		long time = System.currentTimeMillis();
+		readers = new BinaryMapIndexReader[obfFiles.size()];
+		for (int i = 0; i < readers.length; i++) {
+			File f = obfFiles.get(i);
+			readers[i] = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f, true, settings.useMemoryMapping);
+		}
+		log.info("Routing service : " + readers.length + " files are opened in " + (System.currentTimeMillis() - time) + " ms");
+		capacity = new Semaphore(settings.workers + settings.queueCapacity);
+		final AtomicInteger threadId = new AtomicInteger();
+		executor = new ThreadPoolExecutor(settings.workers, settings.workers, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Routing-" + threadId.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * Starts all workers and opens their readers, so first requests don't wait for it
+	 */
+	public void prewarm() throws InterruptedException {
+		executor.prestartAllCoreThreads();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < settings.workers; i++) {
+			futures.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws IOException {
+					return getReaders();
+				}
+			}));
+		}
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (Exception e) {
+				log.error("Worker readers are not opened", e);
+			}
+		}
+	}
+
+	public Future<RouteResponse> submit(RouteRequest request) {
+		return submitBatch(Collections.singletonList(request)).get(0);
+	}
+
+	/**
+	 * All requests of batch are accepted or rejected at once
+	 * @return futures in the same order as requests
+	 */
+	public List<Future<RouteResponse>> submitBatch(List<RouteRequest> requests) {
+		if (!capacity.tryAcquire(requests.size())) {
+			rejected.addAndGet(requests.size());
+			throw new RejectedExecutionException("Routing service is overloaded");
+		}
+		long submitTime = System.nanoTime();
+		List<Future<RouteResponse>> res = new ArrayList<Future<RouteResponse>>(requests.size());
+		int executed = 0;
+		try {
+			for (RouteRequest r : requests) {
+				RouteTask task = new RouteTask(r, submitTime);
+				res.add(task);
+				executor.execute(task);
+				executed++;
+			}
+		} catch (RejectedExecutionException e) {
+			// executor is shut down : executed tasks release their permits when they are run or cancelled
+			for (Future<RouteResponse> f : res) {
+				f.cancel(false);
+			}
+			capacity.release(requests.size() - executed);
+			rejected.addAndGet(requests.size());
+			throw e;
+		}
+		return res;
+	}
+
+	public RouteResponse route(RouteRequest request) throws InterruptedException {
+		try {
+			return submit(request).get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private BinaryMapIndexReader[] getReaders() throws IOException {
+		BinaryMapIndexReader[] rs = localReaders.get();
+		if (rs == null) {
+			rs = new BinaryMapIndexReader[readers.length];
+			for (int i = 0; i < readers.length; i++) {
+				rs[i] = new BinaryMapIndexReader(new RandomAccessFile(readers[i].getFile(), "r"), readers[i]);
+				workerReaders.add(rs[i]);
+			}
+			localReaders.set(rs);
+		}
+		return rs;
+	}
+
+	private RoutingConfiguration getConfig(RouteRequest r) {
+		Map<List<Object>, RoutingConfiguration> configs = localConfigs.get();
+		if (configs == null) {
+			configs = new LinkedHashMap<List<Object>, RoutingConfiguration>();
+			localConfigs.set(configs);
+		}
+		RoutingConfiguration config = configs.get(r.getConfigKey());
+		if (config == null) {
+			int memoryLimit = r.getMemoryLimitMB() > 0 ? r.getMemoryLimitMB() : settings.memoryLimitMB;
+			synchronized (configBuilder) {
+				config = configBuilder.build(r.getProfile(), memoryLimit, r.getParams());
+			}
+			configs.put(r.getConfigKey(), config);
+		}
+		return config;
+	}
+
+	private class RouteTask extends FutureTask<RouteResponse> {
+		RouteTask(final RouteRequest r, final long submitTime) {
+			super(new Callable<RouteResponse>() {
+				@Override
+				public RouteResponse call() {
+					return calculate(r, submitTime);
+				}
+			});
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				capacity.release();
+			}
+		}
+	}
+
+	private RouteResponse calculate(RouteRequest r, long submitTime) {
+		long start = System.nanoTime();
+		long waitTime = (start - submitTime) / 1000000;
+		String error = null;
+		List<RouteSegmentResult> route = null;
+		try {
+			// loaded data of previous request is reused through tile cache
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd(false);
+			RoutingContext ctx = frontEnd.buildRoutingContext(getConfig(r), null, getReaders());
+			ctx.calculationProgress = new RouteCalculationProgress();
+			route = frontEnd.searchRoute(ctx, r.getStart(), r.getEnd(), r.getIntermediates());
+			if (route == null) {
+				error = "Route segment is not found for point " + ctx.calculationProgress.segmentNotFound;
+			}
+		} catch (InterruptedException e) {
+			error = "Interrupted";
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			error = e.getMessage();
+			log.error("Route calculation failed " + r, e);
+		} catch (RuntimeException e) {
+			// memory limit is exceeded or route is not found
+			error = e.getMessage();
+		}
+		if (error != null) {
+			failed.incrementAndGet();
+		} else {
+			completed.incrementAndGet();
+		}
+		return new RouteResponse(r, route, error, waitTime, (System.nanoTime() - start) / 1000000);
+	}
+
+	public RoutingTileCache getTileCache() {
+		return tileCache;
+	}
+
+	/**
+	 * @return number of running and queued requests
+	 */
+	public int getPendingRequests() {
+		return settings.workers + settings.queueCapacity - capacity.availablePermits();
+	}
+
+	public long getCompletedRequests() {
+		return completed.get();
+	}
+
+	public long getFailedRequests() {
+		return failed.get();
+	}
+
+	public long getRejectedRequests() {
+		return rejected.get();
+	}
+
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		List<BinaryMapIndexReader> toClose = new ArrayList<BinaryMapIndexReader>(workerReaders);
+		Collections.addAll(toClose, readers);
+		for (BinaryMapIndexReader r : toClose) {
+			try {
+				r.close();
+			} catch (IOException e) {
+				log.warn("Reader is not closed " + r.getFile(), e);
+			}
+		}
+		log.info("Routing service is stopped : " + tileCache);
+	}
+}
@@ -0,0 +1,84 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.osmand.binary.VectorTile.Tile;
+import net.osmand.data.GeometryTile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.MvtReader;
+import com.wdtinc.mapbox_vector_tile.adapt.jts.TagKeyValueMapConverter;
+
+public class BinaryVectorTileReaderTest {
+
+	private static byte[] createTile() {
+		Tile.Layer.Builder images = Tile.Layer.newBuilder().setVersion(2).setName("images").setExtent(4096)
+				.addKeys("key").addKeys("captured_at")
+				.addValues(Tile.Value.newBuilder().setStringValue("abc"))
+				.addValues(Tile.Value.newBuilder().setIntValue(1500000000000L))
+				.addValues(Tile.Value.newBuilder().setStringValue("def"));
+		images.addFeatures(Tile.Feature.newBuilder().setId(1).setType(Tile.GeomType.POINT)
+				.addAllTags(Arrays.asList(0, 0, 1, 1)).addAllGeometry(Arrays.asList(9, 200, 400)));
+		images.addFeatures(Tile.Feature.newBuilder().setId(2).setType(Tile.GeomType.POINT)
+				.addAllTags(Arrays.asList(0, 2)).addAllGeometry(Arrays.asList(17, 10, 20, 30, 40)));
+		Tile.Layer.Builder sequences = Tile.Layer.newBuilder().setVersion(2).setName("sequences").setExtent(4096)
+				.addKeys("skey").addValues(Tile.Value.newBuilder().setStringValue("s1"));
+		sequences.addFeatures(Tile.Feature.newBuilder().setType(Tile.GeomType.LINESTRING)
+				.addAllTags(Arrays.asList(0, 0)).addAllGeometry(Arrays.asList(9, 4, 4, 18, 10, 0, 0, 10)));
+		sequences.addFeatures(Tile.Feature.newBuilder().setType(Tile.GeomType.POLYGON)
+				.addAllGeometry(Arrays.asList(9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15)));
+		return Tile.newBuilder().addLayers(images).addLayers(sequences).build().toByteArray();
+	}
+
+	@Test
+	public void testFeaturesAreSameAsJtsGeometries() throws Exception {
+		byte[] data = createTile();
+		List<Geometry> expected = MvtReader.loadMvt(new ByteArrayInputStream(data), new GeometryFactory(),
+				new TagKeyValueMapConverter());
+		GeometryTile tile = BinaryVectorTileReader.readTile(new ByteArrayInputStream(data), null);
+		List<Geometry> actual = tile.getData();
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertTrue(expected.get(i) + " " + actual.get(i), expected.get(i).equalsExact(actual.get(i)));
+			Assert.assertEquals(expected.get(i).getUserData(), actual.get(i).getUserData());
+		}
+
+		GeometryTile.Feature point = tile.getLayer("images").getFeatures().get(0);
+		Assert.assertEquals(Long.valueOf(1), point.getId());
+		Assert.assertEquals(100, point.getX());
+		Assert.assertEquals(200, point.getY());
+		Assert.assertEquals(1500000000000L, point.getAttribute("captured_at"));
+		Assert.assertNull(point.getAttribute("skey"));
+
+		TIntArrayList coordinates = new TIntArrayList();
+		TIntArrayList parts = new TIntArrayList();
+		tile.getLayer("images").getFeatures().get(1).decodeGeometry(coordinates, parts);
+		Assert.assertArrayEquals(new int[] { 5, 10, 20, 30 }, coordinates.toArray());
+		Assert.assertArrayEquals(new int[] { 1, 1 }, parts.toArray());
+		GeometryTile.Feature line = tile.getLayer("sequences").getFeatures().get(0);
+		Assert.assertNull(line.getId());
+		line.decodeGeometry(coordinates, parts);
+		Assert.assertArrayEquals(new int[] { 2, 2, 7, 2, 7, 7 }, coordinates.toArray());
+		Assert.assertArrayEquals(new int[] { 3 }, parts.toArray());
+		tile.getLayer("sequences").getFeatures().get(1).decodeGeometry(coordinates, parts);
+		Assert.assertArrayEquals(new int[] { 0, 0, 10, 0, 10, 10, 0, 10, 0, 0 }, coordinates.toArray());
+	}
+
+	@Test
+	public void testLayersAreFiltered() throws Exception {
+		GeometryTile tile = BinaryVectorTileReader.readTile(new ByteArrayInputStream(createTile()),
+				Collections.singleton("sequences"));
+		Assert.assertEquals(1, tile.getLayers().size());
+		Assert.assertNull(tile.getLayer("images"));
+		Assert.assertEquals(2, tile.getLayer("sequences").getFeatures().size());
+	}
+}
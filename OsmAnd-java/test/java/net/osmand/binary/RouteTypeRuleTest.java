@@ -0,0 +1,66 @@
+package net.osmand.binary;
+
+import java.util.Calendar;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteTypeRuleTest {
+
+	private static final float DELTA = 1e-4f;
+
+	// local time, 12 October 2026 is Monday
+	private static int bucket(int day, int hour, int minute) {
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(2026, Calendar.OCTOBER, day, hour, minute);
+		return RouteTypeRule.getTimeBucket(c.getTimeInMillis());
+	}
+
+	private static float speed(RouteTypeRule r, int day, int hour, int minute) {
+		return r.maxSpeed(bucket(day, hour, minute)) * 3.6f;
+	}
+
+	@Test
+	public void testParseConditions() {
+		RouteTypeRule r = new RouteTypeRule("maxspeed:conditional", "80 @ (Mo-Fr 07:00-19:00); 30 mph @ (Sa-Su 10:00-12:00)");
+		Assert.assertTrue(r.conditional());
+		Assert.assertEquals(80, speed(r, 12, 8, 0), DELTA);
+		Assert.assertEquals(30 * 1.6f, speed(r, 17, 11, 0), DELTA);
+		// no active condition
+		Assert.assertEquals(0, speed(r, 17, 9, 0), DELTA);
+		Assert.assertEquals(0, speed(r, 14, 20, 0), DELTA);
+
+		RouteTypeRule plain = new RouteTypeRule("maxspeed", "50");
+		Assert.assertFalse(plain.conditional());
+		Assert.assertEquals(50, speed(plain, 12, 8, 0), DELTA);
+		Assert.assertEquals(-1, new RouteTypeRule("highway", "primary").maxSpeed(bucket(12, 8, 0)), DELTA);
+	}
+
+	@Test
+	public void testBucketBoundaries() {
+		RouteTypeRule r = new RouteTypeRule("maxspeed:conditional", "80 @ (Mo-Fr 07:00-19:00)");
+		Assert.assertEquals(bucket(12, 7, 0), bucket(12, 7, 14));
+		Assert.assertEquals(bucket(12, 7, 0) + 1, bucket(12, 7, 15));
+		Assert.assertEquals(0, speed(r, 12, 6, 59), DELTA);
+		Assert.assertEquals(80, speed(r, 12, 7, 0), DELTA);
+		// end time is included
+		Assert.assertEquals(80, speed(r, 16, 19, 14), DELTA);
+		Assert.assertEquals(0, speed(r, 16, 19, 15), DELTA);
+	}
+
+	@Test
+	public void testWeekBoundaries() {
+		RouteTypeRule r = new RouteTypeRule("maxspeed:conditional", "80 @ (Mo 00:00-01:00); 60 @ (Su 23:00-23:59)");
+		// Sunday 11 October ends previous week, callers alternate between weeks
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(60, speed(r, 11, 23, 45), DELTA);
+			Assert.assertEquals(80, speed(r, 12, 0, 0), DELTA);
+			Assert.assertEquals(60, speed(r, 18, 23, 30), DELTA);
+			Assert.assertEquals(80, speed(r, 19, 0, 30), DELTA);
+		}
+		Assert.assertEquals(0, speed(r, 13, 0, 0), DELTA);
+	}
+}
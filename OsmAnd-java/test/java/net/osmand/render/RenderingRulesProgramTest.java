@@ -0,0 +1,110 @@
+package net.osmand.render;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderingRulesProgramTest {
+
+	static final String STYLE = "<renderingStyle name='test' depends='' defaultColor='#f1eee8' version='1'>"
+			+ "<renderingProperty attr='hideTracks' name='Hide tracks' type='boolean' possibleValues=''/>"
+			+ "<renderingProperty attr='roadStyle' name='Road style' type='string' possibleValues='orange,bold'/>"
+			+ "<renderingAttribute name='roadColor'>"
+			+ "  <case roadStyle='orange' attrColorValue='#ff8000'/>"
+			+ "  <case nightMode='true' attrColorValue='#303030'/>"
+			+ "  <case attrColorValue='#ffffff'/>"
+			+ "</renderingAttribute>"
+			+ "<renderingAttribute name='defaultWidth'>"
+			+ "  <case minzoom='15' attrIntValue='4'/>"
+			+ "  <case attrIntValue='2'/>"
+			+ "</renderingAttribute>"
+			+ "<line>"
+			+ "  <switch minzoom='8'>"
+			+ "    <case tag='highway' value='primary' color='$roadColor' strokeWidth='$defaultWidth'>"
+			+ "      <apply layer='1' shadowRadius='3' shadowColor='#00000030'/>"
+			+ "      <apply_if maxzoom='12' strokeWidth='1.5'/>"
+			+ "    </case>"
+			+ "    <case tag='highway' value='track' hideTracks='true' disable='true'/>"
+			+ "    <case tag='highway' value='track' maxzoom='13' color='#996600' strokeWidth='1'/>"
+			+ "    <case tag='highway' value='track' color='#aa7700' strokeWidth='2' pathEffect='4_4'/>"
+			+ "    <case tag='highway' value='' additional='bridge=yes' color='#111111'/>"
+			+ "    <switch tag='highway' value=''>"
+			+ "      <case minzoom='14' color='#cccccc'/>"
+			+ "      <case layer='-1' color='#dddddd'/>"
+			+ "    </switch>"
+			+ "    <apply shadowLevel='1'/>"
+			+ "  </switch>"
+			+ "</line>"
+			+ "<order>"
+			+ "  <switch>"
+			+ "    <case tag='highway' value='primary' order='60'/>"
+			+ "    <case tag='highway' value='' order='50'/>"
+			+ "  </switch>"
+			+ "</order>"
+			+ "</renderingStyle>";
+
+	@Test
+	public void testCompiledSearchIsSameAsRules() throws Exception {
+		RenderingRulesStorage storage = new RenderingRulesStorage("test", null);
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null);
+		RenderingRulesProgram program = storage.compileRules();
+		Assert.assertSame(program, storage.getCompiledRules());
+
+		RenderingRuleSearchRequest compiled = createRequest(storage);
+		RenderingRuleSearchRequest rules = createRequest(storage);
+		rules.setUseCompiledRules(false);
+		String[] values = { "primary", "track", "residential", "river" };
+		int[] states = { RenderingRulesStorage.LINE_RULES, RenderingRulesStorage.ORDER_RULES,
+				RenderingRulesStorage.POINT_RULES };
+		int checked = 0;
+		for (String roadStyle : new String[] { "orange", "" }) {
+			for (boolean flag : new boolean[] { true, false }) {
+				for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] { compiled, rules }) {
+					r.setStringFilter(storage.PROPS.getCustomRule("roadStyle"), roadStyle);
+					r.setBooleanFilter(storage.PROPS.getCustomRule("hideTracks"), flag);
+					r.setBooleanFilter(storage.PROPS.R_NIGHT_MODE, flag);
+					r.saveState();
+				}
+				for (String value : values) {
+					for (int zoom = 6; zoom <= 18; zoom++) {
+						for (int layer = -1; layer <= 1; layer++) {
+							for (int state : states) {
+								for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] { compiled, rules }) {
+									r.setInitialTagValueZoom("highway", value, zoom, null);
+									r.setIntFilter(storage.PROPS.R_LAYER, layer);
+									r.setStringFilter(storage.PROPS.R_ADDITIONAL, layer > 0 ? "bridge=yes" : "");
+									r.search(state);
+								}
+								String msg = value + " " + zoom + " " + layer + " " + state;
+								Assert.assertEquals(msg, rules.isFound(), compiled.isFound());
+								Assert.assertArrayEquals(msg, rules.values, compiled.values);
+								Assert.assertTrue(msg, Arrays.equals(rules.fvalues, compiled.fvalues));
+								checked += rules.isFound() ? 1 : 0;
+							}
+						}
+					}
+				}
+			}
+		}
+		Assert.assertTrue(checked > 0);
+		for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] { compiled, rules }) {
+			r.clearState();
+			r.setIntFilter(storage.PROPS.R_MINZOOM, 16);
+			r.searchRenderingAttribute("defaultWidth");
+		}
+		Assert.assertEquals(4, compiled.getIntPropertyValue(storage.PROPS.R_ATTR_INT_VALUE));
+		Assert.assertArrayEquals(rules.values, compiled.values);
+
+		// program is not used after rules are changed
+		storage.rulesChanged();
+		Assert.assertNull(storage.getCompiledRules());
+	}
+
+	private static RenderingRuleSearchRequest createRequest(RenderingRulesStorage storage) {
+		RenderingRuleSearchRequest r = new RenderingRuleSearchRequest(storage);
+		r.setSearchCacheEnabled(false);
+		return r;
+	}
+}
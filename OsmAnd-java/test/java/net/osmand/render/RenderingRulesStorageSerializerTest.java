@@ -0,0 +1,58 @@
+package net.osmand.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderingRulesStorageSerializerTest {
+
+	@Test
+	public void testReadStorageIsSameAsParsed() throws Exception {
+		byte[] xml = RenderingRulesProgramTest.STYLE.getBytes("UTF-8");
+		long hash = RenderingRulesStorageSerializer.updateHash(0, new ByteArrayInputStream(xml));
+		RenderingRulesStorage parsed = new RenderingRulesStorage("test", null);
+		parsed.parseRulesFromXmlInputStream(new ByteArrayInputStream(xml), null);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RenderingRulesStorageSerializer.write(parsed, hash, out);
+		byte[] data = out.toByteArray();
+		Assert.assertNull(RenderingRulesStorageSerializer.read(new ByteArrayInputStream(data), hash + 1));
+		RenderingRulesStorage read = RenderingRulesStorageSerializer.read(new ByteArrayInputStream(data), hash);
+		Assert.assertNotNull(read);
+
+		Assert.assertEquals(parsed.dictionary, read.dictionary);
+		Assert.assertEquals(parsed.PROPS.getPoperties().length, read.PROPS.getPoperties().length);
+		for (RenderingRuleProperty p : parsed.PROPS.getPoperties()) {
+			Assert.assertEquals(p.getAttrName(), p.getId(), read.PROPS.get(p.getAttrName()).getId());
+		}
+		Assert.assertArrayEquals(parsed.PROPS.getCustomRule("roadStyle").getPossibleValues(),
+				read.PROPS.getCustomRule("roadStyle").getPossibleValues());
+
+		RenderingRuleSearchRequest expected = new RenderingRuleSearchRequest(parsed);
+		RenderingRuleSearchRequest actual = new RenderingRuleSearchRequest(read);
+		for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] { expected, actual }) {
+			r.setStringFilter(r.getStorage().PROPS.getCustomRule("roadStyle"), "orange");
+			r.saveState();
+		}
+		int found = 0;
+		for (String value : new String[] { "primary", "track", "residential" }) {
+			for (int zoom = 8; zoom <= 18; zoom++) {
+				for (int state : new int[] { RenderingRulesStorage.LINE_RULES, RenderingRulesStorage.ORDER_RULES }) {
+					for (RenderingRuleSearchRequest r : new RenderingRuleSearchRequest[] { expected, actual }) {
+						r.setInitialTagValueZoom("highway", value, zoom, null);
+						r.search(state);
+					}
+					String msg = value + " " + zoom + " " + state;
+					Assert.assertEquals(msg, expected.isFound(), actual.isFound());
+					Assert.assertArrayEquals(msg, expected.values, actual.values);
+					Assert.assertTrue(msg, Arrays.equals(expected.fvalues, actual.fvalues));
+					found += expected.isFound() ? 1 : 0;
+				}
+			}
+		}
+		Assert.assertTrue(found > 0);
+	}
+}
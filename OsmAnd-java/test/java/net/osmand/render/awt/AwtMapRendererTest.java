@@ -0,0 +1,117 @@
+package net.osmand.render.awt;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.render.RenderingRuleSearchRequest;
+import net.osmand.render.RenderingRulesStorage;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AwtMapRendererTest {
+
+	private static final String STYLE = "<renderingStyle name='test' depends='' defaultColor='#ffffff' version='1'>"
+			+ "<order>"
+			+ "  <switch>"
+			+ "    <case tag='natural' value='coastline' order='5' objectType='3'/>"
+			+ "    <case tag='landuse' value='forest' order='10' objectType='3'/>"
+			+ "    <case tag='highway' value='primary' order='60' objectType='2'/>"
+			+ "  </switch>"
+			+ "</order>"
+			+ "<polygon>"
+			+ "  <case tag='natural' value='coastline' color='#0000ff'/>"
+			+ "  <case tag='landuse' value='forest' color='#00ff00'/>"
+			+ "</polygon>"
+			+ "<line>"
+			+ "  <case tag='highway' value='primary' color='#ff0000' strokeWidth='8'/>"
+			+ "</line>"
+			+ "</renderingStyle>";
+
+	private static final int WHITE = 0xffffffff;
+	private static final int BLUE = 0xff0000ff;
+	private static final int GREEN = 0xff00ff00;
+	private static final int RED = 0xffff0000;
+
+	private static final int ZOOM = 15;
+	private static final int TILE = 1 << (ZOOM - 1);
+	// 31 bit coordinates in one pixel of tile
+	private static final int PIXEL = (1 << (31 - ZOOM)) / AwtMapRenderer.TILE_SIZE;
+	private static final int LEFT = TILE << (31 - ZOOM);
+	private static final int TOP = TILE << (31 - ZOOM);
+	private static final int SIZE = AwtMapRenderer.TILE_SIZE * PIXEL;
+
+	private RenderingRulesStorage storage;
+	private MapIndex index;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new RenderingRulesStorage("test", null);
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null);
+		storage.compileRules();
+		index = new MapIndex();
+		index.initMapEncodingRule(0, 1, "natural", "coastline");
+		index.initMapEncodingRule(0, 2, "landuse", "forest");
+		index.initMapEncodingRule(0, 3, "highway", "primary");
+	}
+
+	private BinaryMapDataObject createObject(int type, boolean area, int... coordinates) {
+		int[] c = new int[coordinates.length];
+		for (int i = 0; i < c.length; i++) {
+			c[i] = (i % 2 == 0 ? LEFT : TOP) + coordinates[i] * PIXEL;
+		}
+		BinaryMapDataObject o = new BinaryMapDataObject(type, c, null,
+				area ? RenderingRulesStorage.POLYGON_RULES : RenderingRulesStorage.LINE_RULES, area,
+				new int[] { type }, new int[0]);
+		o.setMapIndex(index);
+		return o;
+	}
+
+	// forest in left half of tile and road across tile in the middle
+	private List<BinaryMapDataObject> createObjects() {
+		List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		objects.add(createObject(2, true, 0, 0, 128, 0, 128, 256, 0, 256, 0, 0));
+		objects.add(createObject(3, false, 0, 128, 256, 128));
+		return objects;
+	}
+
+	private BufferedImage render(List<BinaryMapDataObject> objects) {
+		AwtMapRenderer.RenderingContext rc = new AwtMapRenderer.RenderingContext();
+		rc.setTile(ZOOM, TILE, TILE, AwtMapRenderer.TILE_SIZE, AwtMapRenderer.TILE_SIZE);
+		rc.defaultColor = WHITE;
+		RenderingRuleSearchRequest request = new RenderingRuleSearchRequest(storage);
+		request.saveState();
+		BufferedImage img = new BufferedImage(AwtMapRenderer.TILE_SIZE, AwtMapRenderer.TILE_SIZE,
+				BufferedImage.TYPE_INT_ARGB);
+		new AwtMapRenderer().render(rc, objects, request, img);
+		return img;
+	}
+
+	@Test
+	public void testObjectsAreDrawnByOrder() {
+		BufferedImage img = render(createObjects());
+		Assert.assertEquals(GREEN, img.getRGB(40, 40));
+		Assert.assertEquals(WHITE, img.getRGB(200, 40));
+		Assert.assertEquals(RED, img.getRGB(40, 128));
+		Assert.assertEquals(RED, img.getRGB(200, 128));
+		Assert.assertEquals(WHITE, img.getRGB(200, 200));
+	}
+
+	@Test
+	public void testOceanIsDrawnUnderObjects() {
+		List<BinaryMapDataObject> objects = createObjects();
+		TileRenderer.addOcean(objects, index, LEFT, TOP, LEFT + SIZE, TOP + SIZE);
+		BufferedImage img = render(objects);
+		Assert.assertEquals(GREEN, img.getRGB(40, 40));
+		Assert.assertEquals(BLUE, img.getRGB(200, 40));
+		Assert.assertEquals(RED, img.getRGB(40, 128));
+		Assert.assertEquals(RED, img.getRGB(200, 128));
+		Assert.assertEquals(BLUE, img.getRGB(200, 200));
+		Assert.assertEquals(GREEN, img.getRGB(40, 200));
+	}
+}
@@ -0,0 +1,51 @@
+package net.osmand.router;
+
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AlternativeRoutesTest {
+
+	private static final int ROADS = 100;
+
+	@Test
+	public void testDetourIsFound() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		// straight route of short roads, search trees meet at its junctions
+		int[] xs = new int[ROADS + 1];
+		int y = TestRoutingFile.BASE;
+		for (int i = 0; i <= ROADS; i++) {
+			xs[i] = TestRoutingFile.BASE + i * TestRoutingFile.STEP;
+		}
+		for (int i = 0; i < ROADS; i++) {
+			file.addRoad(new int[] { TestRoutingFile.PRIMARY }, new int[] { xs[i], xs[i + 1] }, new int[] { y, y });
+		}
+		// detour from 30 to 70 is 10 steps longer (route is 1.1 times longer, 60% is shared)
+		int top = y - 5 * TestRoutingFile.STEP;
+		long detourId = file.addRoad(new int[] { TestRoutingFile.PRIMARY }, new int[] { xs[30], xs[30], xs[70], xs[70] },
+				new int[] { y, top, top, y });
+		BinaryMapIndexReader reader = file.open();
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(TestRoutingFile.loadConfig().build("car", 100), null,
+				new BinaryMapIndexReader[] { reader });
+
+		List<List<RouteSegmentResult>> routes = fe.searchRouteAlternatives(ctx,
+				TestRoutingFile.getLatLon(xs[0] + TestRoutingFile.STEP / 2, y),
+				TestRoutingFile.getLatLon(xs[ROADS] - TestRoutingFile.STEP / 2, y), 3);
+		Assert.assertEquals(2, routes.size());
+		Assert.assertFalse(containsRoad(routes.get(0), detourId));
+		Assert.assertTrue(containsRoad(routes.get(1), detourId));
+	}
+
+	private static boolean containsRoad(List<RouteSegmentResult> route, long id) {
+		for (RouteSegmentResult s : route) {
+			if (s.getObject().getId() == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,59 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactRouteTileTest {
+
+	@Test
+	public void testObjectsAndSegments() {
+		RouteRegion reg = new RouteRegion();
+		reg.initRouteEncodingRule(0, "highway", "primary");
+		reg.initRouteEncodingRule(1, "name", "");
+		reg.initRouteEncodingRule(2, "highway", "traffic_signals");
+		List<RouteDataObject> list = new ArrayList<RouteDataObject>();
+		// 2 crossing roads with common point in the middle
+		RouteDataObject r1 = new RouteDataObject(reg, new int[] { 1 }, new String[] { "Main street" });
+		r1.id = 10;
+		r1.types = new int[] { 0 };
+		r1.pointsX = new int[] { 100, 200, 300 };
+		r1.pointsY = new int[] { 100, 100, 100 };
+		r1.pointTypes = new int[][] { null, { 2 } };
+		r1.restrictions = new long[] { (20 << 3) + 1 };
+		list.add(r1);
+		RouteDataObject r2 = new RouteDataObject(reg);
+		r2.id = 20;
+		r2.types = new int[] { 0 };
+		r2.pointsX = new int[] { 200, 200 };
+		r2.pointsY = new int[] { 0, 100 };
+		list.add(r2);
+
+		CompactRouteTile tile = new CompactRouteTile(reg, list);
+		Assert.assertEquals(2, tile.size());
+		Assert.assertEquals(5, tile.getPointsCount());
+		for (int k = 0; k < list.size(); k++) {
+			Assert.assertTrue(list.get(k).compareRoute(tile.getObject(k)));
+		}
+		Assert.assertEquals("Main street", tile.getObject(0).getName());
+		Assert.assertArrayEquals(new int[] { 2 }, tile.getObject(0).getPointTypes(1));
+		Assert.assertNull(tile.getObject(0).getPointTypes(2));
+
+		RouteSegment s = tile.loadRouteSegment(200, 100, new TLongObjectHashMap<RouteDataObject>(), null);
+		// last added object is first in list
+		Assert.assertEquals(20, s.getRoad().getId());
+		Assert.assertEquals(1, s.getSegmentStart());
+		Assert.assertEquals(10, s.next.getRoad().getId());
+		Assert.assertEquals(1, s.next.getSegmentStart());
+		Assert.assertNull(s.next.next);
+		Assert.assertNull(tile.loadRouteSegment(200, 101, new TLongObjectHashMap<RouteDataObject>(), null));
+	}
+}
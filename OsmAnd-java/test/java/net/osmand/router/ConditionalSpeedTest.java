@@ -0,0 +1,70 @@
+package net.osmand.router;
+
+import java.util.Calendar;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.util.OpeningHoursParser;
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConditionalSpeedTest {
+
+	private static final long LIMITED_ROAD = 2;
+
+	private static float searchLimitedRoadSpeed(BinaryMapIndexReader reader, long departureTime) throws Exception {
+		RoutingConfiguration config = TestRoutingFile.loadConfig().build("car", 100);
+		config.departureTime = departureTime;
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		LatLon start = TestRoutingFile.getLatLon(TestRoutingFile.BASE + TestRoutingFile.STEP / 2, TestRoutingFile.BASE);
+		LatLon end = TestRoutingFile.getLatLon(TestRoutingFile.BASE + 5 * TestRoutingFile.STEP / 2, TestRoutingFile.BASE);
+		List<RouteSegmentResult> route = fe.searchRoute(ctx, start, end, null);
+		Assert.assertNotNull(route);
+		for (RouteSegmentResult r : route) {
+			if (r.getObject().getId() == LIMITED_ROAD) {
+				return r.getSegmentSpeed();
+			}
+		}
+		Assert.fail("Limited road is not on route");
+		return 0;
+	}
+
+	@Test
+	public void testBucketSpeedIsSameAsExactTime() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		for (int i = 0; i < 3; i++) {
+			int x = TestRoutingFile.BASE + i * TestRoutingFile.STEP;
+			int[] types = i == 1 ? new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.MAXSPEED_WORKDAYS }
+					: new int[] { TestRoutingFile.PRIMARY };
+			Assert.assertEquals(i + 1, file.addRoad(types, new int[] { x, x + TestRoutingFile.STEP },
+					new int[] { TestRoutingFile.BASE, TestRoutingFile.BASE }));
+		}
+		BinaryMapIndexReader reader = file.open();
+		OpeningHours workdays = OpeningHoursParser.parseOpenedHours(TestRoutingFile.WORKDAYS);
+		float limited = 50 / 3.6f;
+		float unlimited = searchLimitedRoadSpeed(reader, 0);
+		// 12 October 2026 is Monday, departures at the start of every 15 minutes of week (local time)
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(2026, Calendar.OCTOBER, 12, 0, 0);
+		boolean checkedLimited = false;
+		boolean checkedUnlimited = false;
+		for (int i = 0; i < 7 * 24 * 4; i++) {
+			boolean open = workdays.isOpenedForTime(c);
+			float speed = searchLimitedRoadSpeed(reader, c.getTimeInMillis());
+			Assert.assertEquals(c.getTime().toString(), open ? limited : unlimited, speed, 1e-4);
+			if (open) {
+				checkedLimited = true;
+			} else {
+				checkedUnlimited = true;
+			}
+			c.add(Calendar.MINUTE, 15);
+		}
+		Assert.assertTrue(checkedLimited && checkedUnlimited);
+		Assert.assertTrue(unlimited > limited);
+	}
+}
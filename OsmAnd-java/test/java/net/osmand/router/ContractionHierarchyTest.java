@@ -0,0 +1,258 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+public class ContractionHierarchyTest {
+
+	private static final int SIZE = 12;
+	private static final int STEP = 20000;
+	private static final int BASE = 1 << 30;
+
+	private static ContractionHierarchy buildGrid() throws IOException, XmlPullParserException {
+		RouteRegion reg = new RouteRegion();
+		reg.initRouteEncodingRule(0, "highway", "primary");
+		reg.initRouteEncodingRule(1, "highway", "secondary");
+		reg.initRouteEncodingRule(2, "highway", "residential");
+		reg.initRouteEncodingRule(3, "oneway", "yes");
+		VehicleRouter router = RoutingConfiguration.parseFromInputStream(
+				ContractionHierarchyTest.class.getResourceAsStream("/test_ch_routing.xml")).build("car", 100).router;
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(router, "car");
+		Random rnd = new Random(11);
+		long id = 1;
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = 0; j < SIZE; j++) {
+				for (int d = 0; d < 2; d++) {
+					int ni = d == 0 ? i + 1 : i;
+					int nj = d == 0 ? j : j + 1;
+					if (ni >= SIZE || nj >= SIZE) {
+						continue;
+					}
+					RouteDataObject road = new RouteDataObject(reg);
+					road.id = id++;
+					int type = rnd.nextInt(3);
+					road.types = rnd.nextInt(10) == 0 ? new int[] { type, 3 } : new int[] { type };
+					// middle point is not a node of graph
+					road.pointsX = new int[] { BASE + i * STEP, BASE + (i + ni) * STEP / 2 + rnd.nextInt(STEP / 4),
+							BASE + ni * STEP };
+					road.pointsY = new int[] { BASE + j * STEP, BASE + (j + nj) * STEP / 2 + rnd.nextInt(STEP / 4),
+							BASE + nj * STEP };
+					Assert.assertTrue(builder.addRoad(road));
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	private static float dijkstra(ContractionHierarchy ch, int from, int to) {
+		float[] dist = new float[ch.getNodesCount()];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		dist[from] = 0;
+		PriorityQueue<float[]> queue = new PriorityQueue<float[]>(16, new Comparator<float[]>() {
+			@Override
+			public int compare(float[] o1, float[] o2) {
+				return Float.compare(o1[0], o2[0]);
+			}
+		});
+		queue.add(new float[] { 0, from });
+		while (!queue.isEmpty()) {
+			float[] p = queue.poll();
+			int node = (int) p[1];
+			if (p[0] > dist[node]) {
+				continue;
+			}
+			for (int e = 0; e < ch.getEdgesCount(); e++) {
+				if (ch.edgeChild1[e] == -1 && ch.edgeFrom[e] == node && dist[node] + ch.edgeCost[e] < dist[ch.edgeTo[e]]) {
+					dist[ch.edgeTo[e]] = dist[node] + ch.edgeCost[e];
+					queue.add(new float[] { dist[ch.edgeTo[e]], ch.edgeTo[e] });
+				}
+			}
+		}
+		return dist[to];
+	}
+
+	@Test
+	public void testShortestPaths() throws IOException, XmlPullParserException {
+		ContractionHierarchy ch = buildGrid();
+		Assert.assertEquals(SIZE * SIZE, ch.getNodesCount());
+		Random rnd = new Random(5);
+		for (int k = 0; k < 50; k++) {
+			int from = rnd.nextInt(ch.getNodesCount());
+			int to = rnd.nextInt(ch.getNodesCount());
+			float expected = dijkstra(ch, from, to);
+			TIntArrayList path = ch.searchPath(new int[] { from }, new float[] { 0 }, new int[] { to }, new float[] { 0 });
+			if (Float.isInfinite(expected)) {
+				Assert.assertNull(path);
+				continue;
+			}
+			Assert.assertNotNull(path);
+			float cost = 0;
+			int node = from;
+			for (int i = 0; i < path.size(); i++) {
+				int e = path.get(i);
+				Assert.assertEquals(-1, ch.edgeChild1[e]);
+				Assert.assertEquals(node, ch.edgeFrom[e]);
+				node = ch.edgeTo[e];
+				cost += ch.edgeCost[e];
+			}
+			Assert.assertEquals(to, node);
+			Assert.assertEquals(expected, cost, expected * 1e-4);
+		}
+	}
+
+	@Test
+	public void testReadWrite() throws IOException, XmlPullParserException {
+		ContractionHierarchy ch = buildGrid();
+		File file = File.createTempFile("test", ".ch");
+		try {
+			ch.writeToFile(file);
+			ContractionHierarchy read = ContractionHierarchy.readFromFile(file);
+			Assert.assertEquals("car", read.getProfile());
+			Assert.assertArrayEquals(ch.nodeKeys, read.nodeKeys);
+			Assert.assertArrayEquals(ch.nodeRank, read.nodeRank);
+			Assert.assertArrayEquals(ch.edgeTo, read.edgeTo);
+			Assert.assertArrayEquals(ch.edgeChild2, read.edgeChild2);
+			Assert.assertArrayEquals(ch.edgeRoadId, read.edgeRoadId);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static List<RouteDataObject> loadRoads(BinaryMapIndexReader reader) throws IOException {
+		final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			reader.loadRouteIndexData(reader.searchRouteIndexTree(BinaryMapIndexReader.buildSearchRouteRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null), reg.getSubregions()),
+					new ResultMatcher<RouteDataObject>() {
+						@Override
+						public boolean publish(RouteDataObject object) {
+							roads.add(object);
+							return false;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							return false;
+						}
+					});
+		}
+		return roads;
+	}
+
+	// copy of road cut by map border
+	private static RouteDataObject cutRoad(RouteDataObject road, int from) {
+		RouteDataObject cut = new RouteDataObject(road);
+		cut.pointsX = Arrays.copyOfRange(road.pointsX, from, road.pointsX.length);
+		cut.pointsY = Arrays.copyOfRange(road.pointsY, from, road.pointsY.length);
+		if (road.pointTypes != null) {
+			cut.pointTypes = Arrays.copyOfRange(road.pointTypes, from, road.pointTypes.length);
+		}
+		return cut;
+	}
+
+	/**
+	 * @return points of road on route, null if hierarchy was not used
+	 */
+	private static String searchRoute(BinaryMapIndexReader reader, ContractionHierarchy ch, long roadId)
+			throws Exception {
+		RoutingConfiguration config = TestRoutingFile.loadConfig().build("car", 100);
+		config.contractionHierarchy = ch;
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		// points on crossing roads, route goes along main road between them
+		LatLon start = TestRoutingFile.getLatLon(TestRoutingFile.BASE + TestRoutingFile.STEP,
+				TestRoutingFile.BASE - TestRoutingFile.STEP / 2);
+		LatLon end = TestRoutingFile.getLatLon(TestRoutingFile.BASE + 4 * TestRoutingFile.STEP,
+				TestRoutingFile.BASE + TestRoutingFile.STEP / 2);
+		List<RouteSegmentResult> result = fe.searchRoute(ctx, start, end, null);
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < result.size(); i++) {
+			RouteSegmentResult n = result.get(i);
+			if (i > 0) {
+				// route is continuous
+				RouteSegmentResult p = result.get(i - 1);
+				Assert.assertEquals(p.getObject().getPoint31XTile(p.getEndPointIndex()),
+						n.getObject().getPoint31XTile(n.getStartPointIndex()));
+				Assert.assertEquals(p.getObject().getPoint31YTile(p.getEndPointIndex()),
+						n.getObject().getPoint31YTile(n.getStartPointIndex()));
+			}
+			if (n.getObject().getId() == roadId) {
+				b.append(n.getStartPointIndex()).append('-').append(n.getEndPointIndex()).append(' ');
+			}
+		}
+		// regular search visits segments
+		return ch != null && ctx.visitedSegments > 0 ? null : b.toString();
+	}
+
+	@Test
+	public void testRoadCopies() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		int y = TestRoutingFile.BASE;
+		int[] xs = new int[6];
+		int[] ys = new int[6];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = TestRoutingFile.BASE + i * TestRoutingFile.STEP;
+			ys[i] = y;
+		}
+		long mainId = file.addRoad(new int[] { TestRoutingFile.PRIMARY }, xs, ys);
+		// crossing roads make nodes inside of main road
+		file.addRoad(new int[] { TestRoutingFile.SECONDARY }, new int[] { xs[1], xs[1] },
+				new int[] { y - TestRoutingFile.STEP, y });
+		file.addRoad(new int[] { TestRoutingFile.SECONDARY }, new int[] { xs[4], xs[4] },
+				new int[] { y, y + TestRoutingFile.STEP });
+		BinaryMapIndexReader reader = file.open();
+		List<RouteDataObject> roads = loadRoads(reader);
+		RouteDataObject main = null;
+		for (RouteDataObject r : roads) {
+			if (r.getId() == mainId) {
+				main = r;
+			}
+		}
+		Assert.assertNotNull(main);
+		VehicleRouter router = TestRoutingFile.loadConfig().build("car", 100).router;
+
+		// longest copy is kept
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(router, "car");
+		Assert.assertTrue(builder.addRoad(cutRoad(main, 2)));
+		for (RouteDataObject r : roads) {
+			Assert.assertTrue(builder.addRoad(r));
+		}
+		Assert.assertFalse(builder.addRoad(cutRoad(main, 1)));
+		ContractionHierarchy ch = builder.build();
+		int maxPoint = 0;
+		for (int e = 0; e < ch.getEdgesCount(); e++) {
+			if (ch.edgeRoadId[e] == mainId) {
+				maxPoint = Math.max(maxPoint, Math.max(ch.edgeStartPoint[e], ch.edgeEndPoint[e]));
+			}
+		}
+		Assert.assertEquals(main.getPointsLength() - 1, maxPoint);
+
+		String expected = searchRoute(reader, null, mainId);
+		Assert.assertEquals(expected, searchRoute(reader, ch, mainId));
+
+		// hierarchy built from cut copy doesn't match points of loaded road : regular search is used
+		builder = new ContractionHierarchyBuilder(router, "car");
+		for (RouteDataObject r : roads) {
+			builder.addRoad(r.getId() == mainId ? cutRoad(main, 1) : r);
+		}
+		Assert.assertNull(searchRoute(reader, builder.build(), mainId));
+	}
+}
@@ -0,0 +1,51 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.Isochrone.ReachedSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IsochroneTest {
+
+	@Test
+	public void testOutlines() {
+		RouteRegion reg = new RouteRegion();
+		reg.initRouteEncodingRule(0, "highway", "primary");
+		RouteDataObject road = new RouteDataObject(reg);
+		road.types = new int[] { 0 };
+		// ~ 10 km road to the east, point each ~ 1 km
+		int base = 1 << 30;
+		road.pointsX = new int[11];
+		road.pointsY = new int[11];
+		float[] times = new float[11];
+		for (int i = 0; i < 11; i++) {
+			road.pointsX[i] = base + i * 12000;
+			road.pointsY[i] = base;
+			times[i] = i * 60;
+		}
+		List<ReachedSegment> segments = new ArrayList<ReachedSegment>();
+		segments.add(new ReachedSegment(road, 0, 10, times));
+		Isochrone iso = new Isochrone(segments, new float[] { 600, 300 });
+		Assert.assertEquals(300, iso.getThresholds()[0], 0);
+
+		double prevMaxLon = 0;
+		for (int t = 0; t < 2; t++) {
+			List<List<LatLon>> rings = iso.getOutline(t);
+			Assert.assertEquals(1, rings.size());
+			List<LatLon> ring = rings.get(0);
+			Assert.assertEquals(ring.get(0), ring.get(ring.size() - 1));
+			double maxLon = -180;
+			for (LatLon l : ring) {
+				maxLon = Math.max(maxLon, l.getLongitude());
+			}
+			Assert.assertTrue(maxLon > prevMaxLon);
+			prevMaxLon = maxLon;
+		}
+	}
+}
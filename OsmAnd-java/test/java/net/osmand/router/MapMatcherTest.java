@@ -0,0 +1,76 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.Location;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MapMatcherTest {
+
+	private static final int POINTS = 21;
+	private static final int POINT_STEP = TestRoutingFile.STEP / 4;
+
+	@Test
+	public void testStraightTraceOnOneRoad() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		int[] xs = new int[POINTS];
+		int[] ys = new int[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			xs[i] = TestRoutingFile.BASE + i * POINT_STEP;
+			ys[i] = TestRoutingFile.BASE;
+		}
+		long roadId = file.addRoad(new int[] { TestRoutingFile.PRIMARY }, xs, ys);
+		// crossing roads
+		for (int i = 2; i < POINTS; i += 4) {
+			file.addRoad(new int[] { TestRoutingFile.RESIDENTIAL }, new int[] { xs[i], xs[i] },
+					new int[] { TestRoutingFile.BASE - TestRoutingFile.STEP, TestRoutingFile.BASE + TestRoutingFile.STEP });
+		}
+		BinaryMapIndexReader reader = file.open();
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(TestRoutingFile.loadConfig().build("car", 100), null,
+				new BinaryMapIndexReader[] { reader });
+
+		// ~ 30 m between locations with ~ 3 m error to both sides of road
+		List<Location> trace = new ArrayList<Location>();
+		for (int x = xs[1]; x < xs[POINTS - 2]; x += 1600) {
+			int dy = trace.size() % 2 == 0 ? 160 : -160;
+			LatLon l = TestRoutingFile.getLatLon(x, TestRoutingFile.BASE + dy);
+			Location loc = new Location("test");
+			loc.setLatitude(l.getLatitude());
+			loc.setLongitude(l.getLongitude());
+			trace.add(loc);
+		}
+		MapMatcher matcher = new MapMatcher(ctx);
+		List<RouteSegmentResult> res = matcher.match(trace);
+		checkStraight(res, roadId);
+		// matcher could be reused
+		Assert.assertEquals(toString(res), toString(matcher.match(trace)));
+	}
+
+	private static void checkStraight(List<RouteSegmentResult> res, long roadId) {
+		Assert.assertFalse(res.isEmpty());
+		int prevEnd = -1;
+		for (RouteSegmentResult s : res) {
+			Assert.assertEquals(toString(res), roadId, s.getObject().getId());
+			Assert.assertTrue(toString(res), s.getStartPointIndex() < s.getEndPointIndex());
+			Assert.assertTrue(toString(res), prevEnd < 0 || prevEnd == s.getStartPointIndex());
+			prevEnd = s.getEndPointIndex();
+		}
+		Assert.assertTrue(toString(res), res.get(0).getStartPointIndex() <= 1);
+		Assert.assertTrue(toString(res), prevEnd >= POINTS - 2);
+	}
+
+	private static String toString(List<RouteSegmentResult> res) {
+		StringBuilder b = new StringBuilder();
+		for (RouteSegmentResult s : res) {
+			b.append(s.getObject().getId()).append(':').append(s.getStartPointIndex()).append('-')
+					.append(s.getEndPointIndex()).append(' ');
+		}
+		return b.toString();
+	}
+}
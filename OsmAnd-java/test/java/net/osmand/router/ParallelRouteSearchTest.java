@@ -0,0 +1,68 @@
+package net.osmand.router;
+
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelRouteSearchTest {
+
+	// result shouldn't depend on speed of threads
+	private static final int RUNS = 20;
+
+	private static float searchRoute(BinaryMapIndexReader reader, LatLon start, LatLon end, boolean parallel)
+			throws Exception {
+		RoutingConfiguration config = TestRoutingFile.loadConfig().build("car", 100);
+		config.parallelSearch = parallel;
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		List<RouteSegmentResult> route = fe.searchRoute(ctx, start, end, null);
+		Assert.assertNotNull(route);
+		Assert.assertFalse(route.isEmpty());
+		return ctx.routingTime;
+	}
+
+	private static void checkSameAsSequential(BinaryMapIndexReader reader, LatLon start, LatLon end) throws Exception {
+		float expected = searchRoute(reader, start, end, false);
+		for (int i = 0; i < RUNS; i++) {
+			Assert.assertEquals(expected, searchRoute(reader, start, end, true), 0.1);
+		}
+	}
+
+	private static BinaryMapIndexReader createLine(int roads) throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		for (int i = 0; i < roads; i++) {
+			int x = TestRoutingFile.BASE + i * TestRoutingFile.STEP;
+			file.addRoad(new int[] { TestRoutingFile.PRIMARY }, new int[] { x, x + TestRoutingFile.STEP },
+					new int[] { TestRoutingFile.BASE, TestRoutingFile.BASE });
+		}
+		return file.open();
+	}
+
+	@Test
+	public void testLines() throws Exception {
+		for (int roads : new int[] { 3, 20 }) {
+			BinaryMapIndexReader reader = createLine(roads);
+			int endX = TestRoutingFile.BASE + roads * TestRoutingFile.STEP - TestRoutingFile.STEP / 2;
+			checkSameAsSequential(reader, TestRoutingFile.getLatLon(TestRoutingFile.BASE + TestRoutingFile.STEP / 2,
+					TestRoutingFile.BASE), TestRoutingFile.getLatLon(endX, TestRoutingFile.BASE));
+		}
+	}
+
+	@Test
+	public void testGrids() throws Exception {
+		for (int size : new int[] { 8, 16, 30 }) {
+			TestRoutingFile file = new TestRoutingFile();
+			file.addGrid(size, new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.RESIDENTIAL,
+					TestRoutingFile.SECONDARY });
+			BinaryMapIndexReader reader = file.open();
+			checkSameAsSequential(reader, TestRoutingFile.getGridLatLon(0, 1),
+					TestRoutingFile.getGridLatLon(size - 1, size - 2));
+			checkSameAsSequential(reader, TestRoutingFile.getGridLatLon(size - 2, 0),
+					TestRoutingFile.getGridLatLon(1, size - 1));
+		}
+	}
+}
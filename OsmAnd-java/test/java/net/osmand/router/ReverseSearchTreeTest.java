@@ -0,0 +1,59 @@
+package net.osmand.router;
+
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReverseSearchTreeTest {
+
+	@Test
+	public void testIncrementalSearchIsSameAsFullSearch() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		file.addGrid(8, new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.RESIDENTIAL, TestRoutingFile.SECONDARY });
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[] { file.open() };
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingConfiguration.Builder builder = TestRoutingFile.loadConfig();
+		RoutingConfiguration config = builder.build("car", 100);
+		config.incrementalRecalculation = true;
+		LatLon end = TestRoutingFile.getGridLatLon(7, 6);
+
+		RoutingContext ctx = fe.buildRoutingContext(config, null, readers);
+		List<RouteSegmentResult> route = fe.searchRoute(ctx, TestRoutingFile.getGridLatLon(0, 1), end, null);
+		ReverseSearchTree tree = ctx.reverseSearchTree;
+		Assert.assertNotNull(tree);
+		Assert.assertSame(tree, new RoutingContext(ctx).reverseSearchTree);
+
+		// start is moved from points of previous route
+		for (RouteSegmentResult s : route) {
+			RouteDataObject road = s.getObject();
+			int x = road.getPoint31XTile(s.getStartPointIndex()) + TestRoutingFile.STEP / 3;
+			int y = road.getPoint31YTile(s.getStartPointIndex()) + TestRoutingFile.STEP / 10;
+			LatLon start = TestRoutingFile.getLatLon(x, y);
+
+			RoutingContext incrementalCtx = fe.buildRoutingContext(config, null, readers);
+			incrementalCtx.reverseSearchTree = tree;
+			List<RouteSegmentResult> incremental = fe.searchRoute(incrementalCtx, start, end, null);
+			// tree was used and extended by incremental search
+			Assert.assertSame(tree, incrementalCtx.reverseSearchTree);
+
+			RoutingContext fullCtx = fe.buildRoutingContext(builder.build("car", 100), null, readers);
+			List<RouteSegmentResult> full = fe.searchRoute(fullCtx, start, end, null);
+			Assert.assertEquals(toString(full), toString(incremental));
+			Assert.assertEquals(fullCtx.routingTime, incrementalCtx.routingTime, 0.1);
+		}
+	}
+
+	private static String toString(List<RouteSegmentResult> route) {
+		StringBuilder b = new StringBuilder();
+		for (RouteSegmentResult s : route) {
+			b.append(s.getObject().getId()).append(':').append(s.getStartPointIndex()).append('-')
+					.append(s.getEndPointIndex()).append(' ');
+		}
+		return b.toString();
+	}
+}
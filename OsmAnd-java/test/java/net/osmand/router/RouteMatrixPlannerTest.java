@@ -0,0 +1,91 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteMatrixPlannerTest {
+
+	// inserted start and end points of route result are rounded (~2 m)
+	private static final float ROUTE_END_DELTA = 1f;
+
+	@Test
+	public void testMatrixIsSameAsPairwiseSearches() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		file.addGrid(8, new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.RESIDENTIAL, TestRoutingFile.SECONDARY });
+		// oneway diagonal shortcut makes times asymmetric
+		int x = TestRoutingFile.BASE + 2 * TestRoutingFile.STEP;
+		int y = TestRoutingFile.BASE + 5 * TestRoutingFile.STEP;
+		file.addRoad(new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.ONEWAY },
+				new int[] { x, x + 3 * TestRoutingFile.STEP }, new int[] { y, y - 3 * TestRoutingFile.STEP });
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[] { file.open() };
+		RoutingConfiguration.Builder builder = TestRoutingFile.loadConfig();
+
+		List<LatLon> points = new ArrayList<LatLon>();
+		for (int i = 0; i < 8; i++) {
+			// points are between grid nodes on rows
+			points.add(TestRoutingFile.getLatLon(TestRoutingFile.BASE + i * TestRoutingFile.STEP / 2 + TestRoutingFile.STEP / 3,
+					TestRoutingFile.BASE + ((i * 3) % 8) * TestRoutingFile.STEP));
+		}
+		List<LatLon> sources = points.subList(0, 4);
+		List<LatLon> targets = points;
+
+		RouteMatrixPlanner planner = new RouteMatrixPlanner();
+		RoutingContext ctx = new RoutePlannerFrontEnd(false).buildRoutingContext(builder.build("car", 100), null, readers);
+		RouteMatrix matrix = planner.searchRouteMatrix(ctx, sources, targets, 0);
+		Assert.assertEquals(sources.size(), matrix.getSourcesCount());
+		Assert.assertEquals(targets.size(), matrix.getTargetsCount());
+		for (int s = 0; s < sources.size(); s++) {
+			for (int t = 0; t < targets.size(); t++) {
+				RoutingContext pairCtx = new RoutePlannerFrontEnd(false).buildRoutingContext(builder.build("car", 100),
+						null, readers);
+				RouteMatrix pair = planner.searchRouteMatrix(pairCtx, Collections.singletonList(sources.get(s)),
+						Collections.singletonList(targets.get(t)), 0);
+				Assert.assertTrue(pair.isReachable(0, 0));
+				Assert.assertTrue(matrix.isReachable(s, t));
+				Assert.assertEquals(pair.getTime(0, 0), matrix.getTime(s, t), 1e-3);
+				Assert.assertEquals(pair.getDistance(0, 0), matrix.getDistance(s, t), 1e-3);
+			}
+		}
+		checkRouteTimes(builder, readers, sources, targets, matrix);
+	}
+
+	/**
+	 * Compares matrix with times of routes found by {@link BinaryRoutePlanner} (calculated by matrix costs).
+	 * Regular search isn't exact (whole road is one step of search), so its route could be slower than matrix one,
+	 * but most routes should be the same.
+	 */
+	private static void checkRouteTimes(RoutingConfiguration.Builder builder, BinaryMapIndexReader[] readers,
+			List<LatLon> sources, List<LatLon> targets, RouteMatrix matrix) throws Exception {
+		int cells = 0;
+		int same = 0;
+		for (int s = 0; s < sources.size(); s++) {
+			for (int t = 0; t < targets.size(); t++) {
+				if (sources.get(s).equals(targets.get(t))) {
+					continue;
+				}
+				RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+				RoutingContext ctx = fe.buildRoutingContext(builder.build("car", 100), null, readers);
+				List<RouteSegmentResult> route = fe.searchRoute(ctx, sources.get(s), targets.get(t), null);
+				Assert.assertNotNull(route);
+				float time = 0;
+				for (RouteSegmentResult r : route) {
+					time += ContractionHierarchy.calculateTime(ctx.getRouter(), r.getObject(), r.getStartPointIndex(),
+							r.getEndPointIndex(), 0);
+				}
+				Assert.assertTrue(s + " -> " + t, matrix.getTime(s, t) <= time + ROUTE_END_DELTA);
+				if (Math.abs(matrix.getTime(s, t) - time) <= ROUTE_END_DELTA) {
+					same++;
+				}
+				cells++;
+			}
+		}
+		Assert.assertTrue(same + " of " + cells, same * 4 >= cells * 3);
+	}
+}
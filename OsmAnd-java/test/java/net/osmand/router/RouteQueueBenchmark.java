@@ -0,0 +1,71 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares visited segments per second of java.util.PriorityQueue and RouteSegmentHeap on test_routing.json.
+ * Usage: RouteQueueBenchmark [obf file] [iterations] [heap arity]
+ */
+public class RouteQueueBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String fl = args.length > 0 ? args[0] : "../../resources/test-resources/Routing_test.obf";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int arity = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		Reader reader = new InputStreamReader(RouteQueueBenchmark.class.getResourceAsStream("/test_routing.json"));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
+		reader.close();
+		RandomAccessFile raf = new RandomAccessFile(fl, "r");
+		BinaryMapIndexReader[] readers = { new BinaryMapIndexReader(raf, new File(fl)) };
+		// warm up
+		run(testEntries, readers, 0, 1);
+		run(testEntries, readers, arity, 1);
+		long[] queue = run(testEntries, readers, 0, iterations);
+		long[] heap = run(testEntries, readers, arity, iterations);
+		print("PriorityQueue", queue);
+		print("Heap arity " + arity, heap);
+		raf.close();
+	}
+
+	private static void print(String name, long[] res) {
+		System.out.println(String.format("%s : %d visited segments in %.1f ms, %.0f segments/sec", name, res[0],
+				res[1] / 1e6, res[0] / (res[1] / 1e9)));
+	}
+
+	private static long[] run(TestEntry[] testEntries, BinaryMapIndexReader[] readers, int arity, int iterations)
+			throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		long visited = 0;
+		long time = 0;
+		for (int it = 0; it < iterations; it++) {
+			for (TestEntry te : testEntries) {
+				if (te.isIgnore()) {
+					continue;
+				}
+				RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
+				Map<String, String> params = te.getParams();
+				RoutingConfiguration config = builder.build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
+						RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
+				config.heapArity = arity;
+				RoutingContext ctx = fe.buildRoutingContext(config, null, readers,
+						RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+				ctx.leftSideNavigation = false;
+				long start = System.nanoTime();
+				fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+				time += System.nanoTime() - start;
+				visited += ctx.visitedSegments;
+			}
+		}
+		return new long[] { visited, time };
+	}
+}
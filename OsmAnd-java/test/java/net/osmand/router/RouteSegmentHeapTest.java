@@ -0,0 +1,67 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSegmentHeapTest {
+
+	private static RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(null, 0);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	@Test
+	public void testPollOrder() {
+		Random rnd = new Random(7);
+		for (int arity = 2; arity <= 8; arity++) {
+			RouteSegmentHeap heap = new RouteSegmentHeap(arity, 1.5f);
+			for (int i = 0; i < 1000; i++) {
+				heap.add(segment(rnd.nextFloat() * 1000, rnd.nextFloat() * 1000));
+			}
+			Assert.assertEquals(1000, heap.size());
+			float prev = -1;
+			while (!heap.isEmpty()) {
+				RouteSegment s = heap.poll();
+				float f = s.distanceFromStart + 1.5f * s.distanceToEnd;
+				Assert.assertTrue(f >= prev);
+				prev = f;
+			}
+			Assert.assertNull(heap.poll());
+		}
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4, 1);
+		List<RouteSegment> list = new ArrayList<RouteSegment>();
+		for (int i = 0; i < 100; i++) {
+			RouteSegment s = segment(100 + i, 0);
+			list.add(s);
+			heap.add(s);
+		}
+		RouteSegment last = list.get(99);
+		last.distanceFromStart = 1;
+		heap.add(last);
+		Assert.assertEquals(100, heap.size());
+		Assert.assertSame(last, heap.peek());
+		RouteSegment first = list.get(0);
+		first.distanceFromStart = 1000;
+		heap.add(first);
+		Assert.assertEquals(100, heap.size());
+		Assert.assertSame(last, heap.poll());
+		Assert.assertSame(list.get(1), heap.poll());
+		RouteSegment polled = null;
+		while (!heap.isEmpty()) {
+			polled = heap.poll();
+		}
+		Assert.assertSame(first, polled);
+	}
+}
@@ -0,0 +1,119 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSegmentIndexTest {
+
+	private static final int BASE = 1 << 30;
+	private static final int AREA = 1 << 20;
+	private static final int CAPACITY = 4;
+
+	private static List<RouteDataObject> createRoads(Random rnd, int count) {
+		RouteRegion reg = new RouteRegion();
+		reg.initRouteEncodingRule(0, "highway", "primary");
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (int k = 0; k < count; k++) {
+			RouteDataObject road = new RouteDataObject(reg);
+			road.id = k + 1;
+			road.types = new int[] { 0 };
+			int points = 2 + rnd.nextInt(4);
+			road.pointsX = new int[points];
+			road.pointsY = new int[points];
+			road.pointsX[0] = BASE + rnd.nextInt(AREA);
+			road.pointsY[0] = BASE + rnd.nextInt(AREA);
+			for (int i = 1; i < points; i++) {
+				road.pointsX[i] = road.pointsX[i - 1] + rnd.nextInt(AREA / 16) - AREA / 32;
+				road.pointsY[i] = road.pointsY[i - 1] + rnd.nextInt(AREA / 16) - AREA / 32;
+			}
+			roads.add(road);
+		}
+		return roads;
+	}
+
+	// same local metric as index uses
+	private static void findNearestByScan(List<RouteDataObject> roads, int px, int py, NearestRouteSegments result) {
+		double ky = Math.abs(MapUtils.convert31YToMeters(py, py + (1 << 16), px)) / (1 << 16);
+		double kx = Math.abs(MapUtils.convert31XToMeters(px, px + (1 << 16), py)) / (1 << 16);
+		for (RouteDataObject ro : roads) {
+			for (int i = 1; i < ro.getPointsLength(); i++) {
+				int x1 = ro.getPoint31XTile(i - 1);
+				int y1 = ro.getPoint31YTile(i - 1);
+				int x2 = ro.getPoint31XTile(i);
+				int y2 = ro.getPoint31YTile(i);
+				double dx = (x2 - x1) * kx;
+				double dy = (y2 - y1) * ky;
+				double len = dx * dx + dy * dy;
+				double proj = (px - x1) * kx * dx + (py - y1) * ky * dy;
+				int prx = x1;
+				int pry = y1;
+				if (proj >= len && len > 0) {
+					prx = x2;
+					pry = y2;
+				} else if (proj > 0 && len > 0) {
+					prx = (int) (x1 + (x2 - x1) * (proj / len));
+					pry = (int) (y1 + (y2 - y1) * (proj / len));
+				}
+				double mx = (prx - px) * kx;
+				double my = (pry - py) * ky;
+				result.add(ro, i, mx * mx + my * my, prx, pry);
+			}
+		}
+	}
+
+	@Test
+	public void testNearestSegmentsAreSameAsScan() {
+		Random rnd = new Random(17);
+		List<RouteDataObject> roads = createRoads(rnd, 300);
+		RouteSegmentIndex index = new RouteSegmentIndex(roads);
+		NearestRouteSegments expected = new NearestRouteSegments(CAPACITY);
+		NearestRouteSegments actual = new NearestRouteSegments(CAPACITY);
+		for (int k = 0; k < 500; k++) {
+			// points inside and outside of indexed area (rings are stopped by distance bound)
+			int px = BASE - AREA / 2 + rnd.nextInt(2 * AREA);
+			int py = BASE - AREA / 2 + rnd.nextInt(2 * AREA);
+			expected.clear();
+			actual.clear();
+			findNearestByScan(roads, px, py, expected);
+			index.findNearest(px, py, actual);
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Assert.assertEquals(expected.getDistSquare(i), actual.getDistSquare(i), 1e-6);
+				Assert.assertEquals(expected.getRoad(i).getId(), actual.getRoad(i).getId());
+				// segments of the same road could be equally close to common point
+				Assert.assertEquals(expected.getPreciseX(i), actual.getPreciseX(i));
+				Assert.assertEquals(expected.getPreciseY(i), actual.getPreciseY(i));
+			}
+		}
+	}
+
+	@Test
+	public void testMaxDistance() {
+		Random rnd = new Random(3);
+		List<RouteDataObject> roads = createRoads(rnd, 100);
+		RouteSegmentIndex index = new RouteSegmentIndex(roads);
+		NearestRouteSegments expected = new NearestRouteSegments(CAPACITY);
+		NearestRouteSegments actual = new NearestRouteSegments(CAPACITY);
+		for (int k = 0; k < 200; k++) {
+			int px = BASE + rnd.nextInt(AREA);
+			int py = BASE + rnd.nextInt(AREA);
+			expected.clear(200);
+			actual.clear(200);
+			findNearestByScan(roads, px, py, expected);
+			index.findNearest(px, py, actual);
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < actual.size(); i++) {
+				Assert.assertTrue(actual.getDistSquare(i) < 200 * 200);
+				Assert.assertEquals(expected.getRoad(i).getId(), actual.getRoad(i).getId());
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package net.osmand.router;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.OsmandOdb;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.util.MapUtils;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Writes obf file with routing section of given roads (one data block) for route planner tests.
+ * Road types are rules of test_ch_routing.xml profile.
+ */
+public class TestRoutingFile {
+
+	public static final int PRIMARY = 1;
+	public static final int SECONDARY = 2;
+	public static final int RESIDENTIAL = 3;
+	public static final int ONEWAY = 4;
+	public static final int MAXSPEED_WORKDAYS = 5;
+	public static final String WORKDAYS = "Mo-Fr 07:00-19:00";
+	private static final String[][] RULES = { { "highway", "primary" }, { "highway", "secondary" },
+			{ "highway", "residential" }, { "oneway", "yes" }, { "maxspeed:conditional", "50 @ (" + WORKDAYS + ")" } };
+	// coordinates are stored with lower bits cut
+	private static final int SHIFT_COORDINATES = 4;
+	private static final int VERSION = 2;
+
+	public static final int BASE = 1 << 30;
+	// ~ 370 m
+	public static final int STEP = 20000;
+
+	private static boolean poiTypesInit;
+
+	private final List<int[]> types = new ArrayList<int[]>();
+	private final List<int[]> pointsX = new ArrayList<int[]>();
+	private final List<int[]> pointsY = new ArrayList<int[]>();
+
+	/**
+	 * @return id of road
+	 */
+	public long addRoad(int[] types, int[] x31, int[] y31) {
+		this.types.add(types);
+		pointsX.add(x31);
+		pointsY.add(y31);
+		return this.types.size();
+	}
+
+	/**
+	 * Adds grid of size x size nodes with {@link #STEP} between them. Every row and column is one road with
+	 * type of roadTypes[i % roadTypes.length].
+	 */
+	public void addGrid(int size, int[] roadTypes) {
+		for (int i = 0; i < size; i++) {
+			int[] xs = new int[size];
+			int[] ys = new int[size];
+			for (int j = 0; j < size; j++) {
+				xs[j] = BASE + j * STEP;
+				ys[j] = BASE + i * STEP;
+			}
+			addRoad(new int[] { roadTypes[i % roadTypes.length] }, xs, ys);
+			addRoad(new int[] { roadTypes[(i + 1) % roadTypes.length] }, ys, xs);
+		}
+	}
+
+	public static LatLon getLatLon(int x31, int y31) {
+		return new LatLon(MapUtils.get31LatitudeY(y31), MapUtils.get31LongitudeX(x31));
+	}
+
+	public static LatLon getGridLatLon(int col, int row) {
+		return getLatLon(BASE + col * STEP, BASE + row * STEP);
+	}
+
+	public static RoutingConfiguration.Builder loadConfig() throws IOException, XmlPullParserException {
+		return RoutingConfiguration.parseFromInputStream(TestRoutingFile.class.getResourceAsStream("/test_ch_routing.xml"));
+	}
+
+	public BinaryMapIndexReader open() throws IOException {
+		File file = write();
+		return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+
+	/**
+	 * Writes temporary file (poi types are initialized, so file could be opened by reader)
+	 */
+	public File write() throws IOException {
+		initPoiTypes();
+		File file = File.createTempFile("test", ".obf");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write(writeFile());
+		} finally {
+			fout.close();
+		}
+		return file;
+	}
+
+	// reader needs poi types (poi_types.xml is not available in tests)
+	private static synchronized void initPoiTypes() throws IOException {
+		if (poiTypesInit) {
+			return;
+		}
+		File file = File.createTempFile("poi_types", ".xml");
+		file.deleteOnExit();
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write("<poi_types><poi_category name=\"user_defined_other\"/></poi_types>".getBytes("UTF-8"));
+		} finally {
+			fout.close();
+		}
+		MapPoiTypes.setDefault(new MapPoiTypes(file.getAbsolutePath()));
+		poiTypesInit = true;
+	}
+
+	private byte[] writeFile() throws IOException {
+		byte[] index = writeRoutingIndex();
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bout);
+		out.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, VERSION);
+		out.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, System.currentTimeMillis());
+		out.writeTag(OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		writeInt(out, index.length);
+		out.writeRawBytes(index);
+		out.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, VERSION);
+		out.flush();
+		return bout.toByteArray();
+	}
+
+	private byte[] writeRoutingIndex() throws IOException {
+		int left = Integer.MAX_VALUE;
+		int right = 0;
+		int top = Integer.MAX_VALUE;
+		int bottom = 0;
+		for (int i = 0; i < types.size(); i++) {
+			for (int j = 0; j < pointsX.get(i).length; j++) {
+				left = Math.min(left, pointsX.get(i)[j]);
+				right = Math.max(right, pointsX.get(i)[j]);
+				top = Math.min(top, pointsY.get(i)[j]);
+				bottom = Math.max(bottom, pointsY.get(i)[j]);
+			}
+		}
+		RouteDataBlock.Builder block = RouteDataBlock.newBuilder();
+		OsmandOdb.IdTable.Builder idTable = OsmandOdb.IdTable.newBuilder();
+		for (int i = 0; i < types.size(); i++) {
+			// ids are 1, 2, 3 ...
+			idTable.addRouteId(1);
+			ByteArrayOutputStream points = new ByteArrayOutputStream();
+			CodedOutputStream pout = CodedOutputStream.newInstance(points);
+			int px = left >> SHIFT_COORDINATES;
+			int py = top >> SHIFT_COORDINATES;
+			for (int j = 0; j < pointsX.get(i).length; j++) {
+				int x = pointsX.get(i)[j] >> SHIFT_COORDINATES;
+				int y = pointsY.get(i)[j] >> SHIFT_COORDINATES;
+				pout.writeSInt32NoTag(x - px);
+				pout.writeSInt32NoTag(y - py);
+				px = x;
+				py = y;
+			}
+			pout.flush();
+			ByteArrayOutputStream tps = new ByteArrayOutputStream();
+			CodedOutputStream tout = CodedOutputStream.newInstance(tps);
+			for (int t : types.get(i)) {
+				tout.writeRawVarint32(t);
+			}
+			tout.flush();
+			block.addDataObjects(OsmandOdb.RouteData.newBuilder().setRouteId(i)
+					.setPoints(ByteString.copyFrom(points.toByteArray())).setTypes(ByteString.copyFrom(tps.toByteArray())));
+		}
+		block.setIdTable(idTable);
+
+		ByteArrayOutputStream box = new ByteArrayOutputStream();
+		CodedOutputStream bout = CodedOutputStream.newInstance(box);
+		bout.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, left);
+		bout.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, right);
+		bout.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, top);
+		bout.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, bottom);
+		bout.writeTag(RouteDataBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		bout.flush();
+		// data block is written right after box (shift is counted from start of box)
+		int shiftToData = box.size() + 4 + CodedOutputStream.computeTagSize(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER);
+		writeInt(bout, shiftToData);
+		bout.flush();
+
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(index);
+		out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, "test");
+		for (int i = 0; i < RULES.length; i++) {
+			out.writeMessage(OsmAndRoutingIndex.RULES_FIELD_NUMBER, RouteEncodingRule.newBuilder()
+					.setTag(RULES[i][0]).setValue(RULES[i][1]).setId(i + 1).build());
+		}
+		out.writeTag(OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		writeInt(out, box.size());
+		out.writeRawBytes(box.toByteArray());
+		out.writeMessage(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER, block.build());
+		out.flush();
+		return index.toByteArray();
+	}
+
+	private static void writeInt(CodedOutputStream out, int v) throws IOException {
+		out.writeRawByte((v >>> 24) & 0xFF);
+		out.writeRawByte((v >>> 16) & 0xFF);
+		out.writeRawByte((v >>> 8) & 0xFF);
+		out.writeRawByte(v & 0xFF);
+	}
+}
@@ -0,0 +1,72 @@
+package net.osmand.router.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.osmand.router.RouteSegmentResult;
+import net.osmand.router.TestRoutingFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoutingServiceTest {
+
+	@Test
+	public void testBatchIsSameAsSingleRequests() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		file.addGrid(6, new int[] { TestRoutingFile.PRIMARY, TestRoutingFile.RESIDENTIAL, TestRoutingFile.SECONDARY });
+		RoutingService.Settings settings = new RoutingService.Settings();
+		settings.workers = 1;
+		RoutingService service = new RoutingService(Collections.singletonList(file.write()),
+				TestRoutingFile.loadConfig(), settings);
+		try {
+			List<RouteRequest> requests = Arrays.asList(
+					new RouteRequest(TestRoutingFile.getGridLatLon(0, 0), TestRoutingFile.getGridLatLon(5, 4), "car"),
+					new RouteRequest(TestRoutingFile.getGridLatLon(5, 5), TestRoutingFile.getGridLatLon(1, 0), "car"),
+					new RouteRequest(TestRoutingFile.getGridLatLon(0, 5), TestRoutingFile.getGridLatLon(5, 0), "car"));
+			List<Future<RouteResponse>> batch = service.submitBatch(requests);
+			for (int i = 0; i < requests.size(); i++) {
+				RouteResponse single = service.route(requests.get(i));
+				RouteResponse batched = batch.get(i).get();
+				Assert.assertTrue(single.isRouteFound());
+				Assert.assertTrue(batched.isRouteFound());
+				Assert.assertEquals(toString(single.getRoute()), toString(batched.getRoute()));
+			}
+			Assert.assertEquals(6, service.getCompletedRequests());
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectedBatchReleasesCapacity() throws Exception {
+		TestRoutingFile file = new TestRoutingFile();
+		file.addGrid(3, new int[] { TestRoutingFile.PRIMARY });
+		RoutingService.Settings settings = new RoutingService.Settings();
+		settings.workers = 1;
+		RoutingService service = new RoutingService(Collections.singletonList(file.write()),
+				TestRoutingFile.loadConfig(), settings);
+		service.shutdown();
+		RouteRequest r = new RouteRequest(TestRoutingFile.getGridLatLon(0, 0), TestRoutingFile.getGridLatLon(2, 2), "car");
+		try {
+			service.submitBatch(Arrays.asList(r, r));
+			Assert.fail("Stopped service accepted requests");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		Assert.assertEquals(0, service.getPendingRequests());
+		Assert.assertEquals(2, service.getRejectedRequests());
+	}
+
+	private static String toString(List<RouteSegmentResult> route) {
+		StringBuilder b = new StringBuilder();
+		for (RouteSegmentResult s : route) {
+			b.append(s.getObject().getId()).append(':').append(s.getStartPointIndex()).append('-')
+					.append(s.getEndPointIndex()).append(' ');
+		}
+		return b.toString();
+	}
+}
@@ -24,9 +24,6 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.Point;
-
 import net.osmand.AndroidNetworkUtils;
 import net.osmand.AndroidUtils;
 import net.osmand.data.GeometryTile;
@@ -338,12 +335,11 @@ public class MapillaryImageDialog extends ContextMenuCardDialog {
 		fetchTiles();
 		for (Pair<QuadPointDouble, GeometryTile> pt : tiles) {
 			GeometryTile tile = pt.second;
-			for (Geometry g : tile.getData()) {
-				if (g instanceof Point && !g.isEmpty() && g.getUserData() != null && g.getUserData() instanceof HashMap) {
-					HashMap userData = (HashMap) g.getUserData();
-					String key = (String) userData.get("key");
-					if (this.key.equals(key)) {
-						sKey = (String) userData.get("skey");
+			for (GeometryTile.Layer layer : tile.getLayers()) {
+				for (GeometryTile.Feature f : layer.getFeatures()) {
+					if (f.getType() == GeometryTile.TYPE_POINT && !f.isEmpty()
+							&& this.key.equals(f.getAttribute("key"))) {
+						sKey = (String) f.getAttribute("skey");
 						return;
 					}
 				}
@@ -359,18 +355,16 @@ public class MapillaryImageDialog extends ContextMenuCardDialog {
 			for (Pair<QuadPointDouble, GeometryTile> pt : tiles) {
 				QuadPointDouble point = pt.first;
 				GeometryTile tile = pt.second;
-				for (Geometry g : tile.getData()) {
-					if (g instanceof Point && !g.isEmpty() && g.getUserData() != null && g.getUserData() instanceof HashMap) {
-						HashMap userData = (HashMap) g.getUserData();
-						String sKey = (String) userData.get("skey");
-						if (this.sKey.equals(sKey)) {
-							Point p = (Point) g;
-							px = p.getCoordinate().x / EXTENT;
-							py = p.getCoordinate().y / EXTENT;
+				for (GeometryTile.Layer layer : tile.getLayers()) {
+					for (GeometryTile.Feature f : layer.getFeatures()) {
+						if (f.getType() == GeometryTile.TYPE_POINT && !f.isEmpty()
+								&& this.sKey.equals(f.getAttribute("skey"))) {
+							px = f.getX() / EXTENT;
+							py = f.getY() / EXTENT;
 							MapillaryImage image = new MapillaryImage(
 									MapUtils.getLatitudeFromTile(TILE_ZOOM, point.y + py),
 									MapUtils.getLongitudeFromTile(TILE_ZOOM, point.x + px));
-							if (image.setData(userData)) {
+							if (image.setData(f.getAttributes())) {
 								sequenceImages.add(image);
 							}
 						}
@@ -7,11 +7,7 @@ import android.graphics.Paint;
 import android.graphics.PointF;
 import android.support.v4.content.ContextCompat;
 
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.LineString;
-import com.vividsolutions.jts.geom.MultiLineString;
-import com.vividsolutions.jts.geom.Point;
+import gnu.trove.list.array.TIntArrayList;
 
 import net.osmand.AndroidUtils;
 import net.osmand.data.GeometryTile;
@@ -48,6 +44,8 @@ class MapillaryVectorLayer extends MapTileLayer implements MapillaryLayer, ICont
 	private Paint paintLine;
 	private Bitmap point;
 	private Map<QuadPointDouble, Map> visiblePoints = new HashMap<>();
+	private TIntArrayList coordinates = new TIntArrayList();
+	private TIntArrayList partSizes = new TIntArrayList();
 
 	MapillaryVectorLayer() {
 		super(false);
@@ -147,11 +145,9 @@ class MapillaryVectorLayer extends MapTileLayer implements MapillaryLayer, ICont
 					}
 					if (tile != null) {
 						tiles.put(tileId, tile);
-						if (tile.getData() != null) {
-							drawLines(canvas, tileBox, tileX, tileY, tile);
-							if (nzoom > 15) {
-								drawPoints(canvas, tileBox, tileX, tileY, tile, visiblePoints);
-							}
+						drawLines(canvas, tileBox, tileX, tileY, tile);
+						if (nzoom > 15) {
+							drawPoints(canvas, tileBox, tileX, tileY, tile, visiblePoints);
 						}
 					}
 				}
@@ -173,38 +169,40 @@ class MapillaryVectorLayer extends MapTileLayer implements MapillaryLayer, ICont
 		float pwd = pw / 2;
 		float phd = ph / 2;
 
-		for (Geometry g : tile.getData()) {
-			if (g instanceof Point && !g.isEmpty() && g.getUserData() != null && g.getUserData() instanceof HashMap) {
-				Point p = (Point) g;
-				px = p.getCoordinate().x / EXTENT;
-				py = p.getCoordinate().y / EXTENT;
+		for (GeometryTile.Layer layer : tile.getLayers()) {
+			for (GeometryTile.Feature f : layer.getFeatures()) {
+				if (f.getType() != GeometryTile.TYPE_POINT || f.isEmpty()) {
+					continue;
+				}
+				px = f.getX() / EXTENT;
+				py = f.getY() / EXTENT;
 				tx = (tileX + px) * mult;
 				ty = (tileY + py) * mult;
 				if (tileBounds.contains(tx, ty, tx, ty)) {
 					if (settings.USE_MAPILLARY_FILTER.get()) {
-						if (filtered(p.getUserData())) continue;
+						if (filtered(f)) continue;
 					}
 					x = tileBox.getPixXFromTile(tileX + px, tileY + py, TILE_ZOOM);
 					y = tileBox.getPixYFromTile(tileX + px, tileY + py, TILE_ZOOM);
 					canvas.drawBitmap(point, x - pwd, y - phd, paintPoint);
-					visiblePoints.put(new QuadPointDouble(tileX + px,  tileY + py), (Map) p.getUserData());
+					visiblePoints.put(new QuadPointDouble(tileX + px,  tileY + py), f.getAttributes());
 				}
 			}
 		}
 	}
 
-	private boolean filtered(Object data) {
-		if (data == null) {
+	private boolean filtered(GeometryTile.Feature feature) {
+		Object captured = feature.getAttribute("captured_at");
+		if (!(captured instanceof Long)) {
 			return true;
 		}
 		String userKey = settings.MAPILLARY_FILTER_USER_KEY.get();
-		HashMap<String, Object> userData = (HashMap<String, Object>) data;
-		long capturedAt = (long) userData.get("captured_at");
+		long capturedAt = (Long) captured;
 		long from = settings.MAPILLARY_FILTER_FROM_DATE.get();
 		long to = settings.MAPILLARY_FILTER_TO_DATE.get();
 
 		if (!userKey.equals("")) {
-			String key = (String) userData.get("userkey");
+			String key = (String) feature.getAttribute("userkey");
 			if (!userKey.equals(key)) {
 				return true;
 			}
@@ -220,52 +218,39 @@ class MapillaryVectorLayer extends MapTileLayer implements MapillaryLayer, ICont
 	}
 
 	protected void drawLines(Canvas canvas, RotatedTileBox tileBox, int tileX, int tileY, GeometryTile tile) {
-		for (Geometry g : tile.getData()) {
-			if (g instanceof LineString && !g.isEmpty()) {
-				LineString l = (LineString) g;
-				if (l.getCoordinateSequence() != null && !l.isEmpty()) {
-					if (!filtered(l.getUserData())) {
-						draw(l.getCoordinateSequence().toCoordinateArray(), canvas, tileBox, tileX, tileY);
-					}
+		for (GeometryTile.Layer layer : tile.getLayers()) {
+			for (GeometryTile.Feature f : layer.getFeatures()) {
+				if (f.getType() != GeometryTile.TYPE_LINE || f.isEmpty() || filtered(f)) {
+					continue;
 				}
-			} else if (g instanceof MultiLineString && !g.isEmpty()) {
-				MultiLineString ml = (MultiLineString) g;
-				if (!filtered(ml.getUserData())) {
-					for (int i = 0; i < ml.getNumGeometries(); i++) {
-                        Geometry gm = ml.getGeometryN(i);
-                        if (gm instanceof LineString && !gm.isEmpty()) {
-                            LineString l = (LineString) gm;
-                            if (l.getCoordinateSequence() != null && !l.isEmpty()) {
-                                draw(l.getCoordinateSequence().toCoordinateArray(), canvas, tileBox, tileX, tileY);
-                            }
-                        }
-                    }
+				f.decodeGeometry(coordinates, partSizes);
+				int start = 0;
+				for (int i = 0; i < partSizes.size(); i++) {
+					draw(coordinates, start, partSizes.get(i), canvas, tileBox, tileX, tileY);
+					start += partSizes.get(i) * 2;
 				}
 			}
 		}
 	}
 
-	protected void draw(Coordinate[] points, Canvas canvas, RotatedTileBox tileBox, int tileX, int tileY) {
-		if (points.length > 1) {
+	protected void draw(TIntArrayList points, int start, int size, Canvas canvas, RotatedTileBox tileBox, int tileX, int tileY) {
+		if (size > 1) {
 			int dzoom = tileBox.getZoom() - TILE_ZOOM;
 			int mult = (int) Math.pow(2.0, dzoom);
 			QuadRect tileBounds = tileBox.getTileBounds();
 
-			Coordinate lastPt = points[0];
 			float x;
 			float y;
 			float lastx = 0;
 			float lasty = 0;
 			double px, py, tpx, tpy, tlx, tly;
-			double lx = lastPt.x / EXTENT;
-			double ly = lastPt.y / EXTENT;
+			double lx = points.get(start) / EXTENT;
+			double ly = points.get(start + 1) / EXTENT;
 			boolean reCalculateLastXY = true;
 
-			int size = points.length;
 			for (int i = 1; i < size; i++) {
-				Coordinate pt = points[i];
-				px = pt.x / EXTENT;
-				py = pt.y / EXTENT;
+				px = points.get(start + i * 2) / EXTENT;
+				py = points.get(start + i * 2 + 1) / EXTENT;
 				tpx = (tileX + px) * mult;
 				tpy = (tileY + py) * mult;
 				tlx = (tileX + lx) * mult;
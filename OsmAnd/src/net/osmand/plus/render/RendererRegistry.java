@@ -1,11 +1,13 @@
 package net.osmand.plus.render;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -15,9 +17,11 @@ import net.osmand.IProgress;
 import net.osmand.IndexConstants;
 import net.osmand.PlatformUtil;
 import net.osmand.plus.OsmandApplication;
+import net.osmand.plus.Version;
 import net.osmand.render.RenderingRuleProperty;
 import net.osmand.render.RenderingRulesStorage;
 import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
+import net.osmand.render.RenderingRulesStorageSerializer;
 import net.osmand.util.Algorithms;
 
 import org.apache.commons.logging.Log;
@@ -37,6 +41,9 @@ public class RendererRegistry {
 	public final static String TOPO_RENDER = "Topo";  //$NON-NLS-1$
 	public final static String MAPNIK_RENDER = "Mapnik";  //$NON-NLS-1$
 
+	private static final String CACHE_DIR = "styles";
+	private static final String CACHE_EXT = ".render.cache";
+
 	private RenderingRulesStorage defaultRender = null;
 	private RenderingRulesStorage currentSelectedRender = null;
 	
@@ -80,7 +87,7 @@ public class RendererRegistry {
 			return null;
 		}
 		try {
-			RenderingRulesStorage r = loadRenderer(name, new LinkedHashMap<String, RenderingRulesStorage>(), new LinkedHashMap<String, String>());
+			RenderingRulesStorage r = loadCachedRenderer(name);
 			renderers.put(name, r);
 			return r;
 		} catch (IOException e) {
@@ -91,6 +98,63 @@ public class RendererRegistry {
 		return null;
 	}
 
+	private RenderingRulesStorage loadCachedRenderer(String name) throws IOException, XmlPullParserException {
+		// native renderer needs xml sources of the style and its dependencies
+		if (rendererLoadedEventListener != null) {
+			return loadRenderer(name, new LinkedHashMap<String, RenderingRulesStorage>(), new LinkedHashMap<String, String>());
+		}
+		File cache = new File(app.getCacheDir(), CACHE_DIR + "/" + name.replaceAll("[^\\w.-]", "_") + CACHE_EXT);
+		long hash = getSourceHash(name);
+		if (cache.exists()) {
+			try {
+				InputStream is = new FileInputStream(cache);
+				try {
+					RenderingRulesStorage r = RenderingRulesStorageSerializer.read(is, hash);
+					if (r != null) {
+						return r;
+					}
+				} finally {
+					is.close();
+				}
+			} catch (IOException e) {
+				log.warn("Rendering style cache is not read " + cache.getName(), e); //$NON-NLS-1$
+			}
+		}
+		RenderingRulesStorage r = loadRenderer(name, new LinkedHashMap<String, RenderingRulesStorage>(), new LinkedHashMap<String, String>());
+		if (r != null) {
+			cache.getParentFile().mkdirs();
+			try {
+				FileOutputStream fout = new FileOutputStream(cache);
+				try {
+					// internal styles could be copied to renderers directory while loading
+					RenderingRulesStorageSerializer.write(r, getSourceHash(name), fout);
+				} finally {
+					fout.close();
+				}
+			} catch (IOException e) {
+				log.warn("Rendering style cache is not written " + cache.getName(), e); //$NON-NLS-1$
+				cache.delete();
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Dependencies are known only after parsing, so every style file in renderers directory is checked
+	 * by modification time and size. Internal styles which are not copied yet change only with app version.
+	 */
+	private long getSourceHash(String name) throws IOException {
+		StringBuilder key = new StringBuilder(name).append('|').append(Version.getFullVersion(app));
+		File[] files = app.getAppPath(IndexConstants.RENDERERS_DIR).listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File f : files) {
+				key.append('|').append(f.getName()).append(':').append(f.lastModified()).append(':').append(f.length());
+			}
+		}
+		return RenderingRulesStorageSerializer.updateHash(0, new ByteArrayInputStream(key.toString().getBytes("UTF-8")));
+	}
+
 	private boolean hasRender(String name) {
 		return externalRenderers.containsKey(name) || internalRenderers.containsKey(name);
 	}
@@ -12,6 +12,7 @@ import net.osmand.data.LocationPoint;
 import net.osmand.plus.ApplicationMode;
 import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.R;
+import net.osmand.router.ReverseSearchTree;
 import net.osmand.router.RouteSegmentResult;
 import net.osmand.router.TurnType;
 import net.osmand.util.Algorithms;
@@ -44,6 +45,8 @@ public class RouteCalculationResult {
 	protected int currentWaypointGPX = 0;
 	protected int lastWaypointGPX = 0;
 	protected ApplicationMode appMode;
+	// reverse search tree to the end of route (passed to recalculation)
+	private ReverseSearchTree reverseSearchTree;
 
 	public RouteCalculationResult(String errorMessage) {
 		this.errorMessage = errorMessage;
@@ -210,6 +213,14 @@ public class RouteCalculationResult {
 		return list;
 	}
 
+	public ReverseSearchTree getReverseSearchTree() {
+		return reverseSearchTree;
+	}
+
+	public void setReverseSearchTree(ReverseSearchTree reverseSearchTree) {
+		this.reverseSearchTree = reverseSearchTree;
+	}
+
 	/**
 	 * PREPARATION 
 	 */
@@ -698,6 +698,8 @@ public class RouteProvider {
 			if(originalRoute != null && currentRoute < originalRoute.size()) {
 				ctx.previouslyCalculatedRoute = originalRoute.subList(currentRoute, originalRoute.size());
 			}
+			// target is the same, tree is checked by router before it is used
+			ctx.reverseSearchTree = params.previousToRecalculate.getReverseSearchTree();
 		}
 		if(complex && router.getRecalculationEnd(ctx) != null) {
 			complex = false;
@@ -708,6 +710,7 @@ public class RouteProvider {
 			complexCtx.calculationProgress = params.calculationProgress;
 			complexCtx.leftSideNavigation = params.leftSide;
 			complexCtx.previouslyCalculatedRoute = ctx.previouslyCalculatedRoute;
+			complexCtx.reverseSearchTree = ctx.reverseSearchTree;
 		}
 
 		LatLon st = new LatLon(params.start.getLatitude(), params.start.getLongitude());
@@ -811,6 +814,7 @@ public class RouteProvider {
 				RouteCalculationResult res = new RouteCalculationResult(result, params.start, params.end,
 						params.intermediates, params.ctx, params.leftSide, ctx.routingTime, params.gpxRoute  == null? null: params.gpxRoute.wpt,
 								params.mode);
+				res.setReverseSearchTree(ctx.reverseSearchTree);
 				return res;
 			}
 		} catch (RuntimeException e) {